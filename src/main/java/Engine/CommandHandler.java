@@ -0,0 +1,9 @@
+package Engine;
+
+import Orders.Order;
+
+// applies one order entry command drained from a CommandRing. order is only set for CommandRing.ADD, value is the new
+// quantity or price of an amend.
+public interface CommandHandler {
+    void onCommand(byte type, int bookSlot, Order order, int orderId, long value);
+}
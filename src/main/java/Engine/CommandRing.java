@@ -0,0 +1,116 @@
+package Engine;
+
+import Orders.Order;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded single producer / single consumer queue of order entry commands: the inbox of one MatchingPartition. Like
+// TradeRingBuffer, the slots are preallocated parallel arrays, the producer fills one and publishes it with a release
+// store, and neither side takes a lock. When the ring is full the producer waits for the partition instead of dropping
+// or queueing without bound. As a CommandHandler it queues whatever it is handed, so a decoder can feed it directly.
+public class CommandRing implements CommandHandler {
+    public static final byte ADD = 0;
+    public static final byte CANCEL = 1;
+    public static final byte AMEND_QTY = 2;
+    public static final byte AMEND_PRICE = 3;
+
+    private final int mask;
+    private final byte[] types;
+    private final int[] bookSlots; // index of the instrument's book in the Exchange, resolved by the router
+    private final Order[] orders; // ADD only
+    private final int[] orderIds;
+    private final long[] values; // new qty or price of an amend
+
+    private long produced = 0; // only touched by the producer
+    private long cachedConsumed = 0; // producer's last view of consumed
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    public CommandRing(int capacity)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a positive power of two.");
+
+        this.mask = capacity - 1;
+        this.types = new byte[capacity];
+        this.bookSlots = new int[capacity];
+        this.orders = new Order[capacity];
+        this.orderIds = new int[capacity];
+        this.values = new long[capacity];
+    }
+
+    public void add(int bookSlot, Order order)
+    {
+        publish(ADD, bookSlot, order, 0, 0);
+    }
+
+    public void cancel(int bookSlot, int orderId)
+    {
+        publish(CANCEL, bookSlot, null, orderId, 0);
+    }
+
+    public void amendQty(int bookSlot, int orderId, int qty)
+    {
+        publish(AMEND_QTY, bookSlot, null, orderId, qty);
+    }
+
+    public void amendPrice(int bookSlot, int orderId, long price)
+    {
+        publish(AMEND_PRICE, bookSlot, null, orderId, price);
+    }
+
+    @Override
+    public void onCommand(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        publish(type, bookSlot, order, orderId, value);
+    }
+
+    private void publish(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        if (produced - cachedConsumed > mask)
+        {
+            cachedConsumed = consumed.get();
+            while (produced - cachedConsumed > mask)
+            {
+                Thread.yield(); // full, let the partition catch up
+                cachedConsumed = consumed.get();
+            }
+        }
+
+        int slot = (int) (produced & mask);
+        types[slot] = type;
+        bookSlots[slot] = bookSlot;
+        orders[slot] = order;
+        orderIds[slot] = orderId;
+        values[slot] = value;
+        published.lazySet(++produced); // release store, the slot is written before the consumer can see it
+    }
+
+    // consumer side: hands up to maxCommands queued commands to the handler in order and returns how many. They only
+    // count as consumed once all of them have been handled, so an empty ring means everything sent so far is applied.
+    public int drainTo(CommandHandler handler, int maxCommands)
+    {
+        long from = consumed.get();
+        long available = published.get() - from;
+        int count = (int) Math.min(available, maxCommands);
+        for (int i = 0; i < count; i++)
+        {
+            int slot = (int) ((from + i) & mask);
+            handler.onCommand(types[slot], bookSlots[slot], orders[slot], orderIds[slot], values[slot]);
+            orders[slot] = null; // the book owns the order now
+        }
+        consumed.lazySet(from + count);
+        return count;
+    }
+
+    // commands published but not applied yet
+    public int size()
+    {
+        return (int) (published.get() - consumed.get());
+    }
+
+    public int capacity()
+    {
+        return mask + 1;
+    }
+}
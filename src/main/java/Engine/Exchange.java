@@ -0,0 +1,154 @@
+package Engine;
+
+import Orderbook.IntHandleMap;
+import Orderbook.Orderbook;
+import Orders.Order;
+
+import java.util.Arrays;
+
+// many instruments, each with its own Orderbook and matcher, spread over a fixed number of MatchingPartitions.
+// Instruments are listed before start() and are assigned to partitions round robin; an instrument stays on its
+// partition (and so on that partition's thread) for the life of the exchange. Routing resolves the order's securityId
+// to its book's slot through a primitive int table in O(1) and hands the command to the owning partition's inbox.
+// submit/cancel/amend are called from one thread, the router; the books must only be inspected after awaitIdle or stop.
+public class Exchange {
+    public static final int DEFAULT_INBOX_CAPACITY = 1 << 16;
+
+    private final int partitionCount;
+    private final int inboxCapacity;
+    private final IntHandleMap slotBySecurityId = new IntHandleMap();
+    private Orderbook[] books = new Orderbook[16];
+    private int[] partitionOfSlot = new int[16];
+    private int instrumentCount = 0;
+    private MatchingPartition[] partitions;
+
+    public Exchange(int partitions)
+    {
+        this(partitions, DEFAULT_INBOX_CAPACITY);
+    }
+
+    public Exchange(int partitions, int inboxCapacity)
+    {
+        if (partitions <= 0)
+            throw new IllegalArgumentException("there must be at least one partition.");
+        this.partitionCount = partitions;
+        this.inboxCapacity = inboxCapacity;
+    }
+
+    public void addInstrument(int securityId, Orderbook ob)
+    {
+        if (partitions != null)
+            throw new IllegalStateException("instruments are listed before the exchange starts.");
+        if (slotBySecurityId.containsKey(securityId))
+            throw new IllegalArgumentException("securityId " + securityId + " is already listed.");
+
+        if (instrumentCount == books.length)
+        {
+            books = Arrays.copyOf(books, instrumentCount << 1);
+            partitionOfSlot = Arrays.copyOf(partitionOfSlot, instrumentCount << 1);
+        }
+        books[instrumentCount] = ob;
+        partitionOfSlot[instrumentCount] = instrumentCount % partitionCount;
+        slotBySecurityId.put(securityId, instrumentCount);
+        instrumentCount++;
+    }
+
+    public void start()
+    {
+        if (partitions != null)
+            throw new IllegalStateException("the exchange has already started.");
+
+        partitions = new MatchingPartition[partitionCount];
+        for (int i = 0; i < partitionCount; i++)
+            partitions[i] = new MatchingPartition(i, books, inboxCapacity);
+        for (MatchingPartition partition: partitions)
+            partition.start();
+    }
+
+    public void submit(Order order)
+    {
+        int slot = slotOf(order.getSecurityId());
+        inboxOf(slot).add(slot, order);
+    }
+
+    // orderId is the id the instrument's book gave the order
+    public void cancel(int securityId, int orderId)
+    {
+        int slot = slotOf(securityId);
+        inboxOf(slot).cancel(slot, orderId);
+    }
+
+    public void amendQty(int securityId, int orderId, int qty)
+    {
+        if (qty <= 0)
+            throw new IllegalArgumentException("amended quantity must be positive, cancel the order instead.");
+        int slot = slotOf(securityId);
+        inboxOf(slot).amendQty(slot, orderId, qty);
+    }
+
+    public void amendPrice(int securityId, int orderId, long price)
+    {
+        int slot = slotOf(securityId);
+        inboxOf(slot).amendPrice(slot, orderId, price);
+    }
+
+    // waits until every partition has applied everything submitted so far
+    public void awaitIdle()
+    {
+        for (MatchingPartition partition: partitions)
+        {
+            while (partition.getInbox().size() > 0)
+                Thread.yield();
+        }
+    }
+
+    public void stop() throws InterruptedException
+    {
+        for (MatchingPartition partition: partitions)
+            partition.stop();
+    }
+
+    // commands that threw on their partition's thread and were skipped, see MatchingPartition.onCommand
+    public long getFailedCommands()
+    {
+        long failed = 0;
+        for (MatchingPartition partition: partitions)
+            failed += partition.getFailed();
+        return failed;
+    }
+
+    public Orderbook getBook(int securityId)
+    {
+        return books[slotOf(securityId)];
+    }
+
+    public int getPartitionOf(int securityId)
+    {
+        return partitionOfSlot[slotOf(securityId)];
+    }
+
+    public int getInstrumentCount()
+    {
+        return instrumentCount;
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    private int slotOf(int securityId)
+    {
+        int slot = slotBySecurityId.get(securityId);
+        if (slot == IntHandleMap.NULL)
+            throw new IllegalArgumentException("securityId " + securityId + " is not listed.");
+        return slot;
+    }
+
+    private CommandRing inboxOf(int slot)
+    {
+        if (partitions == null)
+            throw new IllegalStateException("the exchange has not started.");
+        return partitions[partitionOfSlot[slot]].getInbox();
+    }
+}
@@ -0,0 +1,100 @@
+package Engine;
+
+import Orderbook.Orderbook;
+import Orders.Order;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// one matching thread and the instruments assigned to it. The thread is the only one that ever touches those books
+// (single writer), so they need no locks and instruments on different partitions match in parallel. Commands arrive
+// through the partition's CommandRing from the Exchange's router and are applied in batches; an idle partition spins
+// briefly, then yields. A command that throws is logged, counted and skipped: the thread, and with it every other
+// instrument on the partition, carries on.
+public class MatchingPartition implements CommandHandler, Runnable {
+    private static final Logger logger = LogManager.getLogger(MatchingPartition.class);
+    private static final int BATCH = 256;
+    private static final int IDLE_SPINS = 1_000;
+
+    private final int index;
+    private final Orderbook[] books; // the Exchange's books by slot; this partition only uses its own slots
+    private final CommandRing inbox;
+    private volatile boolean running = false;
+    private volatile long failed = 0; // written by the partition's thread only
+    private Thread thread;
+
+    MatchingPartition(int index, Orderbook[] books, int inboxCapacity)
+    {
+        this.index = index;
+        this.books = books;
+        this.inbox = new CommandRing(inboxCapacity);
+    }
+
+    void start()
+    {
+        running = true;
+        thread = new Thread(this, "matching-partition-" + index);
+        thread.start();
+    }
+
+    // lets the thread apply everything already sent, then waits for it to finish
+    void stop() throws InterruptedException
+    {
+        running = false;
+        thread.join();
+    }
+
+    CommandRing getInbox()
+    {
+        return inbox;
+    }
+
+    long getFailed()
+    {
+        return failed;
+    }
+
+    @Override
+    public void run()
+    {
+        int idle = 0;
+        while (running || inbox.size() > 0)
+        {
+            if (inbox.drainTo(this, BATCH) > 0)
+            {
+                idle = 0;
+            }
+            else if (++idle < IDLE_SPINS)
+            {
+                Thread.onSpinWait();
+            }
+            else
+            {
+                Thread.yield();
+            }
+        }
+        logger.info("partition {} stopped.", index);
+    }
+
+    @Override
+    public void onCommand(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        Orderbook ob = books[bookSlot];
+        try
+        {
+            switch (type)
+            {
+                case CommandRing.ADD: ob.addOrder(order); break;
+                case CommandRing.CANCEL: ob.removeOrder(orderId, false); break;
+                case CommandRing.AMEND_QTY: ob.amendOrderQty(orderId, (int) value); break;
+                case CommandRing.AMEND_PRICE: ob.amendOrderPrice(orderId, value); break;
+                default: throw new IllegalArgumentException("unknown command type: " + type);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // letting it out would kill the thread with the command never consumed, and awaitIdle would wait forever
+            failed++;
+            logger.error("partition {}: command {} for book slot {} (orderId {}) failed, skipping it.", index, type, bookSlot, order != null ? order.getOrderId() : orderId, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package Engine;
+
+import java.nio.ByteBuffer;
+
+// handles one OrderMessages message at offset in buffer. The message is only valid until the call returns.
+public interface MessageHandler {
+    void onMessage(ByteBuffer buffer, int offset);
+}
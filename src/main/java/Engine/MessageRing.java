@@ -0,0 +1,68 @@
+package Engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded single producer / single consumer queue of raw OrderMessages: the producer copies each encoded message into
+// a preallocated buffer of fixed size slots and publishes it with a release store, and the consumer decodes them in
+// place. Neither side takes a lock, and the producer waits while the ring is full.
+public class MessageRing {
+    private final int mask;
+    private final ByteBuffer ring;
+
+    private long produced = 0; // only touched by the producer
+    private long cachedConsumed = 0; // producer's last view of consumed
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    public MessageRing(int capacity)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a positive power of two.");
+
+        this.mask = capacity - 1;
+        this.ring = ByteBuffer.allocateDirect(capacity * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // copies the message at offset in src
+    public void offer(ByteBuffer src, int offset)
+    {
+        if (produced - cachedConsumed > mask)
+        {
+            cachedConsumed = consumed.get();
+            while (produced - cachedConsumed > mask)
+            {
+                Thread.yield(); // full, let the consumer catch up
+                cachedConsumed = consumed.get();
+            }
+        }
+
+        ring.put((int) (produced & mask) * OrderMessages.MESSAGE_SIZE, src, offset, OrderMessages.MESSAGE_SIZE);
+        published.lazySet(++produced); // release store, the message is written before the consumer can see it
+    }
+
+    // consumer side: hands up to maxMessages queued messages to the handler in order, as offsets into the ring's
+    // buffer, and returns how many. A message's slot is only reused once drainTo has returned.
+    public int drainTo(MessageHandler handler, int maxMessages)
+    {
+        long from = consumed.get();
+        long available = published.get() - from;
+        int count = (int) Math.min(available, maxMessages);
+        for (int i = 0; i < count; i++)
+            handler.onMessage(ring, (int) ((from + i) & mask) * OrderMessages.MESSAGE_SIZE);
+        consumed.lazySet(from + count);
+        return count;
+    }
+
+    // messages published but not handled yet
+    public int size()
+    {
+        return (int) (published.get() - consumed.get());
+    }
+
+    public int capacity()
+    {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,125 @@
+package Engine;
+
+import Orders.Order;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded multi producer / single consumer queue of order entry commands. The slots are preallocated parallel arrays
+// as in CommandRing, but any number of threads may publish: a producer claims the next sequence with a CAS on the
+// claim counter, fills the slot, and then marks it published by storing the sequence into the slot's entry of
+// published (a release store). The consumer applies slots strictly in sequence order and stops at the first one that
+// is claimed but not yet published, so a slow producer holds back the commands claimed after it, never reorders them.
+// A producer that finds the ring full waits with the ring's WaitStrategy until the consumer frees a slot.
+public class MpscCommandRing {
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final byte[] types;
+    private final int[] bookSlots;
+    private final Order[] orders; // ADD only
+    private final int[] orderIds;
+    private final long[] values; // new qty or price of an amend
+
+    private final AtomicLong claimed = new AtomicLong(); // next sequence to hand to a producer
+    private final AtomicLong consumed = new AtomicLong(); // next sequence the consumer applies
+    private final AtomicLongArray published; // per slot, the sequence last published into it
+
+    public MpscCommandRing(int capacity, WaitStrategy waitStrategy)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a positive power of two.");
+
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.types = new byte[capacity];
+        this.bookSlots = new int[capacity];
+        this.orders = new Order[capacity];
+        this.orderIds = new int[capacity];
+        this.values = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            published.set(i, -1);
+    }
+
+    public void add(int bookSlot, Order order)
+    {
+        publish(CommandRing.ADD, bookSlot, order, 0, 0);
+    }
+
+    public void cancel(int bookSlot, int orderId)
+    {
+        publish(CommandRing.CANCEL, bookSlot, null, orderId, 0);
+    }
+
+    public void amendQty(int bookSlot, int orderId, int qty)
+    {
+        publish(CommandRing.AMEND_QTY, bookSlot, null, orderId, qty);
+    }
+
+    public void amendPrice(int bookSlot, int orderId, long price)
+    {
+        publish(CommandRing.AMEND_PRICE, bookSlot, null, orderId, price);
+    }
+
+    private void publish(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        long sequence = claim();
+        int slot = (int) (sequence & mask);
+        types[slot] = type;
+        bookSlots[slot] = bookSlot;
+        orders[slot] = order;
+        orderIds[slot] = orderId;
+        values[slot] = value;
+        published.lazySet(slot, sequence);
+    }
+
+    private long claim()
+    {
+        int attempt = 0;
+        while (true)
+        {
+            long sequence = claimed.get();
+            if (sequence - consumed.get() > mask)
+                waitStrategy.idle(attempt++); // full, the consumer has not applied the command a lap ago yet
+            else if (claimed.compareAndSet(sequence, sequence + 1))
+                return sequence;
+        }
+    }
+
+    // consumer side: hands up to maxCommands published commands to the handler in sequence order and returns how many.
+    // Their slots are released to the producers together once the whole batch has been handled.
+    public int drainTo(CommandHandler handler, int maxCommands)
+    {
+        long next = consumed.get();
+        int count = 0;
+        while (count < maxCommands)
+        {
+            int slot = (int) (next & mask);
+            if (published.get(slot) != next)
+                break;
+            handler.onCommand(types[slot], bookSlots[slot], orders[slot], orderIds[slot], values[slot]);
+            orders[slot] = null; // the book owns the order now
+            next++;
+            count++;
+        }
+        if (count > 0)
+            consumed.lazySet(next);
+        return count;
+    }
+
+    // commands claimed but not applied yet, including any a producer is still writing
+    public int size()
+    {
+        return (int) (claimed.get() - consumed.get());
+    }
+
+    public int capacity()
+    {
+        return mask + 1;
+    }
+
+    public WaitStrategy getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+}
@@ -0,0 +1,179 @@
+package Engine;
+
+import Orders.Order;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+
+import java.nio.ByteBuffer;
+
+// fixed length binary order entry messages: new order, cancel, amend qty and amend price, and the ack, reject and fill
+// responses to them, 32 bytes each, little endian (buffers are expected to be in ByteOrder.LITTLE_ENDIAN). Absolute
+// gets and puts only, so a message can be encoded into or decoded straight out of any ring or receive buffer at any
+// offset without touching its position.
+public class OrderMessages {
+    public static final int MESSAGE_SIZE = 32;
+
+    // layout
+    public static final int TYPE_OFFSET = 0;          // byte, one of the message types below
+    public static final int SIDE_OFFSET = 1;          // byte, 0 = buy, 1 = sell. New orders only
+    public static final int ORDER_TYPE_OFFSET = 2;    // byte, 0 = limit, 1 = market. New orders only
+    public static final int TIF_OFFSET = 3;           // byte, TIME_IN_FORCE ordinal. New limit orders only
+    public static final int SECURITY_ID_OFFSET = 4;   // int
+    public static final int ORDER_ID_OFFSET = 8;      // int, the book's order id. Cancels and amends only
+    public static final int QTY_OFFSET = 12;          // int. New orders and qty amends
+    public static final int PRICE_OFFSET = 16;        // long, ticks. New limit orders and price amends
+    public static final int CLIENT_ORDER_ID_OFFSET = 24; // long, the sender's own reference, echoed back to it
+
+    public static final byte NEW_ORDER = 1;
+    public static final byte CANCEL = 2;
+    public static final byte AMEND_QTY = 3;
+    public static final byte AMEND_PRICE = 4;
+    // responses, sent back on the connection a request came in on. ACK and REJECT are the request echoed back with its
+    // type replaced (and, for an ACK, ORDER_ID set to the id the order rests under). A FILL reports qty at price for one
+    // of the receiver's orders: SIDE, ORDER_ID and CLIENT_ORDER_ID are that order's.
+    public static final byte ACK = 5;
+    public static final byte REJECT = 6;
+    public static final byte FILL = 7;
+    // follows the ACK and any FILLs of a new order that ended without resting and without filling completely (a killed
+    // fill-or-kill, the rest of an immediate-or-cancel, a market order there was not enough on the book for, an order
+    // the book refused): the request echoed back with ORDER_ID the id it was acked under and QTY what was cancelled.
+    // That id is never live, the order is done.
+    public static final byte CANCELLED = 8;
+
+    public static final byte SIDE_BUY = 0;
+    public static final byte SIDE_SELL = 1;
+    public static final byte LIMIT = 0;
+    public static final byte MARKET = 1;
+
+    private static final TIME_IN_FORCE[] TIME_IN_FORCES = TIME_IN_FORCE.values();
+
+    public static void encodeLimitOrder(ByteBuffer buf, int offset, int securityId, Side side, int qty, long price, TIME_IN_FORCE timeInForce, long clientOrderId)
+    {
+        encode(buf, offset, NEW_ORDER, securityId, 0, qty, price, clientOrderId);
+        buf.put(offset + SIDE_OFFSET, side == Side.BUY ? SIDE_BUY : SIDE_SELL);
+        buf.put(offset + TIF_OFFSET, (byte) timeInForce.ordinal());
+    }
+
+    public static void encodeMarketOrder(ByteBuffer buf, int offset, int securityId, Side side, int qty, long clientOrderId)
+    {
+        encode(buf, offset, NEW_ORDER, securityId, 0, qty, 0, clientOrderId);
+        buf.put(offset + SIDE_OFFSET, side == Side.BUY ? SIDE_BUY : SIDE_SELL);
+        buf.put(offset + ORDER_TYPE_OFFSET, MARKET);
+    }
+
+    public static void encodeCancel(ByteBuffer buf, int offset, int securityId, int orderId, long clientOrderId)
+    {
+        encode(buf, offset, CANCEL, securityId, orderId, 0, 0, clientOrderId);
+    }
+
+    public static void encodeAmendQty(ByteBuffer buf, int offset, int securityId, int orderId, int qty, long clientOrderId)
+    {
+        encode(buf, offset, AMEND_QTY, securityId, orderId, qty, 0, clientOrderId);
+    }
+
+    public static void encodeAmendPrice(ByteBuffer buf, int offset, int securityId, int orderId, long price, long clientOrderId)
+    {
+        encode(buf, offset, AMEND_PRICE, securityId, orderId, 0, price, clientOrderId);
+    }
+
+    private static void encode(ByteBuffer buf, int offset, byte type, int securityId, int orderId, int qty, long price, long clientOrderId)
+    {
+        buf.put(offset + TYPE_OFFSET, type);
+        buf.put(offset + SIDE_OFFSET, SIDE_BUY);
+        buf.put(offset + ORDER_TYPE_OFFSET, LIMIT);
+        buf.put(offset + TIF_OFFSET, (byte) 0);
+        buf.putInt(offset + SECURITY_ID_OFFSET, securityId);
+        buf.putInt(offset + ORDER_ID_OFFSET, orderId);
+        buf.putInt(offset + QTY_OFFSET, qty);
+        buf.putLong(offset + PRICE_OFFSET, price);
+        buf.putLong(offset + CLIENT_ORDER_ID_OFFSET, clientOrderId);
+    }
+
+    public static void encodeFill(ByteBuffer buf, int offset, int securityId, Side side, int orderId, int qty, long price, long clientOrderId)
+    {
+        encode(buf, offset, FILL, securityId, orderId, qty, price, clientOrderId);
+        buf.put(offset + SIDE_OFFSET, side == Side.BUY ? SIDE_BUY : SIDE_SELL);
+    }
+
+    public static byte type(ByteBuffer buf, int offset)
+    {
+        return buf.get(offset + TYPE_OFFSET);
+    }
+
+    public static int securityId(ByteBuffer buf, int offset)
+    {
+        return buf.getInt(offset + SECURITY_ID_OFFSET);
+    }
+
+    public static int orderId(ByteBuffer buf, int offset)
+    {
+        return buf.getInt(offset + ORDER_ID_OFFSET);
+    }
+
+    public static int qty(ByteBuffer buf, int offset)
+    {
+        return buf.getInt(offset + QTY_OFFSET);
+    }
+
+    public static long price(ByteBuffer buf, int offset)
+    {
+        return buf.getLong(offset + PRICE_OFFSET);
+    }
+
+    public static long clientOrderId(ByteBuffer buf, int offset)
+    {
+        return buf.getLong(offset + CLIENT_ORDER_ID_OFFSET);
+    }
+
+    // checks the message and hands it to the handler as a command for bookSlot, building the Order for a new order.
+    // Returns false, without calling the handler, for a message that is malformed or can never be valid: unknown type,
+    // side, order type or time in force, a quantity that isn't positive, a limit or amend price that isn't positive.
+    public static boolean decode(ByteBuffer buf, int offset, int bookSlot, CommandHandler handler)
+    {
+        return decode(buf, offset, bookSlot, handler, 1, Long.MAX_VALUE);
+    }
+
+    // as above, and a limit or amend price must also be within the instrument's band, minPrice to maxPrice inclusive
+    public static boolean decode(ByteBuffer buf, int offset, int bookSlot, CommandHandler handler, long minPrice, long maxPrice)
+    {
+        byte type = buf.get(offset + TYPE_OFFSET);
+        int securityId = buf.getInt(offset + SECURITY_ID_OFFSET);
+        int orderId = buf.getInt(offset + ORDER_ID_OFFSET);
+        int qty = buf.getInt(offset + QTY_OFFSET);
+        long price = buf.getLong(offset + PRICE_OFFSET);
+        switch (type)
+        {
+            case NEW_ORDER:
+                byte side = buf.get(offset + SIDE_OFFSET);
+                byte orderType = buf.get(offset + ORDER_TYPE_OFFSET);
+                byte tif = buf.get(offset + TIF_OFFSET);
+                if ((side != SIDE_BUY && side != SIDE_SELL) || qty <= 0)
+                    return false;
+                Side orderSide = side == SIDE_BUY ? Side.BUY : Side.SELL;
+                Order order;
+                if (orderType == MARKET)
+                    order = new Order(securityId, orderSide, qty);
+                else if (orderType == LIMIT && price >= minPrice && price <= maxPrice && tif >= 0 && tif < TIME_IN_FORCES.length)
+                    order = new Order(securityId, orderSide, qty, price, TIME_IN_FORCES[tif]);
+                else
+                    return false;
+                handler.onCommand(CommandRing.ADD, bookSlot, order, 0, 0);
+                return true;
+            case CANCEL:
+                handler.onCommand(CommandRing.CANCEL, bookSlot, null, orderId, 0);
+                return true;
+            case AMEND_QTY:
+                if (qty <= 0)
+                    return false;
+                handler.onCommand(CommandRing.AMEND_QTY, bookSlot, null, orderId, qty);
+                return true;
+            case AMEND_PRICE:
+                if (price < minPrice || price > maxPrice)
+                    return false;
+                handler.onCommand(CommandRing.AMEND_PRICE, bookSlot, null, orderId, price);
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package Engine;
+
+import MatchingEngine.TradeListener;
+import MatchingEngine.TradeRingBuffer;
+import Orderbook.Orderbook;
+import Orders.Trade;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+
+// order entry for one book as three stages on their own threads, joined by bounded SPSC rings and working in batches:
+//   decode:  binary OrderMessages from the inbound MessageRing are checked and turned into commands (Orders built here)
+//   match:   a MatchingPartition, the book's only writer, applies the commands in arrival order
+//   publish: the trades the matcher hands to a TradeRingBuffer are drained to the publisher (encoding, I/O)
+// The matching thread never decodes, validates, encodes or writes anything. Messages are submitted from one thread;
+// ones that fail validation (including a price outside the band, see setPriceBand) or name another instrument are
+// dropped and counted. A command the book throws on and a trade the publisher throws on are logged, counted and skipped,
+// so no stage dies with work in its ring. Like Exchange, the threads are fixed to their stage, binding them to cores is
+// left to the OS.
+public class OrderPipeline implements MessageHandler {
+    private static final Logger logger = LogManager.getLogger(OrderPipeline.class);
+    private static final int BATCH = 256;
+
+    private final int securityId;
+    private final Orderbook ob;
+    private final TradeListener publisher;
+    private final WaitStrategy waitStrategy;
+    private final MessageRing inbound;
+    private final MatchingPartition matcher;
+    private final TradeRingBuffer outbound;
+
+    private volatile boolean decoding = false;
+    private volatile boolean publishing = false;
+    private volatile long rejected = 0; // only written by the decode thread
+    private volatile long failedPublishes = 0; // only written by the publish thread
+    private final TradeListener guardedPublisher = this::publish;
+    private long minPrice = 1;
+    private long maxPrice = Long.MAX_VALUE;
+    private Thread decodeThread;
+    private Thread publishThread;
+
+    public OrderPipeline(int securityId, Orderbook ob, TradeListener publisher, int capacity, WaitStrategy waitStrategy)
+    {
+        this.securityId = securityId;
+        this.ob = ob;
+        this.publisher = publisher;
+        this.waitStrategy = waitStrategy;
+        this.inbound = new MessageRing(capacity);
+        this.matcher = new MatchingPartition(0, new Orderbook[]{ob}, capacity);
+        this.outbound = new TradeRingBuffer(capacity);
+        ob.getMatchingEngine().setTradeListener(outbound);
+    }
+
+    // limit and amend prices outside minPrice to maxPrice are rejected at decode. Set before start.
+    public void setPriceBand(long minPrice, long maxPrice)
+    {
+        if (decodeThread != null)
+            throw new IllegalStateException("the pipeline has already started.");
+        if (minPrice <= 0 || maxPrice < minPrice)
+            throw new IllegalArgumentException("the price band must be positive and not empty.");
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public void start()
+    {
+        if (decodeThread != null)
+            throw new IllegalStateException("the pipeline has already started.");
+        decoding = true;
+        publishing = true;
+        publishThread = new Thread(this::publishLoop, "pipeline-publish");
+        publishThread.start();
+        matcher.start();
+        decodeThread = new Thread(this::decodeLoop, "pipeline-decode");
+        decodeThread.start();
+    }
+
+    // stages are stopped from the front, each once everything before it has been passed on
+    public void stop() throws InterruptedException
+    {
+        decoding = false;
+        decodeThread.join();
+        matcher.stop();
+        publishing = false;
+        publishThread.join();
+    }
+
+    // copies the message at offset in buf into the pipeline
+    public void submit(ByteBuffer buf, int offset)
+    {
+        inbound.offer(buf, offset);
+    }
+
+    // waits until every message submitted so far has been matched and its trades published
+    public void awaitIdle()
+    {
+        int attempt = 0;
+        while (inbound.size() > 0 || matcher.getInbox().size() > 0 || outbound.size() > 0)
+            waitStrategy.idle(attempt++);
+    }
+
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    // commands the book threw on, see MatchingPartition.onCommand
+    public long getFailedCommands()
+    {
+        return matcher.getFailed();
+    }
+
+    public long getFailedPublishes()
+    {
+        return failedPublishes;
+    }
+
+    // safe to read after awaitIdle or stop
+    public Orderbook getBook()
+    {
+        return ob;
+    }
+
+    @Override
+    public void onMessage(ByteBuffer buffer, int offset)
+    {
+        try
+        {
+            if (OrderMessages.securityId(buffer, offset) != securityId || !OrderMessages.decode(buffer, offset, 0, matcher.getInbox(), minPrice, maxPrice))
+                rejected++;
+        }
+        catch (RuntimeException e)
+        {
+            rejected++;
+            logger.error("decoding a message failed, rejecting it.", e);
+        }
+    }
+
+    private void decodeLoop()
+    {
+        int attempt = 0;
+        while (decoding || inbound.size() > 0)
+        {
+            if (inbound.drainTo(this, BATCH) > 0)
+                attempt = 0;
+            else
+                waitStrategy.idle(attempt++);
+        }
+        logger.info("decode stage stopped, {} messages rejected.", rejected);
+    }
+
+    private void publishLoop()
+    {
+        int attempt = 0;
+        while (publishing || outbound.size() > 0)
+        {
+            if (outbound.drainTo(guardedPublisher, BATCH) > 0)
+                attempt = 0;
+            else
+                waitStrategy.idle(attempt++);
+        }
+        logger.info("publish stage stopped, {} trades failed to publish.", failedPublishes);
+    }
+
+    // one trade that fails to publish must not take the rest of the batch, or the stage, with it
+    private void publish(Trade trade)
+    {
+        try
+        {
+            publisher.onTrade(trade);
+        }
+        catch (RuntimeException e)
+        {
+            failedPublishes++;
+            logger.error("publishing trade {} failed, skipping it.", trade, e);
+        }
+    }
+}
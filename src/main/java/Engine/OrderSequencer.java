@@ -0,0 +1,121 @@
+package Engine;
+
+import Orderbook.Orderbook;
+import Orders.Order;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// lets any number of threads enter orders into one Orderbook without a lock. Producers publish add, cancel and amend
+// commands into an MpscCommandRing, and the sequencer's own thread, the book's only writer, applies them in the
+// order their sequences were claimed, in batches. The ring's WaitStrategy is used both by producers waiting on a full
+// ring (back-pressure) and by the sequencer thread waiting for work. Read the book only after awaitIdle or stop. A
+// command that throws is logged, counted and skipped, the sequencer carries on with the next one.
+public class OrderSequencer implements CommandHandler, Runnable {
+    private static final Logger logger = LogManager.getLogger(OrderSequencer.class);
+    private static final int BATCH = 256;
+
+    private final Orderbook ob;
+    private final MpscCommandRing ring;
+    private volatile boolean running = false;
+    private volatile long failed = 0; // written by the sequencer thread only
+    private Thread thread;
+
+    public OrderSequencer(Orderbook ob, int capacity, WaitStrategy waitStrategy)
+    {
+        this.ob = ob;
+        this.ring = new MpscCommandRing(capacity, waitStrategy);
+    }
+
+    public void start()
+    {
+        if (thread != null)
+            throw new IllegalStateException("the sequencer has already started.");
+        running = true;
+        thread = new Thread(this, "order-sequencer");
+        thread.start();
+    }
+
+    // lets the thread apply everything already published, then waits for it to finish
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        thread.join();
+    }
+
+    public void add(Order order)
+    {
+        ring.add(0, order);
+    }
+
+    public void cancel(int orderId)
+    {
+        ring.cancel(0, orderId);
+    }
+
+    public void amendQty(int orderId, int qty)
+    {
+        if (qty <= 0)
+            throw new IllegalArgumentException("amended quantity must be positive, cancel the order instead.");
+        ring.amendQty(0, orderId, qty);
+    }
+
+    public void amendPrice(int orderId, long price)
+    {
+        ring.amendPrice(0, orderId, price);
+    }
+
+    // waits until everything published so far has been applied
+    public void awaitIdle()
+    {
+        int attempt = 0;
+        while (ring.size() > 0)
+            ring.getWaitStrategy().idle(attempt++);
+    }
+
+    public Orderbook getBook()
+    {
+        return ob;
+    }
+
+    public long getFailedCommands()
+    {
+        return failed;
+    }
+
+    @Override
+    public void run()
+    {
+        int attempt = 0;
+        while (running || ring.size() > 0)
+        {
+            if (ring.drainTo(this, BATCH) > 0)
+                attempt = 0;
+            else
+                ring.getWaitStrategy().idle(attempt++);
+        }
+        logger.info("sequencer stopped.");
+    }
+
+    @Override
+    public void onCommand(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        try
+        {
+            switch (type)
+            {
+                case CommandRing.ADD: ob.addOrder(order); break;
+                case CommandRing.CANCEL: ob.removeOrder(orderId, false); break;
+                case CommandRing.AMEND_QTY: ob.amendOrderQty(orderId, (int) value); break;
+                case CommandRing.AMEND_PRICE: ob.amendOrderPrice(orderId, value); break;
+                default: throw new IllegalArgumentException("unknown command type: " + type);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // letting it out would kill the thread with the command never consumed: awaitIdle and producers waiting
+            // on a full ring would wait forever
+            failed++;
+            logger.error("command {} (orderId {}) failed, skipping it.", type, order != null ? order.getOrderId() : orderId, e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package Engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+// how a thread waits on a ring, both a producer held back by a full ring and a consumer with nothing to do. attempt
+// counts the failed tries since the thread last made progress. BUSY_SPIN has the lowest wake-up latency but holds a
+// core; YIELD spins briefly, then gives the core up; PARK spins, yields, then sleeps in short parks, for threads that
+// may sit idle for long stretches.
+public enum WaitStrategy {
+    BUSY_SPIN,
+    YIELD,
+    PARK;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    public void idle(int attempt)
+    {
+        if (this == BUSY_SPIN || attempt < SPINS)
+            Thread.onSpinWait();
+        else if (this == YIELD || attempt < SPINS + YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+    }
+}
@@ -0,0 +1,157 @@
+package Gateway;
+
+import Engine.CommandRing;
+import Engine.OrderMessages;
+import MatchingEngine.TradeListener;
+import Orderbook.IntHandleMap;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+
+import java.util.Arrays;
+
+// one instrument of an OrderGateway: applies the sessions' requests to its book and, as the book's trade listener,
+// encodes a fill for each side of every trade into the send buffer of the session that owns that order
+class GatewayBook implements TradeListener {
+    private final int securityId;
+    private final Orderbook ob;
+    // limit and amend prices outside the band are rejected when the request is decoded
+    private final long minPrice;
+    private final long maxPrice;
+    private final OrderOwners owners = new OrderOwners();
+    private int[] filledMakers = new int[64]; // resting orders filled by the current request, they may have left the book
+    private int filledMakerCount = 0;
+
+    // the request being applied: who sent it, the id and clientOrderId its order trades under and how much it filled
+    private Session session;
+    private int takerId;
+    private long clientOrderId;
+    private int takerFilled;
+    // what the last new order applied neither filled nor left resting, see OrderMessages.CANCELLED
+    private int unfilled;
+
+    GatewayBook(int securityId, Orderbook ob, long minPrice, long maxPrice)
+    {
+        this.securityId = securityId;
+        this.ob = ob;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        ob.getMatchingEngine().setTradeListener(this);
+    }
+
+    long minPrice()
+    {
+        return minPrice;
+    }
+
+    long maxPrice()
+    {
+        return maxPrice;
+    }
+
+    // a new order is always accepted here, a cancel or amend only for a resting order of the same session
+    boolean accepts(Session session, byte type, int orderId)
+    {
+        if (type == CommandRing.ADD)
+            return true;
+        int handle = owners.handleOf(orderId);
+        return handle != IntHandleMap.NULL && owners.session(handle) == session;
+    }
+
+    // applies a request accepted above and returns the id the order now goes by: the id a new order or a crossing price
+    // amend (a cancel/replace) traded and possibly rests under, otherwise orderId. If the book throws, the exception is
+    // passed on once the fills so far are accounted for, and the request is left for the caller to reject.
+    int apply(Session session, long requestClientOrderId, byte type, Order order, int orderId, long value)
+    {
+        int firstId = ob.getNextAvailableOrderId();
+        int quantity = order != null ? order.getCurrentQuantity() : 0; // the book may recycle the order
+        this.session = session;
+        this.takerId = firstId;
+        this.takerFilled = 0;
+        this.unfilled = 0;
+        try
+        {
+            switch (type)
+            {
+                case CommandRing.ADD:
+                    clientOrderId = requestClientOrderId;
+                    ob.addOrder(order);
+                    break;
+                case CommandRing.CANCEL:
+                    ob.removeOrder(orderId, false);
+                    break;
+                case CommandRing.AMEND_QTY:
+                    ob.amendOrderQty(orderId, (int) value);
+                    break;
+                default:
+                    // a replacement keeps the clientOrderId the order was entered with
+                    clientOrderId = owners.clientOrderId(owners.handleOf(orderId));
+                    ob.amendOrderPrice(orderId, value);
+                    break;
+            }
+        }
+        finally
+        {
+            this.session = null;
+            for (int i = 0; i < filledMakerCount; i++)
+                if (!ob.containsOrder(filledMakers[i]))
+                    owners.remove(filledMakers[i]);
+            filledMakerCount = 0;
+        }
+
+        if (type == CommandRing.ADD && !ob.containsOrder(firstId))
+            unfilled = quantity - takerFilled;
+        boolean replaced = type == CommandRing.AMEND_PRICE && !ob.containsOrder(orderId);
+        if (type == CommandRing.CANCEL || replaced)
+            owners.remove(orderId);
+        if ((type == CommandRing.ADD || replaced) && ob.containsOrder(firstId))
+            owners.put(firstId, session, clientOrderId);
+        return type == CommandRing.ADD || replaced ? firstId : orderId;
+    }
+
+    int unfilled()
+    {
+        return unfilled;
+    }
+
+    // cancel-on-disconnect: pulls every order the session still has resting, and returns how many there were
+    int cancelAll(Session session)
+    {
+        int cancelled = 0;
+        for (int handle = owners.anyOf(session); handle != IntHandleMap.NULL; handle = owners.anyOf(session))
+        {
+            int orderId = owners.orderId(handle);
+            owners.remove(orderId);
+            ob.removeOrder(orderId, false);
+            cancelled++;
+        }
+        return cancelled;
+    }
+
+    @Override
+    public void onTrade(Trade trade)
+    {
+        int maker = owners.handleOf(trade.getMakerId());
+        if (maker != IntHandleMap.NULL)
+        {
+            Side makerSide = trade.getSide() == Side.BUY ? Side.SELL : Side.BUY;
+            fill(owners.session(maker), makerSide, trade.getMakerId(), trade, owners.clientOrderId(maker));
+            if (filledMakerCount == filledMakers.length)
+                filledMakers = Arrays.copyOf(filledMakers, filledMakerCount << 1);
+            filledMakers[filledMakerCount++] = trade.getMakerId();
+        }
+        if (session != null && trade.getTakerId() == takerId)
+        {
+            takerFilled += trade.getVolume();
+            fill(session, trade.getSide(), takerId, trade, clientOrderId);
+        }
+    }
+
+    private void fill(Session receiver, Side side, int orderId, Trade trade, long receiverClientOrderId)
+    {
+        int offset = receiver.reserve();
+        if (offset >= 0)
+            OrderMessages.encodeFill(receiver.sendBuffer(), offset, securityId, side, orderId, trade.getVolume(), trade.getPrice(), receiverClientOrderId);
+    }
+}
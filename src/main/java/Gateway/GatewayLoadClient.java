@@ -0,0 +1,193 @@
+package Gateway;
+
+import Engine.OrderMessages;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+// load generator for an OrderGateway: one connection sends a stream of limit and market orders around a mid price,
+// with cancels and qty amends of its own resting orders, keeping at most window requests unanswered. The round trip of
+// a request is the time from just before it is written to the arrival of its ACK or REJECT, clientOrderId being the
+// request's sequence number. window = 1 measures the unloaded round trip, a larger window the throughput.
+public class GatewayLoadClient {
+    private static final long MID = 10_000;
+    private static final int LIVE_ORDERS = 1024;
+
+    private final SocketAddress address;
+    private final int securityId;
+    private final Random random;
+
+    public GatewayLoadClient(SocketAddress address, int securityId, long seed)
+    {
+        this.address = address;
+        this.securityId = securityId;
+        this.random = new Random(seed);
+    }
+
+    public Report run(int messages, int window) throws IOException
+    {
+        if (window <= 0 || messages <= 0)
+            throw new IllegalArgumentException("messages and window must be positive.");
+
+        long[] sentAt = new long[window];
+        boolean[] newLimitOrder = new boolean[window];
+        long[] roundTrips = new long[messages];
+        int[] liveOrders = new int[LIVE_ORDERS]; // ids of our latest acked limit orders, some filled by now
+        int liveCount = 0;
+        long fills = 0;
+        long rejects = 0;
+        ByteBuffer out = ByteBuffer.allocateDirect(window * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer in = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (SocketChannel channel = SocketChannel.open(address))
+        {
+            if (address instanceof InetSocketAddress)
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            int sent = 0;
+            int answered = 0;
+            long start = System.nanoTime();
+            while (answered < messages)
+            {
+                out.clear();
+                int from = sent;
+                while (sent - answered < window && sent < messages)
+                {
+                    newLimitOrder[sent % window] = encodeRequest(out, out.position(), sent, liveOrders, liveCount);
+                    out.position(out.position() + OrderMessages.MESSAGE_SIZE);
+                    sent++;
+                }
+                if (out.position() > 0)
+                {
+                    long now = System.nanoTime();
+                    for (int seq = from; seq < sent; seq++)
+                        sentAt[seq % window] = now;
+                    out.flip();
+                    while (out.hasRemaining())
+                        channel.write(out);
+                }
+
+                if (channel.read(in) < 0)
+                    throw new IOException("the gateway closed the connection.");
+                long now = System.nanoTime();
+                int count = in.position() / OrderMessages.MESSAGE_SIZE;
+                for (int i = 0; i < count; i++)
+                {
+                    int offset = i * OrderMessages.MESSAGE_SIZE;
+                    byte type = OrderMessages.type(in, offset);
+                    if (type == OrderMessages.FILL)
+                    {
+                        fills++;
+                        continue;
+                    }
+                    if (type == OrderMessages.CANCELLED)
+                        continue; // the end of a market order the book couldn't fill, it has been answered already
+                    int seq = (int) OrderMessages.clientOrderId(in, offset);
+                    roundTrips[seq] = now - sentAt[seq % window];
+                    answered++;
+                    if (type == OrderMessages.REJECT)
+                        rejects++;
+                    else if (newLimitOrder[seq % window])
+                        liveOrders[liveCount++ % LIVE_ORDERS] = OrderMessages.orderId(in, offset);
+                }
+                in.limit(in.position()).position(count * OrderMessages.MESSAGE_SIZE);
+                in.compact();
+            }
+            return new Report(messages, window, System.nanoTime() - start, roundTrips, fills, rejects);
+        }
+    }
+
+    // 60% limit orders within 5 ticks of MID on either side (so some cross), 10% market orders, 20% cancels and 10% qty
+    // amends of one of our recent orders, which may have been filled since and is then rejected. Returns whether it
+    // encoded a limit order.
+    private boolean encodeRequest(ByteBuffer out, int offset, long seq, int[] liveOrders, int liveCount)
+    {
+        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        int qty = 1 + random.nextInt(100);
+        int action = random.nextInt(10);
+        if (action < 3 && liveCount > 0)
+        {
+            int orderId = liveOrders[random.nextInt(Math.min(liveCount, LIVE_ORDERS))];
+            if (action < 2)
+                OrderMessages.encodeCancel(out, offset, securityId, orderId, seq);
+            else
+                OrderMessages.encodeAmendQty(out, offset, securityId, orderId, qty, seq);
+            return false;
+        }
+        else if (action < 4)
+        {
+            OrderMessages.encodeMarketOrder(out, offset, securityId, side, qty, seq);
+            return false;
+        }
+        else
+        {
+            long price = side == Side.BUY ? MID - 5 + random.nextInt(7) : MID - 1 + random.nextInt(7);
+            OrderMessages.encodeLimitOrder(out, offset, securityId, side, qty, price, TIME_IN_FORCE.GTC, seq);
+            return true;
+        }
+    }
+
+    // round trip percentiles in nanoseconds and the request rate over the whole run
+    @Getter
+    public static class Report {
+        private final int messages;
+        private final int window;
+        private final double messagesPerSecond;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+        private final long fills;
+        private final long rejects;
+
+        Report(int messages, int window, long elapsedNanos, long[] roundTrips, long fills, long rejects)
+        {
+            this.messages = messages;
+            this.window = window;
+            this.messagesPerSecond = messages * 1e9 / elapsedNanos;
+            long[] sorted = roundTrips.clone();
+            Arrays.sort(sorted);
+            this.p50 = percentile(sorted, 0.5);
+            this.p90 = percentile(sorted, 0.9);
+            this.p99 = percentile(sorted, 0.99);
+            this.p999 = percentile(sorted, 0.999);
+            this.max = sorted[sorted.length - 1];
+            this.fills = fills;
+            this.rejects = rejects;
+        }
+
+        private static long percentile(long[] sorted, double p)
+        {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d requests, window %d: %.0f msgs/s. round trip us p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f. %d fills, %d rejects",
+                    messages, window, messagesPerSecond, p50 / 1e3, p90 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3, fills, rejects);
+        }
+    }
+
+    // java -cp <jar> Gateway.GatewayLoadClient [port | socket path] [messages] [window]
+    public static void main(String[] args) throws IOException
+    {
+        SocketAddress address = OrderGateway.address(args.length > 0 ? args[0] : "9000");
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int window = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        GatewayLoadClient client = new GatewayLoadClient(address, OrderGateway.DEFAULT_SECURITY_ID, 123);
+        client.run(Math.min(messages, 100_000), window); // warm up both sides
+        System.out.println(client.run(messages, window));
+    }
+}
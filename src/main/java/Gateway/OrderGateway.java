@@ -0,0 +1,339 @@
+package Gateway;
+
+import Engine.CommandHandler;
+import Engine.OrderMessages;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntHandleMap;
+import Orderbook.Orderbook;
+import Orders.Order;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+// binary order entry over TCP or a Unix domain socket. One thread runs a non-blocking Selector over every connection
+// and is also the only writer of the listed books: requests (OrderMessages) are decoded straight out of each session's
+// receive buffer and applied in the order they arrive, and the ACK or REJECT of a request, then the FILLs it causes,
+// then a CANCELLED if it was a new order that is over without having filled completely, are encoded into the send
+// buffers of the sessions involved and written out once everything read in that round is done. Sessions can only
+// cancel or amend their own resting orders. When a session disconnects its resting orders are cancelled, nobody would
+// hear about their fills; stopping the gateway leaves the books as they are.
+// Each instrument has a price band that limit and amend prices must fall in. A request the book throws on is rejected
+// like any other, the gateway thread and every other session carry on. Instruments are listed before start(), the books
+// must only be inspected after stop().
+public class OrderGateway implements CommandHandler {
+    private static final Logger logger = LogManager.getLogger(OrderGateway.class);
+    public static final int DEFAULT_SECURITY_ID = 1;
+    private static final int RECEIVE_BUFFER_SIZE = 1 << 16;
+    private static final int SEND_BUFFER_SIZE = 1 << 20;
+
+    private final SocketAddress address;
+    private final IntHandleMap slotBySecurityId = new IntHandleMap();
+    private GatewayBook[] books = new GatewayBook[16];
+    private int instrumentCount = 0;
+    private final List<Session> sessions = new ArrayList<>();
+    private int nextSessionId = 0;
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running = false;
+    @Getter private volatile long rejected = 0; // only written by the gateway thread
+    @Getter private volatile long cancelledOnDisconnect = 0; // only written by the gateway thread
+
+    // the request being decoded
+    private Session current;
+    private int currentOffset;
+
+    public OrderGateway(SocketAddress address)
+    {
+        this.address = address;
+    }
+
+    public void addInstrument(int securityId, Orderbook ob)
+    {
+        addInstrument(securityId, ob, 1, Long.MAX_VALUE);
+    }
+
+    // limit and amend prices outside minPrice to maxPrice are rejected before they reach the book
+    public void addInstrument(int securityId, Orderbook ob, long minPrice, long maxPrice)
+    {
+        if (minPrice <= 0 || maxPrice < minPrice)
+            throw new IllegalArgumentException("the price band must be positive and not empty.");
+        if (thread != null)
+            throw new IllegalStateException("instruments are listed before the gateway starts.");
+        if (slotBySecurityId.containsKey(securityId))
+            throw new IllegalArgumentException("securityId " + securityId + " is already listed.");
+
+        if (instrumentCount == books.length)
+            books = Arrays.copyOf(books, instrumentCount << 1);
+        books[instrumentCount] = new GatewayBook(securityId, ob, minPrice, maxPrice);
+        slotBySecurityId.put(securityId, instrumentCount);
+        instrumentCount++;
+    }
+
+    public void start() throws IOException
+    {
+        if (thread != null)
+            throw new IllegalStateException("the gateway has already started.");
+
+        server = address instanceof UnixDomainSocketAddress ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "gateway");
+        thread.start();
+        logger.info("gateway listening on {}.", server.getLocalAddress());
+    }
+
+    // the address clients connect to, with the port the OS picked when the gateway was bound to port 0
+    public SocketAddress getLocalAddress() throws IOException
+    {
+        return server.getLocalAddress();
+    }
+
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        selector.wakeup();
+        thread.join();
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (running)
+            {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else if (key.isReadable())
+                        read((Session) key.attachment());
+                }
+                // responses go out once per round, however many requests produced them. OP_WRITE only ever asks for this.
+                for (int i = sessions.size() - 1; i >= 0; i--)
+                {
+                    Session session = sessions.get(i);
+                    if (session.isOpen() && session.hasPendingOutput())
+                        flush(session);
+                    if (!session.isOpen())
+                    {
+                        // here rather than where it was closed, which may be in the middle of a match
+                        cancelOrdersOf(session);
+                        sessions.remove(i);
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("gateway stopped on an I/O error.", e);
+        }
+        finally
+        {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException
+    {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        if (channel.getLocalAddress() instanceof InetSocketAddress)
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Session session = new Session(nextSessionId++, channel, key, RECEIVE_BUFFER_SIZE, SEND_BUFFER_SIZE);
+        key.attach(session);
+        sessions.add(session);
+        logger.info("session {} connected from {}.", session.getId(), channel.getRemoteAddress());
+    }
+
+    private void read(Session session)
+    {
+        int count;
+        try
+        {
+            count = session.read();
+        }
+        catch (IOException e)
+        {
+            count = -1;
+        }
+        if (count < 0)
+        {
+            logger.info("session {} disconnected.", session.getId());
+            session.close();
+            return;
+        }
+
+        current = session;
+        ByteBuffer in = session.receiveBuffer();
+        for (int i = 0; i < count && session.isOpen(); i++)
+        {
+            currentOffset = i * OrderMessages.MESSAGE_SIZE;
+            int slot = slotBySecurityId.get(OrderMessages.securityId(in, currentOffset));
+            try
+            {
+                if (slot == IntHandleMap.NULL || !OrderMessages.decode(in, currentOffset, slot, this, books[slot].minPrice(), books[slot].maxPrice()))
+                    respond(OrderMessages.REJECT);
+            }
+            catch (RuntimeException e)
+            {
+                // onCommand handles the book's failures, this is one before the request got that far
+                logger.error("session {}: request at offset {} could not be decoded, rejecting it.", session.getId(), currentOffset, e);
+                respond(OrderMessages.REJECT);
+            }
+        }
+        current = null;
+        if (session.isOpen())
+            session.consumed(count);
+    }
+
+    private void cancelOrdersOf(Session session)
+    {
+        int cancelled = 0;
+        for (int slot = 0; slot < instrumentCount; slot++)
+            cancelled += books[slot].cancelAll(session);
+        cancelledOnDisconnect += cancelled;
+        if (cancelled > 0)
+            logger.info("session {} disconnected, cancelled its {} resting orders.", session.getId(), cancelled);
+    }
+
+    private void flush(Session session)
+    {
+        try
+        {
+            session.flush();
+        }
+        catch (IOException e)
+        {
+            logger.info("session {} disconnected.", session.getId());
+            session.close();
+        }
+    }
+
+    @Override
+    public void onCommand(byte type, int bookSlot, Order order, int orderId, long value)
+    {
+        GatewayBook book = books[bookSlot];
+        if (!book.accepts(current, type, orderId))
+        {
+            respond(OrderMessages.REJECT);
+            return;
+        }
+        // the ack goes ahead of the fills the request causes, its orderId is only known once the book has the order
+        int ack = respond(OrderMessages.ACK);
+        if (ack < 0)
+            return;
+        try
+        {
+            int id = book.apply(current, OrderMessages.clientOrderId(current.receiveBuffer(), currentOffset), type, order, orderId, value);
+            current.sendBuffer().putInt(ack + OrderMessages.ORDER_ID_OFFSET, id);
+            // a new order that is over without having filled completely says so, after its fills
+            int cancelled = current.isOpen() && book.unfilled() > 0 ? respond(OrderMessages.CANCELLED) : -1;
+            if (cancelled >= 0)
+            {
+                current.sendBuffer().putInt(cancelled + OrderMessages.ORDER_ID_OFFSET, id);
+                current.sendBuffer().putInt(cancelled + OrderMessages.QTY_OFFSET, book.unfilled());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // the reserved ack becomes the reject. Fills already sent for the request stand, they happened.
+            rejected++;
+            current.sendBuffer().put(ack + OrderMessages.TYPE_OFFSET, OrderMessages.REJECT);
+            logger.error("session {}: request {} failed in the book, rejecting it.", current.getId(), OrderMessages.clientOrderId(current.receiveBuffer(), currentOffset), e);
+        }
+    }
+
+    // echoes the current request back with its type replaced, returns its offset in the send buffer or -1
+    private int respond(byte type)
+    {
+        if (type == OrderMessages.REJECT)
+            rejected++;
+        int offset = current.reserve();
+        if (offset < 0)
+            return -1;
+        ByteBuffer out = current.sendBuffer();
+        out.put(offset, current.receiveBuffer(), currentOffset, OrderMessages.MESSAGE_SIZE);
+        out.put(offset + OrderMessages.TYPE_OFFSET, type);
+        return offset;
+    }
+
+    private void closeAll()
+    {
+        for (Session session: sessions)
+            session.close();
+        sessions.clear();
+        try
+        {
+            selector.close();
+            server.close();
+            if (address instanceof UnixDomainSocketAddress)
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+        catch (IOException e)
+        {
+            logger.error("failed to close the gateway's channels.", e);
+        }
+        logger.info("gateway stopped, {} requests rejected.", rejected);
+    }
+
+    // a port on the loopback interface, or else the path of a Unix domain socket
+    public static SocketAddress address(String arg)
+    {
+        if (arg.chars().allMatch(Character::isDigit))
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(arg));
+        return UnixDomainSocketAddress.of(arg);
+    }
+
+    // java -cp <jar> Gateway.OrderGateway [port | socket path] [matcher]: one instrument, DEFAULT_SECURITY_ID, until killed
+    public static void main(String[] args) throws IOException
+    {
+        SocketAddress address = address(args.length > 0 ? args[0] : "9000");
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher(args.length > 1 ? args[1] : "pricetime"), new Random(123));
+        OrderGateway gateway = new OrderGateway(address);
+        gateway.addInstrument(DEFAULT_SECURITY_ID, ob);
+        gateway.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try
+            {
+                gateway.stop();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+}
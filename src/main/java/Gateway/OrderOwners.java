@@ -0,0 +1,102 @@
+package Gateway;
+
+import Orderbook.IntHandleMap;
+
+import java.util.Arrays;
+
+// which session entered each resting order of one book, and under which clientOrderId, so fills and acks go back to
+// the right connection. Entries live in parallel arrays addressed by handle, recycled through a free list, and are
+// found by orderId through an IntHandleMap. Each session's entries are also chained into a doubly linked list, headed
+// by session id, so that a disconnected session's orders can be found without a scan.
+class OrderOwners {
+    private final IntHandleMap handleByOrderId = new IntHandleMap();
+    private final IntHandleMap firstBySessionId = new IntHandleMap();
+    private Session[] sessions = new Session[1024];
+    private long[] clientOrderIds = new long[1024];
+    private int[] orderIds = new int[1024];
+    private int[] nextOfSession = new int[1024]; // doubles as the free list's link
+    private int[] prevOfSession = new int[1024];
+    private int freeHead = IntHandleMap.NULL;
+    private int used = 0;
+
+    void put(int orderId, Session session, long clientOrderId)
+    {
+        int handle = freeHead;
+        if (handle != IntHandleMap.NULL)
+        {
+            freeHead = nextOfSession[handle];
+        }
+        else
+        {
+            if (used == sessions.length)
+            {
+                sessions = Arrays.copyOf(sessions, used << 1);
+                clientOrderIds = Arrays.copyOf(clientOrderIds, used << 1);
+                orderIds = Arrays.copyOf(orderIds, used << 1);
+                nextOfSession = Arrays.copyOf(nextOfSession, used << 1);
+                prevOfSession = Arrays.copyOf(prevOfSession, used << 1);
+            }
+            handle = used++;
+        }
+        sessions[handle] = session;
+        clientOrderIds[handle] = clientOrderId;
+        orderIds[handle] = orderId;
+        handleByOrderId.put(orderId, handle);
+
+        int first = firstBySessionId.get(session.getId());
+        prevOfSession[handle] = IntHandleMap.NULL;
+        nextOfSession[handle] = first;
+        if (first != IntHandleMap.NULL)
+            prevOfSession[first] = handle;
+        firstBySessionId.put(session.getId(), handle);
+    }
+
+    // IntHandleMap.NULL when the order isn't resting (or was never entered through the gateway)
+    int handleOf(int orderId)
+    {
+        return handleByOrderId.get(orderId);
+    }
+
+    // one of the session's entries, IntHandleMap.NULL once it has none
+    int anyOf(Session session)
+    {
+        return firstBySessionId.get(session.getId());
+    }
+
+    Session session(int handle)
+    {
+        return sessions[handle];
+    }
+
+    long clientOrderId(int handle)
+    {
+        return clientOrderIds[handle];
+    }
+
+    int orderId(int handle)
+    {
+        return orderIds[handle];
+    }
+
+    void remove(int orderId)
+    {
+        int handle = handleByOrderId.remove(orderId);
+        if (handle == IntHandleMap.NULL)
+            return;
+
+        int prev = prevOfSession[handle];
+        int next = nextOfSession[handle];
+        if (next != IntHandleMap.NULL)
+            prevOfSession[next] = prev;
+        if (prev != IntHandleMap.NULL)
+            nextOfSession[prev] = next;
+        else if (next != IntHandleMap.NULL)
+            firstBySessionId.put(sessions[handle].getId(), next);
+        else
+            firstBySessionId.remove(sessions[handle].getId());
+
+        sessions[handle] = null; // a closed session's buffers must not stay reachable from here
+        nextOfSession[handle] = freeHead;
+        freeHead = handle;
+    }
+}
@@ -0,0 +1,106 @@
+package Gateway;
+
+import Engine.OrderMessages;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+// one client connection of an OrderGateway: the channel and its receive and send buffers, both direct and little
+// endian. Requests are decoded straight out of the receive buffer, responses are encoded straight into the send buffer
+// and written out once the gateway is done with what it has read. Only touched by the gateway thread.
+class Session {
+    private static final Logger logger = LogManager.getLogger(Session.class);
+
+    @Getter private final int id;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer in;
+    private final ByteBuffer out; // responses are appended at position(), flush writes everything before it
+    @Getter private boolean open = true;
+
+    Session(int id, SocketChannel channel, SelectionKey key, int receiveBufferSize, int sendBufferSize)
+    {
+        this.id = id;
+        this.channel = channel;
+        this.key = key;
+        this.in = ByteBuffer.allocateDirect(receiveBufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.out = ByteBuffer.allocateDirect(sendBufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // reads what the socket has and returns the number of complete messages now at the front of the receive buffer,
+    // or -1 once the client has closed the connection
+    int read() throws IOException
+    {
+        if (channel.read(in) < 0)
+            return -1;
+        return in.position() / OrderMessages.MESSAGE_SIZE;
+    }
+
+    ByteBuffer receiveBuffer()
+    {
+        return in;
+    }
+
+    // drops the first count messages, keeping a partly received one for the next read
+    void consumed(int count)
+    {
+        in.limit(in.position()).position(count * OrderMessages.MESSAGE_SIZE);
+        in.compact();
+    }
+
+    // offset in the send buffer of a new 32 byte response, or -1 once the session is closed. A client that lets its
+    // responses back up until they fill the send buffer is disconnected rather than buffered for without bound.
+    int reserve()
+    {
+        if (!open)
+            return -1;
+        if (out.remaining() < OrderMessages.MESSAGE_SIZE)
+        {
+            logger.warn("session {} does not read its responses fast enough, disconnecting.", id);
+            close();
+            return -1;
+        }
+        int offset = out.position();
+        out.position(offset + OrderMessages.MESSAGE_SIZE);
+        return offset;
+    }
+
+    ByteBuffer sendBuffer()
+    {
+        return out;
+    }
+
+    boolean hasPendingOutput()
+    {
+        return out.position() > 0;
+    }
+
+    // writes as much of the pending responses as the socket takes, and asks for OP_WRITE while some are left over
+    void flush() throws IOException
+    {
+        out.flip();
+        channel.write(out);
+        boolean pending = out.hasRemaining();
+        out.compact();
+        key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    void close()
+    {
+        open = false;
+        key.cancel();
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package Journal;
+
+import Orders.Side;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Binary replacement for per-event text logging. The matching thread writes fixed size records into a preallocated ring
+// buffer (a handful of puts, no allocation, no formatting) and a background thread drains the ring to a file. The file
+// is rendered as text after the fact with JournalDecoder.
+// Single producer: every record method must be called from the one thread that owns the book. If the drain thread falls
+// a full ring behind, the producer waits for it rather than dropping records.
+public class EventJournal implements AutoCloseable {
+    public static final int MAGIC = 0x4F424A31; // "OBJ1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16; // magic, version, record size, reserved
+    public static final int RECORD_SIZE = 48;
+    public static final int DEFAULT_CAPACITY = 1 << 16; // records
+
+    // record layout, little endian
+    public static final int TIMESTAMP_OFFSET = 0; // long, System.nanoTime
+    public static final int PRICE_OFFSET = 8;      // long, ticks. Best bid for BBO, Long.MIN_VALUE before the first bid
+    public static final int PRICE2_OFFSET = 16;    // long, ticks. Best ask for BBO, Long.MAX_VALUE before the first ask
+    public static final int ID_OFFSET = 24;        // int, order id. Maker id for FILL, old id for AMEND
+    public static final int ID2_OFFSET = 28;       // int, taker id for FILL, new id for AMEND
+    public static final int QTY_OFFSET = 32;       // int. Best bid size for BBO
+    public static final int QTY2_OFFSET = 36;      // int, best ask size for BBO
+    public static final int TYPE_OFFSET = 40;      // byte, JournalEventType code
+    public static final int SIDE_OFFSET = 41;      // byte, 0 = buy, 1 = sell
+    public static final int FLAGS_OFFSET = 42;     // byte, FLAG_MARKET for market orders
+
+    public static final byte SIDE_BUY = 0;
+    public static final byte SIDE_SELL = 1;
+    public static final byte FLAG_MARKET = 1;
+
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    private final ByteBuffer ring;
+    private final ByteBuffer drainView; // the drain thread's own position/limit over the same memory
+    private final int mask;
+    private final FileChannel channel;
+    private final Thread drainThread;
+
+    private long produced = 0; // producer's next sequence, only touched by the matching thread
+    private long cachedConsumed = 0; // producer's last view of consumed, saves a volatile read per record
+    private final AtomicLong published = new AtomicLong(); // records visible to the drain thread
+    private final AtomicLong consumed = new AtomicLong();  // records written to the file
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    @Getter private final Path file;
+
+    public EventJournal(Path file)
+    {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    public EventJournal(Path file, int capacity)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a positive power of two.");
+        if ((long) capacity * RECORD_SIZE > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("capacity is too large.");
+
+        this.file = file;
+        this.ring = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.drainView = ring.duplicate();
+        this.mask = capacity - 1;
+
+        try
+        {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+            while (header.hasRemaining())
+                channel.write(header);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("failed to open journal file " + file, e);
+        }
+
+        this.drainThread = new Thread(this::drainLoop, "journal-drain");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    public void add(int orderId, Side side, long price, int qty, boolean isMarket)
+    {
+        int offset = claim();
+        ring.putLong(offset + PRICE_OFFSET, price);
+        ring.putLong(offset + PRICE2_OFFSET, 0);
+        ring.putInt(offset + ID_OFFSET, orderId);
+        ring.putInt(offset + ID2_OFFSET, 0);
+        ring.putInt(offset + QTY_OFFSET, qty);
+        ring.putInt(offset + QTY2_OFFSET, 0);
+        publish(offset, JournalEventType.ADD, side, isMarket ? FLAG_MARKET : 0);
+    }
+
+    public void cancel(int orderId, Side side, long price, int qty)
+    {
+        int offset = claim();
+        ring.putLong(offset + PRICE_OFFSET, price);
+        ring.putLong(offset + PRICE2_OFFSET, 0);
+        ring.putInt(offset + ID_OFFSET, orderId);
+        ring.putInt(offset + ID2_OFFSET, 0);
+        ring.putInt(offset + QTY_OFFSET, qty);
+        ring.putInt(offset + QTY2_OFFSET, 0);
+        publish(offset, JournalEventType.CANCEL, side, (byte) 0);
+    }
+
+    public void amend(int oldOrderId, int newOrderId, Side side, long price, int qty)
+    {
+        int offset = claim();
+        ring.putLong(offset + PRICE_OFFSET, price);
+        ring.putLong(offset + PRICE2_OFFSET, 0);
+        ring.putInt(offset + ID_OFFSET, oldOrderId);
+        ring.putInt(offset + ID2_OFFSET, newOrderId);
+        ring.putInt(offset + QTY_OFFSET, qty);
+        ring.putInt(offset + QTY2_OFFSET, 0);
+        publish(offset, JournalEventType.AMEND, side, (byte) 0);
+    }
+
+    // side is the taker (aggressor) side, as on Trade
+    public void fill(int makerId, int takerId, Side side, long price, int qty)
+    {
+        int offset = claim();
+        ring.putLong(offset + PRICE_OFFSET, price);
+        ring.putLong(offset + PRICE2_OFFSET, 0);
+        ring.putInt(offset + ID_OFFSET, makerId);
+        ring.putInt(offset + ID2_OFFSET, takerId);
+        ring.putInt(offset + QTY_OFFSET, qty);
+        ring.putInt(offset + QTY2_OFFSET, 0);
+        publish(offset, JournalEventType.FILL, side, (byte) 0);
+    }
+
+    public void bbo(long bestBid, int bestBidSize, long bestAsk, int bestAskSize)
+    {
+        int offset = claim();
+        ring.putLong(offset + PRICE_OFFSET, bestBid);
+        ring.putLong(offset + PRICE2_OFFSET, bestAsk);
+        ring.putInt(offset + ID_OFFSET, 0);
+        ring.putInt(offset + ID2_OFFSET, 0);
+        ring.putInt(offset + QTY_OFFSET, bestBidSize);
+        ring.putInt(offset + QTY2_OFFSET, bestAskSize);
+        publish(offset, JournalEventType.BBO, null, (byte) 0);
+    }
+
+    // records handed to the journal so far
+    public long getPublished()
+    {
+        return published.get();
+    }
+
+    // records already written to the file
+    public long getWritten()
+    {
+        return consumed.get();
+    }
+
+    // waits for the drain thread to write everything published so far, then stops it and closes the file
+    @Override
+    public void close()
+    {
+        running = false;
+        LockSupport.unpark(drainThread);
+        try
+        {
+            drainThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            channel.force(false);
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("failed to close journal file " + file, e);
+        }
+
+        if (failure != null)
+            throw new UncheckedIOException("journal drain failed for " + file, failure);
+    }
+
+    // byte offset of the next free slot, waiting for the drain thread if the ring is full
+    private int claim()
+    {
+        if (produced - cachedConsumed > mask)
+        {
+            cachedConsumed = consumed.get();
+            while (produced - cachedConsumed > mask)
+            {
+                if (failure != null)
+                    throw new UncheckedIOException("journal drain failed for " + file, failure);
+                if (!running)
+                    throw new IllegalStateException("journal is closed.");
+                Thread.yield(); // the drain thread may need this core
+                cachedConsumed = consumed.get();
+            }
+        }
+        return (int) (produced & mask) * RECORD_SIZE;
+    }
+
+    private void publish(int offset, JournalEventType type, Side side, byte flags)
+    {
+        ring.putLong(offset + TIMESTAMP_OFFSET, System.nanoTime());
+        ring.put(offset + TYPE_OFFSET, type.code());
+        ring.put(offset + SIDE_OFFSET, side == Side.SELL ? SIDE_SELL : SIDE_BUY);
+        ring.put(offset + FLAGS_OFFSET, flags);
+        published.lazySet(++produced); // release store, the record bytes are visible before the new sequence
+    }
+
+    private void drainLoop()
+    {
+        try
+        {
+            while (true)
+            {
+                // read running before published, so the last pass after close() still sees every record
+                boolean stopping = !running;
+                if (drainAvailable() == 0)
+                {
+                    if (stopping)
+                        return;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            failure = e;
+        }
+    }
+
+    // writes every published record straight from the ring to the file, in at most two slices when the range wraps
+    private long drainAvailable() throws IOException
+    {
+        long from = consumed.get();
+        long to = published.get();
+        if (to == from)
+            return 0;
+
+        int capacity = mask + 1;
+        int start = (int) (from & mask);
+        int count = (int) (to - from);
+        int firstSlice = Math.min(count, capacity - start);
+        writeSlice(start, firstSlice);
+        if (count > firstSlice)
+            writeSlice(0, count - firstSlice);
+
+        consumed.lazySet(to);
+        return count;
+    }
+
+    private void writeSlice(int startRecord, int records) throws IOException
+    {
+        drainView.limit((startRecord + records) * RECORD_SIZE).position(startRecord * RECORD_SIZE);
+        while (drainView.hasRemaining())
+            channel.write(drainView);
+    }
+}
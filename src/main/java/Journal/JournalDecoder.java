@@ -0,0 +1,122 @@
+package Journal;
+
+import Orders.PriceScale;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Renders a file written by EventJournal as text, one line per record:
+//   java -cp <classpath> Journal.JournalDecoder <journal file> [tick size]
+// Prices are printed in ticks unless a tick size is given.
+public class JournalDecoder {
+    private static final int RECORDS_PER_READ = 1024;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: JournalDecoder <journal file> [tick size]");
+            System.exit(1);
+        }
+
+        PriceScale priceScale = args.length > 1 ? PriceScale.fromTickSize(Double.parseDouble(args[1])) : null;
+        decode(Paths.get(args[0]), priceScale, System.out);
+    }
+
+    // returns the number of records decoded
+    public static long decode(Path file, PriceScale priceScale, PrintStream out) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(EventJournal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt(0) != EventJournal.MAGIC)
+                throw new IOException(file + " is not an event journal.");
+            if (header.getInt(4) != EventJournal.VERSION || header.getInt(8) != EventJournal.RECORD_SIZE)
+                throw new IOException("unsupported journal version " + header.getInt(4) + " with record size " + header.getInt(8));
+
+            ByteBuffer buffer = ByteBuffer.allocate(RECORDS_PER_READ * EventJournal.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            StringBuilder line = new StringBuilder(128);
+            long sequence = 0;
+            while (channel.read(buffer) > 0 || buffer.position() > 0)
+            {
+                buffer.flip();
+                int complete = buffer.remaining() / EventJournal.RECORD_SIZE;
+                if (complete == 0)
+                    break; // a torn record at the end of the file
+                for (int i = 0; i < complete; i++)
+                {
+                    line.setLength(0);
+                    format(buffer, i * EventJournal.RECORD_SIZE, sequence++, priceScale, line);
+                    out.println(line);
+                }
+                buffer.position(complete * EventJournal.RECORD_SIZE);
+                buffer.compact();
+            }
+            return sequence;
+        }
+    }
+
+    // e.g. "42 8123456789 FILL maker=7 taker=12 BUY 101 x 20"
+    public static void format(ByteBuffer record, int offset, long sequence, PriceScale priceScale, StringBuilder out)
+    {
+        JournalEventType type = JournalEventType.fromCode(record.get(offset + EventJournal.TYPE_OFFSET));
+        String side = record.get(offset + EventJournal.SIDE_OFFSET) == EventJournal.SIDE_SELL ? "SELL" : "BUY";
+        long price = record.getLong(offset + EventJournal.PRICE_OFFSET);
+        int id = record.getInt(offset + EventJournal.ID_OFFSET);
+        int id2 = record.getInt(offset + EventJournal.ID2_OFFSET);
+        int qty = record.getInt(offset + EventJournal.QTY_OFFSET);
+
+        out.append(sequence).append(' ').append(record.getLong(offset + EventJournal.TIMESTAMP_OFFSET)).append(' ').append(type).append(' ');
+        switch (type)
+        {
+            case ADD:
+                out.append("id=").append(id).append(' ').append(side).append(' ');
+                if ((record.get(offset + EventJournal.FLAGS_OFFSET) & EventJournal.FLAG_MARKET) != 0)
+                    out.append("MARKET x ").append(qty);
+                else
+                    appendPrice(out, price, priceScale).append(" x ").append(qty);
+                break;
+            case CANCEL:
+                out.append("id=").append(id).append(' ').append(side).append(' ');
+                appendPrice(out, price, priceScale).append(" x ").append(qty);
+                break;
+            case AMEND:
+                out.append("id=").append(id).append(" -> ").append(id2).append(' ').append(side).append(' ');
+                appendPrice(out, price, priceScale).append(" x ").append(qty);
+                break;
+            case FILL:
+                out.append("maker=").append(id).append(" taker=").append(id2).append(' ').append(side).append(' ');
+                appendPrice(out, price, priceScale).append(" x ").append(qty);
+                break;
+            case BBO:
+                out.append(qty).append(" x ");
+                appendPrice(out, price, priceScale).append(" / ");
+                appendPrice(out, record.getLong(offset + EventJournal.PRICE2_OFFSET), priceScale)
+                        .append(" x ").append(record.getInt(offset + EventJournal.QTY2_OFFSET));
+                break;
+        }
+    }
+
+    private static StringBuilder appendPrice(StringBuilder out, long ticks, PriceScale priceScale)
+    {
+        if (priceScale == null)
+            return out.append(ticks);
+        return out.append(priceScale.toDecimal(ticks).toPlainString());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+                throw new IOException("journal file is shorter than its header.");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package Journal;
+
+// record types written by EventJournal. The code is the byte stored in each record.
+public enum JournalEventType {
+    ADD,    // an order entered the book (passive, aggressive limit or market)
+    CANCEL, // a resting order was cancelled
+    AMEND,  // a resting order was replaced by a new order id with a new price/qty
+    FILL,   // a resting (maker) order traded with an incoming (taker) order
+    BBO;    // the best bid/ask price or size changed
+
+    private static final JournalEventType[] VALUES = values();
+
+    public byte code()
+    {
+        return (byte) ordinal();
+    }
+
+    public static JournalEventType fromCode(byte code)
+    {
+        if (code < 0 || code >= VALUES.length)
+            throw new IllegalArgumentException("unknown journal record type: " + code);
+        return VALUES[code];
+    }
+}
@@ -1,20 +1,101 @@
 package MatchingEngine;
 
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.ORDER_TYPE;
+import Orders.Order;
+import Orders.TIME_IN_FORCE;
 import Orders.Trade;
 import lombok.Getter;
+import lombok.Setter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-@Getter
 public abstract class AbstractOrderMatcher implements IOrderMatcher {
-    final List<Trade> trades = new ArrayList<>();
+    // where every trade goes. The default keeps them all in a list (see getTrades), long runs should stream them instead.
+    @Getter @Setter private TradeListener tradeListener = new TradeListSink();
+    private final CallAuction auction = new CallAuction();
+
+    @Override
+    public long uncross(Orderbook ob)
+    {
+        return auction.uncross(ob, this);
+    }
+
+    // auction allocation for the one level the uncrossing volume only partly takes: every order of the level that gets
+    // a share is handed to auction.fill, in the order the fills should be paired with the other side. The shares add up
+    // to qty. Nothing on the book is changed here.
+    abstract void allocateAuctionLevel(Limit limit, int qty, CallAuction auction);
+
+    // every trade so far. Only available while the default TradeListSink is installed.
+    public List<Trade> getTrades()
+    {
+        if (!(tradeListener instanceof TradeListSink))
+            throw new IllegalStateException("trades are streamed to " + tradeListener.getClass().getSimpleName() + ", not kept in a list.");
+        return ((TradeListSink) tradeListener).getTrades();
+    }
+
+    // matchers report each trade here, its price goes to the stop book. A trade the listener does not keep goes straight back to the book's pool.
+    void recordTrade(Trade trade, Orderbook ob)
+    {
+        ob.getStopBook().tradePrinted(trade.getPrice());
+        tradeListener.onTrade(trade);
+        if (!tradeListener.retainsTrades())
+            ob.releaseTrade(trade);
+    }
+
+    // every matcher fills an order completely when the levels it may take hold enough volume: whole levels are taken
+    // outright and the last one is split exactly, whatever the allocation style. So the book's depth index answers it.
+    // A market order is the exception: matchMarketOrder refuses one that would take the whole opposite side, so it must
+    // find strictly more than its quantity.
+    @Override
+    public boolean canFillCompletely(Order o, Orderbook ob)
+    {
+        if (o.getOrdType() == ORDER_TYPE.MARKET)
+            return (o.isBuy() ? ob.getTotalAskSize() + ob.getHiddenAskSize() : ob.getTotalBidSize() + ob.getHiddenBidSize()) > o.getCurrentQuantity();
+        return ob.availableVolume(o.getSide(), o.getPrice()) >= o.getCurrentQuantity();
+    }
+
+    // what an aggressive limit order didn't fill rests as a new passive order at its limit price, unless it is
+    // immediate-or-cancel
+    void restRemainder(Order o, Orderbook ob)
+    {
+        if (o.getTimeInForce() == TIME_IN_FORCE.IOC)
+        {
+            ob.cancelUnfilled(o);
+            return;
+        }
+        Order remainder = ob.acquireOrder(o.getSecurityId(), o.getSide(), o.getCurrentQuantity(), o.getPrice());
+        remainder.setDisplayQuantity(o.getDisplayQuantity()); // an iceberg rests as an iceberg
+        ob.addRemainder(remainder);
+    }
+
+    // an aggressive limit order keeps matching while the resting level's price is within its limit price
+    static boolean crosses(Order o, long price)
+    {
+        return o.isBuy() ? price <= o.getPrice() : price >= o.getPrice();
+    }
 
     public void printTrades()
     {
-        for (Trade t: trades)
+        for (Trade t: getTrades())
         {
             System.out.println(t);
         }
     }
+
+    // hands every recorded trade back to the book's trade pool and clears the list. Callers must be done with them.
+    // Nothing to do for a streaming listener, its trades were released as they happened.
+    public void releaseTrades(Orderbook ob)
+    {
+        if (!(tradeListener instanceof TradeListSink))
+            return;
+
+        List<Trade> trades = getTrades();
+        for (int i = 0; i < trades.size(); i++)
+        {
+            ob.releaseTrade(trades.get(i));
+        }
+        trades.clear();
+    }
 }
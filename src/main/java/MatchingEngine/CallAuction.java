@@ -0,0 +1,248 @@
+package MatchingEngine;
+
+import Orderbook.BookSide;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+
+// Uncrossing of a book that collected orders without matching (see Orderbook.startAuction). All crossing volume is
+// executed at one equilibrium price:
+// 1. the crossing levels of both sides are copied into price/volume arrays, and one ascending walk over their merged
+//    prices keeps the cumulative bid volume (price >= p) and ask volume (price <= p). The price is the one that
+//    executes the most volume, then the one that leaves the smallest surplus. Left with a range of prices, the side with
+//    the surplus pulls the price its way (highest for buyers, lowest for sellers), otherwise the middle of the range.
+// 2. the side with less volume at that price is filled completely. The other side is filled level by level in price
+//    priority, and the one level it only partly fills is allocated by the matcher's own style (allocateAuctionLevel).
+// 3. both fill lists are paired off in priority order into trades at the auction price. The short side is reported as
+//    the taker.
+// Iceberg orders take part with their reserve: an auction executes whole orders, what they display doesn't matter.
+// Owned by one matcher, the arrays are reused between auctions.
+final class CallAuction {
+    private static final Logger logger = LogManager.getLogger(CallAuction.class);
+
+    private long[] bidPrices = new long[64];
+    private int[] bidVolumes = new int[64];
+    private int bidCount = 0;
+    private long[] askPrices = new long[64];
+    private int[] askVolumes = new int[64];
+    private int askCount = 0;
+
+    // the fills of the side with the surplus, in priority order
+    private Order[] makers = new Order[64];
+    private int[] makerFills = new int[64];
+    private int makerCount = 0;
+
+    long uncross(Orderbook ob, AbstractOrderMatcher matcher)
+    {
+        BookSide bidLimits = ob.getBidLimits();
+        BookSide askLimits = ob.getAskLimits();
+        if (bidLimits.isEmpty() || askLimits.isEmpty() || ob.getBestBid() < ob.getBestAsk())
+        {
+            logger.info("nothing crosses, no auction trades.");
+            return Orderbook.NO_AUCTION_PRICE;
+        }
+
+        long totalBidVolume = collectCrossingLevels(ob);
+        long price = equilibriumPrice(totalBidVolume);
+
+        long bidVolumeAtPrice = 0;
+        for (int i = 0; i < bidCount && bidPrices[i] >= price; i++)
+            bidVolumeAtPrice += bidVolumes[i];
+        long askVolumeAtPrice = 0;
+        for (int i = 0; i < askCount && askPrices[i] <= price; i++)
+            askVolumeAtPrice += askVolumes[i];
+        int volume = (int) Math.min(bidVolumeAtPrice, askVolumeAtPrice);
+
+        // the side that can't be filled completely is allocated by the matcher, the other side takes from it
+        boolean bidsAreMakers = bidVolumeAtPrice >= askVolumeAtPrice;
+        BookSide makerSide = bidsAreMakers ? bidLimits : askLimits;
+        BookSide takerSide = bidsAreMakers ? askLimits : bidLimits;
+        Side takerSideOfTrade = bidsAreMakers ? Side.SELL : Side.BUY;
+        logger.info("uncrossing at {} for {} lots (bid volume {}, ask volume {})", price, volume, bidVolumeAtPrice, askVolumeAtPrice);
+
+        collectMakerFills(makerSide, volume, matcher);
+        int tradedVolume = executeTrades(ob, matcher, takerSide, takerSideOfTrade, price, volume);
+        applyMakerFills(ob);
+
+        ob.clearEmptyLimitsAfterMatching(true);
+        ob.clearEmptyLimitsAfterMatching(false);
+
+        if (tradedVolume != volume)
+            throw new UnexpectedRemainingVolumeException("auction traded " + tradedVolume + " of " + volume + " lots.");
+        return price;
+    }
+
+    // called back by the matcher for every order of the partly filled level, in the order the fills should be paired off
+    void fill(Order order, int qty)
+    {
+        if (makerCount == makers.length)
+        {
+            makers = Arrays.copyOf(makers, makerCount << 1);
+            makerFills = Arrays.copyOf(makerFills, makerCount << 1);
+        }
+        makers[makerCount] = order;
+        makerFills[makerCount] = qty;
+        makerCount++;
+    }
+
+    // bids at or above the best ask and asks at or below the best bid. Returns the total crossing bid volume.
+    private long collectCrossingLevels(Orderbook ob)
+    {
+        long totalBidVolume = 0;
+        bidCount = 0;
+        BookSide bidLimits = ob.getBidLimits();
+        for (Limit limit = bidLimits.first(); limit != null && limit.getPrice() >= ob.getBestAsk(); limit = bidLimits.higher(limit))
+        {
+            if (limit.isEmpty())
+                continue;
+            if (bidCount == bidPrices.length)
+            {
+                bidPrices = Arrays.copyOf(bidPrices, bidCount << 1);
+                bidVolumes = Arrays.copyOf(bidVolumes, bidCount << 1);
+            }
+            bidPrices[bidCount] = limit.getPrice();
+            bidVolumes[bidCount] = limit.getTotalVolumeAtLimit() + limit.getHiddenVolumeAtLimit();
+            totalBidVolume += bidVolumes[bidCount];
+            bidCount++;
+        }
+
+        askCount = 0;
+        BookSide askLimits = ob.getAskLimits();
+        for (Limit limit = askLimits.first(); limit != null && limit.getPrice() <= ob.getBestBid(); limit = askLimits.higher(limit))
+        {
+            if (limit.isEmpty())
+                continue;
+            if (askCount == askPrices.length)
+            {
+                askPrices = Arrays.copyOf(askPrices, askCount << 1);
+                askVolumes = Arrays.copyOf(askVolumes, askCount << 1);
+            }
+            askPrices[askCount] = limit.getPrice();
+            askVolumes[askCount] = limit.getTotalVolumeAtLimit() + limit.getHiddenVolumeAtLimit();
+            askCount++;
+        }
+        return totalBidVolume;
+    }
+
+    // one walk over the crossing prices in ascending order. Bids are held best (highest) first, so they are read from the end.
+    private long equilibriumPrice(long totalBidVolume)
+    {
+        long cumulativeAskVolume = 0; // asks at or below the current price
+        long bidVolumeBelow = 0; // bids strictly below the current price
+        long bestVolume = -1;
+        long bestImbalance = 0;
+        long low = 0, high = 0, lowSurplus = 0, highSurplus = 0;
+
+        int i = 0;
+        int j = bidCount - 1;
+        while (i < askCount || j >= 0)
+        {
+            long price = j < 0 || (i < askCount && askPrices[i] < bidPrices[j]) ? askPrices[i] : bidPrices[j];
+            if (i < askCount && askPrices[i] == price)
+                cumulativeAskVolume += askVolumes[i++];
+
+            long cumulativeBidVolume = totalBidVolume - bidVolumeBelow;
+            long volume = Math.min(cumulativeBidVolume, cumulativeAskVolume);
+            long surplus = cumulativeBidVolume - cumulativeAskVolume;
+            long imbalance = Math.abs(surplus);
+            if (volume > bestVolume || (volume == bestVolume && imbalance < bestImbalance))
+            {
+                bestVolume = volume;
+                bestImbalance = imbalance;
+                low = high = price;
+                lowSurplus = highSurplus = surplus;
+            }
+            else if (volume == bestVolume && imbalance == bestImbalance)
+            {
+                high = price;
+                highSurplus = surplus;
+            }
+
+            if (j >= 0 && bidPrices[j] == price)
+                bidVolumeBelow += bidVolumes[j--];
+        }
+
+        if (lowSurplus > 0 && highSurplus > 0)
+            return high; // buyers left over, the price goes up
+        if (lowSurplus < 0 && highSurplus < 0)
+            return low; // sellers left over, the price goes down
+        return low + (high - low) / 2;
+    }
+
+    // levels the auction volume takes completely are filled in time priority, the matcher allocates the last one
+    private void collectMakerFills(BookSide makerSide, int volume, AbstractOrderMatcher matcher)
+    {
+        makerCount = 0;
+        int remaining = volume;
+        for (Limit limit = makerSide.first(); limit != null && remaining > 0; limit = makerSide.higher(limit))
+        {
+            int levelVolume = limit.getTotalVolumeAtLimit() + limit.getHiddenVolumeAtLimit();
+            if (levelVolume <= remaining)
+            {
+                for (Order ptr = limit.getHead(); ptr != null; ptr = ptr.getNextOrder())
+                    fill(ptr, ptr.getCurrentQuantity() + ptr.getHiddenQuantity());
+                remaining -= levelVolume;
+            }
+            else
+            {
+                logger.info("allocating {} of the {} lots at limit={}", remaining, levelVolume, limit.getPrice());
+                matcher.allocateAuctionLevel(limit, remaining, this);
+                remaining = 0;
+            }
+        }
+    }
+
+    // walks the taker side in price-time priority, every order there is filled completely against the maker fills in
+    // order. Taker orders are removed as they fill, the makers are only booked afterwards. Returns the volume traded.
+    private int executeTrades(Orderbook ob, AbstractOrderMatcher matcher, BookSide takerSide, Side takerSideOfTrade, long price, int volume)
+    {
+        int makerIndex = 0;
+        int makerRemaining = makerCount > 0 ? makerFills[0] : 0;
+        int traded = 0;
+        Limit limit = takerSide.first();
+        while (limit != null && traded < volume)
+        {
+            Limit nextLimit = takerSide.higher(limit); // read before the level can be emptied
+            Order ptr = limit.getHead();
+            while (ptr != null && traded < volume)
+            {
+                Order nextOrder = ptr.getNextOrder(); // read before removing, removed orders are recycled
+                int takerRemaining = ptr.getCurrentQuantity() + ptr.getHiddenQuantity();
+                while (takerRemaining > 0)
+                {
+                    int qty = Math.min(takerRemaining, makerRemaining);
+                    Trade trade = ob.acquireTrade(takerSideOfTrade, price, qty, makers[makerIndex].getOrderId(), ptr.getOrderId());
+                    logger.info("new trade: {}", trade);
+                    matcher.recordTrade(trade, ob);
+
+                    takerRemaining -= qty;
+                    makerRemaining -= qty;
+                    traded += qty;
+                    if (makerRemaining == 0 && ++makerIndex < makerCount)
+                        makerRemaining = makerFills[makerIndex];
+                }
+                ob.removeOrder(ptr.getOrderId(), true);
+                ptr = nextOrder;
+            }
+            limit = nextLimit;
+        }
+        return traded;
+    }
+
+    // only orders at the level the matcher allocated can be left with a remainder
+    private void applyMakerFills(Orderbook ob)
+    {
+        for (int i = 0; i < makerCount; i++)
+        {
+            ob.fillRestingOrder(makers[i], makerFills[i]); // removes the orders filled in full
+            makers[i] = null; // don't keep recycled orders reachable
+        }
+        makerCount = 0;
+    }
+}
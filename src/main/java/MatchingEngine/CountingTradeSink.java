@@ -0,0 +1,46 @@
+package MatchingEngine;
+
+import Orders.Side;
+import Orders.Trade;
+import lombok.Getter;
+
+// aggregates trades into a few running totals and keeps nothing else, so memory stays constant however long the run.
+// Meant for benchmarks and long simulations.
+@Getter
+public class CountingTradeSink implements TradeListener {
+    private long tradeCount;
+    private long volume;
+    private long buyVolume; // volume where the taker was a buyer
+    private long sellVolume;
+    private long notional; // sum of price * volume, in ticks
+    private long lastPrice;
+
+    @Override
+    public void onTrade(Trade trade)
+    {
+        tradeCount++;
+        volume += trade.getVolume();
+        if (trade.getSide() == Side.BUY)
+            buyVolume += trade.getVolume();
+        else
+            sellVolume += trade.getVolume();
+        notional += trade.getPrice() * trade.getVolume();
+        lastPrice = trade.getPrice();
+    }
+
+    // volume weighted average price in ticks, 0 before the first trade
+    public double getVwap()
+    {
+        return volume == 0 ? 0 : (double) notional / volume;
+    }
+
+    public void reset()
+    {
+        tradeCount = 0;
+        volume = 0;
+        buyVolume = 0;
+        sellVolume = 0;
+        notional = 0;
+        lastPrice = 0;
+    }
+}
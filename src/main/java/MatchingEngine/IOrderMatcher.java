@@ -2,12 +2,21 @@ package MatchingEngine;
 
 import Orderbook.Orderbook;
 import Orders.Order;
-import Orders.Trade;
-
-import java.util.List;
 
 public interface IOrderMatcher {
     void matchMarketOrder(Order o, Orderbook ob);
 
     void matchAggressiveLimitOrder(Order o, Orderbook ob);
+
+    // fill-or-kill check: whether o would be filled completely if it were matched now. Must not walk the level queues.
+    boolean canFillCompletely(Order o, Orderbook ob);
+
+    // call auction: executes everything that crosses in the book at one price and returns it, or
+    // Orderbook.NO_AUCTION_PRICE if nothing crossed
+    long uncross(Orderbook ob);
+
+    // sink for the trades produced by matching
+    void setTradeListener(TradeListener tradeListener);
+
+    TradeListener getTradeListener();
 }
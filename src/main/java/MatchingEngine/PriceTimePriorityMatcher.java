@@ -1,19 +1,18 @@
 package MatchingEngine;
 
+import Orderbook.BookSide;
 import Orderbook.Orderbook;
 import Orders.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.TreeSet;
-
 class PriceTimePriorityMatcher extends AbstractOrderMatcher {
     private static final Logger logger = LogManager.getLogger(PriceTimePriorityMatcher.class);
 
     @Override
     public void matchMarketOrder(Order o, Orderbook ob)
     {
-        int totalSize = o.isBuy() ? ob.getTotalAskSize() : ob.getTotalBidSize();
+        int totalSize = o.isBuy() ? ob.getTotalAskSize() + ob.getHiddenAskSize() : ob.getTotalBidSize() + ob.getHiddenBidSize();
         if (o.getInitialQuantity() >= totalSize)
         {
             // if e.g. total ask size is 10000, but an aggressive buy order comes in for 20000, we aren't going to match it.
@@ -21,53 +20,13 @@ class PriceTimePriorityMatcher extends AbstractOrderMatcher {
             return;
         }
 
-        TreeSet<Limit> limitTree = o.isBuy() ? ob.getAskLimits() : ob.getBidLimits();
+        BookSide limitTree = o.isBuy() ? ob.getAskLimits() : ob.getBidLimits();
         int filledQty = 0;
 
         for (Limit limit: limitTree)
         {
             logger.info("iterating through resting orders at limit={}...", limit.getPrice());
-            Order ptr = limit.getHead();
-
-            // only iterate limit levels that have at least one order in it.
-            // e.g. if we are 100/101 and then we deplete 101 with a market order, the 101 limit is technically still here
-            // but will be null (ptr = null). So we don't do any matching on that null level
-
-            // whilst there are still orders to be matched in the current limit level AND market order still has excess unmatched qty
-            while(ptr!=null && o.getCurrentQuantity() > 0)
-            {
-                logger.info("matching with resting orderID: {}, price: {}, qty: {}", ptr.getOrderId(), ptr.getPrice(), ptr.getCurrentQuantity());
-                if (o.getCurrentQuantity() >= ptr.getCurrentQuantity())
-                {
-                    // we are able to fill an entire resting order with possible excess, so we keep going
-                    Trade trade = new Trade(o.getSide(), ptr.getParentLimit().getPrice(), ptr.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
-                    trades.add(trade);
-                    logger.info("new trade: {}", trade);
-
-                    filledQty += ptr.getCurrentQuantity();
-                    o.setCurrentQuantity(o.getCurrentQuantity() - ptr.getCurrentQuantity());
-                    ob.removeOrder(ptr.getOrderId(), true);
-                    ptr = ptr.getNextOrder();
-                }
-                else
-                {
-                    Trade trade = new Trade(o.getSide(), ptr.getParentLimit().getPrice(), o.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
-                    trades.add(trade);
-                    logger.info("new trade: {}", trade);
-
-                    filledQty += o.getCurrentQuantity();
-                    int remainingQtyToFill = o.getCurrentQuantity();
-                    limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() - remainingQtyToFill);
-                    if (o.isBuy())
-                        ob.setTotalAskSize(ob.getTotalAskSize() - remainingQtyToFill);
-                    else
-                        ob.setTotalBidSize(ob.getTotalBidSize() - remainingQtyToFill);
-                    ptr.setCurrentQuantity(ptr.getCurrentQuantity() - remainingQtyToFill);
-                    o.setCurrentQuantity(0); // market order is fully matched, we can exit the while loop
-                }
-
-                logger.info("orderID: {}, filledQty: {}/{}", o.getOrderId(), filledQty, o.getInitialQuantity());
-            }
+            filledQty = matchLimit(o, limit, ob, filledQty);
 
             // if we reach here, we have either depleted the current limit level OR the market order has been completely filled.
             // If the market order still has remaining unmatched quantity, we need to continue to the next best limit.
@@ -94,72 +53,90 @@ class PriceTimePriorityMatcher extends AbstractOrderMatcher {
     @Override
     public void matchAggressiveLimitOrder(Order o, Orderbook ob)
     {
-        // logic is similar to matching a market order
-        int totalSize = o.isBuy() ? ob.getTotalAskSize() : ob.getTotalBidSize();
-        if (o.getInitialQuantity() >= totalSize)
-        {
-            // if e.g. total ask size is 10000, but an aggressive buy order comes in for 20000, we aren't going to match it.
-            logger.error("order qty ({}) is greater than the total aggressive size ({}). Not matching.", o.getInitialQuantity(), totalSize);
-            return;
-        }
-
-        TreeSet<Limit> limitTree = o.isBuy() ? ob.getAskLimits() : ob.getBidLimits();
-        double farTouchPrice = o.isBuy() ? ob.getBestAsk() : ob.getBestBid();
+        // logic is similar to matching a market order, but only the levels within the order's limit price are taken.
+        // There is no total size check, whatever can't be filled rests on the book.
+        BookSide limitTree = o.isBuy() ? ob.getAskLimits() : ob.getBidLimits();
         int filledQty = 0;
 
-        for (Limit limit: limitTree)
+        // start at the touch and step outward level by level, stopping at the first level the order doesn't cross
+        for (Limit limit = limitTree.first(); limit != null && crosses(o, limit.getPrice()); limit = limitTree.higher(limit))
         {
-            if (limit.getPrice() == farTouchPrice)
+            logger.info("iterating through resting orders at limit={}...", limit.getPrice());
+            filledQty = matchLimit(o, limit, ob, filledQty);
+
+            if (o.getCurrentQuantity() == 0)
             {
-                logger.info("iterating through resting orders at limit={} only...", limit.getPrice());
-                Order ptr = limit.getHead();
-
-                while(ptr!=null && o.getCurrentQuantity() > 0)
-                {
-                    logger.info("matching with resting orderID: {}, price: {}, qty: {}", ptr.getOrderId(), ptr.getPrice(), ptr.getCurrentQuantity());
-                    if (o.getCurrentQuantity() >= ptr.getCurrentQuantity())
-                    {
-                        // we are able to fill an entire resting order with possible excess, so we keep going
-                        Trade trade = new Trade(o.getSide(), ptr.getParentLimit().getPrice(), ptr.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
-                        trades.add(trade);
-                        logger.info("new trade: {}", trade);
-
-                        filledQty += ptr.getCurrentQuantity();
-                        o.setCurrentQuantity(o.getCurrentQuantity() - ptr.getCurrentQuantity());
-                        ob.removeOrder(ptr.getOrderId(), true);
-                        ptr = ptr.getNextOrder();
-                    }
-                    else
-                    {
-                        Trade trade = new Trade(o.getSide(), ptr.getParentLimit().getPrice(), o.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
-                        trades.add(trade);
-                        logger.info("new trade: {}", trade);
-
-                        filledQty += o.getCurrentQuantity();
-                        int remainingQtyToFill = o.getCurrentQuantity();
-                        limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() - remainingQtyToFill);
-                        if (o.isBuy())
-                            ob.setTotalAskSize(ob.getTotalAskSize() - remainingQtyToFill);
-                        else
-                            ob.setTotalBidSize(ob.getTotalBidSize() - remainingQtyToFill);
-                        ptr.setCurrentQuantity(ptr.getCurrentQuantity() - remainingQtyToFill);
-                        o.setCurrentQuantity(0); // market order is fully matched, we can exit the while loop
-                    }
-
-                    logger.info("orderID: {}, filledQty: {}/{}", o.getOrderId(), filledQty, o.getInitialQuantity());
-                }
+                logger.info("orderID: {} - fully filled.", o.getOrderId());
+                break;
             }
         }
 
         ob.clearEmptyLimitsAfterMatching(o.isBuy());
 
-        // e.g. if we do an aggressive limit buy 500 qty on a book like 500 x 100/101 x 200, any remaining qty
-        // will be made into a passive buy at 101. we don't clear anything beyond the top level.
+        // e.g. if we do an aggressive limit buy 500 qty @ 102 on a book like 500 x 100/101 x 200, 102 x 100, 103 x 300
+        // we take 101 and 102, and the remaining 200 qty is made into a passive buy at 102. Nothing beyond 102 is taken.
         if (o.getCurrentQuantity() > 0)
         {
-            logger.info("aggressive limit order cleared the entire far touch qty. Creating a new limit for the remaining qty.");
-            ob.addOrder(new Order(o.getSecurityId(), o.getSide(), o.getCurrentQuantity(), farTouchPrice));
+            logger.info("aggressive limit order swept every level up to its limit price. {} qty remaining ({}).", o.getCurrentQuantity(), o.getTimeInForce());
+            restRemainder(o, ob);
         }
+    }
+
+    // fills the order against one limit level in time priority. filledQty is the qty filled at the previous levels,
+    // the updated value is returned.
+    private int matchLimit(Order o, Limit limit, Orderbook ob, int filledQty)
+    {
+        Order ptr = limit.getHead();
 
+        // only iterate limit levels that have at least one order in it.
+        // e.g. if we are 100/101 and then we deplete 101 with a market order, the 101 limit is technically still here
+        // but will be null (ptr = null). So we don't do any matching on that null level
+
+        // whilst there are still orders to be matched in the current limit level AND the order still has excess unmatched qty
+        while(ptr!=null && o.getCurrentQuantity() > 0)
+        {
+            logger.info("matching with resting orderID: {}, price: {}, qty: {}", ptr.getOrderId(), ptr.getPrice(), ptr.getCurrentQuantity());
+            if (o.getCurrentQuantity() >= ptr.getCurrentQuantity())
+            {
+                // we are able to fill an entire resting order with possible excess, so we keep going
+                Trade trade = ob.acquireTrade(o.getSide(), ptr.getParentLimit().getPrice(), ptr.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
+                logger.info("new trade: {}", trade);
+                recordTrade(trade, ob);
+
+                filledQty += ptr.getCurrentQuantity();
+                o.setCurrentQuantity(o.getCurrentQuantity() - ptr.getCurrentQuantity());
+                // the resting order leaves, or refreshes to the back of the queue if it is an iceberg. Either way the
+                // next order in time priority is now the head.
+                ob.displayedQuantityFilled(ptr);
+                ptr = limit.getHead();
+            }
+            else
+            {
+                Trade trade = ob.acquireTrade(o.getSide(), ptr.getParentLimit().getPrice(), o.getCurrentQuantity(), ptr.getOrderId(), o.getOrderId());
+                logger.info("new trade: {}", trade);
+                recordTrade(trade, ob);
+
+                filledQty += o.getCurrentQuantity();
+                int remainingQtyToFill = o.getCurrentQuantity();
+                ob.reduceRestingVolume(limit, !o.isBuy(), remainingQtyToFill);
+                ptr.setCurrentQuantity(ptr.getCurrentQuantity() - remainingQtyToFill);
+                o.setCurrentQuantity(0); // order is fully matched, we can exit the while loop
+            }
+
+            logger.info("orderID: {}, filledQty: {}/{}", o.getOrderId(), filledQty, o.getInitialQuantity());
+        }
+        return filledQty;
+    }
+
+    // auction share of a partly filled level in time priority
+    @Override
+    void allocateAuctionLevel(Limit limit, int qty, CallAuction auction)
+    {
+        for (Order ptr = limit.getHead(); ptr != null && qty > 0; ptr = ptr.getNextOrder())
+        {
+            int fill = Math.min(qty, ptr.getCurrentQuantity() + ptr.getHiddenQuantity());
+            auction.fill(ptr, fill);
+            qty -= fill;
+        }
     }
 }
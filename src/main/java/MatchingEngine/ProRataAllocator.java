@@ -0,0 +1,171 @@
+package MatchingEngine;
+
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Trade;
+
+import java.util.Arrays;
+
+// Pro-rata allocation for one limit level, worked out on a snapshot of the level rather than on the live order list.
+// snapshot copies the level's orders and quantities (in time priority) into reusable arrays, allocateProRata gives every
+// order floor(qty * toDistribute / levelVolume) in exact integer arithmetic in one pass over the quantities, and
+// allocateResidue hands the rounding residue out FIFO. apply then turns the allocation into trades and book updates in
+// one batch: trades in the same order as the two-pass walk the matchers used to do (every pro-rata fill, then every
+// residue fill), with the level and side totals updated once instead of per fill. allocateTop gives the head of the
+// level priority over the pro-rata shares (its trade comes first and it takes no part in the split).
+// Owned by one matcher, nothing is allocated once the arrays are big enough for the deepest level seen.
+final class ProRataAllocator {
+    private Order[] orders = new Order[64];
+    private int[] quantities = new int[64];
+    private int[] proRataFills = new int[64];
+    private int[] residueFills = new int[64];
+    private int count = 0;
+    private int first = 0; // first order in the pro-rata split, 1 once the top order has been allocated
+    private int topFill = 0;
+
+    // withReserve counts iceberg reserves into the quantities (auctions). Continuous matching only shares out what is
+    // displayed, a refreshed iceberg is matched again in the next pass over the level.
+    int snapshot(Limit limit, boolean withReserve)
+    {
+        int n = 0;
+        for (Order ptr = limit.getHead(); ptr != null; ptr = ptr.getNextOrder())
+        {
+            if (n == orders.length)
+                grow();
+            orders[n] = ptr;
+            quantities[n] = withReserve ? ptr.getCurrentQuantity() + ptr.getHiddenQuantity() : ptr.getCurrentQuantity();
+            n++;
+        }
+        count = n;
+        first = 0;
+        topFill = 0;
+        return n;
+    }
+
+    // snapshot for top order priority matching. When the head alone covers toDistribute the rest of the level takes no
+    // part in the match, so only the head is copied.
+    int snapshotWithTop(Limit limit, int toDistribute, boolean withReserve)
+    {
+        Order head = limit.getHead();
+        int headQuantity = head == null ? 0 : withReserve ? head.getCurrentQuantity() + head.getHiddenQuantity() : head.getCurrentQuantity();
+        if (head == null || headQuantity < toDistribute)
+            return snapshot(limit, withReserve);
+
+        orders[0] = head;
+        quantities[0] = headQuantity;
+        count = 1;
+        first = 0;
+        topFill = 0;
+        return 1;
+    }
+
+    // top order priority: the head of the level takes up to its whole quantity before anything is shared out.
+    // Returns the qty allocated to it. Call before allocateProRata, which then splits over the rest of the level.
+    int allocateTop(int toDistribute)
+    {
+        topFill = Math.min(quantities[0], toDistribute);
+        first = 1;
+        return topFill;
+    }
+
+    // pro-rata share of every order in the snapshot. Returns the total allocated, which is at most toDistribute.
+    int allocateProRata(int toDistribute, int totalVolumeAtLimit)
+    {
+        int[] quantities = this.quantities;
+        int[] proRataFills = this.proRataFills;
+        int allocated = 0;
+        for (int i = first; i < count; i++)
+        {
+            int share = (int) ((long) quantities[i] * toDistribute / totalVolumeAtLimit);
+            int fill = Math.min(quantities[i], share);
+            proRataFills[i] = fill;
+            allocated += fill;
+        }
+        Arrays.fill(residueFills, first, count, 0);
+        return allocated;
+    }
+
+    // hands residue out in time priority on top of the pro-rata fills. Returns the total allocated.
+    int allocateResidue(int residue)
+    {
+        int allocated = 0;
+        for (int i = first; i < count && allocated < residue; i++)
+        {
+            int fill = Math.min(residue - allocated, quantities[i] - proRataFills[i]);
+            residueFills[i] = fill;
+            allocated += fill;
+        }
+        return allocated;
+    }
+
+    // books the allocation: one trade per non-zero fill, fully filled orders leave the book, partially filled ones keep
+    // their remainder. The incoming order's quantity is left to the caller.
+    void apply(Order incoming, Limit limit, Orderbook ob, AbstractOrderMatcher matcher)
+    {
+        int partiallyFilled = 0; // volume taken from orders that stay on the book
+        if (topFill > 0)
+            partiallyFilled += bookFill(incoming, limit, ob, matcher, 0, topFill, quantities[0] - topFill);
+        for (int i = first; i < count; i++)
+        {
+            int fill = proRataFills[i];
+            if (fill > 0)
+                partiallyFilled += bookFill(incoming, limit, ob, matcher, i, fill, quantities[i] - fill);
+        }
+        for (int i = first; i < count; i++)
+        {
+            int fill = residueFills[i];
+            if (fill > 0)
+                partiallyFilled += bookFill(incoming, limit, ob, matcher, i, fill, quantities[i] - proRataFills[i] - fill);
+        }
+
+        if (partiallyFilled > 0)
+            ob.reduceRestingVolume(limit, !incoming.isBuy(), partiallyFilled);
+
+        Arrays.fill(orders, 0, count, null); // don't keep recycled orders reachable
+        count = 0;
+        topFill = 0;
+    }
+
+    // hands the allocation to an auction instead of booking it: one fill per order with a non-zero allocation, in time
+    // priority. The book is left as it is.
+    void fillsTo(CallAuction auction)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int fill = i == 0 ? topFill : 0;
+            if (i >= first)
+                fill += proRataFills[i] + residueFills[i];
+            if (fill > 0)
+                auction.fill(orders[i], fill);
+        }
+
+        Arrays.fill(orders, 0, count, null);
+        count = 0;
+        topFill = 0;
+    }
+
+    // returns the volume still to take off the level and side totals, 0 if removeOrder already did
+    private int bookFill(Order incoming, Limit limit, Orderbook ob, AbstractOrderMatcher matcher, int i, int fill, int remainder)
+    {
+        Order resting = orders[i];
+        Trade trade = ob.acquireTrade(incoming.getSide(), limit.getPrice(), fill, resting.getOrderId(), incoming.getOrderId());
+        matcher.recordTrade(trade, ob);
+        if (remainder == 0)
+        {
+            ob.displayedQuantityFilled(resting); // removed, or refreshed if it is an iceberg. Either way the totals are done
+            return 0;
+        }
+        resting.setCurrentQuantity(remainder);
+        return fill;
+    }
+
+    private void grow()
+    {
+        int newLength = orders.length << 1;
+        orders = Arrays.copyOf(orders, newLength);
+        quantities = Arrays.copyOf(quantities, newLength);
+        proRataFills = Arrays.copyOf(proRataFills, newLength);
+        residueFills = Arrays.copyOf(residueFills, newLength);
+    }
+}
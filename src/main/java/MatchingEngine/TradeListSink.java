@@ -0,0 +1,25 @@
+package MatchingEngine;
+
+import Orders.Trade;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// keeps every trade in a list. This is the default sink so that tests can inspect the trades of a run, but it grows
+// for as long as the matcher runs - use a streaming sink for long runs.
+public class TradeListSink implements TradeListener {
+    @Getter private final List<Trade> trades = new ArrayList<>();
+
+    @Override
+    public void onTrade(Trade trade)
+    {
+        trades.add(trade);
+    }
+
+    @Override
+    public boolean retainsTrades()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,15 @@
+package MatchingEngine;
+
+import Orders.Trade;
+
+// receives every trade (execution report) a matcher produces, in the order they happen, on the matching thread.
+// With object pooling the Trade is handed back to the book's pool as soon as onTrade returns, so a listener that keeps
+// the object itself must say so with retainsTrades - the matcher then leaves releasing it to releaseTrades.
+public interface TradeListener {
+    void onTrade(Trade trade);
+
+    default boolean retainsTrades()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package MatchingEngine;
+
+import Orders.Side;
+import Orders.Trade;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded single producer / single consumer queue of trades for handing fills to another thread. The matching thread
+// copies each trade's fields into preallocated slots (the Trade object itself is not kept, so it works with pooling),
+// and a consumer thread drains them with drainTo. Neither side takes a lock.
+// When the ring is full the matching thread waits for the consumer instead of dropping trades.
+public class TradeRingBuffer implements TradeListener {
+    private final int mask;
+    private final long[] prices;
+    private final int[] volumes;
+    private final int[] makerIds;
+    private final int[] takerIds;
+    private final boolean[] buys;
+
+    private long produced = 0; // only touched by the producer
+    private long cachedConsumed = 0; // producer's last view of consumed
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Trade drained = new Trade(Side.BUY, 0, 0, 0, 0); // reused for every trade handed to the consumer
+
+    public TradeRingBuffer(int capacity)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a positive power of two.");
+
+        this.mask = capacity - 1;
+        this.prices = new long[capacity];
+        this.volumes = new int[capacity];
+        this.makerIds = new int[capacity];
+        this.takerIds = new int[capacity];
+        this.buys = new boolean[capacity];
+    }
+
+    @Override
+    public void onTrade(Trade trade)
+    {
+        if (produced - cachedConsumed > mask)
+        {
+            cachedConsumed = consumed.get();
+            while (produced - cachedConsumed > mask)
+            {
+                Thread.yield(); // full, let the consumer catch up
+                cachedConsumed = consumed.get();
+            }
+        }
+
+        int slot = (int) (produced & mask);
+        prices[slot] = trade.getPrice();
+        volumes[slot] = trade.getVolume();
+        makerIds[slot] = trade.getMakerId();
+        takerIds[slot] = trade.getTakerId();
+        buys[slot] = trade.getSide() == Side.BUY;
+        published.lazySet(++produced); // release store, the slot is written before the consumer can see it
+    }
+
+    // consumer side: hands up to maxTrades queued trades to the listener in order and returns how many. The Trade passed
+    // to the listener is reused for the next one, copy it to keep it.
+    public int drainTo(TradeListener listener, int maxTrades)
+    {
+        long from = consumed.get();
+        long available = published.get() - from;
+        int count = (int) Math.min(available, maxTrades);
+        for (int i = 0; i < count; i++)
+        {
+            int slot = (int) ((from + i) & mask);
+            drained.init(buys[slot] ? Side.BUY : Side.SELL, prices[slot], volumes[slot], makerIds[slot], takerIds[slot]);
+            listener.onTrade(drained);
+        }
+        consumed.lazySet(from + count);
+        return count;
+    }
+
+    // trades published but not drained yet
+    public int size()
+    {
+        return (int) (published.get() - consumed.get());
+    }
+
+    public int capacity()
+    {
+        return mask + 1;
+    }
+}
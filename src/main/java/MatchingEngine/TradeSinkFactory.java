@@ -0,0 +1,13 @@
+package MatchingEngine;
+
+public class TradeSinkFactory {
+    public static TradeListener createTradeSink(String tradeSink)
+    {
+        switch (tradeSink)
+        {
+            case "list": return new TradeListSink();
+            case "counting": return new CountingTradeSink();
+            default: throw new RuntimeException("trade sink invalid.");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package Orderbook;
+
+import lombok.Getter;
+
+// a reader's copy of the book's top of book, filled by TopOfBook.read. Reusable, so a reader polling the BBO doesn't
+// allocate. An empty side reads as price Orderbook.NO_BID (Long.MIN_VALUE) / Orderbook.NO_ASK (Long.MAX_VALUE), which
+// no order can have, with size and order count 0; hasBid / hasAsk say the same. version counts the top of book changes
+// published before this one.
+@Getter
+public class BboSnapshot {
+    private long bidPrice = Orderbook.NO_BID;
+    private int bidSize;
+    private int bidOrderCount;
+    private long askPrice = Orderbook.NO_ASK;
+    private int askSize;
+    private int askOrderCount;
+    private long version;
+
+    public boolean hasBid()
+    {
+        return bidPrice != Orderbook.NO_BID;
+    }
+
+    public boolean hasAsk()
+    {
+        return askPrice != Orderbook.NO_ASK;
+    }
+
+    void set(long bidPrice, int bidSize, int bidOrderCount, long askPrice, int askSize, int askOrderCount, long version)
+    {
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.bidOrderCount = bidOrderCount;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.askOrderCount = askOrderCount;
+        this.version = version;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BBO v" + version + ": " + bidSize + " (" + bidOrderCount + ") x " + bidPrice + "/" + askPrice + " x " + askSize + " (" + askOrderCount + ")";
+    }
+}
@@ -0,0 +1,29 @@
+package Orderbook;
+
+import Orders.Limit;
+
+import java.util.function.Predicate;
+
+// one side (bids or asks) of the book. Iteration always starts at the best price and walks outward, i.e. ascending
+// prices for asks and descending prices for bids.
+public interface BookSide extends Iterable<Limit> {
+    Limit get(long price);
+
+    void add(Limit limit);
+
+    boolean remove(Limit limit);
+
+    boolean contains(Limit limit);
+
+    // best limit level on this side, or null if the side is empty
+    Limit first();
+
+    // next limit level after the given one, moving away from the touch. null if there is none.
+    Limit higher(Limit limit);
+
+    boolean removeIf(Predicate<Limit> filter);
+
+    int size();
+
+    boolean isEmpty();
+}
@@ -0,0 +1,13 @@
+package Orderbook;
+
+public class BookSideFactory {
+    public static BookSide createBookSide(String bookStructure, boolean isBid)
+    {
+        switch (bookStructure)
+        {
+            case "treeset": return new TreeSetBookSide(isBid);
+            case "ladder": return new PriceLadder(isBid);
+            default: throw new RuntimeException("book structure invalid.");
+        }
+    }
+}
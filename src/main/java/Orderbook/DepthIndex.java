@@ -0,0 +1,188 @@
+package Orderbook;
+
+// Cumulative resting volume of one book side by price, kept in a Fenwick (binary indexed) tree so that "how much can
+// be filled up to price P" and "how far does a fill of Q go" are O(log levels) instead of a walk over the levels.
+// Slots are ticks in a window like PriceLadder's, but numbered from the touch end: slot 0 is the highest price of the
+// window for bids and the lowest for asks, so a prefix sum is always the volume at prices at least as good as the
+// slot's. The per-slot volumes are kept alongside the tree, to rebuild it in one linear pass when the window
+// re-centres or grows.
+public class DepthIndex {
+    public static final int DEFAULT_CAPACITY = 4096;
+    // widest range of prices the index can cover, 16 MB per side at most (volumes plus tree). Orderbook makes it the
+    // book's limit (Orderbook.MAX_PRICE_SPAN) and checks fits before an order can take a side past it.
+    public static final int MAX_CAPACITY = 1 << 20;
+    // returned by priceToFill when the whole side holds less than the quantity asked for
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final boolean isBid;
+    private long[] tree; // 1-based Fenwick tree over the slots
+    private long[] volumes; // volume per slot, indexed by price - baseTick
+    private long baseTick; // lowest price of the window
+    private long totalVolume = 0;
+    // lowest and highest prices with volume, only meaningful while there is some
+    private long lowestPrice;
+    private long highestPrice;
+
+    public DepthIndex(boolean isBid)
+    {
+        this(isBid, DEFAULT_CAPACITY);
+    }
+
+    public DepthIndex(boolean isBid, int capacity)
+    {
+        if (capacity <= 0 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+
+        int roundedCapacity = Integer.highestOneBit(capacity);
+        if (roundedCapacity < capacity)
+            roundedCapacity <<= 1; // a power of two, for the descent in priceToFill
+        this.isBid = isBid;
+        this.tree = new long[roundedCapacity + 1];
+        this.volumes = new long[roundedCapacity];
+    }
+
+    // volume added (> 0) or taken (< 0) at price
+    public void add(long price, long delta)
+    {
+        if (totalVolume == 0)
+        {
+            baseTick = price - volumes.length / 2; // every slot is 0, the window can simply move
+        }
+        else if (price < baseTick || price >= baseTick + volumes.length)
+        {
+            recentre(price);
+        }
+
+        int offset = (int) (price - baseTick);
+        boolean wasEmpty = totalVolume == 0;
+        volumes[offset] += delta;
+        totalVolume += delta;
+        for (int i = slot(offset) + 1; i < tree.length; i += i & -i)
+            tree[i] += delta;
+
+        if (wasEmpty)
+        {
+            lowestPrice = price;
+            highestPrice = price;
+        }
+        else if (delta > 0)
+        {
+            lowestPrice = Math.min(lowestPrice, price);
+            highestPrice = Math.max(highestPrice, price);
+        }
+        else if (volumes[offset] == 0 && totalVolume > 0 && (price == lowestPrice || price == highestPrice))
+        {
+            // an end of the range emptied: the new ends are the first and last slots a prefix sum reaches, O(log n)
+            long touch = priceToFill(1);
+            long far = priceToFill(totalVolume);
+            lowestPrice = isBid ? far : touch;
+            highestPrice = isBid ? touch : far;
+        }
+    }
+
+    // whether volume can be added at price without the window having to cover more than MAX_CAPACITY ticks, the range
+    // add would otherwise throw on. O(1).
+    public boolean fits(long price)
+    {
+        if (totalVolume == 0)
+            return true;
+        return Math.max(price, highestPrice) - Math.min(price, lowestPrice) < MAX_CAPACITY;
+    }
+
+    // volume resting at prices at least as good as price for a taker: at or above it for bids, at or below it for asks
+    public long volumeUpTo(long price)
+    {
+        if (totalVolume == 0)
+            return 0;
+
+        long offset = price - baseTick;
+        if (offset < 0)
+            return isBid ? totalVolume : 0;
+        if (offset >= volumes.length)
+            return isBid ? 0 : totalVolume;
+
+        long sum = 0;
+        for (int i = slot((int) offset) + 1; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    // the worst price a taker has to go to for qty, or NO_PRICE if the side doesn't hold that much. Descends the tree
+    // to the first slot whose prefix sum reaches qty.
+    public long priceToFill(long qty)
+    {
+        if (qty <= 0 || qty > totalVolume)
+            return NO_PRICE;
+
+        int position = 0;
+        long remaining = qty;
+        for (int step = volumes.length; step > 0; step >>= 1)
+        {
+            int next = position + step;
+            if (next < tree.length && tree[next] < remaining)
+            {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return priceOf(position); // position is now the 0-based slot the prefix sum reaches qty at
+    }
+
+    public long getTotalVolume()
+    {
+        return totalVolume;
+    }
+
+    public int capacity()
+    {
+        return volumes.length;
+    }
+
+    private int slot(int offset)
+    {
+        return isBid ? volumes.length - 1 - offset : offset;
+    }
+
+    private long priceOf(int slot)
+    {
+        return baseTick + (isBid ? volumes.length - 1 - slot : slot);
+    }
+
+    private void recentre(long price)
+    {
+        // same policy as PriceLadder.recentre: every price with volume plus the new one fits, with equal headroom on
+        // both sides, and the window only grows if that range is wider than the current capacity
+        int lowOffset = (int) (lowestPrice - baseTick);
+        int highOffset = (int) (highestPrice - baseTick);
+        long lowTick = Math.min(price, lowestPrice);
+        long highTick = Math.max(price, highestPrice);
+        long span = highTick - lowTick + 1;
+
+        int newCapacity = volumes.length;
+        while (span > newCapacity)
+        {
+            if (newCapacity >= MAX_CAPACITY)
+                throw new IllegalStateException("price range of " + span + " ticks does not fit in the depth index.");
+            newCapacity <<= 1;
+        }
+
+        long newBaseTick = lowTick - (newCapacity - span) / 2;
+        long[] newVolumes = new long[newCapacity];
+        int shift = (int) (baseTick - newBaseTick);
+        for (int offset = lowOffset; offset <= highOffset; offset++)
+            newVolumes[offset + shift] = volumes[offset];
+
+        volumes = newVolumes;
+        baseTick = newBaseTick;
+        tree = new long[newCapacity + 1];
+        for (int offset = 0; offset < newCapacity; offset++)
+            tree[slot(offset) + 1] = volumes[offset];
+        // linear build: every node passes its sum on to its parent once
+        for (int i = 1; i <= newCapacity; i++)
+        {
+            int parent = i + (i & -i);
+            if (parent <= newCapacity)
+                tree[parent] += tree[i];
+        }
+    }
+}
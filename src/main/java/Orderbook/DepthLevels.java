@@ -0,0 +1,57 @@
+package Orderbook;
+
+// one side of a DepthSnapshot: up to depth levels from the touch outwards, with each level's price, shown volume and
+// number of orders. Immutable once published.
+public class DepthLevels {
+    static final DepthLevels EMPTY = new DepthLevels(new long[0], new int[0], new int[0], 0);
+
+    private final long[] prices;
+    private final int[] volumes;
+    private final int[] orderCounts;
+    private final int size;
+
+    DepthLevels(long[] prices, int[] volumes, int[] orderCounts, int size)
+    {
+        this.prices = prices;
+        this.volumes = volumes;
+        this.orderCounts = orderCounts;
+        this.size = size;
+    }
+
+    // level 0 is the best price
+    public long getPrice(int level)
+    {
+        return prices[checkLevel(level)];
+    }
+
+    public int getVolume(int level)
+    {
+        return volumes[checkLevel(level)];
+    }
+
+    public int getOrderCount(int level)
+    {
+        return orderCounts[checkLevel(level)];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private int checkLevel(int level)
+    {
+        if (level >= size)
+            throw new IndexOutOfBoundsException("level " + level + " of " + size);
+        return level;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++)
+            sb.append(i == 0 ? "" : ", ").append(volumes[i]).append(" (").append(orderCounts[i]).append(") @ ").append(prices[i]);
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,107 @@
+package Orderbook;
+
+import Orders.Limit;
+
+// publishes immutable snapshots of the top depth levels of each side (price, shown volume, order count) for other
+// threads, kept up to date by the book's own thread. The book reports every level whose volume or orders change while
+// it works on an order (levelChanged), and publish() runs once the order is done: a side none of whose top levels
+// changed keeps its previous DepthLevels, and a changed side copies the levels in front of the first change from its
+// previous snapshot and only walks the book from there. Changes deeper than the published levels cost one compare.
+// The new DepthSnapshot is published with a volatile store, so readers never lock and never see a half-built one.
+public class DepthPublisher {
+    private final int depth;
+    private final Limit probe = new Limit(0); // search key for the level after an unchanged one
+    private volatile DepthSnapshot snapshot = DepthSnapshot.EMPTY;
+
+    // book thread only: the best changed price on each side since the last publish
+    private boolean bidsChanged = false;
+    private boolean asksChanged = false;
+    private long firstChangedBid;
+    private long firstChangedAsk;
+
+    public DepthPublisher(int depth)
+    {
+        if (depth <= 0)
+            throw new IllegalArgumentException("depth must be positive.");
+        this.depth = depth;
+    }
+
+    // from any thread
+    public DepthSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    // book thread: the level at price on one side has changed or appeared or gone
+    void levelChanged(boolean isBid, long price)
+    {
+        DepthLevels published = isBid ? snapshot.getBids() : snapshot.getAsks();
+        if (published.size() == depth && (isBid ? price < published.getPrice(depth - 1) : price > published.getPrice(depth - 1)))
+            return; // behind the published levels
+
+        if (isBid)
+        {
+            if (!bidsChanged || price > firstChangedBid)
+                firstChangedBid = price;
+            bidsChanged = true;
+        }
+        else
+        {
+            if (!asksChanged || price < firstChangedAsk)
+                firstChangedAsk = price;
+            asksChanged = true;
+        }
+    }
+
+    // book thread, once it is done with an order
+    void publish(BookSide bidLimits, BookSide askLimits)
+    {
+        if (!bidsChanged && !asksChanged)
+            return;
+
+        DepthSnapshot previous = snapshot;
+        DepthLevels bids = bidsChanged ? rebuild(previous.getBids(), bidLimits, true, firstChangedBid) : previous.getBids();
+        DepthLevels asks = asksChanged ? rebuild(previous.getAsks(), askLimits, false, firstChangedAsk) : previous.getAsks();
+        bidsChanged = false;
+        asksChanged = false;
+        snapshot = new DepthSnapshot(previous.getVersion() + 1, bids, asks);
+    }
+
+    private DepthLevels rebuild(DepthLevels previous, BookSide side, boolean isBid, long firstChanged)
+    {
+        // levels in front of the first change are the same as last time
+        int unchanged = 0;
+        while (unchanged < previous.size() && (isBid ? previous.getPrice(unchanged) > firstChanged : previous.getPrice(unchanged) < firstChanged))
+            unchanged++;
+
+        long[] prices = new long[depth];
+        int[] volumes = new int[depth];
+        int[] orderCounts = new int[depth];
+        for (int i = 0; i < unchanged; i++)
+        {
+            prices[i] = previous.getPrice(i);
+            volumes[i] = previous.getVolume(i);
+            orderCounts[i] = previous.getOrderCount(i);
+        }
+
+        int size = unchanged;
+        Limit level = unchanged == 0 ? side.first() : side.higher(probe.init(prices[unchanged - 1]));
+        while (level != null && size < depth)
+        {
+            if (!level.isEmpty())
+            {
+                prices[size] = level.getPrice();
+                volumes[size] = level.getTotalVolumeAtLimit();
+                orderCounts[size] = level.getOrderCount();
+                size++;
+            }
+            level = side.higher(level);
+        }
+        return new DepthLevels(prices, volumes, orderCounts, size);
+    }
+}
@@ -0,0 +1,27 @@
+package Orderbook;
+
+import lombok.Getter;
+
+// an immutable view of the top levels of both sides of the book, as published by a DepthPublisher. version counts
+// the published changes, so a reader can tell whether anything moved since its last look.
+@Getter
+public class DepthSnapshot {
+    static final DepthSnapshot EMPTY = new DepthSnapshot(0, DepthLevels.EMPTY, DepthLevels.EMPTY);
+
+    private final long version;
+    private final DepthLevels bids;
+    private final DepthLevels asks;
+
+    DepthSnapshot(long version, DepthLevels bids, DepthLevels asks)
+    {
+        this.version = version;
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "depth v" + version + " bids " + bids + " asks " + asks;
+    }
+}
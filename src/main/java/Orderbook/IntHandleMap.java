@@ -0,0 +1,80 @@
+package Orderbook;
+
+import java.util.Arrays;
+
+// orderId -> order handle map for OffHeapOrderbook. IntOrderMap with primitive int handles for values, NULL marking an
+// empty slot; the probing is IntKeyTable's.
+public class IntHandleMap extends IntKeyTable<int[]> {
+    public static final int NULL = OffHeapOrderStore.NULL;
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+    public IntHandleMap()
+    {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    public IntHandleMap(int expectedSize)
+    {
+        super(expectedSize);
+    }
+
+    public int get(int key)
+    {
+        int i = find(key);
+        return i < 0 ? NULL : values[i];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return find(key) >= 0;
+    }
+
+    public int put(int key, int value)
+    {
+        if (value == NULL)
+            throw new IllegalArgumentException("NULL values are not supported.");
+
+        int i = findOrEmpty(key);
+        int previous = values[i];
+        values[i] = value;
+        if (previous == NULL)
+            inserted(i, key);
+        return previous;
+    }
+
+    public int remove(int key)
+    {
+        int i = find(key);
+        if (i < 0)
+            return NULL;
+        int removed = values[i];
+        delete(i);
+        return removed;
+    }
+
+    @Override
+    int[] newValues(int capacity)
+    {
+        int[] values = new int[capacity];
+        Arrays.fill(values, NULL);
+        return values;
+    }
+
+    @Override
+    boolean isEmpty(int[] values, int slot)
+    {
+        return values[slot] == NULL;
+    }
+
+    @Override
+    void copy(int[] from, int fromSlot, int[] to, int toSlot)
+    {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    void clear(int[] values, int slot)
+    {
+        values[slot] = NULL;
+    }
+}
@@ -0,0 +1,133 @@
+package Orderbook;
+
+// the probing core shared by the primitive int keyed maps (IntOrderMap, IntHandleMap): open addressing with linear
+// probing over a flat key array, backward-shift deletion (no tombstones) and doubling at a load factor of 0.5. The
+// values live in a parallel array of type A owned by the subclass, which also says which value marks an empty slot.
+abstract class IntKeyTable<A> {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    protected A values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+
+    IntKeyTable(int expectedSize)
+    {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expectedSize must not be negative.");
+        allocate(capacityFor(expectedSize));
+    }
+
+    abstract A newValues(int capacity); // every slot empty
+    abstract boolean isEmpty(A values, int slot);
+    abstract void copy(A from, int fromSlot, A to, int toSlot);
+    abstract void clear(A values, int slot);
+
+    // the slot holding key, or -1
+    final int find(int key)
+    {
+        for (int i = slot(key); ; i = (i + 1) & mask)
+        {
+            if (isEmpty(values, i))
+                return -1;
+            if (keys[i] == key)
+                return i;
+        }
+    }
+
+    // the slot holding key or, if it isn't there, the empty slot it goes into (see inserted)
+    final int findOrEmpty(int key)
+    {
+        int i = slot(key);
+        while (!isEmpty(values, i) && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    // a value was just written to the empty slot findOrEmpty returned for key
+    final void inserted(int slot, int key)
+    {
+        keys[slot] = key;
+        if (++size > resizeThreshold)
+            rehash(capacity() << 1);
+    }
+
+    // empties a slot find returned: walks the rest of the cluster and moves back every entry whose home slot is at or
+    // before the hole, so that no lookup ever has to skip over a deleted slot
+    final void delete(int slot)
+    {
+        int hole = slot;
+        for (int j = (slot + 1) & mask; !isEmpty(values, j); j = (j + 1) & mask)
+        {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask))
+            {
+                keys[hole] = keys[j];
+                copy(values, j, values, hole);
+                hole = j;
+            }
+        }
+        clear(values, hole);
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int capacity()
+    {
+        return mask + 1;
+    }
+
+    private int slot(int key)
+    {
+        int h = key * 0x9E3779B9; // fibonacci hashing spreads sequential order ids across the table
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize)
+    {
+        // keep the load factor at or below 0.5
+        long capacity = Math.max(16, Long.highestOneBit(Math.max(1L, (long) expectedSize * 2 - 1)) << 1);
+        return (int) Math.min(capacity, MAX_CAPACITY);
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = newValues(capacity);
+        mask = capacity - 1;
+        resizeThreshold = capacity >>> 1;
+    }
+
+    private void rehash(int newCapacity)
+    {
+        if (newCapacity > MAX_CAPACITY)
+            throw new IllegalStateException(getClass().getSimpleName() + " cannot grow beyond " + MAX_CAPACITY + " slots.");
+
+        int oldCapacity = capacity();
+        int[] oldKeys = keys;
+        A oldValues = values;
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldCapacity; i++)
+        {
+            if (!isEmpty(oldValues, i))
+            {
+                int j = slot(oldKeys[i]);
+                while (!isEmpty(values, j))
+                    j = (j + 1) & mask;
+                keys[j] = oldKeys[i];
+                copy(oldValues, i, values, j);
+            }
+        }
+    }
+}
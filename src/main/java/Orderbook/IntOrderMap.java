@@ -0,0 +1,78 @@
+package Orderbook;
+
+import Orders.Order;
+
+// orderId -> Order map specialised for primitive int keys. Open addressing with linear probing: keys and values sit in
+// two flat arrays, so a lookup never boxes the key or allocates a node, and removals use backward-shift deletion
+// (no tombstones) so probe sequences stay short under heavy add/cancel churn. The probing is IntKeyTable's.
+public class IntOrderMap extends IntKeyTable<Order[]> {
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+    public IntOrderMap()
+    {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    public IntOrderMap(int expectedSize)
+    {
+        super(expectedSize);
+    }
+
+    public Order get(int key)
+    {
+        int i = find(key);
+        return i < 0 ? null : values[i];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return find(key) >= 0;
+    }
+
+    public Order put(int key, Order value)
+    {
+        if (value == null)
+            throw new IllegalArgumentException("null values are not supported.");
+
+        int i = findOrEmpty(key);
+        Order previous = values[i];
+        values[i] = value;
+        if (previous == null)
+            inserted(i, key);
+        return previous;
+    }
+
+    public Order remove(int key)
+    {
+        int i = find(key);
+        if (i < 0)
+            return null;
+        Order removed = values[i];
+        delete(i);
+        return removed;
+    }
+
+    @Override
+    Order[] newValues(int capacity)
+    {
+        return new Order[capacity]; // null marks an empty slot
+    }
+
+    @Override
+    boolean isEmpty(Order[] values, int slot)
+    {
+        return values[slot] == null;
+    }
+
+    @Override
+    void copy(Order[] from, int fromSlot, Order[] to, int toSlot)
+    {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    void clear(Order[] values, int slot)
+    {
+        values[slot] = null;
+    }
+}
@@ -0,0 +1,52 @@
+package Orderbook;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+// Free list of reusable objects. acquire() hands back a previously released object if there is one and only falls back
+// to the factory when the free list is empty, so once a book has warmed up the steady state doesn't allocate.
+// Not thread safe - each pool is owned by a single Orderbook.
+public class ObjectPool<T> {
+    private final Supplier<T> factory;
+    private Object[] free;
+    private int freeCount = 0;
+    @Getter private long created = 0; // number of objects the pool has had to allocate
+
+    public ObjectPool(Supplier<T> factory, int initialSize)
+    {
+        this.factory = factory;
+        this.free = new Object[Math.max(16, initialSize)];
+        for (int i = 0; i < initialSize; i++)
+        {
+            free[freeCount++] = factory.get();
+            created++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T acquire()
+    {
+        if (freeCount == 0)
+        {
+            created++;
+            return factory.get();
+        }
+        T item = (T) free[--freeCount];
+        free[freeCount] = null;
+        return item;
+    }
+
+    public void release(T item)
+    {
+        if (freeCount == free.length)
+            free = Arrays.copyOf(free, free.length << 1);
+        free[freeCount++] = item;
+    }
+
+    public int available()
+    {
+        return freeCount;
+    }
+}
@@ -0,0 +1,148 @@
+package Orderbook;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Struct-of-arrays order storage outside of the Java heap. Every order field is a column in its own direct ByteBuffer
+// and an order is just an int handle (row number) into those columns, so a resting order costs 37 bytes of off-heap
+// memory and no heap object at all - the GC has nothing to trace no matter how deep the book is.
+// Freed handles are chained through the next column and reused before the store grows.
+// Not thread safe - owned by a single OffHeapOrderbook.
+public class OffHeapOrderStore {
+    public static final int NULL = -1;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE >>> 3; // largest row count an 8 byte column can index
+
+    private ByteBuffer orderIds;   // int
+    private ByteBuffer quantities; // int
+    private ByteBuffer prices;     // long, in ticks
+    private ByteBuffer sides;      // byte, 1 = buy
+    private ByteBuffer timestamps; // long
+    private ByteBuffer nexts;      // int handle, towards the tail of the level
+    private ByteBuffer prevs;      // int handle, towards the head of the level
+    private ByteBuffer levels;     // int, level handle owned by OffHeapOrderbook
+
+    private int capacity;
+    private int used = 0;  // rows that have ever been handed out
+    private int size = 0;  // live rows
+    private int freeHead = NULL;
+
+    public OffHeapOrderStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OffHeapOrderStore(int initialCapacity)
+    {
+        if (initialCapacity <= 0 || initialCapacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("initialCapacity must be between 1 and " + MAX_CAPACITY);
+        allocate(initialCapacity);
+    }
+
+    public int allocate(int orderId, boolean isBuy, int quantity, long price, long timestamp)
+    {
+        int handle;
+        if (freeHead != NULL)
+        {
+            handle = freeHead;
+            freeHead = getNext(handle);
+        }
+        else
+        {
+            if (used == capacity)
+                grow();
+            handle = used++;
+        }
+
+        orderIds.putInt(handle << 2, orderId);
+        quantities.putInt(handle << 2, quantity);
+        prices.putLong(handle << 3, price);
+        sides.put(handle, (byte) (isBuy ? 1 : 0));
+        timestamps.putLong(handle << 3, timestamp);
+        nexts.putInt(handle << 2, NULL);
+        prevs.putInt(handle << 2, NULL);
+        levels.putInt(handle << 2, NULL);
+        size++;
+        return handle;
+    }
+
+    public void free(int handle)
+    {
+        nexts.putInt(handle << 2, freeHead);
+        freeHead = handle;
+        size--;
+    }
+
+    public int getOrderId(int handle) { return orderIds.getInt(handle << 2); }
+
+    public int getQuantity(int handle) { return quantities.getInt(handle << 2); }
+
+    public void setQuantity(int handle, int quantity) { quantities.putInt(handle << 2, quantity); }
+
+    public long getPrice(int handle) { return prices.getLong(handle << 3); }
+
+    public boolean isBuy(int handle) { return sides.get(handle) == 1; }
+
+    public long getTimestamp(int handle) { return timestamps.getLong(handle << 3); }
+
+    public int getNext(int handle) { return nexts.getInt(handle << 2); }
+
+    public void setNext(int handle, int next) { nexts.putInt(handle << 2, next); }
+
+    public int getPrev(int handle) { return prevs.getInt(handle << 2); }
+
+    public void setPrev(int handle, int prev) { prevs.putInt(handle << 2, prev); }
+
+    public int getLevel(int handle) { return levels.getInt(handle << 2); }
+
+    public void setLevel(int handle, int level) { levels.putInt(handle << 2, level); }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    // off-heap bytes reserved by the columns
+    public long offHeapBytes()
+    {
+        return (long) capacity * bytesPerOrder();
+    }
+
+    public static int bytesPerOrder()
+    {
+        return 4 + 4 + 8 + 1 + 8 + 4 + 4 + 4;
+    }
+
+    private void allocate(int newCapacity)
+    {
+        orderIds = column(orderIds, newCapacity, 4);
+        quantities = column(quantities, newCapacity, 4);
+        prices = column(prices, newCapacity, 8);
+        sides = column(sides, newCapacity, 1);
+        timestamps = column(timestamps, newCapacity, 8);
+        nexts = column(nexts, newCapacity, 4);
+        prevs = column(prevs, newCapacity, 4);
+        levels = column(levels, newCapacity, 4);
+        capacity = newCapacity;
+    }
+
+    private void grow()
+    {
+        if (capacity == MAX_CAPACITY)
+            throw new IllegalStateException("OffHeapOrderStore cannot grow beyond " + MAX_CAPACITY + " orders.");
+        allocate((int) Math.min((long) capacity << 1, MAX_CAPACITY));
+    }
+
+    private static ByteBuffer column(ByteBuffer old, int capacity, int width)
+    {
+        ByteBuffer column = ByteBuffer.allocateDirect(capacity * width).order(ByteOrder.nativeOrder());
+        if (old != null)
+            column.put(old.clear()); // the old buffer is released once it becomes unreachable
+        return column.clear();
+    }
+}
@@ -0,0 +1,392 @@
+package Orderbook;
+
+import MatchingEngine.TradeListSink;
+import MatchingEngine.TradeListener;
+import Orders.Side;
+import Orders.Trade;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Alternative storage backend for the book with price-time matching. Orders live in an OffHeapOrderStore and are
+// referenced by int handle everywhere (level FIFO links, orderId index), so a resting order is not a heap object.
+// Limit levels are rows in a few small on-heap arrays addressed by level handle, and each side keeps its level handles
+// sorted by price with the best level at the end, so the touch is always the last element.
+// The semantics mirror Orderbook with the PriceTimePriorityMatcher: a market order for at least the whole opposite side
+// is rejected, an aggressive limit order sweeps every opposite level within its limit price, touch first, and rests any
+// remainder at its own limit price under its own id (even if it emptied the opposite side), and amends are a cancel +
+// re-add under a new order id.
+public class OffHeapOrderbook {
+    private static final Logger logger = LogManager.getLogger(OffHeapOrderbook.class);
+    private static final int NULL = OffHeapOrderStore.NULL;
+    private static final int INITIAL_LEVEL_CAPACITY = 256;
+
+    @Getter private final OffHeapOrderStore store;
+    private final IntHandleMap orderIndex; // orderId -> handle
+    @Getter @Setter private TradeListener tradeListener = new TradeListSink();
+    private final Trade scratchTrade = new Trade(Side.BUY, 0, 0, 0, 0); // handed to listeners that don't keep trades
+
+    // limit levels, indexed by level handle
+    private long[] levelPrice = new long[INITIAL_LEVEL_CAPACITY];
+    private int[] levelHead = new int[INITIAL_LEVEL_CAPACITY];
+    private int[] levelTail = new int[INITIAL_LEVEL_CAPACITY]; // doubles as the free list link for unused levels
+    private int[] levelVolume = new int[INITIAL_LEVEL_CAPACITY];
+    private int levelsUsed = 0;
+    private int freeLevel = NULL;
+
+    private final SortedLevels bids = new SortedLevels(true);
+    private final SortedLevels asks = new SortedLevels(false);
+
+    private int nextAvailableOrderId;
+    @Getter private int totalBidSize = 0;
+    @Getter private int totalAskSize = 0;
+
+    public OffHeapOrderbook()
+    {
+        this(1024);
+    }
+
+    public OffHeapOrderbook(int initialOrderCapacity)
+    {
+        this.store = new OffHeapOrderStore(Math.max(1, initialOrderCapacity));
+        this.orderIndex = new IntHandleMap(initialOrderCapacity);
+    }
+
+    // returns the id the order was given. Passive orders keep it, aggressive orders use it as the taker id on trades.
+    public int addOrder(Side side, int quantity, long price)
+    {
+        if (price == Orderbook.NO_BID || price == Orderbook.NO_ASK)
+            throw new IllegalArgumentException("price " + price + " marks an empty side, it can't be an order's.");
+        int orderId = nextAvailableOrderId;
+        boolean isBuy = side == Side.BUY;
+
+        if ((isBuy && price >= getBestAsk()) || (!isBuy && price <= getBestBid()))
+        {
+            matchAggressiveLimitOrder(isBuy, quantity, price, orderId);
+            return orderId;
+        }
+
+        int handle = store.allocate(orderId, isBuy, quantity, price, System.nanoTime());
+        SortedLevels levels = isBuy ? bids : asks;
+        int index = levels.indexOf(price);
+        int level;
+        if (index >= 0)
+        {
+            level = levels.levels[index];
+        }
+        else
+        {
+            level = acquireLevel(price);
+            levels.insert(-index - 1, price, level);
+        }
+
+        // append to the level's FIFO
+        store.setLevel(handle, level);
+        int tail = levelTail[level];
+        if (tail == NULL)
+        {
+            levelHead[level] = handle;
+        }
+        else
+        {
+            store.setNext(tail, handle);
+            store.setPrev(handle, tail);
+        }
+        levelTail[level] = handle;
+        levelVolume[level] += quantity;
+
+        if (isBuy)
+            totalBidSize += quantity;
+        else
+            totalAskSize += quantity;
+
+        orderIndex.put(orderId, handle);
+        nextAvailableOrderId = orderId + 1;
+        return orderId;
+    }
+
+    public int addMarketOrder(Side side, int quantity)
+    {
+        int orderId = nextAvailableOrderId;
+        matchMarketOrder(side == Side.BUY, quantity, orderId);
+        return orderId;
+    }
+
+    public void removeOrder(int orderId)
+    {
+        int handle = orderIndex.remove(orderId);
+        if (handle == NULL)
+            return;
+
+        boolean isBuy = store.isBuy(handle);
+        int quantity = store.getQuantity(handle);
+        int level = store.getLevel(handle);
+        unlink(handle, level);
+        levelVolume[level] -= quantity;
+        if (isBuy)
+            totalBidSize -= quantity;
+        else
+            totalAskSize -= quantity;
+
+        if (levelHead[level] == NULL)
+        {
+            SortedLevels levels = isBuy ? bids : asks;
+            levels.removeAt(levels.indexOf(levelPrice[level]));
+            releaseLevel(level);
+        }
+        store.free(handle);
+    }
+
+    public void modifyOrderQty(int orderId, int qty)
+    {
+        int handle = orderIndex.get(orderId);
+        if (handle == NULL)
+            return;
+
+        Side side = store.isBuy(handle) ? Side.BUY : Side.SELL;
+        long price = store.getPrice(handle);
+        removeOrder(orderId);
+        addOrder(side, qty, price);
+    }
+
+    public boolean containsOrder(int orderId)
+    {
+        return orderIndex.containsKey(orderId);
+    }
+
+    // every trade so far. Only available while the default TradeListSink is installed.
+    public List<Trade> getTrades()
+    {
+        if (!(tradeListener instanceof TradeListSink))
+            throw new IllegalStateException("trades are streamed to " + tradeListener.getClass().getSimpleName() + ", not kept in a list.");
+        return ((TradeListSink) tradeListener).getTrades();
+    }
+
+    public int getOrderCount()
+    {
+        return store.size();
+    }
+
+    public long getBestBid()
+    {
+        return bids.count == 0 ? Orderbook.NO_BID : bids.prices[bids.count - 1];
+    }
+
+    public long getBestAsk()
+    {
+        return asks.count == 0 ? Orderbook.NO_ASK : asks.prices[asks.count - 1];
+    }
+
+    public int getBestBidSize()
+    {
+        return bids.count == 0 ? -1 : levelVolume[bids.levels[bids.count - 1]];
+    }
+
+    public int getBestAskSize()
+    {
+        return asks.count == 0 ? -1 : levelVolume[asks.levels[asks.count - 1]];
+    }
+
+    // total resting volume at the given price, 0 if there is no level there
+    public int getVolumeAtPrice(Side side, long price)
+    {
+        SortedLevels levels = side == Side.BUY ? bids : asks;
+        int index = levels.indexOf(price);
+        return index < 0 ? 0 : levelVolume[levels.levels[index]];
+    }
+
+    public int getLevelCount(Side side)
+    {
+        return side == Side.BUY ? bids.count : asks.count;
+    }
+
+    private void matchMarketOrder(boolean isBuy, int quantity, int takerId)
+    {
+        int totalSize = isBuy ? totalAskSize : totalBidSize;
+        if (quantity >= totalSize)
+        {
+            logger.error("order qty ({}) is greater than the total aggressive size ({}). Not matching.", quantity, totalSize);
+            return;
+        }
+
+        SortedLevels levels = isBuy ? asks : bids;
+        int remaining = quantity;
+        while (remaining > 0)
+            remaining = matchAtTouch(levels, isBuy, remaining, takerId);
+    }
+
+    private void matchAggressiveLimitOrder(boolean isBuy, int quantity, long price, int takerId)
+    {
+        SortedLevels levels = isBuy ? asks : bids;
+        int remaining = quantity;
+        // the best level sits at the end of the array, keep taking it while it is within the order's limit price
+        while (remaining > 0 && levels.count > 0 && (isBuy ? levels.prices[levels.count - 1] <= price : levels.prices[levels.count - 1] >= price))
+            remaining = matchAtTouch(levels, isBuy, remaining, takerId);
+
+        // the remainder rests at the order's own price, under the same id (addOrder only moved past it for passive orders)
+        if (remaining > 0)
+            addOrder(isBuy ? Side.BUY : Side.SELL, remaining, price);
+    }
+
+    // walks the FIFO of the best level on the given side by handle, filling up to quantity. A level that is fully
+    // consumed is popped off the end of the side. Returns the unfilled quantity.
+    private int matchAtTouch(SortedLevels levels, boolean isBuy, int quantity, int takerId)
+    {
+        int level = levels.levels[levels.count - 1];
+        long price = levelPrice[level];
+        Side takerSide = isBuy ? Side.BUY : Side.SELL;
+        int filled = 0;
+
+        int handle = levelHead[level];
+        while (handle != NULL && quantity > 0)
+        {
+            int restingQty = store.getQuantity(handle);
+            int next = store.getNext(handle);
+            int makerId = store.getOrderId(handle);
+            if (quantity >= restingQty)
+            {
+                recordTrade(takerSide, price, restingQty, makerId, takerId);
+                quantity -= restingQty;
+                filled += restingQty;
+                unlink(handle, level);
+                orderIndex.remove(makerId);
+                store.free(handle);
+            }
+            else
+            {
+                recordTrade(takerSide, price, quantity, makerId, takerId);
+                store.setQuantity(handle, restingQty - quantity);
+                filled += quantity;
+                quantity = 0;
+            }
+            handle = next;
+        }
+
+        levelVolume[level] -= filled;
+        if (isBuy)
+            totalAskSize -= filled;
+        else
+            totalBidSize -= filled;
+
+        if (levelHead[level] == NULL)
+        {
+            levels.count--;
+            releaseLevel(level);
+        }
+        return quantity;
+    }
+
+    private void recordTrade(Side side, long price, int volume, int makerId, int takerId)
+    {
+        if (tradeListener.retainsTrades())
+            tradeListener.onTrade(new Trade(side, price, volume, makerId, takerId));
+        else
+            tradeListener.onTrade(scratchTrade.init(side, price, volume, makerId, takerId));
+    }
+
+    private void unlink(int handle, int level)
+    {
+        int prev = store.getPrev(handle);
+        int next = store.getNext(handle);
+        if (prev == NULL)
+            levelHead[level] = next;
+        else
+            store.setNext(prev, next);
+        if (next == NULL)
+            levelTail[level] = prev;
+        else
+            store.setPrev(next, prev);
+    }
+
+    private int acquireLevel(long price)
+    {
+        int level;
+        if (freeLevel != NULL)
+        {
+            level = freeLevel;
+            freeLevel = levelTail[level];
+        }
+        else
+        {
+            if (levelsUsed == levelPrice.length)
+            {
+                int newCapacity = levelsUsed << 1;
+                levelPrice = Arrays.copyOf(levelPrice, newCapacity);
+                levelHead = Arrays.copyOf(levelHead, newCapacity);
+                levelTail = Arrays.copyOf(levelTail, newCapacity);
+                levelVolume = Arrays.copyOf(levelVolume, newCapacity);
+            }
+            level = levelsUsed++;
+        }
+
+        levelPrice[level] = price;
+        levelHead[level] = NULL;
+        levelTail[level] = NULL;
+        levelVolume[level] = 0;
+        return level;
+    }
+
+    private void releaseLevel(int level)
+    {
+        levelTail[level] = freeLevel;
+        freeLevel = level;
+    }
+
+    // level handles of one side kept sorted so that the best price is the last element: ascending prices for bids,
+    // descending for asks. Levels cluster around the touch, so inserts and removes shift very few elements.
+    private static final class SortedLevels {
+        private final boolean isBid;
+        private long[] prices = new long[64];
+        private int[] levels = new int[64];
+        private int count = 0;
+
+        private SortedLevels(boolean isBid)
+        {
+            this.isBid = isBid;
+        }
+
+        // index of price, or -(insertion point) - 1 if there is no level at that price
+        private int indexOf(long price)
+        {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                long midPrice = prices[mid];
+                if (midPrice == price)
+                    return mid;
+                if (isBid ? midPrice < price : midPrice > price)
+                    lo = mid + 1;
+                else
+                    hi = mid - 1;
+            }
+            return -(lo + 1);
+        }
+
+        private void insert(int index, long price, int level)
+        {
+            if (count == prices.length)
+            {
+                prices = Arrays.copyOf(prices, count << 1);
+                levels = Arrays.copyOf(levels, count << 1);
+            }
+            System.arraycopy(prices, index, prices, index + 1, count - index);
+            System.arraycopy(levels, index, levels, index + 1, count - index);
+            prices[index] = price;
+            levels[index] = level;
+            count++;
+        }
+
+        private void removeAt(int index)
+        {
+            System.arraycopy(prices, index + 1, prices, index, count - index - 1);
+            System.arraycopy(levels, index + 1, levels, index, count - index - 1);
+            count--;
+        }
+    }
+}
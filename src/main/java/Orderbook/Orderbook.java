@@ -1,5 +1,6 @@
 package Orderbook;
 
+import Journal.EventJournal;
 import MatchingEngine.AbstractOrderMatcher;
 import Orders.*;
 import lombok.Getter;
@@ -11,68 +12,350 @@ import java.util.*;
 
 public class Orderbook {
     private static final Logger logger = LogManager.getLogger(Orderbook.class);
+    public static final int NO_ORDER_ID = -1;
+    // best price before the first order arrives on a side. They sit below/above every real price, so the first order
+    // on a side always becomes the best, and they are never a price an order can have: an order priced at either is
+    // rejected, so a reader seeing one knows the side is empty.
+    public static final long NO_BID = Long.MIN_VALUE;
+    public static final long NO_ASK = Long.MAX_VALUE;
+    // returned by uncross when nothing crossed
+    public static final long NO_AUCTION_PRICE = Long.MIN_VALUE;
+    // the widest range of prices, in ticks, one side of the book may hold: the range its depth index covers. A limit
+    // order or price amend priced where it couldn't rest within it is rejected before it touches the book, whether or
+    // not it would have traded first.
+    public static final int MAX_PRICE_SPAN = DepthIndex.MAX_CAPACITY;
 
-    @Getter private TreeSet<Limit> askLimits = new TreeSet<>(new AskLimitComparator());
-    @Getter private TreeSet<Limit> bidLimits = new TreeSet<>(new BidLimitComparator());
-    @Getter private HashMap<Integer, Order> orderMap = new HashMap<>();
+    @Getter private final BookSide askLimits;
+    @Getter private final BookSide bidLimits;
+    @Getter private final IntOrderMap orderMap;
     @Getter private AbstractOrderMatcher matchingEngine;
-    private int nextAvailableOrderId;
-    @Getter private double bestBid = Integer.MIN_VALUE;
-    @Getter private double bestAsk = Integer.MAX_VALUE;
-    @Getter @Setter private int totalAskSize = 0;
-    @Getter @Setter private int totalBidSize = 0;
-
-    @Getter private HashMap<Double, ListMap<Integer>> buyOrderIds = new HashMap<>();
-    @Getter private HashMap<Double, ListMap<Integer>> sellOrderIds = new HashMap<>();
+    @Getter private int nextAvailableOrderId; // the id the next order to rest gets. Takers that never rest share it
+    @Getter private long bestBid = NO_BID;
+    @Getter private long bestAsk = NO_ASK;
+    @Getter private int totalAskSize = 0;
+    @Getter private int totalBidSize = 0;
+    // iceberg reserves, not part of the totals above (which are what the book shows)
+    @Getter private int hiddenAskSize = 0;
+    @Getter private int hiddenBidSize = 0;
+    // cumulative resting volume by price, for liquidity questions (fill-or-kill, volume up to a price, price for a
+    // quantity) that would otherwise walk the levels. Kept in step with every add, removal and partial fill. Iceberg
+    // reserves are included, they can be matched. Each side spans at most MAX_PRICE_SPAN ticks.
+    @Getter private final DepthIndex bidDepth = new DepthIndex(true);
+    @Getter private final DepthIndex askDepth = new DepthIndex(false);
+    // stop orders waiting for their trigger price. Stops triggered by an order's trades enter the book once that order
+    // is done, one after the other, and whatever they trigger in turn joins the queue: a cascade is a loop here
+    // (activateTriggeredStops), never a recursion into addOrder.
+    @Getter private final StopBook stopBook = new StopBook();
 
     private Random random;
 
+    // object pooling mode: orders and trades are recycled through these free lists instead of being left to the GC.
+    // Orders are released when removeOrder unlinks them, trades when the matcher hands them back
+    // (AbstractOrderMatcher.releaseTrades). Limit levels never leave the book, so they are always recycled, whatever
+    // the pooling mode: an emptied level goes back to limitPool and is reused for the next new level at any price.
+    private final boolean pooling;
+    @Getter private final ObjectPool<Order> orderPool = new ObjectPool<>(() -> new Order(0, Side.BUY, 0), 0);
+    @Getter private final ObjectPool<Limit> limitPool = new ObjectPool<>(() -> new Limit(0), 0);
+    @Getter private final ObjectPool<Trade> tradePool = new ObjectPool<>(() -> new Trade(Side.BUY, 0, 0, 0, 0), 0);
+
+    // levels that were emptied during the current match. They can't be taken out of the tree while the matcher is
+    // iterating it, so they are collected here and removed one by one in clearEmptyLimitsAfterMatching, instead of
+    // filtering the whole side for empty levels after every aggressive order.
+    private Limit[] emptiedBidLimits = new Limit[16];
+    private int emptiedBidCount = 0;
+    private Limit[] emptiedAskLimits = new Limit[16];
+    private int emptiedAskCount = 0;
+
+    // production mode: when a journal is set, every add/cancel/amend/fill and every change of the BBO is written to it
+    // as a binary record. Text logging is expected to be switched off in that mode (see RunSimulation).
+    @Setter private EventJournal journal;
+    private long journaledBestBid = NO_BID;
+    private long journaledBestAsk = NO_ASK;
+    private int journaledBestBidSize = -1;
+    private int journaledBestAskSize = -1;
+    // when set, every change of the top of book (best prices, their sizes and order counts) is published to it, for
+    // other threads to read while this one keeps matching
+    @Getter @Setter private TopOfBook topOfBook;
+    // when set, keeps immutable snapshots of the top levels of both sides up to date for other threads, see DepthPublisher
+    @Getter @Setter private DepthPublisher depthPublisher;
+
+    // call auction mode: limit orders are collected without matching (crossing ones simply rest, the book can be
+    // crossed), market orders are rejected, and uncross executes everything that crosses at one price. With a batch
+    // auction interval the book stays in auction mode and uncrosses on its own every batchAuctionInterval orders.
+    @Getter private boolean inAuction = false;
+    @Getter private int batchAuctionInterval = 0;
+    private int ordersInBatch = 0;
+
     public Orderbook(AbstractOrderMatcher matchingEngine, Random random)
+    {
+        this(matchingEngine, random, new TreeSetBookSide(true), new TreeSetBookSide(false));
+    }
+
+    public Orderbook(AbstractOrderMatcher matchingEngine, Random random, BookSide bidLimits, BookSide askLimits)
+    {
+        this(matchingEngine, random, bidLimits, askLimits, new IntOrderMap());
+    }
+
+    public Orderbook(AbstractOrderMatcher matchingEngine, Random random, BookSide bidLimits, BookSide askLimits, IntOrderMap orderMap)
+    {
+        this(matchingEngine, random, bidLimits, askLimits, orderMap, false);
+    }
+
+    public Orderbook(AbstractOrderMatcher matchingEngine, Random random, BookSide bidLimits, BookSide askLimits, IntOrderMap orderMap, boolean pooling)
     {
         this.matchingEngine = matchingEngine;
         this.random = random;
+        this.bidLimits = bidLimits;
+        this.askLimits = askLimits;
+        this.orderMap = orderMap;
+        this.pooling = pooling;
+    }
+
+    // with pooling enabled, the book owns every order passed to addOrder and recycles it once it leaves the book
+    // (fully filled, cancelled, or an aggressive order that has finished matching).
+    public Order acquireOrder(int securityId, Side side, int quantity, long price)
+    {
+        if (!pooling)
+            return new Order(securityId, side, quantity, price);
+        return orderPool.acquire().init(securityId, side, quantity, price, ORDER_TYPE.LIMIT);
+    }
+
+    public Order acquireOrder(int securityId, Side side, int quantity, long price, TIME_IN_FORCE timeInForce)
+    {
+        if (!pooling)
+            return new Order(securityId, side, quantity, price, timeInForce);
+        return orderPool.acquire().init(securityId, side, quantity, price, ORDER_TYPE.LIMIT, timeInForce);
+    }
+
+    public Order acquireMarketOrder(int securityId, Side side, int quantity)
+    {
+        if (!pooling)
+            return new Order(securityId, side, quantity);
+        return orderPool.acquire().init(securityId, side, quantity, 0, ORDER_TYPE.MARKET);
+    }
+
+    // every matcher creates its trades here, so this is also where fills are journaled
+    public Trade acquireTrade(Side side, long price, int volume, int makerId, int takerId)
+    {
+        if (journal != null)
+            journal.fill(makerId, takerId, side, price, volume);
+        if (!pooling)
+            return new Trade(side, price, volume, makerId, takerId);
+        return tradePool.acquire().init(side, price, volume, makerId, takerId);
+    }
+
+    public void releaseTrade(Trade trade)
+    {
+        if (pooling)
+            tradePool.release(trade);
+    }
+
+    private Limit acquireLimit(long price)
+    {
+        return limitPool.acquire().init(price);
+    }
+
+    private void releaseLimit(Limit limit)
+    {
+        limitPool.release(limit);
+    }
+
+    private void releaseOrder(Order order)
+    {
+        if (pooling)
+        {
+            order.clear();
+            orderPool.release(order);
+        }
     }
 
     public void addOrder(Order incomingOrder)
+    {
+        enterOrder(incomingOrder, true);
+
+        if (batchAuctionInterval > 0 && ++ordersInBatch == batchAuctionInterval)
+        {
+            uncrossAuction();
+            startAuction();
+        }
+        activateTriggeredStops();
+    }
+
+    // the unfilled part of an aggressive limit order, re-entered by the matcher as a new passive order. Unlike addOrder
+    // this doesn't activate stops: the order that made the trades is still being handled.
+    public void addRemainder(Order remainder)
+    {
+        enterOrder(remainder, true);
+    }
+
+    public void startAuction()
+    {
+        logger.info("auction started. Orders are collected without matching until uncross.");
+        inAuction = true;
+        ordersInBatch = 0;
+    }
+
+    // ends the auction: everything that crosses is executed at one price, which is returned (NO_AUCTION_PRICE if
+    // nothing crossed). The book is back to continuous matching afterwards, unless batch auctions are on.
+    public long uncross()
+    {
+        long price = uncrossAuction();
+        activateTriggeredStops();
+        return price;
+    }
+
+    private long uncrossAuction()
+    {
+        inAuction = false;
+        long price = matchingEngine.uncross(this);
+        orderBookStateLog();
+        publishMarketData();
+        return price;
+    }
+
+    // 0 switches periodic batch auctions off, uncrossing whatever the current batch has collected
+    public void setBatchAuctionInterval(int orders)
+    {
+        if (orders < 0)
+            throw new IllegalArgumentException("batch auction interval must not be negative.");
+
+        if (orders == 0 && batchAuctionInterval > 0)
+            uncross();
+        batchAuctionInterval = orders;
+        if (orders > 0)
+            startAuction();
+    }
+
+    // an amend journals a single AMEND record rather than the ADD of its replacement order
+    private void enterOrder(Order incomingOrder, boolean journalAdd)
     {
         //set order id and timestamp
         incomingOrder.setOrderId(nextAvailableOrderId);
+        if (incomingOrder.isStop())
+        {
+            // it keeps this id when it triggers, and only enters the book (and the journal) then. Its timestamp is the
+            // time it triggers at.
+            logger.info("stop order detected, waiting for its trigger: {}", incomingOrder);
+            nextAvailableOrderId = incomingOrder.getOrderId() + 1;
+            stopBook.add(incomingOrder);
+            return;
+        }
         incomingOrder.setTimestamp(System.nanoTime());
 
         if (orderMap.containsKey(incomingOrder.getOrderId()))
             throw new RuntimeException("orderMap already contains this orderID.");
 
-        addOrder(incomingOrder, incomingOrder.getParentLimit(), incomingOrder.isBuy() ? bidLimits : askLimits);
+        if (journalAdd)
+            journalAdd(incomingOrder);
+        addOrder(incomingOrder, incomingOrder.isBuy() ? bidLimits : askLimits);
+    }
+
+    private void journalAdd(Order incomingOrder)
+    {
+        if (journal != null)
+            journal.add(incomingOrder.getOrderId(), incomingOrder.getSide(), incomingOrder.getPrice(),
+                    incomingOrder.getInitialQuantity(), incomingOrder.getOrdType() == ORDER_TYPE.MARKET);
     }
 
-    private void addOrder(Order incomingOrder, Limit limit, TreeSet<Limit> limitTree)
+    // enters the stops triggered by the trades so far, in price then time order, until no more trigger. Called once an
+    // order is completely handled; the matchers themselves never come back through addOrder (see addRemainder).
+    private void activateTriggeredStops()
+    {
+        Order stop;
+        while ((stop = stopBook.nextTriggered()) != null)
+        {
+            logger.info("stop order triggered: {}", stop);
+            stop.setTimestamp(System.nanoTime());
+            journalAdd(stop);
+            addOrder(stop, stop.isBuy() ? bidLimits : askLimits);
+        }
+    }
+
+    private void addOrder(Order incomingOrder, BookSide limitTree)
     {
         logger.info("adding new order: {}", incomingOrder);
         // market orders and aggressive limit orders do NOT need to be put in the orderMap.
 
+        // before any matching: the remainder of an aggressive order must not be the first to find out it can't rest
+        if (incomingOrder.getOrdType() != ORDER_TYPE.MARKET && !acceptsPrice(incomingOrder.isBuy(), incomingOrder.getPrice()))
+        {
+            logger.error("price {} is reserved or would take its side past {} ticks. Rejecting orderID: {}", incomingOrder.getPrice(), MAX_PRICE_SPAN, incomingOrder.getOrderId());
+            cancelUnfilled(incomingOrder);
+            releaseOrder(incomingOrder);
+            return;
+        }
+
+        if (incomingOrder.getTimeInForce() != TIME_IN_FORCE.GTC && !acceptImmediateOrder(incomingOrder))
+        {
+            releaseOrder(incomingOrder);
+            return;
+        }
+
         // market order
         if (incomingOrder.getOrdType() == ORDER_TYPE.MARKET)
         {
+            if (inAuction)
+            {
+                // there is no price to collect a market order at, it would only be matched against the uncrossed book
+                logger.error("market orders are not accepted during an auction. Not matching orderID: {}", incomingOrder.getOrderId());
+                releaseOrder(incomingOrder);
+                return;
+            }
             logger.info("market order detected. Going to match");
             matchingEngine.matchMarketOrder(incomingOrder, this);
+            if (incomingOrder.getCurrentQuantity() > 0)
+                cancelUnfilled(incomingOrder); // the matcher refused it, it would have taken the whole side
             orderBookStateLog();
+            publishMarketData();
+            releaseOrder(incomingOrder);
             return;
         }
 
-        // aggressive limit order
-        if ((incomingOrder.isBuy() && incomingOrder.getPrice() >= bestAsk) ||
-                (!incomingOrder.isBuy() && incomingOrder.getPrice() <= bestBid))
+        // aggressive limit order. An emptied side keeps its last best price, so check there is something to match against.
+        // During an auction crossing orders rest like any other.
+        if (!inAuction && ((incomingOrder.isBuy() && !askLimits.isEmpty() && incomingOrder.getPrice() >= bestAsk) ||
+                (!incomingOrder.isBuy() && !bidLimits.isEmpty() && incomingOrder.getPrice() <= bestBid)))
         {
             logger.info("aggressive limit order detected. Going to match");
             matchingEngine.matchAggressiveLimitOrder(incomingOrder, this);
             orderBookStateLog();
+            publishMarketData();
+            releaseOrder(incomingOrder); // any remainder was re-entered as a new order by the matcher
+            return;
+        }
+
+        if (incomingOrder.getTimeInForce() == TIME_IN_FORCE.IOC)
+        {
+            logger.info("immediate-or-cancel order doesn't cross. Cancelling orderID: {}", incomingOrder.getOrderId());
+            cancelUnfilled(incomingOrder);
+            releaseOrder(incomingOrder);
             return;
         }
 
         logger.info("passive order detected. Adding to book.");
 
+        // an iceberg only shows its first slice, the rest of it goes into the reserve
+        if (incomingOrder.isIceberg() && incomingOrder.getCurrentQuantity() > incomingOrder.getDisplayQuantity())
+        {
+            incomingOrder.setHiddenQuantity(incomingOrder.getCurrentQuantity() - incomingOrder.getDisplayQuantity());
+            incomingOrder.setCurrentQuantity(incomingOrder.getDisplayQuantity());
+        }
+
         // passive order
-        Limit existingLimit = treeSetTryGetValue(limitTree, limit); // log(n) search (balanced BST). This is basically the .contains method but we also extract the element.
+        linkToLevel(incomingOrder, limitTree);
+        orderMap.put(incomingOrder.getOrderId(), incomingOrder);
+        nextAvailableOrderId = Math.max(nextAvailableOrderId, incomingOrder.getOrderId() + 1); // a triggered stop rests with its earlier id
+        updateBookStateAfterAdd(incomingOrder);
+
+        orderBookStateLog();
+        publishMarketData();
+    }
+
+    // appends a passive order to the queue of its price level, creating the level if needed, and adds its volume to the
+    // level. The side totals are left to updateBookStateAfterAdd.
+    private void linkToLevel(Order incomingOrder, BookSide limitTree)
+    {
+        Limit existingLimit = limitTree.get(incomingOrder.getPrice()); // log(n) search for the TreeSet side, O(1) for the price ladder
         if (existingLimit != null)
         {
             incomingOrder.setParentLimit(existingLimit); // orders at the same limit level must reference the same limit level object
@@ -89,130 +372,448 @@ public class Orderbook {
                 existingLimit.setTail(incomingOrder);
                 incomingOrder.setNextOrder(null);
             }
-            existingLimit.setTotalVolumeAtLimit(existingLimit.getTotalVolumeAtLimit() + incomingOrder.getInitialQuantity());
+            existingLimit.setTotalVolumeAtLimit(existingLimit.getTotalVolumeAtLimit() + incomingOrder.getCurrentQuantity());
         }
         else
         {
+            Limit limit = acquireLimit(incomingOrder.getPrice());
+            incomingOrder.setParentLimit(limit);
             limitTree.add(limit);
             limit.setHead(incomingOrder);
             limit.setTail(incomingOrder);
-            limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() + incomingOrder.getInitialQuantity());
+            limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() + incomingOrder.getCurrentQuantity());
         }
 
-        if (incomingOrder.isBuy())
+        incomingOrder.getParentLimit().addOrder(incomingOrder);
+        if (incomingOrder.getHiddenQuantity() > 0)
+            incomingOrder.getParentLimit().setHiddenVolumeAtLimit(incomingOrder.getParentLimit().getHiddenVolumeAtLimit() + incomingOrder.getHiddenQuantity());
+    }
+
+    // IOC/FOK orders only match on arrival: none are taken during an auction, and a fill-or-kill order is killed up front,
+    // from the depth index alone, unless the opposite side holds its whole quantity within its limit price
+    private boolean acceptImmediateOrder(Order incomingOrder)
+    {
+        if (inAuction)
         {
-            buyOrderIds.putIfAbsent(incomingOrder.getPrice(), new ListMap<Integer>(random));
-            ListMap<Integer> currentLimitBuyIds = buyOrderIds.get(incomingOrder.getPrice());
-            currentLimitBuyIds.addItem(incomingOrder.getOrderId());
+            logger.error("{} orders are not accepted during an auction. Cancelling orderID: {}", incomingOrder.getTimeInForce(), incomingOrder.getOrderId());
+            cancelUnfilled(incomingOrder);
+            return false;
         }
-        else
+
+        if (incomingOrder.getTimeInForce() == TIME_IN_FORCE.FOK && !matchingEngine.canFillCompletely(incomingOrder, this))
         {
-            sellOrderIds.putIfAbsent(incomingOrder.getPrice(), new ListMap<Integer>(random));
-            ListMap<Integer> currentLimitSellIds = sellOrderIds.get(incomingOrder.getPrice());
-            currentLimitSellIds.addItem(incomingOrder.getOrderId());
+            logger.info("fill-or-kill order can't be filled completely. Killing orderID: {}", incomingOrder.getOrderId());
+            cancelUnfilled(incomingOrder);
+            return false;
         }
+        return true;
+    }
 
-        orderMap.put(incomingOrder.getOrderId(), incomingOrder);
-        nextAvailableOrderId = incomingOrder.getOrderId() + 1; // TODO: not sure about this
-        updateBookStateAfterAdd(incomingOrder);
+    // an order that leaves without resting, with quantity it never filled (IOC remainder, killed FOK): only the journal
+    // needs to hear about it, it never was in the book
+    public void cancelUnfilled(Order o)
+    {
+        if (journal != null)
+            journal.cancel(o.getOrderId(), o.getSide(), o.getPrice(), o.getCurrentQuantity());
+    }
 
-        orderBookStateLog();
+    // volume a taker on side can fill at prices up to and including price, in O(log levels)
+    public long availableVolume(Side side, long price)
+    {
+        return side == Side.BUY ? askDepth.volumeUpTo(price) : bidDepth.volumeUpTo(price);
     }
 
-    public void removeOrder(int removeOrderId, boolean isDuringMatching)
+    // the worst price a taker on side has to go to for qty, or DepthIndex.NO_PRICE if the opposite side holds less
+    public long priceToFill(Side side, long qty)
+    {
+        return side == Side.BUY ? askDepth.priceToFill(qty) : bidDepth.priceToFill(qty);
+    }
+
+    private void depthChanged(boolean isBid, long price, long delta)
+    {
+        (isBid ? bidDepth : askDepth).add(price, delta);
+    }
+
+    // false for the NO_BID / NO_ASK sentinels and if an order resting at price would take its side past MAX_PRICE_SPAN
+    private boolean acceptsPrice(boolean isBid, long price)
     {
-        // check if removeOrder id is in the book
-        if (containsOrder(removeOrderId))
+        return price != NO_BID && price != NO_ASK && (isBid ? bidDepth : askDepth).fits(price);
+    }
+
+    // a resting order at limit was partly filled: the level, the side total and the depth index all lose qty
+    public void reduceRestingVolume(Limit limit, boolean isBid, int qty)
+    {
+        limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() - qty);
+        levelChanged(isBid, limit.getPrice());
+        if (isBid)
         {
-            logger.info("removing orderID {}", removeOrderId);
-            Order orderToRemove = orderMap.get(removeOrderId);
-            // alter head/tail pointers of order Limit
-            if (orderToRemove.getParentLimit().getHead() == orderToRemove && orderToRemove.getParentLimit().getTail() == orderToRemove)
-            {
-                orderToRemove.getParentLimit().setHead(null);
-                orderToRemove.getParentLimit().setTail(null);
-            }
-            else if (orderToRemove.getParentLimit().getHead() == orderToRemove)
-            {
-                orderToRemove.getParentLimit().setHead(orderToRemove.getNextOrder());
-            }
-            else if (orderToRemove.getParentLimit().getTail() == orderToRemove)
-            {
-                orderToRemove.getParentLimit().setTail(orderToRemove.getPrevOrder());
-            }
+            totalBidSize -= qty;
+            depthChanged(true, limit.getPrice(), -qty);
+        }
+        else
+        {
+            totalAskSize -= qty;
+            depthChanged(false, limit.getPrice(), -qty);
+        }
+    }
 
-            // doubly linked list deletion for orders obj
-            if (orderToRemove.getNextOrder() != null && orderToRemove.getPrevOrder() != null)
-            {
-                orderToRemove.getNextOrder().setPrevOrder(orderToRemove.getPrevOrder());
-                orderToRemove.getPrevOrder().setNextOrder(orderToRemove.getNextOrder());
-            }
-            else if (orderToRemove.getNextOrder() != null)
-            {
-                orderToRemove.getNextOrder().setPrevOrder(orderToRemove.getPrevOrder());
-            }
-            else if (orderToRemove.getPrevOrder() != null)
-            {
-                orderToRemove.getPrevOrder().setNextOrder(orderToRemove.getNextOrder());
-            }
+    // during matching: the displayed quantity of a resting order has just been traded in full. An iceberg with reserve
+    // left shows its next slice and goes to the back of its level's queue, in place: no removal, no re-entry, same id.
+    // Anything else leaves the book. Returns whether the order is still resting.
+    public boolean displayedQuantityFilled(Order resting)
+    {
+        if (resting.getHiddenQuantity() == 0)
+        {
+            removeOrder(resting.getOrderId(), true);
+            return false;
+        }
 
-            // update the best bid/ask if we remove the only order from the top-of-book limit. If this is called DURING
-            // matching, then we cannot remove the empty limit from the limitTree because we are going to be traversing the limitTree,
-            // and in the process we cannot modify it. However, if an order is removed during non-matching, e.g. we just simulate an order cancellation,
-            // then we are able to directly remove empty limits as we aren't doing any traversing.
-            if (isDuringMatching)
+        int traded = resting.getCurrentQuantity();
+        int slice = Math.min(resting.getDisplayQuantity(), resting.getHiddenQuantity());
+        Limit limit = resting.getParentLimit();
+        limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() - traded + slice);
+        limit.setHiddenVolumeAtLimit(limit.getHiddenVolumeAtLimit() - slice);
+        levelChanged(resting.isBuy(), resting.getPrice());
+        if (resting.isBuy())
+        {
+            totalBidSize += slice - traded;
+            hiddenBidSize -= slice;
+            depthChanged(true, resting.getPrice(), -traded);
+        }
+        else
+        {
+            totalAskSize += slice - traded;
+            hiddenAskSize -= slice;
+            depthChanged(false, resting.getPrice(), -traded);
+        }
+        resting.setCurrentQuantity(slice);
+        resting.setHiddenQuantity(resting.getHiddenQuantity() - slice);
+        resting.setTimestamp(System.nanoTime());
+        limit.moveToTail(resting);
+        logger.info("iceberg orderID {} refreshed: {} shown, {} in reserve", resting.getOrderId(), slice, resting.getHiddenQuantity());
+        return true;
+    }
+
+    // during matching: a resting order loses qty, which can be more than it shows (an auction fills whole orders,
+    // reserve included). The display goes first, then the reserve, and an iceberg whose display is used up refreshes.
+    // A fill of the whole order removes it.
+    public void fillRestingOrder(Order resting, int qty)
+    {
+        if (qty < resting.getCurrentQuantity())
+        {
+            reduceRestingVolume(resting.getParentLimit(), resting.isBuy(), qty);
+            resting.setCurrentQuantity(resting.getCurrentQuantity() - qty);
+            return;
+        }
+
+        int fromReserve = Math.min(qty - resting.getCurrentQuantity(), resting.getHiddenQuantity());
+        if (fromReserve > 0)
+        {
+            Limit limit = resting.getParentLimit();
+            limit.setHiddenVolumeAtLimit(limit.getHiddenVolumeAtLimit() - fromReserve);
+            if (resting.isBuy())
             {
-                updateBestBidAskIfLimitDepleted(orderToRemove.getParentLimit(), orderToRemove.isBuy());
+                hiddenBidSize -= fromReserve;
+                depthChanged(true, resting.getPrice(), -fromReserve);
             }
             else
             {
-                updateBestBidAskIfLimitDepletedAndRemoveEmptyLimit(orderToRemove.getParentLimit(), orderToRemove.isBuy());
+                hiddenAskSize -= fromReserve;
+                depthChanged(false, resting.getPrice(), -fromReserve);
             }
+            resting.setHiddenQuantity(resting.getHiddenQuantity() - fromReserve);
+        }
+        displayedQuantityFilled(resting);
+    }
 
-            if (orderToRemove.isBuy())
-            {
-                buyOrderIds.get(orderToRemove.getPrice()).removeItem(orderToRemove.getOrderId());
-            }
-            else
+    public void removeOrder(int removeOrderId, boolean isDuringMatching)
+    {
+        // orders removed during matching were filled, and the FILL records already describe that
+        removeOrder(removeOrderId, isDuringMatching, !isDuringMatching);
+    }
+
+    private void removeOrder(int removeOrderId, boolean isDuringMatching, boolean journalCancel)
+    {
+        // check if removeOrder id is in the book. A single probe of the orderMap both finds and unlinks the order.
+        Order orderToRemove = orderMap.remove(removeOrderId);
+        if (orderToRemove != null)
+        {
+            logger.info("removing orderID {}", removeOrderId);
+            if (journalCancel && journal != null)
+                journal.cancel(removeOrderId, orderToRemove.getSide(), orderToRemove.getPrice(), orderToRemove.getCurrentQuantity());
+            unlinkFromLevel(orderToRemove, isDuringMatching);
+            releaseOrder(orderToRemove);
+
+            orderBookStateLog();
+            if (journalCancel) // an amend publishes once its replacement is in
+                publishMarketData();
+        }
+        else if (!isDuringMatching)
+        {
+            // a stop that hasn't triggered is only in the stop book, and never was in the journal
+            Order stop = stopBook.cancel(removeOrderId);
+            if (stop != null)
             {
-                sellOrderIds.get(orderToRemove.getPrice()).removeItem(orderToRemove.getOrderId());
+                logger.info("removing stop orderID {}", removeOrderId);
+                releaseOrder(stop);
             }
+        }
+    }
 
-            orderMap.remove(removeOrderId);
-            updateBookStateAfterRemove(orderToRemove);
+    // takes a resting order out of its level's queue and its volume out of the book, updating the best price. Outside
+    // of matching an emptied level is removed and recycled straight away; during matching it is left for
+    // clearEmptyLimitsAfterMatching.
+    private void unlinkFromLevel(Order orderToRemove, boolean isDuringMatching)
+    {
+        Limit parentLimit = orderToRemove.getParentLimit();
+        // alter head/tail pointers of order Limit
+        if (orderToRemove.getParentLimit().getHead() == orderToRemove && orderToRemove.getParentLimit().getTail() == orderToRemove)
+        {
+            orderToRemove.getParentLimit().setHead(null);
+            orderToRemove.getParentLimit().setTail(null);
+        }
+        else if (orderToRemove.getParentLimit().getHead() == orderToRemove)
+        {
+            orderToRemove.getParentLimit().setHead(orderToRemove.getNextOrder());
+        }
+        else if (orderToRemove.getParentLimit().getTail() == orderToRemove)
+        {
+            orderToRemove.getParentLimit().setTail(orderToRemove.getPrevOrder());
+        }
 
-            orderBookStateLog();
+        // doubly linked list deletion for orders obj
+        if (orderToRemove.getNextOrder() != null && orderToRemove.getPrevOrder() != null)
+        {
+            orderToRemove.getNextOrder().setPrevOrder(orderToRemove.getPrevOrder());
+            orderToRemove.getPrevOrder().setNextOrder(orderToRemove.getNextOrder());
+        }
+        else if (orderToRemove.getNextOrder() != null)
+        {
+            orderToRemove.getNextOrder().setPrevOrder(orderToRemove.getPrevOrder());
+        }
+        else if (orderToRemove.getPrevOrder() != null)
+        {
+            orderToRemove.getPrevOrder().setNextOrder(orderToRemove.getNextOrder());
+        }
+
+        // update the best bid/ask if we remove the only order from the top-of-book limit. If this is called DURING
+        // matching, then we cannot remove the empty limit from the limitTree because we are going to be traversing the limitTree,
+        // and in the process we cannot modify it. However, if an order is removed during non-matching, e.g. we just simulate an order cancellation,
+        // then we are able to directly remove empty limits as we aren't doing any traversing.
+        if (isDuringMatching)
+        {
+            updateBestBidAskIfLimitDepleted(orderToRemove.getParentLimit(), orderToRemove.isBuy());
+        }
+        else
+        {
+            updateBestBidAskIfLimitDepletedAndRemoveEmptyLimit(orderToRemove.getParentLimit(), orderToRemove.isBuy());
+        }
+
+        parentLimit.removeOrder(orderToRemove);
+
+        updateBookStateAfterRemove(orderToRemove);
+
+        // outside of matching an emptied level has already been taken out of the tree, so it can be recycled now.
+        // During matching it is remembered and removed + recycled by clearEmptyLimitsAfterMatching.
+        if (parentLimit.isEmpty())
+        {
+            if (!isDuringMatching)
+                releaseLimit(parentLimit);
+            else if (orderToRemove.isBuy())
+                recordEmptiedBidLimit(parentLimit);
+            else
+                recordEmptiedAskLimit(parentLimit);
         }
     }
 
-    public void modifyOrderPrice(int orderId, double price)
+    public void modifyOrderPrice(int orderId, long price)
     {
-        if (containsOrder(orderId))
+        Order existingOrder = orderMap.get(orderId);
+        if (existingOrder != null && !acceptsPrice(existingOrder.isBuy(), price))
+        {
+            logger.error("price {} is reserved or would take its side past {} ticks. Not modifying orderID: {}", price, MAX_PRICE_SPAN, orderId);
+            return;
+        }
+        if (existingOrder != null)
         {
             logger.info("modifying price of orderId {}", orderId);
             // modification = deletion + insertion. upon deletion of a particular orderId, does the subsequent
             // insertion use the same deleted orderId? or does it use the next id available? probably latter
-            Order newOrder = new Order(orderMap.get(orderId), price);
-            removeOrder(orderId, false);
+            Order newOrder = acquireOrder(existingOrder.getSecurityId(), existingOrder.getSide(), existingOrder.getCurrentQuantity() + existingOrder.getHiddenQuantity(), price);
+            newOrder.setDisplayQuantity(existingOrder.getDisplayQuantity());
+            journalAmend(existingOrder, newOrder);
+            removeOrder(orderId, false, false);
 
             // in the event of a price mod, the Limit pointer of the modOrder should reflect the new Limit
-            addOrder(newOrder);
+            enterOrder(newOrder, false);
+            activateTriggeredStops(); // a price that crosses trades like a new order
         }
     }
 
     public void modifyOrderQty(int orderId, int qty)
     {
-        if (containsOrder(orderId))
+        Order existingOrder = orderMap.get(orderId);
+        if (existingOrder != null)
         {
             logger.info("modifying order qty of orderId {}", orderId);
             // modification = deletion + insertion. upon deletion of a particular orderId, does the subsequent
             // insertion use the same deleted orderId? or does it use the next id available? probably latter
-            Order newOrder = new Order(orderMap.get(orderId), qty);
-            removeOrder(orderId, false);
+            Order newOrder = acquireOrder(existingOrder.getSecurityId(), existingOrder.getSide(), qty, existingOrder.getPrice());
+            newOrder.setDisplayQuantity(existingOrder.getDisplayQuantity()); // qty is the new total of an iceberg
+            journalAmend(existingOrder, newOrder);
+            removeOrder(orderId, false, false);
 
             // in the event of a price mod, the Limit pointer of the modOrder should reflect the new Limit
-            addOrder(newOrder);
+            enterOrder(newOrder, false);
+            activateTriggeredStops();
+        }
+    }
+
+    // in-place amend, unlike modifyOrderQty's cancel/replace: the order keeps its id and its slot in the order map, and
+    // only its level and side totals change, in O(1). A reduction keeps its queue position, an increase sends it to the
+    // back of its level. qty is the new total, an iceberg's reserve included: a reduction comes out of the reserve
+    // first, an increase goes into it.
+    public void amendOrderQty(int orderId, int qty)
+    {
+        if (qty <= 0)
+            throw new IllegalArgumentException("amended quantity must be positive, cancel the order instead.");
+
+        Order existingOrder = orderMap.get(orderId);
+        int total = existingOrder == null ? 0 : existingOrder.getCurrentQuantity() + existingOrder.getHiddenQuantity();
+        if (existingOrder == null || qty == total)
+            return;
+
+        logger.info("amending qty of orderId {} in place, {} to {}", orderId, total, qty);
+        if (journal != null)
+            journal.amend(orderId, orderId, existingOrder.getSide(), existingOrder.getPrice(), qty);
+
+        int hidden = existingOrder.getHiddenQuantity();
+        int shown;
+        if (qty < total)
+        {
+            hidden = Math.max(0, hidden - (total - qty));
+            shown = qty - hidden;
+        }
+        else if (existingOrder.isIceberg())
+        {
+            hidden += qty - total;
+            shown = existingOrder.getCurrentQuantity();
         }
+        else
+        {
+            shown = qty;
+        }
+
+        changeRestingVolume(existingOrder, shown - existingOrder.getCurrentQuantity(), hidden - existingOrder.getHiddenQuantity());
+        existingOrder.setCurrentQuantity(shown);
+        existingOrder.setHiddenQuantity(hidden);
+        existingOrder.setInitialQuantity(existingOrder.getInitialQuantity() + qty - total); // what was filled stays filled
+        if (qty > total)
+        {
+            existingOrder.setTimestamp(System.nanoTime());
+            existingOrder.getParentLimit().moveToTail(existingOrder);
+        }
+
+        orderBookStateLog();
+        publishMarketData();
+    }
+
+    // in-place price amend: the same Order is unlinked from its level and appended to the queue at the new price, under
+    // the same id (an old level it empties is recycled for the new one). A new price that crosses the opposite side has
+    // to match as a taker, so that amend is a cancel/replace (modifyOrderPrice).
+    public void amendOrderPrice(int orderId, long price)
+    {
+        Order existingOrder = orderMap.get(orderId);
+        if (existingOrder == null || existingOrder.getPrice() == price)
+            return;
+        if (!acceptsPrice(existingOrder.isBuy(), price))
+        {
+            logger.error("price {} is reserved or would take its side past {} ticks. Not amending orderID: {}", price, MAX_PRICE_SPAN, orderId);
+            return;
+        }
+
+        // a crossing price trades, so it is a cancel/replace, which also activates any stops those trades trigger
+        if (!inAuction && (existingOrder.isBuy() ? !askLimits.isEmpty() && price >= bestAsk : !bidLimits.isEmpty() && price <= bestBid))
+        {
+            modifyOrderPrice(orderId, price);
+            return;
+        }
+
+        logger.info("amending price of orderId {} in place, {} to {}", orderId, existingOrder.getPrice(), price);
+        if (journal != null)
+            journal.amend(orderId, orderId, existingOrder.getSide(), price, existingOrder.getCurrentQuantity() + existingOrder.getHiddenQuantity());
+
+        unlinkFromLevel(existingOrder, false);
+        existingOrder.clear();
+        existingOrder.setPrice(price);
+        existingOrder.setTimestamp(System.nanoTime());
+        linkToLevel(existingOrder, existingOrder.isBuy() ? bidLimits : askLimits);
+        updateBookStateAfterAdd(existingOrder);
+
+        orderBookStateLog();
+        publishMarketData();
+    }
+
+    // a resting order's shown and hidden quantities change by these amounts: its level, the side totals and the depth
+    // index follow
+    private void changeRestingVolume(Order o, int shownDelta, int hiddenDelta)
+    {
+        Limit limit = o.getParentLimit();
+        limit.setTotalVolumeAtLimit(limit.getTotalVolumeAtLimit() + shownDelta);
+        limit.setHiddenVolumeAtLimit(limit.getHiddenVolumeAtLimit() + hiddenDelta);
+        levelChanged(o.isBuy(), o.getPrice());
+        if (o.isBuy())
+        {
+            totalBidSize += shownDelta;
+            hiddenBidSize += hiddenDelta;
+            depthChanged(true, o.getPrice(), shownDelta + hiddenDelta);
+        }
+        else
+        {
+            totalAskSize += shownDelta;
+            hiddenAskSize += hiddenDelta;
+            depthChanged(false, o.getPrice(), shownDelta + hiddenDelta);
+        }
+    }
+
+    private void levelChanged(boolean isBid, long price)
+    {
+        if (depthPublisher != null)
+            depthPublisher.levelChanged(isBid, price);
+    }
+
+    private void journalAmend(Order existingOrder, Order newOrder)
+    {
+        // the replacement is entered right after the existing order is removed, so it gets the next order id
+        if (journal != null)
+            journal.amend(existingOrder.getOrderId(), nextAvailableOrderId, newOrder.getSide(), newOrder.getPrice(), newOrder.getInitialQuantity());
+    }
+
+    // after every add, cancel, amend or match: journals the BBO and updates topOfBook if it changed, and publishes the
+    // levels that changed to the depthPublisher
+    private void publishMarketData()
+    {
+        if (depthPublisher != null)
+            depthPublisher.publish(bidLimits, askLimits);
+        if (journal == null && topOfBook == null)
+            return;
+
+        Limit bestBidLimit = bidLimits.get(bestBid);
+        Limit bestAskLimit = askLimits.get(bestAsk);
+        int bestBidSize = bestBidLimit != null ? bestBidLimit.getTotalVolumeAtLimit() : -1;
+        int bestAskSize = bestAskLimit != null ? bestAskLimit.getTotalVolumeAtLimit() : -1;
+        if (journal != null && (bestBid != journaledBestBid || bestAsk != journaledBestAsk || bestBidSize != journaledBestBidSize || bestAskSize != journaledBestAskSize))
+        {
+            journaledBestBid = bestBid;
+            journaledBestAsk = bestAsk;
+            journaledBestBidSize = bestBidSize;
+            journaledBestAskSize = bestAskSize;
+            journal.bbo(bestBid, bestBidSize, bestAsk, bestAskSize);
+        }
+        // an emptied side keeps its last best price, readers get NO_BID / NO_ASK instead
+        if (topOfBook != null)
+            topOfBook.update(bestBidLimit != null ? bestBid : NO_BID, Math.max(bestBidSize, 0), bestBidLimit != null ? bestBidLimit.getOrderCount() : 0,
+                    bestAskLimit != null ? bestAsk : NO_ASK, Math.max(bestAskSize, 0), bestAskLimit != null ? bestAskLimit.getOrderCount() : 0);
     }
 
     public boolean containsOrder(int orderId)
@@ -220,8 +821,18 @@ public class Orderbook {
         return orderMap.containsKey(orderId);
     }
 
+    // picks a uniformly random resting order at the given price, or returns NO_ORDER_ID if nothing rests there.
+    // Used by the simulator to choose which order to cancel/mod.
+    public int chooseRandomOrderId(Side side, long price)
+    {
+        Limit limit = side == Side.BUY ? bidLimits.get(price) : askLimits.get(price);
+        if (limit == null || limit.getOrderCount() == 0)
+            return NO_ORDER_ID;
+        return limit.chooseRandomOrder(random).getOrderId();
+    }
+
 
-    private void updateBestBid(double price)
+    private void updateBestBid(long price)
     {
         if (price > bestBid)
         {
@@ -229,7 +840,7 @@ public class Orderbook {
         }
     }
 
-    private void updateBestAsk(double price)
+    private void updateBestAsk(long price)
     {
         if (price < bestAsk)
         {
@@ -239,103 +850,107 @@ public class Orderbook {
 
     private void updateBestBidAskIfLimitDepleted(Limit l, boolean limitOrderIsBuy)
     {
-        // TODO: this function is a little convoluted, rewrite it later
         // if a market buy order has just depleted the entirety of a limit sell level P, P will be empty and we need to
-        // update the best ask to reflect the depletion. We will therefore enter the below if block.
-        // a market buy order will be interacting with the resting limit orders on the ask book. The resting limit order
-        // we have just removed to completely deplete P is therefore a sell order (limitOrderIsBuy==false), and so we have
-        // to update the bestAsk.
-        // A market order could deplete several limit levels, hence when iterating through askLimits, we have a !limit.isEmpty()
-        // check to ensure that the bestAsk is not updated to an empty limit. Unfortunately we are unable to remove empty limits
-        // DURING the order matching as we will run into a ConcurrentModificationException error, which is another reason why we
-        // need the !limit.isEmpty() check.
-        if (l.isEmpty())
-        {
-            if (limitOrderIsBuy)
+        // update the best ask to reflect the depletion (a market buy interacts with the ask book, so the resting order that
+        // emptied P was a sell, limitOrderIsBuy==false).
+        // Empty limits can't be removed DURING matching as we are iterating over the limit tree, so they stay in the tree
+        // until clearEmptyLimitsAfterMatching. Sweeps go outward from the touch, so every level in front of P has already
+        // been emptied and the new best is simply the first non-empty level behind P. Walking from P with higher() touches
+        // only the levels actually crossed, instead of rescanning every emptied level from the top of the tree each time.
+        if (!l.isEmpty())
+            return;
+
+        if (limitOrderIsBuy)
+        {
+            if (l.getPrice() == bestBid)
             {
-                if (l.getPrice() == bestBid)
-                {
-                    for (Limit limit: bidLimits)
-                    {
-                        if (!limit.isEmpty())
-                        {
-                            bestBid = limit.getPrice();
-                            return;
-                        }
-                    }
-                }
+                Limit next = nextNonEmptyLimit(bidLimits, l);
+                if (next != null)
+                    bestBid = next.getPrice();
             }
-            else
+        }
+        else
+        {
+            if (l.getPrice() == bestAsk)
             {
-                if (l.getPrice() == bestAsk)
-                {
-                    for (Limit limit: askLimits)
-                    {
-                        if (!limit.isEmpty())
-                        {
-                            bestAsk = limit.getPrice();
-                            return;
-                        }
-                    }
-                }
+                Limit next = nextNonEmptyLimit(askLimits, l);
+                if (next != null)
+                    bestAsk = next.getPrice();
             }
         }
     }
 
+    private static Limit nextNonEmptyLimit(BookSide limitTree, Limit from)
+    {
+        for (Limit next = limitTree.higher(from); next != null; next = limitTree.higher(next))
+        {
+            if (!next.isEmpty())
+                return next;
+        }
+        return null;
+    }
+
     private void updateBestBidAskIfLimitDepletedAndRemoveEmptyLimit(Limit l, boolean limitOrderIsBuy)
     {
-        if (l.isEmpty())
+        // outside of matching there are no empty levels left in the tree, so the new best is just the first level.
+        // If the side is now empty the best price is left where it was.
+        if (!l.isEmpty())
+            return;
+
+        if (limitOrderIsBuy)
         {
-            if (limitOrderIsBuy)
-            {
-                bidLimits.remove(l);
-                if (l.getPrice() == bestBid)
-                {
-                    for (Limit limit: bidLimits)
-                    {
-                        bestBid = limit.getPrice();
-                        return;
-                    }
-                }
-            }
-            else
-            {
-                askLimits.remove(l);
-                if (l.getPrice() == bestAsk)
-                {
-                    for (Limit limit: askLimits)
-                    {
-                        bestAsk = limit.getPrice();
-                        return;
-                    }
-                }
-            }
+            bidLimits.remove(l);
+            if (l.getPrice() == bestBid && !bidLimits.isEmpty())
+                bestBid = bidLimits.first().getPrice();
+        }
+        else
+        {
+            askLimits.remove(l);
+            if (l.getPrice() == bestAsk && !askLimits.isEmpty())
+                bestAsk = askLimits.first().getPrice();
         }
     }
 
     private void updateBookStateAfterAdd(Order o)
     {
+        levelChanged(o.isBuy(), o.getPrice());
+        // an emptied side keeps its last best price, the first order back on it replaces that price whatever it is
         if (o.isBuy())
         {
-            totalBidSize += o.getInitialQuantity();
-            updateBestBid(o.getPrice());
+            if (totalBidSize == 0)
+                bestBid = o.getPrice();
+            else
+                updateBestBid(o.getPrice());
+            totalBidSize += o.getCurrentQuantity();
+            hiddenBidSize += o.getHiddenQuantity();
+            depthChanged(true, o.getPrice(), o.getCurrentQuantity() + o.getHiddenQuantity());
         }
         else
         {
-            totalAskSize += o.getInitialQuantity();
-            updateBestAsk(o.getPrice());
+            if (totalAskSize == 0)
+                bestAsk = o.getPrice();
+            else
+                updateBestAsk(o.getPrice());
+            totalAskSize += o.getCurrentQuantity();
+            hiddenAskSize += o.getHiddenQuantity();
+            depthChanged(false, o.getPrice(), o.getCurrentQuantity() + o.getHiddenQuantity());
         }
     }
 
     private void updateBookStateAfterRemove(Order o)
     {
+        levelChanged(o.isBuy(), o.getPrice());
         if (o.isBuy())
         {
             totalBidSize -= o.getCurrentQuantity();
+            hiddenBidSize -= o.getHiddenQuantity();
+            depthChanged(true, o.getPrice(), -o.getCurrentQuantity() - o.getHiddenQuantity());
         }
         else
         {
             totalAskSize -= o.getCurrentQuantity();
+            hiddenAskSize -= o.getHiddenQuantity();
+            depthChanged(false, o.getPrice(), -o.getCurrentQuantity() - o.getHiddenQuantity());
         }
 
         // if the limit still exists, we update the volume at limit by sutracting the qty of the removed order
@@ -343,24 +958,59 @@ public class Orderbook {
         {
             int newTotalLimitVolume = o.getParentLimit().getTotalVolumeAtLimit() - o.getCurrentQuantity();
             o.getParentLimit().setTotalVolumeAtLimit(newTotalLimitVolume);
+            o.getParentLimit().setHiddenVolumeAtLimit(o.getParentLimit().getHiddenVolumeAtLimit() - o.getHiddenQuantity());
         }
     }
 
     public void clearEmptyLimitsAfterMatching(boolean isBuy)
     {
-         if (isBuy) // market buys (sells)/aggressive limit buys (sells) will only ever interact with the ask (bid) book
-         {
-             askLimits.removeIf(Limit::isEmpty); // for each askLimit, remove if the limit is empty
-         }
-         else
-         {
-             bidLimits.removeIf(Limit::isEmpty);
-         }
+        // market buys (sells)/aggressive limit buys (sells) will only ever interact with the ask (bid) book
+        if (isBuy)
+        {
+            for (int i = 0; i < emptiedAskCount; i++)
+            {
+                removeEmptiedLimit(askLimits, emptiedAskLimits[i]);
+                emptiedAskLimits[i] = null;
+            }
+            emptiedAskCount = 0;
+        }
+        else
+        {
+            for (int i = 0; i < emptiedBidCount; i++)
+            {
+                removeEmptiedLimit(bidLimits, emptiedBidLimits[i]);
+                emptiedBidLimits[i] = null;
+            }
+            emptiedBidCount = 0;
+        }
+    }
+
+    private void removeEmptiedLimit(BookSide limitTree, Limit limit)
+    {
+        if (limit.isEmpty()) // always true, nothing is added to the side being matched against until the match is over
+        {
+            limitTree.remove(limit);
+            releaseLimit(limit);
+        }
+    }
+
+    private void recordEmptiedBidLimit(Limit limit)
+    {
+        if (emptiedBidCount == emptiedBidLimits.length)
+            emptiedBidLimits = Arrays.copyOf(emptiedBidLimits, emptiedBidCount << 1);
+        emptiedBidLimits[emptiedBidCount++] = limit;
+    }
+
+    private void recordEmptiedAskLimit(Limit limit)
+    {
+        if (emptiedAskCount == emptiedAskLimits.length)
+            emptiedAskLimits = Arrays.copyOf(emptiedAskLimits, emptiedAskCount << 1);
+        emptiedAskLimits[emptiedAskCount++] = limit;
     }
 
     public int getBestBidSize()
     {
-        Limit bestBidLimit = treeSetTryGetValue(bidLimits, new Limit(bestBid));
+        Limit bestBidLimit = bidLimits.get(bestBid);
         if (bestBidLimit != null)
         {
             return bestBidLimit.getTotalVolumeAtLimit();
@@ -370,7 +1020,7 @@ public class Orderbook {
 
     public int getBestAskSize()
     {
-        Limit bestAskLimit = treeSetTryGetValue(askLimits, new Limit(bestAsk));
+        Limit bestAskLimit = askLimits.get(bestAsk);
         if (bestAskLimit != null)
         {
             return bestAskLimit.getTotalVolumeAtLimit();
@@ -378,14 +1028,6 @@ public class Orderbook {
         return -1;
     }
 
-    private static <T> T treeSetTryGetValue(TreeSet<T> set, T key) {
-        T floor = set.floor(key);
-        if (floor != null && floor.equals(key)) {
-            return floor;
-        }
-        return null;
-    }
-
     public void printOrderbookWithOrders()
     {
         logger.info("BOOK DEPTH WITH QUEUE POS:");
@@ -460,8 +1102,11 @@ public class Orderbook {
 
     private void orderBookStateLog()
     {
-        Limit bestBidLimit = treeSetTryGetValue(bidLimits, new Limit(bestBid));
-        Limit bestAskLimit = treeSetTryGetValue(askLimits, new Limit(bestAsk));
+        if (!logger.isInfoEnabled())
+            return; // skip the two best level lookups when nobody reads the output
+
+        Limit bestBidLimit = bidLimits.get(bestBid);
+        Limit bestAskLimit = askLimits.get(bestAsk);
         if (bestBidLimit != null && bestAskLimit != null)
             logger.info("BBO: {} x {}/{} x {}", bestBidLimit.getTotalVolumeAtLimit(), bestBid, bestAsk, bestAskLimit.getTotalVolumeAtLimit());
         logger.info("totalBidSize: {}, totalAskSize: {}", totalBidSize, totalAskSize);
@@ -471,39 +1116,55 @@ public class Orderbook {
     {
         int askSideTotalVolume = 0;
         int bidSideTotalVolume = 0;
+        int askSideHiddenVolume = 0;
+        int bidSideHiddenVolume = 0;
 
         for (Limit limit: askLimits)
         {
             Order ord = limit.getHead();
             int currentLimitTotalQty = 0;
+            int currentLimitHiddenQty = 0;
             while (ord != null)
             {
                 currentLimitTotalQty += ord.getCurrentQuantity();
+                currentLimitHiddenQty += ord.getHiddenQuantity();
                 ord = ord.getNextOrder();
             }
 
-            if (currentLimitTotalQty != limit.getTotalVolumeAtLimit())
+            if (currentLimitTotalQty != limit.getTotalVolumeAtLimit() || currentLimitHiddenQty != limit.getHiddenVolumeAtLimit())
                 return false;
 
             askSideTotalVolume += limit.getTotalVolumeAtLimit();
+            askSideHiddenVolume += limit.getHiddenVolumeAtLimit();
+            // levels are iterated from the touch, so the running total is the volume up to this price
+            if (askDepth.volumeUpTo(limit.getPrice()) != askSideTotalVolume + askSideHiddenVolume)
+                return false;
         }
 
         for (Limit limit: bidLimits)
         {
             Order ord = limit.getHead();
             int currentLimitTotalQty = 0;
+            int currentLimitHiddenQty = 0;
             while (ord != null)
             {
                 currentLimitTotalQty += ord.getCurrentQuantity();
+                currentLimitHiddenQty += ord.getHiddenQuantity();
                 ord = ord.getNextOrder();
             }
 
-            if (currentLimitTotalQty != limit.getTotalVolumeAtLimit())
+            if (currentLimitTotalQty != limit.getTotalVolumeAtLimit() || currentLimitHiddenQty != limit.getHiddenVolumeAtLimit())
                 return false;
 
             bidSideTotalVolume += limit.getTotalVolumeAtLimit();
+            bidSideHiddenVolume += limit.getHiddenVolumeAtLimit();
+            // levels are iterated from the touch, so the running total is the volume up to this price
+            if (bidDepth.volumeUpTo(limit.getPrice()) != bidSideTotalVolume + bidSideHiddenVolume)
+                return false;
         }
 
-        return askSideTotalVolume == totalAskSize && bidSideTotalVolume == totalBidSize;
+        return askSideTotalVolume == totalAskSize && bidSideTotalVolume == totalBidSize
+                && askSideHiddenVolume == hiddenAskSize && bidSideHiddenVolume == hiddenBidSize
+                && askDepth.getTotalVolume() == totalAskSize + hiddenAskSize && bidDepth.getTotalVolume() == totalBidSize + hiddenBidSize;
     }
 }
@@ -0,0 +1,263 @@
+package Orderbook;
+
+import Orders.Limit;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+// Array backed book side. Limit levels live in a contiguous array indexed by price - basePrice (in ticks), so a
+// level lookup is a single array access instead of a tree search. An occupancy bitmap (one bit per slot) lets us find
+// the next non-empty level with a word scan (Long.numberOfTrailingZeros/numberOfLeadingZeros) rather than chasing tree pointers.
+// The window re-centres around the live prices whenever a price falls outside of it, and doubles in size if the live
+// prices no longer fit.
+public class PriceLadder implements BookSide {
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final boolean isBid;
+    private Limit[] levels;
+    private long[] occupancy;
+    private long baseTick; // price (in ticks) of levels[0]
+    private int size = 0;
+    private int bestIndex = -1;
+
+    public PriceLadder(boolean isBid)
+    {
+        this(isBid, DEFAULT_CAPACITY);
+    }
+
+    public PriceLadder(boolean isBid, int capacity)
+    {
+        if (capacity <= 0 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+
+        int roundedCapacity = (capacity + 63) & ~63; // whole number of bitmap words
+        this.isBid = isBid;
+        this.levels = new Limit[roundedCapacity];
+        this.occupancy = new long[roundedCapacity >>> 6];
+    }
+
+    @Override
+    public Limit get(long price)
+    {
+        int index = indexOf(price);
+        return index < 0 ? null : levels[index];
+    }
+
+    @Override
+    public void add(Limit limit)
+    {
+        long tick = limit.getPrice();
+        if (size == 0)
+        {
+            baseTick = tick - levels.length / 2;
+        }
+        else if (tick < baseTick || tick >= baseTick + levels.length)
+        {
+            recentre(tick);
+        }
+
+        int index = (int) (tick - baseTick);
+        if (levels[index] != null)
+            return; // same semantics as TreeSet.add - the existing level is kept
+
+        levels[index] = limit;
+        occupancy[index >>> 6] |= 1L << index;
+        size++;
+
+        if (bestIndex < 0 || (isBid ? index > bestIndex : index < bestIndex))
+            bestIndex = index;
+    }
+
+    @Override
+    public boolean remove(Limit limit)
+    {
+        int index = indexOf(limit.getPrice());
+        if (index < 0 || levels[index] == null)
+            return false;
+
+        levels[index] = null;
+        occupancy[index >>> 6] &= ~(1L << index);
+        size--;
+
+        if (index == bestIndex)
+            bestIndex = nextWorse(index);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Limit limit)
+    {
+        return get(limit.getPrice()) != null;
+    }
+
+    @Override
+    public Limit first()
+    {
+        return bestIndex < 0 ? null : levels[bestIndex];
+    }
+
+    @Override
+    public Limit higher(Limit limit)
+    {
+        if (size == 0)
+            return null;
+
+        long offset = limit.getPrice() - baseTick;
+        int next;
+        if (offset < 0)
+            next = isBid ? -1 : bestIndex;
+        else if (offset >= levels.length)
+            next = isBid ? bestIndex : -1;
+        else
+            next = nextWorse((int) offset);
+
+        return next < 0 ? null : levels[next];
+    }
+
+    @Override
+    public boolean removeIf(Predicate<Limit> filter)
+    {
+        boolean removed = false;
+        int index = bestIndex;
+        while (index >= 0)
+        {
+            int next = nextWorse(index);
+            if (filter.test(levels[index]))
+            {
+                remove(levels[index]);
+                removed = true;
+            }
+            index = next;
+        }
+        return removed;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int capacity()
+    {
+        return levels.length;
+    }
+
+    @Override
+    public Iterator<Limit> iterator()
+    {
+        return new Iterator<>() {
+            private int nextIndex = bestIndex;
+
+            @Override
+            public boolean hasNext()
+            {
+                return nextIndex >= 0;
+            }
+
+            @Override
+            public Limit next()
+            {
+                if (nextIndex < 0)
+                    throw new NoSuchElementException();
+                Limit limit = levels[nextIndex];
+                nextIndex = nextWorse(nextIndex);
+                return limit;
+            }
+        };
+    }
+
+    private int indexOf(long price)
+    {
+        if (size == 0)
+            return -1;
+        long offset = price - baseTick;
+        return offset < 0 || offset >= levels.length ? -1 : (int) offset;
+    }
+
+    // next occupied slot moving away from the touch: ascending prices for asks, descending prices for bids
+    private int nextWorse(int index)
+    {
+        return isBid ? previousSetBit(index - 1) : nextSetBit(index + 1);
+    }
+
+    private int nextSetBit(int fromIndex)
+    {
+        if (fromIndex >= levels.length)
+            return -1;
+        if (fromIndex < 0)
+            fromIndex = 0;
+
+        int wordIndex = fromIndex >>> 6;
+        long word = occupancy[wordIndex] & (-1L << fromIndex);
+        while (true)
+        {
+            if (word != 0)
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            if (++wordIndex == occupancy.length)
+                return -1;
+            word = occupancy[wordIndex];
+        }
+    }
+
+    private int previousSetBit(int fromIndex)
+    {
+        if (fromIndex < 0)
+            return -1;
+        if (fromIndex >= levels.length)
+            fromIndex = levels.length - 1;
+
+        int wordIndex = fromIndex >>> 6;
+        long word = occupancy[wordIndex] & (-1L >>> -(fromIndex + 1));
+        while (true)
+        {
+            if (word != 0)
+                return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+            if (wordIndex-- == 0)
+                return -1;
+            word = occupancy[wordIndex];
+        }
+    }
+
+    private void recentre(long tick)
+    {
+        // move the window so that every live level plus the new tick fits, leaving equal headroom on both sides.
+        // Only grow the array if the live range is wider than the current capacity.
+        long lowTick = Math.min(tick, baseTick + nextSetBit(0));
+        long highTick = Math.max(tick, baseTick + previousSetBit(levels.length - 1));
+        long span = highTick - lowTick + 1;
+
+        int newCapacity = levels.length;
+        while (span > newCapacity)
+        {
+            if (newCapacity >= MAX_CAPACITY)
+                throw new IllegalStateException("price range of " + span + " ticks does not fit in the ladder.");
+            newCapacity <<= 1;
+        }
+
+        long newBaseTick = lowTick - (newCapacity - span) / 2;
+        Limit[] newLevels = new Limit[newCapacity];
+        long[] newOccupancy = new long[newCapacity >>> 6];
+        int shift = (int) (baseTick - newBaseTick);
+
+        for (int index = nextSetBit(0); index >= 0; index = nextSetBit(index + 1))
+        {
+            int newIndex = index + shift;
+            newLevels[newIndex] = levels[index];
+            newOccupancy[newIndex >>> 6] |= 1L << newIndex;
+        }
+
+        levels = newLevels;
+        occupancy = newOccupancy;
+        baseTick = newBaseTick;
+        bestIndex = bestIndex < 0 ? -1 : bestIndex + shift;
+    }
+}
@@ -0,0 +1,149 @@
+package Orderbook;
+
+import Orders.Limit;
+import Orders.Order;
+
+import java.util.ArrayDeque;
+
+// stop and stop-limit orders waiting for their trigger, next to the Orderbook. They are queued by stop price in Limit
+// levels like resting orders, buy stops lowest price first and sell stops highest first, i.e. in the order a moving
+// market reaches them. The levels sit in PriceLadders, so parking a stop is an array access and the next level to
+// trigger is always first() (a stop price range wider than the ladder's maximum window is rejected, as in a ladder
+// book). The matchers report every trade price (tradePrinted). Triggered stops are released by nextTriggered in price
+// then time order, touching only the levels and orders that trigger. Orderbook feeds them into the book one at a time,
+// and the trades they make can trigger more.
+public class StopBook {
+    private static final long NO_TRADE = Long.MIN_VALUE;
+
+    private final BookSide buyStops = new PriceLadder(false); // lowest stop price first
+    private final BookSide sellStops = new PriceLadder(true); // highest stop price first
+    private final IntOrderMap stopOrders = new IntOrderMap();
+    private final ArrayDeque<Order> triggered = new ArrayDeque<>();
+
+    // range of trade prices since the stops were last released
+    private long highestTrade = NO_TRADE;
+    private long lowestTrade = NO_TRADE;
+    private long lastTradePrice = NO_TRADE;
+
+    // a stop the last trade has already reached is triggered straight away instead of waiting for the next trade
+    public void add(Order stop)
+    {
+        if (lastTradePrice != NO_TRADE && triggers(stop.isBuy(), stop.getStopPrice(), lastTradePrice))
+        {
+            triggered.add(stop);
+            return;
+        }
+
+        BookSide stops = stop.isBuy() ? buyStops : sellStops;
+        Limit level = stops.get(stop.getStopPrice());
+        if (level == null)
+        {
+            level = new Limit(stop.getStopPrice());
+            stops.add(level);
+        }
+        stop.setParentLimit(level);
+        if (level.getHead() == null)
+        {
+            level.setHead(stop);
+        }
+        else
+        {
+            stop.setPrevOrder(level.getTail());
+            level.getTail().setNextOrder(stop);
+        }
+        level.setTail(stop);
+        stopOrders.put(stop.getOrderId(), stop);
+    }
+
+    // takes a waiting stop out, returns null if there is none with that id (already triggered, or never a stop)
+    public Order cancel(int orderId)
+    {
+        Order stop = stopOrders.remove(orderId);
+        if (stop == null)
+            return null;
+
+        Limit level = stop.getParentLimit();
+        if (stop.getPrevOrder() == null)
+            level.setHead(stop.getNextOrder());
+        else
+            stop.getPrevOrder().setNextOrder(stop.getNextOrder());
+        if (stop.getNextOrder() == null)
+            level.setTail(stop.getPrevOrder());
+        else
+            stop.getNextOrder().setPrevOrder(stop.getPrevOrder());
+        if (level.isEmpty())
+            (stop.isBuy() ? buyStops : sellStops).remove(level);
+        stop.clear();
+        return stop;
+    }
+
+    // called by the matchers for every trade: only widens the range, the stops are looked at in nextTriggered
+    public void tradePrinted(long price)
+    {
+        if (highestTrade == NO_TRADE)
+        {
+            highestTrade = price;
+            lowestTrade = price;
+        }
+        else if (price > highestTrade)
+        {
+            highestTrade = price;
+        }
+        else if (price < lowestTrade)
+        {
+            lowestTrade = price;
+        }
+        lastTradePrice = price;
+    }
+
+    // the next triggered stop to enter the book, or null. Once the stops triggered so far have all been handed out,
+    // the trades printed meanwhile (including the ones those stops made) release the next ones.
+    public Order nextTriggered()
+    {
+        if (triggered.isEmpty() && highestTrade != NO_TRADE)
+        {
+            if (!stopOrders.isEmpty())
+            {
+                release(buyStops, true, highestTrade);
+                release(sellStops, false, lowestTrade);
+            }
+            highestTrade = NO_TRADE;
+            lowestTrade = NO_TRADE;
+        }
+        return triggered.poll();
+    }
+
+    public boolean contains(int orderId)
+    {
+        return stopOrders.containsKey(orderId);
+    }
+
+    // stops still waiting for their trigger
+    public int size()
+    {
+        return stopOrders.size();
+    }
+
+    private void release(BookSide stops, boolean isBuy, long tradePrice)
+    {
+        Limit level;
+        while ((level = stops.first()) != null && triggers(isBuy, level.getPrice(), tradePrice))
+        {
+            Order stop = level.getHead();
+            while (stop != null)
+            {
+                Order next = stop.getNextOrder();
+                stopOrders.remove(stop.getOrderId());
+                stop.clear();
+                triggered.add(stop);
+                stop = next;
+            }
+            stops.remove(level);
+        }
+    }
+
+    private static boolean triggers(boolean isBuy, long stopPrice, long tradePrice)
+    {
+        return isBuy ? tradePrice >= stopPrice : tradePrice <= stopPrice;
+    }
+}
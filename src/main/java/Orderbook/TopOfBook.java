@@ -0,0 +1,83 @@
+package Orderbook;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// the book's best bid and offer (price, shown size and order count per side), published for other threads with a
+// seqlock. The book's thread is the only writer: it makes the sequence odd, writes the fields, and makes it even
+// again with a release store. A reader copies the fields between two reads of the sequence and keeps the copy only if
+// the sequence was the same even number both times, so it never sees half an update, never blocks the writer and
+// never touches the book itself. A reader only retries if it overlapped a write, which takes a few ns.
+public class TopOfBook {
+    private static final VarHandle SEQUENCE;
+
+    static
+    {
+        try
+        {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(TopOfBook.class, "sequence", long.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long sequence = 0; // odd while the writer is in the middle of an update, 2x the updates published otherwise
+    private long bidPrice = Orderbook.NO_BID;
+    private int bidSize;
+    private int bidOrderCount;
+    private long askPrice = Orderbook.NO_ASK;
+    private int askSize;
+    private int askOrderCount;
+
+    // writer side: publishes the new top of book, unless nothing in it changed
+    public void update(long bidPrice, int bidSize, int bidOrderCount, long askPrice, int askSize, int askOrderCount)
+    {
+        if (bidPrice == this.bidPrice && bidSize == this.bidSize && bidOrderCount == this.bidOrderCount
+                && askPrice == this.askPrice && askSize == this.askSize && askOrderCount == this.askOrderCount)
+            return;
+
+        long s = sequence;
+        SEQUENCE.setOpaque(this, s + 1);
+        VarHandle.storeStoreFence(); // the odd sequence is visible before any of the fields change
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.bidOrderCount = bidOrderCount;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.askOrderCount = askOrderCount;
+        SEQUENCE.setRelease(this, s + 2);
+    }
+
+    // reader side, from any thread: copies a consistent top of book into snapshot and returns its version
+    public long read(BboSnapshot snapshot)
+    {
+        while (true)
+        {
+            long s = (long) SEQUENCE.getAcquire(this);
+            if ((s & 1) == 0)
+            {
+                long bp = bidPrice;
+                int bs = bidSize;
+                int bc = bidOrderCount;
+                long ap = askPrice;
+                int as = askSize;
+                int ac = askOrderCount;
+                VarHandle.loadLoadFence(); // the fields are read before the sequence is checked again
+                if ((long) SEQUENCE.getOpaque(this) == s)
+                {
+                    snapshot.set(bp, bs, bc, ap, as, ac, s >> 1);
+                    return s >> 1;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // number of updates published so far
+    public long getVersion()
+    {
+        return (long) SEQUENCE.getAcquire(this) >> 1;
+    }
+}
@@ -0,0 +1,85 @@
+package Orderbook;
+
+import Orders.AskLimitComparator;
+import Orders.BidLimitComparator;
+import Orders.Limit;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+public class TreeSetBookSide implements BookSide {
+    private final TreeSet<Limit> limits;
+    private final Limit probe = new Limit(0); // reused search key, so lookups don't allocate
+
+    public TreeSetBookSide(boolean isBid)
+    {
+        this.limits = new TreeSet<>(isBid ? new BidLimitComparator() : new AskLimitComparator());
+    }
+
+    @Override
+    public Limit get(long price)
+    {
+        // log(n) search (balanced BST). This is basically the .contains method but we also extract the element.
+        Limit floor = limits.floor(probe.init(price));
+        if (floor != null && floor.getPrice() == price)
+        {
+            return floor;
+        }
+        return null;
+    }
+
+    @Override
+    public void add(Limit limit)
+    {
+        limits.add(limit);
+    }
+
+    @Override
+    public boolean remove(Limit limit)
+    {
+        return limits.remove(limit);
+    }
+
+    @Override
+    public boolean contains(Limit limit)
+    {
+        return limits.contains(limit);
+    }
+
+    @Override
+    public Limit first()
+    {
+        return limits.isEmpty() ? null : limits.first();
+    }
+
+    @Override
+    public Limit higher(Limit limit)
+    {
+        return limits.higher(limit);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<Limit> filter)
+    {
+        return limits.removeIf(filter);
+    }
+
+    @Override
+    public int size()
+    {
+        return limits.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return limits.isEmpty();
+    }
+
+    @Override
+    public Iterator<Limit> iterator()
+    {
+        return limits.iterator();
+    }
+}
@@ -6,6 +6,6 @@ public class BidLimitComparator implements Comparator<Limit> {
     @Override
     public int compare(Limit x, Limit y)
     {
-        return -Double.compare(x.getPrice(), y.getPrice());
+        return -Long.compare(x.getPrice(), y.getPrice());
     }
 }
@@ -3,21 +3,73 @@ package Orders;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.Random;
 
 public class Limit {
-    @Getter private double price;
+    @Getter private long price; // in ticks
     @Getter @Setter private Order head = null;
     @Getter @Setter private Order tail = null;
-    @Getter @Setter private int totalVolumeAtLimit = 0;
-    @Getter private HashSet<Integer> orderIds = new HashSet<>();
+    @Getter @Setter private int totalVolumeAtLimit = 0; // displayed volume
+    @Getter @Setter private int hiddenVolumeAtLimit = 0; // iceberg reserves
 
-    public Limit(double price) {
+    // the resting orders in arbitrary order, so a uniformly random one can be picked in O(1) (cancel/mod sampling in the
+    // simulator). Each order keeps its own slot in levelIndex, removal swaps the last order into the freed slot.
+    private Order[] orders = new Order[4];
+    @Getter private int orderCount = 0;
+
+    public Limit(long price) {
         // Each passive order points to a limit price. We need to create the limit if it doesnt yet exist in the orderbook.
         this.price = price;
     }
 
+    // (re)initialise a pooled limit level, see Orderbook.acquireLimit
+    public Limit init(long price) {
+        this.price = price;
+        this.head = null;
+        this.tail = null;
+        this.totalVolumeAtLimit = 0;
+        this.hiddenVolumeAtLimit = 0;
+        this.orderCount = 0; // a level is only recycled once empty, so the slots are already cleared
+        return this;
+    }
+
+    public void addOrder(Order o) {
+        if (orderCount == orders.length)
+            orders = Arrays.copyOf(orders, orderCount << 1);
+        o.setLevelIndex(orderCount);
+        orders[orderCount++] = o;
+    }
+
+    public void removeOrder(Order o) {
+        int index = o.getLevelIndex();
+        Order last = orders[--orderCount];
+        orders[index] = last;
+        last.setLevelIndex(index);
+        orders[orderCount] = null;
+    }
+
+    // sends a resting order to the back of the queue in O(1), e.g. a refreshed iceberg losing its time priority
+    public void moveToTail(Order o) {
+        if (tail == o)
+            return;
+
+        if (head == o)
+            head = o.getNextOrder();
+        else
+            o.getPrevOrder().setNextOrder(o.getNextOrder());
+        o.getNextOrder().setPrevOrder(o.getPrevOrder());
+
+        o.setPrevOrder(tail);
+        o.setNextOrder(null);
+        tail.setNextOrder(o);
+        tail = o;
+    }
+
+    public Order chooseRandomOrder(Random random) {
+        return orders[random.nextInt(orderCount)];
+    }
+
     // some helper methods
     public boolean isEmpty() {
         return head == null && tail == null;
@@ -33,11 +85,11 @@ public class Limit {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Limit limit = (Limit) o;
-        return Objects.equals(price, limit.price);
+        return price == limit.price;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(price);
+        return Long.hashCode(price);
     }
 }
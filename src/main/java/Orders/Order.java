@@ -5,59 +5,124 @@ import lombok.Setter;
 
 @Getter
 public class Order {
+    // stopPrice of an order that isn't a stop
+    public static final long NO_STOP_PRICE = Long.MIN_VALUE;
+
     @Setter private long timestamp;
     @Setter private int orderId;
     private int securityId;
     private Side side;
     @Setter private int initialQuantity;
     @Setter private int currentQuantity;
-    private Double price;
+    @Setter private long price; // in ticks, unused for market orders
     @Setter private Limit parentLimit;
+    @Setter private int levelIndex; // slot in parentLimit's order array, see Limit.addOrder
     private ORDER_TYPE ordType = ORDER_TYPE.MARKET;
+    private TIME_IN_FORCE timeInForce = TIME_IN_FORCE.GTC;
+    // iceberg orders: at most displayQuantity of the order is shown (currentQuantity), the rest waits in hiddenQuantity
+    // and refreshes the display when it is used up (see Orderbook.displayedQuantityFilled). 0 = not an iceberg.
+    @Setter private int displayQuantity;
+    @Setter private int hiddenQuantity;
+    // stop orders wait in the book's StopBook until a trade prints at stopPrice or through it (at or above for a buy,
+    // at or below for a sell), then enter as the market or limit order they otherwise are
+    private long stopPrice = NO_STOP_PRICE;
     private boolean isBuy;
 
     @Setter private Order nextOrder;
     @Setter private Order prevOrder;
 
-    public Order(int securityId, Side side, int quantity, Double price){
+    // market order
+    public Order(int securityId, Side side, int quantity){
         this.securityId = securityId;
         this.side = side;
         this.initialQuantity = quantity;
         this.currentQuantity = quantity;
-        if (price != null)
-        {
-            this.price = price;
-            this.parentLimit = new Limit(price);
-            this.ordType = ORDER_TYPE.LIMIT;
-        }
         this.isBuy = side == Side.BUY;
     }
-    public Order(Order other, double price)
-    {
-        this.securityId = other.securityId;
-        this.side = other.side;
-        this.isBuy = other.isBuy;
-        this.initialQuantity = other.currentQuantity;
-        this.currentQuantity = other.currentQuantity;
+
+    // limit order. The parent limit is resolved by the Orderbook when (if) the order rests.
+    public Order(int securityId, Side side, int quantity, long price){
+        this(securityId, side, quantity);
         this.price = price;
-        this.parentLimit = new Limit(price);
         this.ordType = ORDER_TYPE.LIMIT;
     }
 
-    public Order(Order other, int quantity)
+    // immediate (IOC/FOK) limit order
+    public Order(int securityId, Side side, int quantity, long price, TIME_IN_FORCE timeInForce){
+        this(securityId, side, quantity, price);
+        this.timeInForce = timeInForce;
+    }
+
+    // iceberg limit order for quantity in total, shown displayQuantity at a time once it rests
+    public Order(int securityId, Side side, int quantity, long price, int displayQuantity){
+        this(securityId, side, quantity, price);
+        this.displayQuantity = displayQuantity;
+    }
+
+    // stop order: a market order once triggered
+    public static Order stop(int securityId, Side side, int quantity, long stopPrice)
+    {
+        Order o = new Order(securityId, side, quantity);
+        o.stopPrice = stopPrice;
+        return o;
+    }
+
+    // stop-limit order: a limit order at price once triggered
+    public static Order stopLimit(int securityId, Side side, int quantity, long stopPrice, long price)
+    {
+        Order o = new Order(securityId, side, quantity, price);
+        o.stopPrice = stopPrice;
+        return o;
+    }
+
+    public boolean isStop()
+    {
+        return stopPrice != NO_STOP_PRICE;
+    }
+
+    public boolean isIceberg()
+    {
+        return displayQuantity > 0;
+    }
+
+    // (re)initialise a pooled order, see Orderbook.acquireOrder
+    public Order init(int securityId, Side side, int quantity, long price, ORDER_TYPE ordType)
     {
-        this.securityId = other.securityId;
-        this.side = other.side;
-        this.isBuy = other.isBuy;
+        return init(securityId, side, quantity, price, ordType, TIME_IN_FORCE.GTC);
+    }
+
+    public Order init(int securityId, Side side, int quantity, long price, ORDER_TYPE ordType, TIME_IN_FORCE timeInForce)
+    {
+        this.timestamp = 0;
+        this.orderId = 0;
+        this.securityId = securityId;
+        this.side = side;
+        this.isBuy = side == Side.BUY;
         this.initialQuantity = quantity;
         this.currentQuantity = quantity;
-        this.price = other.price;
-        this.parentLimit = other.parentLimit;
-        this.ordType = ORDER_TYPE.LIMIT;
+        this.price = price;
+        this.ordType = ordType;
+        this.timeInForce = timeInForce;
+        this.displayQuantity = 0;
+        this.hiddenQuantity = 0;
+        this.stopPrice = NO_STOP_PRICE;
+        this.parentLimit = null;
+        this.nextOrder = null;
+        this.prevOrder = null;
+        return this;
+    }
+
+    // drop references to other book objects so a released order doesn't keep them reachable
+    public void clear()
+    {
+        this.parentLimit = null;
+        this.nextOrder = null;
+        this.prevOrder = null;
     }
 
     @Override
     public String toString() {
-        return "Order(orderId=" + orderId + ", timestamp=" + timestamp + ", side=" + side + ", price=" + price + ", initialQty=" + initialQuantity + ", currentQty=" + currentQuantity + ", nextOrder=" + nextOrder + ")";
+        // only the id of the next order, printing the order itself would walk the rest of the level
+        return "Order(orderId=" + orderId + ", timestamp=" + timestamp + ", side=" + side + ", price=" + price + ", initialQty=" + initialQuantity + ", currentQty=" + currentQuantity + ", nextOrderId=" + (nextOrder == null ? "null" : nextOrder.getOrderId()) + (isStop() ? ", stopPrice=" + stopPrice : "") + ")";
     }
 }
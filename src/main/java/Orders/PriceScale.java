@@ -0,0 +1,70 @@
+package Orders;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+// Per-instrument price representation. Inside the engine every price is a long number of ticks; this class is only used
+// at the edges (config, input files, display) to convert between ticks and decimal prices.
+// A price of 101.25 on an instrument with scale=2 and tickSize=5 (i.e. 0.05) is 10125 units = 2025 ticks.
+@Getter
+public class PriceScale {
+    private final long tickSize; // tick size in units of 10^-scale
+    private final int scale; // number of decimal places in the instrument's prices
+    private final long unitsPerWhole; // 10^scale
+
+    public PriceScale(long tickSize, int scale)
+    {
+        if (tickSize <= 0)
+            throw new IllegalArgumentException("tickSize must be positive.");
+        if (scale < 0 || scale > 18)
+            throw new IllegalArgumentException("scale must be between 0 and 18.");
+
+        this.tickSize = tickSize;
+        this.scale = scale;
+        this.unitsPerWhole = BigDecimal.TEN.pow(scale).longValueExact();
+    }
+
+    // e.g. 0.25 -> tickSize=25, scale=2. 5 -> tickSize=5, scale=0
+    public static PriceScale fromTickSize(double tickSize)
+    {
+        BigDecimal decimalTickSize = BigDecimal.valueOf(tickSize).stripTrailingZeros();
+        int scale = Math.max(0, decimalTickSize.scale());
+        return new PriceScale(decimalTickSize.movePointRight(scale).longValueExact(), scale);
+    }
+
+    public long toTicks(double price)
+    {
+        long units = Math.round(price * unitsPerWhole);
+        if (units % tickSize != 0)
+            throw new IllegalArgumentException("price " + price + " is not a multiple of the tick size.");
+        return units / tickSize;
+    }
+
+    public long toTicks(BigDecimal price)
+    {
+        BigDecimal units = price.movePointRight(scale);
+        BigDecimal[] ticks = units.divideAndRemainder(BigDecimal.valueOf(tickSize));
+        if (ticks[1].signum() != 0)
+            throw new IllegalArgumentException("price " + price + " is not a multiple of the tick size.");
+        return ticks[0].longValueExact();
+    }
+
+    public double toDouble(long ticks)
+    {
+        return (double) (ticks * tickSize) / unitsPerWhole;
+    }
+
+    public BigDecimal toDecimal(long ticks)
+    {
+        return BigDecimal.valueOf(ticks * tickSize, scale);
+    }
+
+    @Override
+    public String toString() {
+        return "PriceScale{" +
+                "tickSize=" + toDecimal(1) +
+                ", scale=" + scale +
+                '}';
+    }
+}
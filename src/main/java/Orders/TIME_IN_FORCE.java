@@ -0,0 +1,7 @@
+package Orders;
+
+public enum TIME_IN_FORCE {
+    GTC, // good till cancelled: whatever doesn't match rests on the book
+    IOC, // immediate or cancel: matches what it can on arrival, the rest is cancelled
+    FOK  // fill or kill: filled completely on arrival or not at all
+}
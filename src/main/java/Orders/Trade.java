@@ -5,17 +5,23 @@ import lombok.Getter;
 @Getter
 public class Trade {
     private Side side;
-    private double price;
+    private long price; // in ticks
     private int volume;
     private int makerId;
     private int takerId;
 
-    public Trade(final Side side, final double price, final int volume, final int makerId, final int takerId) {
+    public Trade(final Side side, final long price, final int volume, final int makerId, final int takerId) {
+        init(side, price, volume, makerId, takerId);
+    }
+
+    // (re)initialise a pooled trade, see Orderbook.acquireTrade
+    public Trade init(final Side side, final long price, final int volume, final int makerId, final int takerId) {
         this.side = side;
         this.price = price;
         this.volume = volume;
         this.makerId = makerId;
         this.takerId = takerId;
+        return this;
     }
 
     @Override
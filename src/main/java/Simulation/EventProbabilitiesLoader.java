@@ -3,7 +3,7 @@ package Simulation;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Properties;
 
@@ -24,7 +24,9 @@ public class EventProbabilitiesLoader {
                 break;
         }
 
-        Map<Event, Double> eventProbabilities = new HashMap<>();
+        // iterated in Event declaration order by pickEvent, so a seed always maps to the same events (a HashMap's order
+        // follows the enum constants' identity hash codes, which change from one JVM run to the next)
+        Map<Event, Double> eventProbabilities = new EnumMap<>(Event.class);
 
         Properties properties = new Properties();
         try (InputStream input = EventProbabilitiesLoader.class.getClassLoader().getResourceAsStream(propertiesFileName)) {
@@ -48,7 +50,6 @@ public class EventProbabilitiesLoader {
                 eventProbabilities.put(event, probability);
             }
         }
-        System.out.println(sum);
         if (sum != 1.0d)
         {
             throw new RuntimeException("eventProbabilities do not sum to 1.");
@@ -0,0 +1,128 @@
+package Simulation;
+
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSideFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// runs many independent simulations of one config on a ForkJoinPool. Every run owns its Orderbook, matcher and
+// Random, seeded from the batch's base seed and the run's index alone, and streams its trades into a
+// CountingTradeSink, so only a SimulationRunResult outlives it. The results are summarised in run order: a batch
+// gives the same results and summary whatever the number of threads.
+public class MonteCarloRunner {
+    private static final Logger logger = LogManager.getLogger(MonteCarloRunner.class);
+
+    private final SimulationConfig simulationConfig;
+    private final int threads;
+
+    public MonteCarloRunner(SimulationConfig simulationConfig, int threads)
+    {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive.");
+        this.simulationConfig = simulationConfig;
+        this.threads = threads;
+    }
+
+    public MonteCarloSummary run(long baseSeed, int runs)
+    {
+        MonteCarloSummary summary = new MonteCarloSummary();
+        for (SimulationRunResult result: runAll(baseSeed, runs))
+            summary.add(result);
+        return summary;
+    }
+
+    // results by run index
+    public SimulationRunResult[] runAll(long baseSeed, int runs)
+    {
+        List<Callable<SimulationRunResult>> tasks = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++)
+        {
+            int run = i;
+            tasks.add(() -> runOne(run, seedFor(baseSeed, run)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            List<Future<SimulationRunResult>> futures = pool.invokeAll(tasks);
+            SimulationRunResult[] results = new SimulationRunResult[runs];
+            for (int i = 0; i < runs; i++)
+                results[i] = futures.get(i).get();
+            return results;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("monte carlo batch interrupted.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("a monte carlo run failed.", e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    public SimulationRunResult runOne(int run, long seed)
+    {
+        Random random = new Random(seed);
+        AbstractOrderMatcher matcher = OrderMatcherFactory.createOrderMatcher(simulationConfig.getMatchingEngine());
+        CountingTradeSink sink = new CountingTradeSink();
+        matcher.setTradeListener(sink);
+        Orderbook ob = new Orderbook(matcher, random,
+                BookSideFactory.createBookSide(simulationConfig.getBookStructure(), true),
+                BookSideFactory.createBookSide(simulationConfig.getBookStructure(), false),
+                new IntOrderMap(simulationConfig.getInitialOrderCapacity()),
+                simulationConfig.isObjectPooling());
+        new OrderbookSimulator(ob, simulationConfig, random).run();
+        return new SimulationRunResult(run, seed, ob.getTotalBidSize(), ob.getTotalAskSize(), ob.getBestBid(), ob.getBestAsk(),
+                sink.getTradeCount(), sink.getVolume());
+    }
+
+    // a well mixed seed per run (the SplitMix64 finaliser), so that neighbouring runs don't get correlated streams
+    // from java.util.Random's linear seeding
+    public static long seedFor(long baseSeed, int run)
+    {
+        long z = baseSeed + (run + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // args: config file (in src/main/resources), number of runs, threads (default: available processors), base seed
+    public static void main(String[] args)
+    {
+        String propertiesFile = args.length > 0 ? args[0] : "simulationConfig.properties";
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long baseSeed = args.length > 3 ? Long.parseLong(args[3]) : 123;
+
+        // per event text logging from many simulations at once would serialise them on the appender
+        Configurator.setLevel("Orderbook", Level.WARN);
+        Configurator.setLevel("MatchingEngine", Level.WARN);
+        Configurator.setLevel(OrderbookSimulator.class.getName(), Level.WARN);
+
+        MonteCarloRunner runner = new MonteCarloRunner(new SimulationConfig(propertiesFile), threads);
+        long start = System.nanoTime();
+        MonteCarloSummary summary = runner.run(baseSeed, runs);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info("{}", summary);
+        logger.info("{} runs on {} threads in {} s, {} runs/s", runs, threads, String.format("%.2f", seconds), String.format("%.1f", runs / seconds));
+    }
+}
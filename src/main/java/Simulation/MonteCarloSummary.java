@@ -0,0 +1,70 @@
+package Simulation;
+
+import lombok.Getter;
+
+// per statistic mean, standard deviation, min and max over the runs of a Monte Carlo batch. The runner adds the runs in
+// run order, so the floating point sums, and everything derived from them, don't depend on which run finished first.
+@Getter
+public class MonteCarloSummary {
+    private int runs;
+    private final Statistic totalBidSize = new Statistic();
+    private final Statistic totalAskSize = new Statistic();
+    private final Statistic spread = new Statistic();
+    private final Statistic tradeCount = new Statistic();
+    private final Statistic volume = new Statistic();
+
+    public void add(SimulationRunResult result)
+    {
+        runs++;
+        totalBidSize.add(result.getTotalBidSize());
+        totalAskSize.add(result.getTotalAskSize());
+        spread.add(result.getSpread());
+        tradeCount.add(result.getTradeCount());
+        volume.add(result.getVolume());
+    }
+
+    @Override
+    public String toString()
+    {
+        return runs + " runs. totalBidSize " + totalBidSize + ", totalAskSize " + totalAskSize + ", spread " + spread
+                + ", trades " + tradeCount + ", volume " + volume;
+    }
+
+    @Getter
+    public static class Statistic {
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value)
+        {
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public double getMean()
+        {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        // sample standard deviation
+        public double getStdDev()
+        {
+            if (count < 2)
+                return 0;
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1)));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("mean %.2f sd %.2f [%.0f, %.0f]", getMean(), getStdDev(), min, max);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package Simulation;
 
 import Orderbook.Orderbook;
-import Orders.Order;
+import Orders.PriceScale;
 import Orders.Side;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,11 +19,13 @@ public class OrderbookSimulator {
     private final int BOOK_EVENT_DEPTH;
     private final int INIT_ITERATIONS; // build the book, no matching during this phase
     private final int ITERATIONS; // post init
-    private final double BID_INIT;
-    private final double ASK_INIT;
-    private final double TICK_SIZE;
+    private final long BID_INIT; // in ticks
+    private final long ASK_INIT; // in ticks
+    private final PriceScale PRICE_SCALE;
     private final double PRORATA_FAR_TOUCH_MIN_MULTIPLIER;
     private final double PRORATA_FAR_TOUCH_MAX_MULTIPLIER;
+    private final boolean OBJECT_POOLING;
+    private final int BATCH_AUCTION_INTERVAL; // 0 = continuous matching
 
     private final double[] decayingProbabilitiesArr;
     private final Map<Event, Double> eventProbabilitiesMap;
@@ -38,11 +40,13 @@ public class OrderbookSimulator {
         this.BOOK_EVENT_DEPTH = simulationConfig.getBookEventDepth();
         this.INIT_ITERATIONS = simulationConfig.getInitIterations();
         this.ITERATIONS = simulationConfig.getIterations();
-        this.BID_INIT = simulationConfig.getBidPriceInit();
-        this.ASK_INIT = simulationConfig.getAskPriceInit();
-        this.TICK_SIZE = simulationConfig.getTickSize();
+        this.PRICE_SCALE = simulationConfig.getPriceScale();
+        this.BID_INIT = PRICE_SCALE.toTicks(simulationConfig.getBidPriceInit());
+        this.ASK_INIT = PRICE_SCALE.toTicks(simulationConfig.getAskPriceInit());
         this.PRORATA_FAR_TOUCH_MIN_MULTIPLIER = simulationConfig.getProRataFarTouchMinMultiplier();
         this.PRORATA_FAR_TOUCH_MAX_MULTIPLIER = simulationConfig.getProRataFarTouchMaxMultiplier();
+        this.OBJECT_POOLING = simulationConfig.isObjectPooling();
+        this.BATCH_AUCTION_INTERVAL = simulationConfig.getBatchAuctionInterval();
 
         this.decayingProbabilitiesArr = generateDecayingProbabilities(simulationConfig.getBookEventDepth());
         this.eventProbabilitiesMap = EventProbabilitiesLoader.createEventProbabilitiesMap(simulationConfig.getEventProbabilitiesStyle());
@@ -54,32 +58,38 @@ public class OrderbookSimulator {
     {
         logParameters();
         initializeOrderbook();
+
+        // batch auctions only cover the events, the initial book is passive anyway
+        if (BATCH_AUCTION_INTERVAL > 0)
+            ob.setBatchAuctionInterval(BATCH_AUCTION_INTERVAL);
         simulateEvents();
+        if (BATCH_AUCTION_INTERVAL > 0)
+            ob.setBatchAuctionInterval(0); // uncross the last, partial batch
     }
 
     private void initializeOrderbook()
     {
         // init with one order on each side
-        ob.addOrder(new Order(0, Side.BUY, 50, BID_INIT));
-        ob.addOrder(new Order(0, Side.SELL, 50, ASK_INIT));
+        ob.addOrder(ob.acquireOrder(0, Side.BUY, 50, BID_INIT));
+        ob.addOrder(ob.acquireOrder(0, Side.SELL, 50, ASK_INIT));
 
         // initialize the order book with passive orders only on each side.
         for (int i=0;i<INIT_ITERATIONS;i++) {
             int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
             int volume = generateRandomNumber(1, 100);
-            double price;
+            long price;
 
             if (random.nextDouble() > 0.5)
             {
                 // PASSIVE BUY
-                price = ob.getBestAsk() - distanceFrom * TICK_SIZE;
-                ob.addOrder(new Order(0, Side.BUY, volume, price));
+                price = ob.getBestAsk() - distanceFrom;
+                ob.addOrder(ob.acquireOrder(0, Side.BUY, volume, price));
             }
             else
             {
                 // PASSIVE SELL
-                price = ob.getBestBid() + distanceFrom * TICK_SIZE;
-                ob.addOrder(new Order(0, Side.SELL, volume, price));
+                price = ob.getBestBid() + distanceFrom;
+                ob.addOrder(ob.acquireOrder(0, Side.SELL, volume, price));
             }
         }
     }
@@ -135,6 +145,11 @@ public class OrderbookSimulator {
                 default:
                     break;
             }
+
+            // nothing downstream reads the trade list in the simulation, hand the trades back to the book's pool
+            // (a no-op with a streaming trade sink, which never keeps them)
+            if (OBJECT_POOLING)
+                ob.getMatchingEngine().releaseTrades(ob);
         }
 
         ob.printOrderbook();
@@ -143,21 +158,21 @@ public class OrderbookSimulator {
     private void processPassiveBuy()
     {
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestAsk() - distanceFrom * TICK_SIZE;
+        long price = ob.getBestAsk() - distanceFrom;
         int volume = generateVolume(true, false);
 
         logger.info("New event: PASSIVE_BUY - creating new order with price: {}, qty: {}", price, volume);
-        ob.addOrder(new Order(0, Side.BUY, volume, price));
+        ob.addOrder(ob.acquireOrder(0, Side.BUY, volume, price));
     }
 
     private void processPassiveSell()
     {
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestBid() + distanceFrom * TICK_SIZE;
+        long price = ob.getBestBid() + distanceFrom;
         int volume = generateVolume(false, false);
 
         logger.info("New event: PASSIVE_SELL - creating new order with price: {}, qty: {}", price, volume);
-        ob.addOrder(new Order(0, Side.SELL, volume, price));
+        ob.addOrder(ob.acquireOrder(0, Side.SELL, volume, price));
     }
 
     private void processAggressiveBuy()
@@ -165,18 +180,19 @@ public class OrderbookSimulator {
 //        ob.printOrderbookWithOrders();
 
         int volume = generateVolume(true, true);
-        if (random.nextDouble() > 0.5)
+        // market orders aren't accepted during an auction, a batch auction gets a far touch limit order instead
+        if (random.nextDouble() > 0.5 && !ob.isInAuction())
         {
             // market order
             logger.info("New event: AGGRESSIVE_BUY (market) - volume: {}", volume);
-            ob.addOrder(new Order(0, Side.BUY, volume, null));
+            ob.addOrder(ob.acquireMarketOrder(0, Side.BUY, volume));
         }
         else
         {
             // aggressive limit order - far touch
-            double price = ob.getBestAsk();
+            long price = ob.getBestAsk();
             logger.info("New event: AGGRESSIVE_BUY (limit) - price: {}, volume: {}", price, volume);
-            ob.addOrder(new Order(0, Side.BUY, volume, price));
+            ob.addOrder(ob.acquireOrder(0, Side.BUY, volume, price));
         }
     }
 
@@ -185,18 +201,18 @@ public class OrderbookSimulator {
 //        ob.printOrderbookWithOrders();
 
         int volume = generateVolume(false, true);
-        if (random.nextDouble() > 0)
+        if (random.nextDouble() > 0 && !ob.isInAuction())
         {
             // market order
             logger.info("New event: AGGRESSIVE_SELL (market) - volume: {}", volume);
-            ob.addOrder(new Order(0, Side.SELL, volume, null));
+            ob.addOrder(ob.acquireMarketOrder(0, Side.SELL, volume));
         }
         else
         {
             // aggressive limit order - far touch
-            double price = ob.getBestBid();
+            long price = ob.getBestBid();
             logger.info("New event: AGGRESSIVE_SELL (market) - price: {}, volume: {}", price, volume);
-            ob.addOrder(new Order(0, Side.SELL, volume, price));
+            ob.addOrder(ob.acquireOrder(0, Side.SELL, volume, price));
         }
     }
 
@@ -204,16 +220,15 @@ public class OrderbookSimulator {
     {
         // mod buy price or mod buy qty, 50/50 probability
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestAsk() - distanceFrom * TICK_SIZE;
+        long price = ob.getBestAsk() - distanceFrom;
         logger.info("New event: MOD_BUY - going to mod a random order at the {} price level.", price);
-        if (ob.getBuyOrderIds().get(price) == null || ob.getBuyOrderIds().get(price).isEmpty())
+        int buyOrderIdToMod = ob.chooseRandomOrderId(Side.BUY, price);
+        if (buyOrderIdToMod == Orderbook.NO_ORDER_ID)
         {
             logger.info("MOD_BUY - price level does not exist yet or there are no orders on that pricw level. Not going to mod.");
             return;
         }
 
-        int buyOrderIdToMod = ob.getBuyOrderIds().get(price).chooseRandomItem();
-
         if (random.nextDouble() > 0)
         {
             // mod qty
@@ -221,7 +236,7 @@ public class OrderbookSimulator {
 
             logger.info("New event: MOD_BUY - going to mod orderID: {}, qty from {} to {}",
                     buyOrderIdToMod, ob.getOrderMap().get(buyOrderIdToMod).getCurrentQuantity(), newQty);
-            ob.modifyOrderQty(buyOrderIdToMod, newQty);
+            ob.amendOrderQty(buyOrderIdToMod, newQty);
         }
         else
         {
@@ -233,23 +248,22 @@ public class OrderbookSimulator {
     {
         // mod sell price or mod sell qty, 50/50 probability
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestBid() + distanceFrom * TICK_SIZE;
+        long price = ob.getBestBid() + distanceFrom;
         logger.info("New event: MOD_SELL - going to mod a random order at the {} price level.", price);
-        if (ob.getSellOrderIds().get(price) == null || ob.getSellOrderIds().get(price).isEmpty())
+        int sellOrderIdToMod = ob.chooseRandomOrderId(Side.SELL, price);
+        if (sellOrderIdToMod == Orderbook.NO_ORDER_ID)
         {
             logger.info("MOD_SELL - price level does not exist yet or there are no orders on that pricw level. Not going to mod.");
             return;
         }
 
-        int sellOrderIdToMod = ob.getSellOrderIds().get(price).chooseRandomItem();
-
         if (random.nextDouble() > 0)
         {
             // mod qty
             int newQty = generateRandomNumber(1, 100);
             logger.info("New event: MOD_SELL - going to mod orderID: {}, qty from {} to {}",
                     sellOrderIdToMod, ob.getOrderMap().get(sellOrderIdToMod).getCurrentQuantity(), newQty);
-            ob.modifyOrderQty(sellOrderIdToMod, newQty);
+            ob.amendOrderQty(sellOrderIdToMod, newQty);
         }
         else
         {
@@ -260,16 +274,15 @@ public class OrderbookSimulator {
     private void processCancelBuy()
     {
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestAsk() - distanceFrom * TICK_SIZE;
+        long price = ob.getBestAsk() - distanceFrom;
         logger.info("New event: CANCEL_BUY - going to cancel a random order at the {} price level.", price);
 
-        if (ob.getBuyOrderIds().get(price) == null || ob.getBuyOrderIds().get(price).isEmpty())
+        int buyOrderIdToCancel = ob.chooseRandomOrderId(Side.BUY, price);
+        if (buyOrderIdToCancel == Orderbook.NO_ORDER_ID)
         {
             logger.info("CANCEL_BUY - price level does not exist yet or there are no orders on that pricw level. Skipping.");
             return;
         }
-
-        int buyOrderIdToCancel = ob.getBuyOrderIds().get(price).chooseRandomItem();
         logger.info("CANCEL_BUY - going to cancel orderID: {}", buyOrderIdToCancel);
         ob.removeOrder(buyOrderIdToCancel, false);
     }
@@ -277,23 +290,24 @@ public class OrderbookSimulator {
     private void processCancelSell()
     {
         int distanceFrom = selectIndexWithProbability(decayingProbabilitiesArr);
-        double price = ob.getBestBid() + distanceFrom * TICK_SIZE;
+        long price = ob.getBestBid() + distanceFrom;
         logger.info("New event: CANCEL_SELL - going to cancel a random order at the {} price level.", price);
 
-        if (ob.getSellOrderIds().get(price) == null || ob.getSellOrderIds().get(price).isEmpty())
+        int sellOrderIdToCancel = ob.chooseRandomOrderId(Side.SELL, price);
+        if (sellOrderIdToCancel == Orderbook.NO_ORDER_ID)
         {
             logger.info("CANCEL_SELL - price level does not exist yet or there are no orders on that pricw level. Skipping.");
             return;
         }
-
-        int sellOrderIdToCancel = ob.getSellOrderIds().get(price).chooseRandomItem();
         logger.info("CANCEL_SELL - going to cancel orderID: {}", sellOrderIdToCancel);
         ob.removeOrder(sellOrderIdToCancel, false);
     }
 
     private int generateVolume(boolean isBuy, boolean isAggressiveEvent)
     {
-        if (MATCHING_ENGINE.contains("prorata") && isAggressiveEvent)
+        // during an auction far touch orders rest instead of matching and pile up at the touch, sizing them off it would
+        // compound from one order to the next
+        if (MATCHING_ENGINE.contains("prorata") && isAggressiveEvent && !ob.isInAuction())
         {
             // random value between PRORATA_FAR_TOUCH_MIN_MULTIPLIER and PRORATA_FAR_TOUCH_MAX_MULTIPLIER
             double rand = PRORATA_FAR_TOUCH_MIN_MULTIPLIER + random.nextDouble() * (PRORATA_FAR_TOUCH_MAX_MULTIPLIER - PRORATA_FAR_TOUCH_MIN_MULTIPLIER);
@@ -379,9 +393,10 @@ public class OrderbookSimulator {
         logger.info("ITERATIONS: {}", ITERATIONS);
         logger.info("BID_INIT: {}", BID_INIT);
         logger.info("ASK_INIT: {}", ASK_INIT);
-        logger.info("TICK_SIZE: {}", TICK_SIZE);
+        logger.info("PRICE_SCALE: {} (all prices below are in ticks)", PRICE_SCALE);
         logger.info("PRORATA_FAR_TOUCH_MIN_MULTIPLIER: {}", PRORATA_FAR_TOUCH_MIN_MULTIPLIER);
         logger.info("PRORATA_FAR_TOUCH_MAX_MULTIPLIER: {}", PRORATA_FAR_TOUCH_MAX_MULTIPLIER);
+        logger.info("BATCH_AUCTION_INTERVAL: {}", BATCH_AUCTION_INTERVAL);
         logger.info("\n");
     }
 }
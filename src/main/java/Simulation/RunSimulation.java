@@ -1,11 +1,24 @@
 package Simulation;
 
+import Journal.EventJournal;
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
 import MatchingEngine.OrderMatcherFactory;
+import MatchingEngine.TradeSinkFactory;
+import Orderbook.BookSideFactory;
+import Orderbook.IntOrderMap;
 import Orderbook.Orderbook;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
 
+import java.nio.file.Paths;
 import java.util.Random;
 
 public class RunSimulation {
+    private static final Logger logger = LogManager.getLogger(RunSimulation.class);
+
     public static void main(String[] args) {
         int seed;
         String propertiesFile;
@@ -28,9 +41,48 @@ public class RunSimulation {
 
         Random random = new Random(seed);
         SimulationConfig simulationConfig = new SimulationConfig(propertiesFile);
-        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher(simulationConfig.getMatchingEngine()), random);
+        AbstractOrderMatcher matcher = OrderMatcherFactory.createOrderMatcher(simulationConfig.getMatchingEngine());
+        matcher.setTradeListener(TradeSinkFactory.createTradeSink(simulationConfig.getTradeSink()));
+        Orderbook ob = new Orderbook(matcher, random,
+                BookSideFactory.createBookSide(simulationConfig.getBookStructure(), true),
+                BookSideFactory.createBookSide(simulationConfig.getBookStructure(), false),
+                new IntOrderMap(simulationConfig.getInitialOrderCapacity()),
+                simulationConfig.isObjectPooling());
         OrderbookSimulator simulator = new OrderbookSimulator(ob, simulationConfig, random);
 
-        simulator.run();
+        if (simulationConfig.getEventJournalFile().isEmpty())
+        {
+            simulator.run();
+            logTradeSummary(matcher);
+            return;
+        }
+
+        // production mode: the book and matchers only write binary records, everything on the matching thread below
+        // WARN is switched off
+        Configurator.setLevel("Orderbook", Level.WARN);
+        Configurator.setLevel("MatchingEngine", Level.WARN);
+        Configurator.setLevel(OrderbookSimulator.class.getName(), Level.WARN);
+        EventJournal journal = new EventJournal(Paths.get(simulationConfig.getEventJournalFile()), simulationConfig.getEventJournalCapacity());
+        ob.setJournal(journal);
+        try
+        {
+            simulator.run();
+        }
+        finally
+        {
+            journal.close();
+        }
+        logger.info("{} events written to {}", journal.getWritten(), journal.getFile());
+        logTradeSummary(matcher);
+    }
+
+    private static void logTradeSummary(AbstractOrderMatcher matcher)
+    {
+        if (matcher.getTradeListener() instanceof CountingTradeSink)
+        {
+            CountingTradeSink sink = (CountingTradeSink) matcher.getTradeListener();
+            logger.info("trades: {}, volume: {} (buy {}, sell {}), vwap: {} ticks", sink.getTradeCount(), sink.getVolume(),
+                    sink.getBuyVolume(), sink.getSellVolume(), sink.getVwap());
+        }
     }
 }
@@ -1,5 +1,6 @@
 package Simulation;
 
+import Orders.PriceScale;
 import lombok.Getter;
 
 import java.io.IOException;
@@ -9,6 +10,13 @@ import java.util.Properties;
 @Getter
 public class SimulationConfig {
     private String matchingEngine;
+    private String bookStructure;
+    private int initialOrderCapacity; // pre-sizes the orderId -> Order index
+    private boolean objectPooling; // recycle orders, limit levels and trades instead of allocating per event
+    private String tradeSink; // list keeps every trade, counting only keeps running totals
+    private String eventJournalFile; // production mode: binary event journal instead of per-event text logging, empty = off
+    private int eventJournalCapacity; // ring buffer size in records, a power of two
+    private int batchAuctionInterval; // periodic call auctions, uncross every n orders. 0 = continuous matching
     private String eventProbabilitiesStyle;
     private int bookEventDepth;
     private int initIterations;
@@ -16,6 +24,7 @@ public class SimulationConfig {
     private double bidPriceInit;
     private double askPriceInit;
     private double tickSize;
+    private PriceScale priceScale;
     private double proRataFarTouchMinMultiplier; // pro rata order size has to be at least % of far touch
     private double proRataFarTouchMaxMultiplier;
 
@@ -42,6 +51,13 @@ public class SimulationConfig {
 
     private void setValuesFromProperties(Properties properties) {
         this.matchingEngine = properties.getProperty("MATCHING_ENGINE");
+        this.bookStructure = properties.getProperty("BOOK_STRUCTURE", "treeset");
+        this.initialOrderCapacity = Integer.parseInt(properties.getProperty("INITIAL_ORDER_CAPACITY", "1024"));
+        this.objectPooling = Boolean.parseBoolean(properties.getProperty("OBJECT_POOLING", "false"));
+        this.tradeSink = properties.getProperty("TRADE_SINK", "list");
+        this.eventJournalFile = properties.getProperty("EVENT_JOURNAL_FILE", "").trim();
+        this.eventJournalCapacity = Integer.parseInt(properties.getProperty("EVENT_JOURNAL_CAPACITY", "65536"));
+        this.batchAuctionInterval = Integer.parseInt(properties.getProperty("BATCH_AUCTION_INTERVAL", "0"));
         this.eventProbabilitiesStyle = properties.getProperty("EVENT_PROBABILITIES_STYLE");
         this.bookEventDepth = Integer.parseInt(properties.getProperty("BOOK_EVENT_DEPTH"));
         this.initIterations = Integer.parseInt(properties.getProperty("INIT_ITERATIONS"));
@@ -49,6 +65,7 @@ public class SimulationConfig {
         this.bidPriceInit = Double.parseDouble(properties.getProperty("BID_INIT"));
         this.askPriceInit = Double.parseDouble(properties.getProperty("ASK_INIT"));
         this.tickSize = Double.parseDouble(properties.getProperty("TICK_SIZE"));
+        this.priceScale = PriceScale.fromTickSize(tickSize);
         this.proRataFarTouchMinMultiplier = Double.parseDouble(properties.getProperty("PRORATA_FAR_TOUCH_MIN_MULTIPLIER"));
         this.proRataFarTouchMaxMultiplier = Double.parseDouble(properties.getProperty("PRORATA_FAR_TOUCH_MAX_MULTIPLIER"));
     }
@@ -58,6 +75,21 @@ public class SimulationConfig {
             throw new IllegalArgumentException("Invalid configuration values. Please check the properties file.");
         }
 
+        if (initialOrderCapacity < 0)
+        {
+            throw new IllegalArgumentException("initialOrderCapacity must not be negative.");
+        }
+
+        if (eventJournalCapacity <= 0 || Integer.bitCount(eventJournalCapacity) != 1)
+        {
+            throw new IllegalArgumentException("eventJournalCapacity must be a positive power of two.");
+        }
+
+        if (batchAuctionInterval < 0)
+        {
+            throw new IllegalArgumentException("batchAuctionInterval must not be negative.");
+        }
+
         if (askPriceInit == bidPriceInit)
         {
             throw new IllegalArgumentException("bidPriceInit == askPriceInit.");
@@ -68,6 +100,10 @@ public class SimulationConfig {
             throw new IllegalArgumentException("tickSize is larger than spread.");
         }
 
+        // throws if the initial prices are not a whole number of ticks
+        priceScale.toTicks(bidPriceInit);
+        priceScale.toTicks(askPriceInit);
+
         if (proRataFarTouchMinMultiplier > 1 || proRataFarTouchMinMultiplier <= 0)
         {
             throw new IllegalArgumentException("proRataFarTouchMinMultiplier must be between 0 and 1.");
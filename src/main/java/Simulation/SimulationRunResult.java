@@ -0,0 +1,41 @@
+package Simulation;
+
+import lombok.Getter;
+
+// what is kept of one Monte Carlo run once its book is dropped: the final state of the book and the trade totals
+@Getter
+public class SimulationRunResult {
+    private final int run;
+    private final long seed;
+    private final int totalBidSize;
+    private final int totalAskSize;
+    private final long bestBid;
+    private final long bestAsk;
+    private final long tradeCount;
+    private final long volume;
+
+    public SimulationRunResult(int run, long seed, int totalBidSize, int totalAskSize, long bestBid, long bestAsk, long tradeCount, long volume)
+    {
+        this.run = run;
+        this.seed = seed;
+        this.totalBidSize = totalBidSize;
+        this.totalAskSize = totalAskSize;
+        this.bestBid = bestBid;
+        this.bestAsk = bestAsk;
+        this.tradeCount = tradeCount;
+        this.volume = volume;
+    }
+
+    // in ticks
+    public long getSpread()
+    {
+        return bestAsk - bestBid;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "run " + run + " (seed " + seed + "): bid " + totalBidSize + " ask " + totalAskSize + " bbo " + bestBid + "/" + bestAsk
+                + " trades " + tradeCount + " volume " + volume;
+    }
+}
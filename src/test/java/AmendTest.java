@@ -0,0 +1,148 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class AmendTest {
+
+    @Test
+    public void testSizeDownKeepsIdAndPriority()
+    {
+        Orderbook ob = newBook();
+        ob.addOrder(new Order(0, Side.SELL, 100, 101)); // id 0
+        ob.addOrder(new Order(0, Side.SELL, 50, 101));  // id 1
+        Order first = ob.getOrderMap().get(0);
+
+        ob.amendOrderQty(0, 30);
+        Assertions.assertSame(ob.getOrderMap().get(0), first);
+        Assertions.assertSame(ob.getAskLimits().first().getHead(), first);
+        Assertions.assertEquals(first.getCurrentQuantity(), 30);
+        Assertions.assertEquals(ob.getBestAskSize(), 80);
+        Assertions.assertEquals(ob.getTotalAskSize(), 80);
+        Assertions.assertEquals(ob.getOrderMap().size(), 2);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        ob.addOrder(new Order(0, Side.BUY, 40));
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.get(0).getMakerId(), 0);
+        Assertions.assertEquals(trades.get(0).getVolume(), 30);
+        Assertions.assertEquals(trades.get(1).getMakerId(), 1);
+    }
+
+    @Test
+    public void testSizeUpGoesToTheBack()
+    {
+        Orderbook ob = newBook();
+        ob.addOrder(new Order(0, Side.BUY, 100, 99)); // id 0
+        ob.addOrder(new Order(0, Side.BUY, 50, 99));  // id 1
+
+        ob.amendOrderQty(0, 150);
+        Order amended = ob.getOrderMap().get(0);
+        Assertions.assertSame(ob.getBidLimits().first().getTail(), amended);
+        Assertions.assertEquals(ob.getBidLimits().first().getHead().getOrderId(), 1);
+        Assertions.assertEquals(amended.getCurrentQuantity(), 150);
+        Assertions.assertEquals(ob.getBestBidSize(), 200);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ob.amendOrderQty(0, 0));
+    }
+
+    @Test
+    public void testIcebergAmendTakesTheReserveFirst()
+    {
+        Orderbook ob = newBook();
+        ob.addOrder(new Order(0, Side.SELL, 100, 101, 20)); // 20 shown, 80 hidden
+        Order iceberg = ob.getOrderMap().get(0);
+
+        ob.amendOrderQty(0, 50);
+        Assertions.assertEquals(iceberg.getCurrentQuantity(), 20);
+        Assertions.assertEquals(iceberg.getHiddenQuantity(), 30);
+        Assertions.assertEquals(ob.getHiddenAskSize(), 30);
+
+        ob.amendOrderQty(0, 10);
+        Assertions.assertEquals(iceberg.getCurrentQuantity(), 10);
+        Assertions.assertEquals(iceberg.getHiddenQuantity(), 0);
+        Assertions.assertEquals(ob.getBestAskSize(), 10);
+
+        ob.amendOrderQty(0, 60);
+        Assertions.assertEquals(iceberg.getCurrentQuantity(), 10);
+        Assertions.assertEquals(iceberg.getHiddenQuantity(), 50);
+        Assertions.assertEquals(ob.availableVolume(Side.BUY, 101), 60);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testPriceAmendRelinksTheSameOrder()
+    {
+        Orderbook ob = newBook();
+        ob.addOrder(new Order(0, Side.BUY, 100, 99)); // id 0
+        ob.addOrder(new Order(0, Side.BUY, 50, 98));  // id 1
+        ob.addOrder(new Order(0, Side.SELL, 10, 101)); // id 2
+        Order order = ob.getOrderMap().get(0);
+
+        // off the touch: 98 becomes the best bid, the emptied 99 level is gone
+        ob.amendOrderPrice(0, 97);
+        Assertions.assertSame(ob.getOrderMap().get(0), order);
+        Assertions.assertEquals(order.getPrice(), 97);
+        Assertions.assertEquals(ob.getBestBid(), 98);
+        Assertions.assertNull(ob.getBidLimits().get(99));
+        Assertions.assertEquals(ob.getBidLimits().get(97).getTotalVolumeAtLimit(), 100);
+        Assertions.assertEquals(ob.getOrderMap().size(), 3);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // onto an existing level, behind the order already there
+        ob.amendOrderPrice(0, 98);
+        Assertions.assertEquals(ob.getBidLimits().first().getTail().getOrderId(), 0);
+        Assertions.assertEquals(ob.getBestBidSize(), 150);
+        Assertions.assertEquals(ob.getBidLimits().size(), 1);
+
+        // a crossing price has to trade: cancelled and replaced, the remainder rests under a new id
+        ob.amendOrderPrice(0, 101);
+        Assertions.assertFalse(ob.containsOrder(0));
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 1);
+        Assertions.assertEquals(ob.getBestBid(), 101);
+        Assertions.assertEquals(ob.getBestBidSize(), 90);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testRandomAmendsKeepTheBookConsistent()
+    {
+        Random random = new Random(7);
+        Orderbook ob = newBook();
+        int[] ids = new int[500];
+        for (int i = 0; i < ids.length; i++)
+        {
+            boolean buy = i % 2 == 0;
+            Order o = new Order(0, buy ? Side.BUY : Side.SELL, 1 + random.nextInt(100), buy ? 100 - random.nextInt(20) : 101 + random.nextInt(20),
+                    random.nextInt(4) == 0 ? 5 : 0);
+            ob.addOrder(o);
+            ids[i] = o.getOrderId();
+        }
+        for (int i = 0; i < 20_000; i++)
+        {
+            int id = ids[random.nextInt(ids.length)];
+            Order o = ob.getOrderMap().get(id);
+            if (random.nextBoolean())
+                ob.amendOrderQty(id, 1 + random.nextInt(150));
+            else
+                ob.amendOrderPrice(id, o.isBuy() ? 100 - random.nextInt(20) : 101 + random.nextInt(20));
+        }
+        Assertions.assertEquals(ob.getOrderMap().size(), ids.length);
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        Assertions.assertEquals(ob.getBestBid(), ob.getBidLimits().first().getPrice());
+        Assertions.assertEquals(ob.getBestAsk(), ob.getAskLimits().first().getPrice());
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    private static Orderbook newBook()
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+    }
+}
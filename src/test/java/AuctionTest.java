@@ -0,0 +1,218 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class AuctionTest {
+
+    @Test
+    public void testUncrossAtMaximumVolumePrice()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.BUY, 100, 102));  // id 0
+        ob.addOrder(new Order(0, Side.BUY, 200, 101));  // id 1
+        ob.addOrder(new Order(0, Side.BUY, 100, 100));  // id 2
+        ob.addOrder(new Order(0, Side.SELL, 150, 99));  // id 3
+        ob.addOrder(new Order(0, Side.SELL, 100, 100)); // id 4
+        ob.addOrder(new Order(0, Side.SELL, 100, 101)); // id 5
+        ob.addOrder(new Order(0, Side.SELL, 50, 103));  // id 6
+
+        // nothing matched while collecting, the book is crossed
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        Assertions.assertEquals(ob.getBestBid(), 102);
+        Assertions.assertEquals(ob.getBestAsk(), 99);
+
+        // cumulative bid/ask volume: 99 -> 400/150, 100 -> 400/250, 101 -> 300/350, 102 -> 100/350
+        Assertions.assertEquals(ob.uncross(), 101);
+        Assertions.assertFalse(ob.isInAuction());
+
+        // the bids are the short side and take the asks in price-time priority, 50 of the 101 level is left
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 4);
+        assertTrade(trades.get(0), 3, 0, 100);
+        assertTrade(trades.get(1), 3, 1, 50);
+        assertTrade(trades.get(2), 4, 1, 100);
+        assertTrade(trades.get(3), 5, 1, 50);
+        for (Trade t : trades)
+        {
+            Assertions.assertEquals(t.getPrice(), 101);
+            Assertions.assertEquals(t.getSide(), Side.BUY);
+        }
+
+        Assertions.assertEquals(ob.getBestBid(), 100);
+        Assertions.assertEquals(ob.getBestAsk(), 101);
+        Assertions.assertEquals(ob.getOrderMap().get(5).getCurrentQuantity(), 50);
+        Assertions.assertEquals(ob.getTotalBidSize(), 100);
+        Assertions.assertEquals(ob.getTotalAskSize(), 100);
+        Assertions.assertFalse(ob.getBidLimits().contains(new Limit(102)));
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testPartlyFilledLevelIsAllocatedByTheMatcherStyle()
+    {
+        // 22 of the 44 lots at 100 are executed: time priority gives it all to the first order, pro rata splits it
+        // 15/7, pro rata with top gives it to the top order
+        String[] engines = {"pricetime", "prorata", "proratawithtop"};
+        int[][] expectedFills = {{22}, {15, 7}, {22}};
+        for (int e = 0; e < engines.length; e++)
+        {
+            Orderbook ob = newBook(engines[e]);
+            ob.startAuction();
+            ob.addOrder(new Order(0, Side.BUY, 30, 100)); // id 0
+            ob.addOrder(new Order(0, Side.BUY, 14, 100)); // id 1
+            ob.addOrder(new Order(0, Side.SELL, 22, 99)); // id 2
+
+            Assertions.assertEquals(ob.uncross(), 100, engines[e]);
+            List<Trade> trades = ob.getMatchingEngine().getTrades();
+            Assertions.assertEquals(trades.size(), expectedFills[e].length, engines[e]);
+            for (int i = 0; i < trades.size(); i++)
+            {
+                assertTrade(trades.get(i), i, 2, expectedFills[e][i]);
+                Assertions.assertEquals(trades.get(i).getSide(), Side.SELL);
+            }
+            Assertions.assertEquals(ob.getTotalBidSize(), 22, engines[e]);
+            Assertions.assertTrue(ob.getAskLimits().isEmpty(), engines[e]);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engines[e]);
+        }
+    }
+
+    @Test
+    public void testPriceWithinTheMaximumVolumeRange()
+    {
+        // 100 lots trade anywhere between 95 and 105 with nothing left over: the middle of the range
+        Orderbook ob = newBook("pricetime");
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.BUY, 100, 105));
+        ob.addOrder(new Order(0, Side.SELL, 100, 95));
+        Assertions.assertEquals(ob.uncross(), 100);
+
+        // buyers are left over anywhere in the range, so the price goes to the top of it
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.BUY, 100, 105));
+        ob.addOrder(new Order(0, Side.SELL, 60, 95));
+        Assertions.assertEquals(ob.uncross(), 105);
+        Assertions.assertEquals(ob.getBestBid(), 105);
+        Assertions.assertEquals(ob.getBestBidSize(), 40);
+
+        // sellers are left over, the price goes to the bottom
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.SELL, 100, 103));
+        ob.addOrder(new Order(0, Side.BUY, 20, 110));
+        Assertions.assertEquals(ob.uncross(), 103);
+    }
+
+    @Test
+    public void testNothingCrosses()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.BUY, 100, 99));
+        ob.addOrder(new Order(0, Side.SELL, 100, 101));
+        ob.addOrder(new Order(0, Side.BUY, 100)); // market, not accepted during the auction
+
+        Assertions.assertEquals(ob.uncross(), Orderbook.NO_AUCTION_PRICE);
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        Assertions.assertEquals(ob.getTotalBidSize(), 100);
+        Assertions.assertEquals(ob.getTotalAskSize(), 100);
+    }
+
+    @Test
+    public void testBatchAuctionsUncrossEveryInterval()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.setBatchAuctionInterval(3);
+        ob.addOrder(new Order(0, Side.BUY, 100, 101));
+        ob.addOrder(new Order(0, Side.SELL, 50, 100));
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        ob.addOrder(new Order(0, Side.SELL, 30, 101)); // third order, the batch uncrosses
+
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 2);
+        Assertions.assertTrue(ob.isInAuction());
+        Assertions.assertEquals(ob.getBestBidSize(), 20);
+
+        ob.addOrder(new Order(0, Side.SELL, 20, 101));
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 2);
+        ob.setBatchAuctionInterval(0); // the pending batch is uncrossed, back to continuous matching
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 3);
+        Assertions.assertFalse(ob.isInAuction());
+        Assertions.assertTrue(ob.getBidLimits().isEmpty());
+        Assertions.assertTrue(ob.getAskLimits().isEmpty());
+    }
+
+    @Test
+    public void testRandomAuctionsMatchBruteForce()
+    {
+        for (String engine : new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Random random = new Random(7);
+            for (int round = 0; round < 200; round++)
+            {
+                Orderbook ob = newBook(engine);
+                ob.startAuction();
+                int orders = 1 + random.nextInt(60);
+                int[] bidVolume = new int[21];
+                int[] askVolume = new int[21];
+                for (int i = 0; i < orders; i++)
+                {
+                    int qty = 1 + random.nextInt(100);
+                    int offset = random.nextInt(21);
+                    Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                    ob.addOrder(new Order(0, side, qty, 90 + offset));
+                    if (side == Side.BUY)
+                        bidVolume[offset] += qty;
+                    else
+                        askVolume[offset] += qty;
+                }
+
+                // brute force: the most volume any price can execute
+                long best = 0;
+                for (int p = 0; p < 21; p++)
+                {
+                    long bids = 0, asks = 0;
+                    for (int q = p; q < 21; q++)
+                        bids += bidVolume[q];
+                    for (int q = 0; q <= p; q++)
+                        asks += askVolume[q];
+                    best = Math.max(best, Math.min(bids, asks));
+                }
+
+                int bidSize = ob.getTotalBidSize();
+                int askSize = ob.getTotalAskSize();
+                long price = ob.uncross();
+                long traded = 0;
+                for (Trade t : ob.getMatchingEngine().getTrades())
+                {
+                    Assertions.assertEquals(t.getPrice(), price, engine);
+                    traded += t.getVolume();
+                }
+
+                Assertions.assertEquals(traded, best, engine);
+                Assertions.assertEquals(ob.getTotalBidSize(), bidSize - traded, engine);
+                Assertions.assertEquals(ob.getTotalAskSize(), askSize - traded, engine);
+                Assertions.assertTrue(ob.getBidLimits().isEmpty() || ob.getAskLimits().isEmpty() || ob.getBestBid() < ob.getBestAsk(), engine);
+                Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+            }
+        }
+    }
+
+    private static Orderbook newBook(String engine)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123));
+    }
+
+    private static void assertTrade(Trade trade, int makerId, int takerId, int volume)
+    {
+        Assertions.assertEquals(trade.getMakerId(), makerId);
+        Assertions.assertEquals(trade.getTakerId(), takerId);
+        Assertions.assertEquals(trade.getVolume(), volume);
+    }
+}
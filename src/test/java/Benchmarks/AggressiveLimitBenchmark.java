@@ -0,0 +1,58 @@
+package Benchmarks;
+
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// an aggressive limit buy for 1 lot at the best ask, against an ask side `levels` deep. The best level holds one very
+// large order so it is never depleted and the book looks the same for every invocation; all the matching work is at
+// the touch, anything that grows with `levels` is the cost of finding it.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class AggressiveLimitBenchmark {
+    private static final long ASK = 10_001;
+
+    @Param({"pricetime", "prorata", "proratawithtop"})
+    public String matcher;
+
+    @Param({"10", "1000", "100000"})
+    public int levels;
+
+    private CountingTradeSink tradeSink;
+    private Orderbook ob;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        AbstractOrderMatcher orderMatcher = OrderMatcherFactory.createOrderMatcher(matcher);
+        tradeSink = new CountingTradeSink();
+        orderMatcher.setTradeListener(tradeSink);
+        ob = new Orderbook(orderMatcher, new Random(123),
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(levels * 2));
+
+        ob.addOrder(new Order(0, Side.BUY, 100, ASK - 1));
+        ob.addOrder(new Order(0, Side.SELL, 1_000_000_000, ASK));
+        for (int i = 1; i < levels; i++)
+            ob.addOrder(new Order(0, Side.SELL, 100, ASK + i));
+    }
+
+    @Benchmark
+    public long matchAtTouch()
+    {
+        ob.addOrder(new Order(0, Side.BUY, 1, ASK));
+        return tradeSink.getTradeCount();
+    }
+}
@@ -0,0 +1,87 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// amend-heavy flow against a deep book: every invocation amends a random resting order, 60% size-downs, 20% size-ups
+// and 20% moves to another price on the same side (never crossing). replace goes through modifyOrderQty /
+// modifyOrderPrice (cancel + new order under a new id), inplace through amendOrderQty / amendOrderPrice.
+// Run with -prof gc to get the allocation rate per operation.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class AmendBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+
+    @Param({"replace", "inplace"})
+    public String amend;
+
+    @Param({"100000"})
+    public int restingOrders;
+
+    private Orderbook ob;
+    private Random random;
+    private int[] liveOrderIds;
+    private int nextOrderId; // every order here rests, so a replacement takes the next id in sequence
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random);
+        liveOrderIds = new int[restingOrders];
+
+        for (int i = 0; i < restingOrders; i++)
+        {
+            int distance = random.nextInt(LEVELS);
+            Order o = random.nextBoolean() ? new Order(0, Side.BUY, 50, BID_INIT - distance)
+                    : new Order(0, Side.SELL, 50, ASK_INIT + distance);
+            ob.addOrder(o);
+            liveOrderIds[i] = o.getOrderId();
+        }
+        nextOrderId = restingOrders;
+    }
+
+    @Benchmark
+    public int amendRandomOrder()
+    {
+        int slot = random.nextInt(restingOrders);
+        Order o = ob.getOrderMap().get(liveOrderIds[slot]);
+        int action = random.nextInt(10);
+        boolean inPlace = amend.equals("inplace");
+        if (action < 8)
+        {
+            // size-down, or back up to 100 once the order is down to a single lot
+            int qty = action < 6 && o.getCurrentQuantity() > 1 ? 1 + random.nextInt(o.getCurrentQuantity() - 1) : 100;
+            if (inPlace)
+                ob.amendOrderQty(o.getOrderId(), qty);
+            else
+                ob.modifyOrderQty(o.getOrderId(), qty);
+        }
+        else
+        {
+            long price = o.isBuy() ? BID_INIT - random.nextInt(LEVELS) : ASK_INIT + random.nextInt(LEVELS);
+            if (price == o.getPrice())
+                return o.getOrderId();
+            if (inPlace)
+                ob.amendOrderPrice(o.getOrderId(), price);
+            else
+                ob.modifyOrderPrice(o.getOrderId(), price);
+        }
+
+        if (!inPlace && !ob.containsOrder(liveOrderIds[slot]))
+            liveOrderIds[slot] = nextOrderId++;
+        return liveOrderIds[slot];
+    }
+}
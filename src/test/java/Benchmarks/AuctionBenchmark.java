@@ -0,0 +1,76 @@
+package Benchmarks;
+
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// throughput of the same flow of limit orders, matched continuously (batchInterval 0) or collected into batch auctions
+// of batchInterval orders that are uncrossed at once. The orders are spread over 21 prices around the mid on both
+// sides, so about half of them cross on arrival. The book is rebuilt before every invocation (not timed); scores are
+// per order.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class AuctionBenchmark {
+    private static final int ORDERS = 10_000;
+    private static final long MID = 10_000;
+
+    @Param({"pricetime", "prorata", "proratawithtop"})
+    public String matcher;
+
+    @Param({"0", "10", "100", "1000"})
+    public int batchInterval;
+
+    private final Side[] sides = new Side[ORDERS];
+    private final int[] quantities = new int[ORDERS];
+    private final long[] prices = new long[ORDERS];
+
+    private AbstractOrderMatcher orderMatcher;
+    private CountingTradeSink tradeSink;
+    private Orderbook ob;
+
+    @Setup(Level.Trial)
+    public void setupFlow()
+    {
+        Random random = new Random(123);
+        for (int i = 0; i < ORDERS; i++)
+        {
+            sides[i] = random.nextBoolean() ? Side.BUY : Side.SELL;
+            quantities[i] = 1 + random.nextInt(100);
+            prices[i] = MID - 10 + random.nextInt(21);
+        }
+        orderMatcher = OrderMatcherFactory.createOrderMatcher(matcher);
+        tradeSink = new CountingTradeSink();
+        orderMatcher.setTradeListener(tradeSink);
+    }
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        ob = new Orderbook(orderMatcher, new Random(123),
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(ORDERS * 2));
+        ob.setBatchAuctionInterval(batchInterval);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public long matchFlow()
+    {
+        for (int i = 0; i < ORDERS; i++)
+            ob.addOrder(new Order(0, sides[i], quantities[i], prices[i]));
+        ob.setBatchAuctionInterval(0); // uncrosses whatever the last batch collected
+        return tradeSink.getTradeCount();
+    }
+}
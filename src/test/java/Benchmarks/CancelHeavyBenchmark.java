@@ -0,0 +1,66 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// cancel-heavy flow against a deep book: every invocation cancels a random resting order and replaces it with a new one
+// at a random level, so the orderId -> Order index sees one lookup + remove and one insert per operation.
+// Run with -prof gc to get the allocation rate per operation.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class CancelHeavyBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+
+    @Param({"1000000"})
+    public int restingOrders;
+
+    private Orderbook ob;
+    private Random random;
+    private int[] liveOrderIds;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random);
+        liveOrderIds = new int[restingOrders];
+
+        for (int i = 0; i < restingOrders; i++)
+        {
+            Order o = newPassiveOrder();
+            ob.addOrder(o);
+            liveOrderIds[i] = o.getOrderId();
+        }
+    }
+
+    @Benchmark
+    public int cancelAndReplace()
+    {
+        int slot = random.nextInt(restingOrders);
+        ob.removeOrder(liveOrderIds[slot], false);
+
+        Order o = newPassiveOrder();
+        ob.addOrder(o);
+        liveOrderIds[slot] = o.getOrderId();
+        return o.getOrderId();
+    }
+
+    private Order newPassiveOrder()
+    {
+        int distance = random.nextInt(LEVELS);
+        return random.nextBoolean() ? new Order(0, Side.BUY, 10, BID_INIT - distance)
+                : new Order(0, Side.SELL, 10, ASK_INIT + distance);
+    }
+}
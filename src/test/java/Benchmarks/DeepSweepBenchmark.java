@@ -0,0 +1,61 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSideFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// a market buy that clears the first levelsCrossed ask levels of a book that is askLevels deep, followed by re-adding
+// the cleared levels so every invocation starts from the same book. The cost should scale with levelsCrossed, not with
+// askLevels.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class DeepSweepBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVEL_QTY = 10;
+
+    @Param({"treeset", "ladder"})
+    public String bookStructure;
+
+    @Param({"100", "1000", "5000", "10000"})
+    public int askLevels;
+
+    @Param({"1", "10", "100"})
+    public int levelsCrossed;
+
+    private Orderbook ob;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123),
+                BookSideFactory.createBookSide(bookStructure, true),
+                BookSideFactory.createBookSide(bookStructure, false),
+                new IntOrderMap(askLevels * 2));
+
+        ob.addOrder(new Order(0, Side.BUY, LEVEL_QTY, BID_INIT));
+        for (int i = 0; i < askLevels; i++)
+            ob.addOrder(new Order(0, Side.SELL, LEVEL_QTY, ASK_INIT + i));
+    }
+
+    @Benchmark
+    public long sweepAndRefill()
+    {
+        ob.addOrder(new Order(0, Side.BUY, levelsCrossed * LEVEL_QTY));
+        for (int i = 0; i < levelsCrossed; i++)
+            ob.addOrder(new Order(0, Side.SELL, LEVEL_QTY, ASK_INIT + i));
+        ob.getMatchingEngine().getTrades().clear();
+        return ob.getBestAsk();
+    }
+}
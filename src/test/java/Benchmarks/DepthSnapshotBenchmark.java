@@ -0,0 +1,108 @@
+package Benchmarks;
+
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSide;
+import Orderbook.DepthPublisher;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// matching thread cost of keeping top-10 depth snapshots current on a 100 level deep book. Every invocation cancels
+// a random resting order and enters a new one anywhere in the 100 levels; every 10th also sends a small market order.
+// none publishes nothing, incremental uses the book's DepthPublisher, rebuild copies the top levels of both sides into
+// new arrays after every order, the straightforward way of producing the same snapshots.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class DepthSnapshotBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+    private static final int DEPTH = 10;
+
+    @Param({"none", "incremental", "rebuild"})
+    public String publication;
+
+    @Param({"10000"})
+    public int restingOrders;
+
+    private Orderbook ob;
+    private Random random;
+    private int[] liveOrderIds;
+    private long operations;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random);
+        ob.getMatchingEngine().setTradeListener(new CountingTradeSink());
+        if (publication.equals("incremental"))
+            ob.setDepthPublisher(new DepthPublisher(DEPTH));
+        liveOrderIds = new int[restingOrders];
+        for (int i = 0; i < restingOrders; i++)
+            liveOrderIds[i] = addPassive();
+    }
+
+    @Benchmark
+    public void cancelAndReplace(Blackhole bh)
+    {
+        int slot = random.nextInt(restingOrders);
+        ob.removeOrder(liveOrderIds[slot], false);
+        liveOrderIds[slot] = addPassive();
+        if (publication.equals("rebuild"))
+            rebuild(bh);
+
+        if (++operations % 10 == 0)
+        {
+            ob.addOrder(new Order(0, random.nextBoolean() ? Side.BUY : Side.SELL, 1 + random.nextInt(20)));
+            if (publication.equals("rebuild"))
+                rebuild(bh);
+        }
+    }
+
+    private int addPassive()
+    {
+        int distance = random.nextInt(LEVELS);
+        Order o = random.nextBoolean() ? new Order(0, Side.BUY, 1 + random.nextInt(50), BID_INIT - distance)
+                : new Order(0, Side.SELL, 1 + random.nextInt(50), ASK_INIT + distance);
+        ob.addOrder(o);
+        return o.getOrderId();
+    }
+
+    private void rebuild(Blackhole bh)
+    {
+        rebuildSide(ob.getBidLimits(), bh);
+        rebuildSide(ob.getAskLimits(), bh);
+    }
+
+    private void rebuildSide(BookSide side, Blackhole bh)
+    {
+        long[] prices = new long[DEPTH];
+        int[] volumes = new int[DEPTH];
+        int[] orderCounts = new int[DEPTH];
+        int size = 0;
+        for (Limit limit: side)
+        {
+            if (size == DEPTH)
+                break;
+            prices[size] = limit.getPrice();
+            volumes[size] = limit.getTotalVolumeAtLimit();
+            orderCounts[size] = limit.getOrderCount();
+            size++;
+        }
+        bh.consume(prices);
+        bh.consume(volumes);
+        bh.consume(orderCounts);
+    }
+}
@@ -0,0 +1,69 @@
+package Benchmarks;
+
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSide;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// a fill-or-kill buy whose limit price reaches the last of `levels` ask levels but asks for one lot more than all of
+// them hold, so it is always killed and the book never changes. killFillOrKill is the whole order through addOrder,
+// answered from the depth index; walkLevels is the same liquidity question answered by summing the levels instead.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class FillOrKillBenchmark {
+    private static final long ASK = 10_001;
+
+    @Param({"10", "1000", "100000"})
+    public int levels;
+
+    private Orderbook ob;
+    private long limitPrice;
+    private int qty;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        AbstractOrderMatcher orderMatcher = OrderMatcherFactory.createOrderMatcher("pricetime");
+        orderMatcher.setTradeListener(new CountingTradeSink());
+        ob = new Orderbook(orderMatcher, new Random(123),
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(levels * 2));
+
+        ob.addOrder(new Order(0, Side.BUY, 100, ASK - 1));
+        for (int i = 0; i < levels; i++)
+            ob.addOrder(new Order(0, Side.SELL, 100, ASK + i));
+        limitPrice = ASK + levels - 1;
+        qty = levels * 100 + 1;
+    }
+
+    @Benchmark
+    public int killFillOrKill()
+    {
+        ob.addOrder(new Order(0, Side.BUY, qty, limitPrice, TIME_IN_FORCE.FOK));
+        return ob.getTotalAskSize();
+    }
+
+    @Benchmark
+    public boolean walkLevels()
+    {
+        BookSide askLimits = ob.getAskLimits();
+        long available = 0;
+        for (Limit limit = askLimits.first(); limit != null && limit.getPrice() <= limitPrice; limit = askLimits.higher(limit))
+            available += limit.getTotalVolumeAtLimit();
+        return available >= qty;
+    }
+}
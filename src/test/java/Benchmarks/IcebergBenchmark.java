@@ -0,0 +1,83 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// a 10,000 lot sell worked 100 lots at a time at the best ask, behind 10 ordinary orders, while 100-lot buys lift the
+// level. native rests it once as an iceberg that refreshes in place; sliced rests one child order at a time and
+// submits the next child through addOrder whenever the previous one is gone, like a client slicing it itself would.
+// The book is rebuilt before every invocation (not timed); scores are per taker.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class IcebergBenchmark {
+    private static final long BID = 10_000;
+    private static final long ASK = 10_001;
+    private static final int PARENT = 10_000;
+    private static final int SLICE = 100;
+    private static final int TAKERS = 100;
+
+    @Param({"pricetime", "prorata", "proratawithtop"})
+    public String matcher;
+
+    private Orderbook ob;
+    private int childId;
+    private int childrenLeft;
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher(matcher), new Random(123));
+        for (int i = 0; i < 10; i++)
+        {
+            ob.addOrder(new Order(0, Side.BUY, SLICE, BID - i));
+            ob.addOrder(new Order(0, Side.SELL, SLICE, ASK + 1 + i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAKERS)
+    public int nativeIceberg()
+    {
+        ob.addOrder(new Order(0, Side.SELL, PARENT, ASK, SLICE));
+        for (int i = 0; i < 10; i++)
+            ob.addOrder(new Order(0, Side.SELL, SLICE, ASK));
+        for (int i = 0; i < TAKERS; i++)
+            ob.addOrder(new Order(0, Side.BUY, SLICE, ASK));
+        return ob.getOrderMap().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAKERS)
+    public int clientSliced()
+    {
+        childrenLeft = PARENT / SLICE;
+        submitChild();
+        for (int i = 0; i < 10; i++)
+            ob.addOrder(new Order(0, Side.SELL, SLICE, ASK));
+        for (int i = 0; i < TAKERS; i++)
+        {
+            ob.addOrder(new Order(0, Side.BUY, SLICE, ASK));
+            if (!ob.containsOrder(childId) && childrenLeft > 0)
+                submitChild();
+        }
+        return ob.getOrderMap().size();
+    }
+
+    private void submitChild()
+    {
+        Order child = new Order(0, Side.SELL, SLICE, ASK);
+        ob.addOrder(child);
+        childId = child.getOrderId();
+        childrenLeft--;
+    }
+}
@@ -0,0 +1,117 @@
+package Benchmarks;
+
+import Journal.EventJournal;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// cost of recording what the book does. Each invocation rests an order, amends one, cancels one and sends a market
+// order that trades against the top of the book. output=text logs every step at INFO to a buffered file (a normal run),
+// output=journal switches text logging off and writes binary records to an EventJournal, output=none records nothing.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench-text.properties")
+public class JournalBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 20;
+
+    @Param({"text", "journal", "none"})
+    public String output;
+
+    @Param({"10000"})
+    public int restingOrders;
+
+    private Orderbook ob;
+    private Random random;
+    private int[] liveOrderIds;
+    private EventJournal journal;
+    private Path journalFile;
+
+    @Setup(Level.Trial)
+    public void setupLogging() throws IOException
+    {
+        org.apache.logging.log4j.Level level = output.equals("text") ? org.apache.logging.log4j.Level.INFO : org.apache.logging.log4j.Level.WARN;
+        Configurator.setLevel("Orderbook", level);
+        Configurator.setLevel("MatchingEngine", level);
+        journalFile = Files.createTempFile("bench", ".journal");
+    }
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random,
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(restingOrders * 2));
+        liveOrderIds = new int[restingOrders];
+        for (int i = 0; i < restingOrders; i++)
+        {
+            Order o = newPassiveOrder(random.nextBoolean() ? Side.BUY : Side.SELL);
+            ob.addOrder(o);
+            liveOrderIds[i] = o.getOrderId();
+        }
+
+        if (output.equals("journal"))
+        {
+            journal = new EventJournal(journalFile);
+            ob.setJournal(journal);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        if (journal != null)
+            journal.close();
+        journal = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException
+    {
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Benchmark
+    public int addAmendCancelTrade()
+    {
+        int slot = random.nextInt(restingOrders);
+        ob.modifyOrderQty(liveOrderIds[slot], 5 + random.nextInt(10));
+        liveOrderIds[slot] = -1; // the amend gave the order a new id, replaced below
+
+        int cancelSlot = random.nextInt(restingOrders);
+        ob.removeOrder(liveOrderIds[cancelSlot], false);
+
+        Order o = newPassiveOrder(Side.SELL);
+        ob.addOrder(o);
+        liveOrderIds[cancelSlot] = o.getOrderId();
+        Order replacement = newPassiveOrder(Side.BUY);
+        ob.addOrder(replacement);
+        liveOrderIds[slot] = replacement.getOrderId();
+
+        ob.addOrder(new Order(0, random.nextBoolean() ? Side.BUY : Side.SELL, 10));
+        int trades = ob.getMatchingEngine().getTrades().size();
+        ob.getMatchingEngine().getTrades().clear();
+        return trades;
+    }
+
+    private Order newPassiveOrder(Side side)
+    {
+        int distance = random.nextInt(LEVELS);
+        return side == Side.BUY ? new Order(0, Side.BUY, 10, BID_INIT - distance) : new Order(0, Side.SELL, 10, ASK_INIT + distance);
+    }
+}
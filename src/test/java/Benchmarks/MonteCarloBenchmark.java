@@ -0,0 +1,39 @@
+package Benchmarks;
+
+import Simulation.MonteCarloRunner;
+import Simulation.MonteCarloSummary;
+import Simulation.SimulationConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// simulation runs per second of a Monte Carlo batch (the test config: 100 + 10k events per run) by thread count. Each
+// invocation is one batch of 16 runs with fresh seeds.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class MonteCarloBenchmark {
+    private static final int RUNS = 16;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private MonteCarloRunner runner;
+    private long baseSeed;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        runner = new MonteCarloRunner(new SimulationConfig("simulationConfig-test.properties"), threads);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RUNS)
+    public MonteCarloSummary batch()
+    {
+        return runner.run(baseSeed++, RUNS);
+    }
+}
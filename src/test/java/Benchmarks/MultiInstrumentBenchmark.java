@@ -0,0 +1,92 @@
+package Benchmarks;
+
+import Engine.Exchange;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// order entry spread evenly over many instruments. Each invocation routes a pre-generated batch of limit and market
+// orders through the Exchange from the benchmark thread and waits until every partition has applied it, so the score
+// is the time per order end to end. partitions = 0 is the baseline without an Exchange: the benchmark thread adds
+// every order to its book itself. The batch only spreads over the partitions in parallel with as many free cores.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class MultiInstrumentBenchmark {
+    private static final int BATCH = 16_384;
+    private static final long MID = 10_000;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int partitions;
+
+    @Param({"64"})
+    public int instruments;
+
+    private Exchange exchange;
+    private Orderbook[] books;
+    private Random random;
+    private final Order[] batch = new Order[BATCH];
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        books = new Orderbook[instruments];
+        exchange = partitions == 0 ? null : new Exchange(partitions);
+        for (int sec = 0; sec < instruments; sec++)
+        {
+            books[sec] = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(sec));
+            books[sec].getMatchingEngine().setTradeListener(new CountingTradeSink());
+            if (exchange != null)
+                exchange.addInstrument(sec, books[sec]);
+        }
+        if (exchange != null)
+            exchange.start();
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch()
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            int sec = random.nextInt(instruments);
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            int qty = 1 + random.nextInt(100);
+            if (random.nextInt(10) == 0)
+                batch[i] = new Order(sec, side, qty);
+            else
+                batch[i] = new Order(sec, side, qty, side == Side.BUY ? MID - 5 + random.nextInt(10) : MID + random.nextInt(10));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException
+    {
+        if (exchange != null)
+            exchange.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void routeBatch()
+    {
+        if (exchange == null)
+        {
+            for (Order o: batch)
+                books[o.getSecurityId()].addOrder(o);
+            return;
+        }
+        for (Order o: batch)
+            exchange.submit(o);
+        exchange.awaitIdle();
+    }
+}
@@ -0,0 +1,87 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.OffHeapOrderbook;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// side by side footprint of a deep resting book: the object graph Orderbook vs OffHeapOrderbook. Each invocation is a
+// full GC with the whole book live, so the score is the pause a collector pays to trace the book. The aux counters
+// report the retained heap and the direct (off-heap) memory in use after that GC.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j2.configurationFile=log4j2-bench.properties", "-Xms3g", "-Xmx3g"})
+public class OffHeapFootprintBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+
+    @Param({"objects", "offheap"})
+    public String backend;
+
+    @Param({"10000000"})
+    public int restingOrders;
+
+    private Orderbook objects;
+    private OffHeapOrderbook offHeap;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long heapMB;
+        public long directMB;
+    }
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(123);
+        if (backend.equals("objects"))
+        {
+            objects = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random,
+                    new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(restingOrders));
+        }
+        else
+        {
+            offHeap = new OffHeapOrderbook(restingOrders);
+        }
+
+        for (int i = 0; i < restingOrders; i++)
+        {
+            int distance = random.nextInt(LEVELS);
+            boolean isBuy = random.nextBoolean();
+            long price = isBuy ? BID_INIT - distance : ASK_INIT + distance;
+            if (objects != null)
+                objects.addOrder(new Order(0, isBuy ? Side.BUY : Side.SELL, 10, price));
+            else
+                offHeap.addOrder(isBuy ? Side.BUY : Side.SELL, 10, price);
+        }
+    }
+
+    @Benchmark
+    public int fullGc(Footprint footprint)
+    {
+        System.gc();
+
+        footprint.heapMB = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20;
+        footprint.directMB = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+        {
+            if (pool.getName().equals("direct"))
+                footprint.directMB = pool.getMemoryUsed() >> 20;
+        }
+        return objects != null ? objects.getOrderMap().size() : offHeap.getOrderCount();
+    }
+}
@@ -0,0 +1,68 @@
+package Benchmarks;
+
+import Orderbook.IntOrderMap;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// the orderId -> Order index on its own: HashMap<Integer, Order> vs IntOrderMap under cancel/replace churn with a
+// large resident set. Each operation is a lookup, a remove and an insert of a fresh (monotonically increasing) id,
+// the same access pattern Orderbook.removeOrder + addOrder produce. Run with -prof gc for allocation numbers.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderIndexBenchmark {
+    @Param({"1000000"})
+    public int restingOrders;
+
+    private final Order order = new Order(0, Side.BUY, 10, 100);
+    private HashMap<Integer, Order> hashMap;
+    private IntOrderMap intOrderMap;
+    private int[] liveOrderIds;
+    private int nextOrderId;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        hashMap = new HashMap<>();
+        intOrderMap = new IntOrderMap(restingOrders);
+        liveOrderIds = new int[restingOrders];
+        for (nextOrderId = 0; nextOrderId < restingOrders; nextOrderId++)
+        {
+            hashMap.put(nextOrderId, order);
+            intOrderMap.put(nextOrderId, order);
+            liveOrderIds[nextOrderId] = nextOrderId;
+        }
+    }
+
+    @Benchmark
+    public Order hashMapCancelReplace()
+    {
+        int slot = random.nextInt(restingOrders);
+        Order cancelled = null;
+        if (hashMap.containsKey(liveOrderIds[slot]))
+            cancelled = hashMap.remove(liveOrderIds[slot]);
+        hashMap.put(nextOrderId, order);
+        liveOrderIds[slot] = nextOrderId++;
+        return cancelled;
+    }
+
+    @Benchmark
+    public Order intOrderMapCancelReplace()
+    {
+        int slot = random.nextInt(restingOrders);
+        Order cancelled = intOrderMap.remove(liveOrderIds[slot]);
+        intOrderMap.put(nextOrderId, order);
+        liveOrderIds[slot] = nextOrderId++;
+        return cancelled;
+    }
+}
@@ -0,0 +1,129 @@
+package Benchmarks;
+
+import Engine.CommandHandler;
+import Engine.CommandRing;
+import Engine.OrderMessages;
+import Engine.OrderPipeline;
+import Engine.WaitStrategy;
+import MatchingEngine.OrderMatcherFactory;
+import MatchingEngine.TradeListener;
+import Orderbook.Orderbook;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import Orders.Trade;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// binary order entry for one book, end to end: each invocation takes a pre-encoded batch of limit and market orders
+// (with an occasional cancel or qty amend) and is done once every message has been decoded, matched and its fills
+// encoded into an outbound buffer. inline does all of it on the benchmark thread; pipeline submits the batch to an
+// OrderPipeline, which does the decoding, matching and fill encoding on a thread per stage. The stages only overlap
+// with as many free cores.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class PipelineBenchmark {
+    private static final int BATCH = 16_384;
+    private static final int SECURITY_ID = 1;
+    private static final long MID = 10_000;
+
+    @Param({"inline", "pipeline"})
+    public String engine;
+
+    private Orderbook ob;
+    private OrderPipeline pipeline;
+    private CommandHandler inlineHandler;
+    private Random random;
+    private int ordersSent;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // encodes every fill the way a gateway would before writing it out
+    static class FillEncoder implements TradeListener {
+        private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        public void onTrade(Trade trade)
+        {
+            if (out.remaining() < 24)
+                out.clear();
+            out.putLong(trade.getPrice()).putInt(trade.getVolume()).putInt(trade.getMakerId()).putInt(trade.getTakerId()).putInt(trade.getSide().ordinal());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ordersSent = 0;
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        if (engine.equals("pipeline"))
+        {
+            pipeline = new OrderPipeline(SECURITY_ID, ob, new FillEncoder(), 1024, WaitStrategy.YIELD);
+            pipeline.start();
+            return;
+        }
+        ob.getMatchingEngine().setTradeListener(new FillEncoder());
+        inlineHandler = (type, bookSlot, order, orderId, value) -> {
+            switch (type)
+            {
+                case CommandRing.ADD: ob.addOrder(order); break;
+                case CommandRing.CANCEL: ob.removeOrder(orderId, false); break;
+                case CommandRing.AMEND_QTY: ob.amendOrderQty(orderId, (int) value); break;
+                default: ob.amendOrderPrice(orderId, value); break;
+            }
+        };
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch()
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            int offset = i * OrderMessages.MESSAGE_SIZE;
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            int qty = 1 + random.nextInt(100);
+            int action = random.nextInt(20);
+            if (action < 2 && ordersSent > 0)
+                OrderMessages.encodeCancel(batch, offset, SECURITY_ID, random.nextInt(ordersSent), i);
+            else if (action < 3 && ordersSent > 0)
+                OrderMessages.encodeAmendQty(batch, offset, SECURITY_ID, random.nextInt(ordersSent), qty, i);
+            else if (action < 5)
+                OrderMessages.encodeMarketOrder(batch, offset, SECURITY_ID, side, qty, i);
+            else
+                OrderMessages.encodeLimitOrder(batch, offset, SECURITY_ID, side, qty,
+                        side == Side.BUY ? MID - 5 + random.nextInt(10) : MID + random.nextInt(10), TIME_IN_FORCE.GTC, i);
+            if (OrderMessages.type(batch, offset) == OrderMessages.NEW_ORDER)
+                ordersSent++;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException
+    {
+        if (pipeline != null)
+            pipeline.stop();
+        pipeline = null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void processBatch()
+    {
+        if (pipeline == null)
+        {
+            for (int i = 0; i < BATCH; i++)
+                OrderMessages.decode(batch, i * OrderMessages.MESSAGE_SIZE, 0, inlineHandler);
+            return;
+        }
+        for (int i = 0; i < BATCH; i++)
+            pipeline.submit(batch, i * OrderMessages.MESSAGE_SIZE);
+        pipeline.awaitIdle();
+    }
+}
@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// steady state add/cancel/match flow with and without object pooling. cancelAndReplace cancels a random resting order
+// and rests a new one, addAndTrade rests a sell and lifts the same quantity off the top of the ask side with a market
+// order, then hands the trades back. Run with -prof gc to compare the allocation rate per operation.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class PoolingBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+
+    @Param({"false", "true"})
+    public boolean pooling;
+
+    @Param({"100000"})
+    public int restingOrders;
+
+    private Orderbook ob;
+    private Random random;
+    private int[] liveOrderIds;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random,
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(restingOrders * 2), pooling);
+        liveOrderIds = new int[restingOrders];
+
+        for (int i = 0; i < restingOrders; i++)
+        {
+            Order o = newPassiveOrder(random.nextBoolean() ? Side.BUY : Side.SELL);
+            ob.addOrder(o);
+            liveOrderIds[i] = o.getOrderId();
+        }
+    }
+
+    @Benchmark
+    public int cancelAndReplace()
+    {
+        int slot = random.nextInt(restingOrders);
+        ob.removeOrder(liveOrderIds[slot], false);
+
+        Order o = newPassiveOrder(random.nextBoolean() ? Side.BUY : Side.SELL);
+        ob.addOrder(o);
+        liveOrderIds[slot] = o.getOrderId();
+        return o.getOrderId();
+    }
+
+    @Benchmark
+    public int addAndTrade()
+    {
+        ob.addOrder(newPassiveOrder(Side.SELL));
+        ob.addOrder(ob.acquireMarketOrder(0, Side.BUY, 10));
+        int trades = ob.getMatchingEngine().getTrades().size();
+        ob.getMatchingEngine().releaseTrades(ob);
+        return trades;
+    }
+
+    private Order newPassiveOrder(Side side)
+    {
+        int distance = random.nextInt(LEVELS);
+        return side == Side.BUY ? ob.acquireOrder(0, Side.BUY, 10, BID_INIT - distance)
+                : ob.acquireOrder(0, Side.SELL, 10, ASK_INIT + distance);
+    }
+}
@@ -0,0 +1,89 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSideFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// add/cancel/match throughput of the TreeSet book sides vs the array backed price ladder.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class PriceLadderBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+
+    @Param({"treeset", "ladder"})
+    public String bookStructure;
+
+    @Param({"2000"})
+    public int levels;
+
+    private Orderbook ob;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random,
+                BookSideFactory.createBookSide(bookStructure, true),
+                BookSideFactory.createBookSide(bookStructure, false));
+
+        // a few orders on every tick of each side
+        for (int i = 0; i < levels; i++)
+        {
+            for (int j = 0; j < 4; j++)
+            {
+                ob.addOrder(new Order(0, Side.BUY, 100, BID_INIT - i));
+                ob.addOrder(new Order(0, Side.SELL, 100, ASK_INIT + i));
+            }
+        }
+    }
+
+    @Benchmark
+    public int addCancel()
+    {
+        boolean isBuy = random.nextBoolean();
+        int distance = random.nextInt(levels);
+        Order o = isBuy ? new Order(0, Side.BUY, 10, ob.getBestBid() - distance)
+                : new Order(0, Side.SELL, 10, ob.getBestAsk() + distance);
+        ob.addOrder(o);
+        ob.removeOrder(o.getOrderId(), false);
+        return o.getOrderId();
+    }
+
+    @Benchmark
+    public long marketOrderAndReplenish()
+    {
+        // small market order against the touch, then put the same volume back somewhere on the side we took from so
+        // the shape of the book stays stable across invocations
+        boolean isBuy = random.nextBoolean();
+        int distance = random.nextInt(levels);
+        if (isBuy)
+        {
+            ob.addOrder(new Order(0, Side.BUY, 50));
+            ob.addOrder(new Order(0, Side.SELL, 50, ob.getBestBid() + 1 + distance));
+        }
+        else
+        {
+            ob.addOrder(new Order(0, Side.SELL, 50));
+            ob.addOrder(new Order(0, Side.BUY, 50, ob.getBestAsk() - 1 - distance));
+        }
+        return ob.getBestBid();
+    }
+
+    @Benchmark
+    public int bestLevelSizes()
+    {
+        return ob.getBestBidSize() + ob.getBestAskSize();
+    }
+}
@@ -0,0 +1,72 @@
+package Benchmarks;
+
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// one pro-rata allocation over a single ask level holding ordersPerLevel orders of random size. The market buy takes a
+// tenth of the level, so every order gets a share and the rounding residue is handed out FIFO. The level is rebuilt
+// before every invocation (not timed) so each match sees the same queue. Allocation figures from -prof gc include the
+// rebuild.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class ProRataLevelBenchmark {
+    private static final long ASK = 10_001;
+
+    @Param({"prorata", "proratawithtop"})
+    public String matcher;
+
+    @Param({"10", "100", "1000"})
+    public int ordersPerLevel;
+
+    private AbstractOrderMatcher orderMatcher;
+    private CountingTradeSink tradeSink;
+    private Orderbook ob;
+    private int marketQty;
+
+    @Setup(Level.Trial)
+    public void setupMatcher()
+    {
+        // one matcher for the whole run, so whatever it keeps between matches is warm
+        orderMatcher = OrderMatcherFactory.createOrderMatcher(matcher);
+        tradeSink = new CountingTradeSink();
+        orderMatcher.setTradeListener(tradeSink);
+    }
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        Random random = new Random(123);
+        ob = new Orderbook(orderMatcher, random,
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(ordersPerLevel * 2));
+        int levelVolume = 0;
+        for (int i = 0; i < ordersPerLevel; i++)
+        {
+            int qty = 50 + random.nextInt(100);
+            ob.addOrder(new Order(0, Side.SELL, qty, ASK));
+            levelVolume += qty;
+        }
+        ob.addOrder(new Order(0, Side.SELL, 1_000, ASK + 1)); // so the sweep is never rejected for taking the whole side
+        marketQty = levelVolume / 10;
+    }
+
+    @Benchmark
+    public int matchLevel()
+    {
+        ob.addOrder(new Order(0, Side.BUY, marketQty));
+        return (int) tradeSink.getTradeCount();
+    }
+}
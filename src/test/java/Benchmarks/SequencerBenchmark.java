@@ -0,0 +1,86 @@
+package Benchmarks;
+
+import Engine.OrderSequencer;
+import Engine.WaitStrategy;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 4 threads entering orders into one book at once. synchronized is the usual lock around Orderbook.addOrder; the
+// others publish into an OrderSequencer with the given wait strategy and return once the command is in the ring, the
+// sequencer thread matching it later. The ring holds far fewer commands than an iteration sends, so after the first
+// few ms the producers are held to the rate the sequencer applies them at. Throughput is orders per us over all
+// threads, the sample time mode gives the per order latency percentiles seen by a producer.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class SequencerBenchmark {
+    private static final long MID = 10_000;
+
+    @Param({"synchronized", "BUSY_SPIN", "YIELD", "PARK"})
+    public String entry;
+
+    private Orderbook ob;
+    private OrderSequencer sequencer;
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private final Random random = new Random(Thread.currentThread().getId());
+
+        Order nextOrder()
+        {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            int qty = 1 + random.nextInt(100);
+            if (random.nextInt(10) == 0)
+                return new Order(0, side, qty);
+            return new Order(0, side, qty, side == Side.BUY ? MID - 5 + random.nextInt(10) : MID + random.nextInt(10));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        ob.getMatchingEngine().setTradeListener(new CountingTradeSink());
+        if (!entry.equals("synchronized"))
+        {
+            sequencer = new OrderSequencer(ob, 1 << 14, WaitStrategy.valueOf(entry));
+            sequencer.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException
+    {
+        if (sequencer != null)
+        {
+            sequencer.stop();
+            sequencer = null;
+        }
+    }
+
+    @Benchmark
+    public void enterOrder(Producer producer)
+    {
+        Order o = producer.nextOrder();
+        if (sequencer != null)
+        {
+            sequencer.add(o);
+            return;
+        }
+        synchronized (ob)
+        {
+            ob.addOrder(o);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// a sharp move through 100k resting sell stops: 1-lot stop market orders, 50 per tick over the 2,000 ticks below the
+// best bid, against 50 lots per bid level. A 50-lot market sell takes the first level, the 50 stops it triggers take
+// the next one, and so on: one cascade of 100k stops walking the bid down 2,000 ticks. engine keeps the stops in the
+// book's StopBook; client emulates them outside the engine the way we do today, watching the trades after every order
+// and submitting the stops they reach. Both run in process, so client leaves out the round trip it costs in
+// production. The book is rebuilt before every invocation (not timed); scores are per triggered stop.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class StopCascadeBenchmark {
+    private static final long BID_INIT = 100_000;
+    private static final int STOPS = 100_000;
+    private static final int STOPS_PER_TICK = 50;
+    private static final int LEVEL_QTY = 50;
+    private static final int BID_LEVELS = STOPS / STOPS_PER_TICK + 100;
+
+    private Orderbook ob;
+    private TreeMap<Long, ArrayDeque<Order>> clientStops; // highest stop price first
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123),
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(BID_LEVELS * 2));
+        for (int i = 0; i < BID_LEVELS; i++)
+            ob.addOrder(new Order(0, Side.BUY, LEVEL_QTY, BID_INIT - i));
+        ob.addOrder(new Order(0, Side.SELL, LEVEL_QTY, BID_INIT + 1));
+        clientStops = new TreeMap<>((a, b) -> Long.compare(b, a));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STOPS)
+    public int engine()
+    {
+        for (int i = 0; i < STOPS; i++)
+            ob.addOrder(Order.stop(0, Side.SELL, 1, BID_INIT - i / STOPS_PER_TICK));
+        ob.addOrder(new Order(0, Side.SELL, LEVEL_QTY));
+        return ob.getMatchingEngine().getTrades().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STOPS)
+    public int client()
+    {
+        for (int i = 0; i < STOPS; i++)
+            clientStops.computeIfAbsent(BID_INIT - i / STOPS_PER_TICK, price -> new ArrayDeque<>()).add(new Order(0, Side.SELL, 1));
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        ArrayDeque<Order> triggered = new ArrayDeque<>();
+        int seen = 0;
+        ob.addOrder(new Order(0, Side.SELL, LEVEL_QTY));
+        while (true)
+        {
+            long lowest = Long.MAX_VALUE;
+            for (; seen < trades.size(); seen++)
+                lowest = Math.min(lowest, trades.get(seen).getPrice());
+            while (!clientStops.isEmpty() && clientStops.firstKey() >= lowest)
+                triggered.addAll(clientStops.pollFirstEntry().getValue());
+            if (triggered.isEmpty())
+                break;
+            ob.addOrder(triggered.poll());
+        }
+        return trades.size();
+    }
+}
@@ -0,0 +1,89 @@
+package Benchmarks;
+
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BboSnapshot;
+import Orderbook.Orderbook;
+import Orderbook.TopOfBook;
+import Orders.Order;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// one matching thread entering a mixed limit/market flow while 8 threads poll the BBO (prices, sizes, order counts).
+// seqlock readers copy it from the book's TopOfBook; synchronized is the alternative without it, where the writer
+// holds the book's lock for every order and readers take it to call the getters. Scores are per call on each side.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Group)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class TopOfBookBenchmark {
+    private static final long MID = 10_000;
+
+    @Param({"seqlock", "synchronized"})
+    public String publication;
+
+    private Orderbook ob;
+    private TopOfBook topOfBook;
+    private Random random;
+    private boolean locked;
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final BboSnapshot bbo = new BboSnapshot();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random);
+        ob.getMatchingEngine().setTradeListener(new CountingTradeSink());
+        locked = publication.equals("synchronized");
+        topOfBook = locked ? null : new TopOfBook();
+        ob.setTopOfBook(topOfBook);
+    }
+
+    @Benchmark
+    @Group("bbo")
+    @GroupThreads(1)
+    public void matchingThread()
+    {
+        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        int qty = 1 + random.nextInt(100);
+        Order o = random.nextInt(10) == 0 ? new Order(0, side, qty)
+                : new Order(0, side, qty, side == Side.BUY ? MID - 5 + random.nextInt(10) : MID + random.nextInt(10));
+        if (!locked)
+        {
+            ob.addOrder(o);
+            return;
+        }
+        synchronized (ob)
+        {
+            ob.addOrder(o);
+        }
+    }
+
+    @Benchmark
+    @Group("bbo")
+    @GroupThreads(8)
+    public long readers(Reader reader)
+    {
+        if (!locked)
+        {
+            topOfBook.read(reader.bbo);
+            return reader.bbo.getBidPrice() + reader.bbo.getAskPrice() + reader.bbo.getBidSize() + reader.bbo.getAskSize()
+                    + reader.bbo.getBidOrderCount() + reader.bbo.getAskOrderCount();
+        }
+        synchronized (ob)
+        {
+            long bidCount = ob.getBidLimits().isEmpty() ? 0 : ob.getBidLimits().first().getOrderCount();
+            long askCount = ob.getAskLimits().isEmpty() ? 0 : ob.getAskLimits().first().getOrderCount();
+            return ob.getBestBid() + ob.getBestAsk() + ob.getBestBidSize() + ob.getBestAskSize() + bidCount + askCount;
+        }
+    }
+}
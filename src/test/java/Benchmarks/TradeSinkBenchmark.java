@@ -0,0 +1,67 @@
+package Benchmarks;
+
+import MatchingEngine.OrderMatcherFactory;
+import MatchingEngine.TradeSinkFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// a long trading run with each trade sink. Every invocation rests a sell and lifts it with a market buy, and nothing
+// ever calls releaseTrades or clears the list, as in a simulation that nobody reads the trades of. The heap still in use
+// after a full GC is printed at the end of each iteration: it keeps climbing with the list sink and stays flat with a
+// streaming sink.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.properties")
+public class TradeSinkBenchmark {
+    private static final long BID_INIT = 10_000;
+    private static final long ASK_INIT = 10_001;
+    private static final int LEVELS = 100;
+
+    @Param({"list", "counting"})
+    public String tradeSink;
+
+    @Param({"true"})
+    public boolean pooling;
+
+    private Orderbook ob;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        random = new Random(123);
+        ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), random,
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(), pooling);
+        ob.getMatchingEngine().setTradeListener(TradeSinkFactory.createTradeSink(tradeSink));
+        for (int i = 0; i < 10_000; i++)
+        {
+            ob.addOrder(ob.acquireOrder(0, Side.BUY, 10, BID_INIT - random.nextInt(LEVELS)));
+            ob.addOrder(ob.acquireOrder(0, Side.SELL, 10, ASK_INIT + random.nextInt(LEVELS)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printRetainedHeap()
+    {
+        System.gc();
+        System.out.println("retained heap after GC: " + (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20) + " MB");
+    }
+
+    @Benchmark
+    public long addAndTrade()
+    {
+        ob.addOrder(ob.acquireOrder(0, Side.SELL, 10, ASK_INIT + random.nextInt(LEVELS)));
+        ob.addOrder(ob.acquireMarketOrder(0, Side.BUY, 10));
+        return ob.getBestAsk();
+    }
+}
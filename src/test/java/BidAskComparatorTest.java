@@ -35,8 +35,8 @@ public class BidAskComparatorTest {
 
     @Test
     public void testAskLimitsOrdering() {
-        List<Double> expected = Arrays.asList(10d, 11d, 14d, 17d, 18d, 20d, 25d);
-        List<Double> actual = new ArrayList<>();
+        List<Long> expected = Arrays.asList(10L, 11L, 14L, 17L, 18L, 20L, 25L);
+        List<Long> actual = new ArrayList<>();
         for (Limit l: askLimits)
         {
             System.out.println(l);
@@ -47,8 +47,8 @@ public class BidAskComparatorTest {
 
     @Test
     public void testBidLimitsOrdering() {
-        List<Double> expected = Arrays.asList(9d, 8d, 7d, 4d, 3d, 1d);
-        List<Double> actual = new ArrayList<>();
+        List<Long> expected = Arrays.asList(9L, 8L, 7L, 4L, 3L, 1L);
+        List<Long> actual = new ArrayList<>();
         for (Limit l: bidLimits)
         {
             System.out.println(l);
@@ -0,0 +1,233 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.DepthIndex;
+import Orderbook.Orderbook;
+import Orders.ORDER_TYPE;
+import Orders.Order;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class DepthIndexTest {
+
+    @Test
+    public void testVolumeUpToAndPriceToFill()
+    {
+        DepthIndex asks = new DepthIndex(false);
+        asks.add(101, 100);
+        asks.add(102, 50);
+        asks.add(105, 200);
+
+        Assertions.assertEquals(asks.volumeUpTo(100), 0);
+        Assertions.assertEquals(asks.volumeUpTo(101), 100);
+        Assertions.assertEquals(asks.volumeUpTo(104), 150);
+        Assertions.assertEquals(asks.volumeUpTo(1_000_000), 350);
+        Assertions.assertEquals(asks.priceToFill(100), 101);
+        Assertions.assertEquals(asks.priceToFill(101), 102);
+        Assertions.assertEquals(asks.priceToFill(350), 105);
+        Assertions.assertEquals(asks.priceToFill(351), DepthIndex.NO_PRICE);
+
+        DepthIndex bids = new DepthIndex(true);
+        bids.add(99, 100);
+        bids.add(97, 50);
+        Assertions.assertEquals(bids.volumeUpTo(100), 0);
+        Assertions.assertEquals(bids.volumeUpTo(98), 100);
+        Assertions.assertEquals(bids.volumeUpTo(-1_000_000), 150);
+        Assertions.assertEquals(bids.priceToFill(120), 97);
+
+        bids.add(99, -100);
+        Assertions.assertEquals(bids.priceToFill(1), 97);
+    }
+
+    @Test
+    public void testRandomAgainstTreeMap()
+    {
+        // small window so that prices drifting away re-centre it and a wide spread grows it
+        for (boolean isBid: new boolean[]{true, false})
+        {
+            Random random = new Random(42);
+            DepthIndex depth = new DepthIndex(isBid, 64);
+            TreeMap<Long, Long> volumes = new TreeMap<>();
+            for (int i = 0; i < 20_000; i++)
+            {
+                long price = 1_000 + (i / 2_000) * 50 + random.nextInt(i % 3 == 0 ? 500 : 40);
+                long resting = volumes.getOrDefault(price, 0L);
+                long delta = resting > 0 && random.nextBoolean() ? -(1 + random.nextInt((int) resting)) : 1 + random.nextInt(100);
+                depth.add(price, delta);
+                if (resting + delta == 0)
+                    volumes.remove(price);
+                else
+                    volumes.put(price, resting + delta);
+
+                long probe = 900 + random.nextInt(1_200);
+                long expected = 0;
+                for (long volume: (isBid ? volumes.tailMap(probe, true) : volumes.headMap(probe, true)).values())
+                    expected += volume;
+                Assertions.assertEquals(depth.volumeUpTo(probe), expected);
+
+                long total = 0;
+                for (long volume: volumes.values())
+                    total += volume;
+                Assertions.assertEquals(depth.getTotalVolume(), total);
+                if (total > 0)
+                {
+                    // the tracked ends of the range
+                    Assertions.assertTrue(depth.fits(volumes.lastKey() - DepthIndex.MAX_CAPACITY + 1));
+                    Assertions.assertFalse(depth.fits(volumes.lastKey() - DepthIndex.MAX_CAPACITY));
+                    Assertions.assertTrue(depth.fits(volumes.firstKey() + DepthIndex.MAX_CAPACITY - 1));
+                    Assertions.assertFalse(depth.fits(volumes.firstKey() + DepthIndex.MAX_CAPACITY));
+
+                    long qty = 1 + random.nextInt((int) total);
+                    long price1 = depth.priceToFill(qty);
+                    Assertions.assertTrue(depth.volumeUpTo(price1) >= qty);
+                    Assertions.assertTrue(depth.volumeUpTo(isBid ? price1 + 1 : price1 - 1) < qty);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFillOrKillIsKilledWithoutTouchingTheBook()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123));
+            ob.addOrder(new Order(0, Side.SELL, 100, 101));
+            ob.addOrder(new Order(0, Side.SELL, 50, 102));
+            ob.addOrder(new Order(0, Side.SELL, 500, 104));
+
+            // 150 lots up to 103, a FOK for 151 is killed
+            Assertions.assertEquals(ob.availableVolume(Side.BUY, 103), 150, engine);
+            Assertions.assertEquals(ob.priceToFill(Side.BUY, 151), 104, engine);
+            ob.addOrder(new Order(0, Side.BUY, 151, 103, TIME_IN_FORCE.FOK));
+            Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty(), engine);
+            Assertions.assertEquals(ob.getTotalAskSize(), 650, engine);
+            Assertions.assertTrue(ob.getBidLimits().isEmpty(), engine);
+
+            // 150 fills in full
+            ob.addOrder(new Order(0, Side.BUY, 150, 103, TIME_IN_FORCE.FOK));
+            long filled = 0;
+            for (Trade t: ob.getMatchingEngine().getTrades())
+                filled += t.getVolume();
+            Assertions.assertEquals(filled, 150, engine);
+            Assertions.assertEquals(ob.getBestAsk(), 104, engine);
+            Assertions.assertTrue(ob.getBidLimits().isEmpty(), engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testMarketFillOrKillForTheWholeSideIsKilled()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123));
+            ob.addOrder(new Order(0, Side.SELL, 100, 101));
+            ob.addOrder(new Order(0, Side.SELL, 50, 102));
+
+            // the market path never takes the whole side, so a FOK for exactly all of it is killed rather than dropped
+            Order fok = new Order(0, Side.BUY, 0).init(0, Side.BUY, 150, 0, ORDER_TYPE.MARKET, TIME_IN_FORCE.FOK);
+            Assertions.assertFalse(ob.getMatchingEngine().canFillCompletely(fok, ob), engine);
+            ob.addOrder(fok);
+            Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty(), engine);
+            Assertions.assertEquals(ob.getTotalAskSize(), 150, engine);
+
+            ob.addOrder(new Order(0, Side.BUY, 0).init(0, Side.BUY, 149, 0, ORDER_TYPE.MARKET, TIME_IN_FORCE.FOK));
+            Assertions.assertEquals(ob.getTotalAskSize(), 1, engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testPriceSpanIsTheSameBeforeAndAfterALiquidityQuery()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        ob.addOrder(new Order(0, Side.SELL, 10, 100));
+        ob.addOrder(new Order(0, Side.SELL, 20, 100 + Orderbook.MAX_PRICE_SPAN)); // one tick too far
+        Assertions.assertEquals(ob.getTotalAskSize(), 10);
+
+        ob.addOrder(new Order(0, Side.BUY, 5, 100, TIME_IN_FORCE.FOK));
+        Assertions.assertEquals(ob.getTotalAskSize(), 5);
+        ob.addOrder(new Order(0, Side.SELL, 20, 100 + Orderbook.MAX_PRICE_SPAN));
+        Assertions.assertEquals(ob.getTotalAskSize(), 5);
+
+        // the widest side allowed
+        ob.addOrder(new Order(0, Side.SELL, 20, 99 + Orderbook.MAX_PRICE_SPAN));
+        Assertions.assertEquals(ob.getTotalAskSize(), 25);
+        Assertions.assertEquals(ob.priceToFill(Side.BUY, 6), 99 + Orderbook.MAX_PRICE_SPAN);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // once the near end has traded away the side may move on
+        ob.addOrder(new Order(0, Side.BUY, 5, 100));
+        ob.addOrder(new Order(0, Side.SELL, 20, 100 + Orderbook.MAX_PRICE_SPAN));
+        Assertions.assertEquals(ob.getTotalAskSize(), 40);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testPriceOutsideTheIndexIsRejectedBeforeTouchingTheBook()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        ob.addOrder(new Order(0, Side.SELL, 10, 100));
+        Order bid = new Order(0, Side.BUY, 10, 90);
+        ob.addOrder(bid);
+        Assertions.assertEquals(ob.availableVolume(Side.BUY, 100), 10);
+
+        // the buy would cross, but its remainder couldn't rest: it is rejected before it trades
+        ob.addOrder(new Order(0, Side.SELL, 20, 1L << 40));
+        ob.addOrder(new Order(0, Side.BUY, 20, 1L << 40));
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        Assertions.assertEquals(ob.getTotalAskSize(), 10);
+        Assertions.assertEquals(ob.getTotalBidSize(), 10);
+        Assertions.assertEquals(ob.getOrderMap().size(), 2);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // an amend that would cross and rest the remainder out of range is refused, the order keeps its place
+        int bidId = bid.getOrderId();
+        ob.amendOrderPrice(bidId, 1L << 40);
+        ob.modifyOrderPrice(bidId, 1L << 40);
+        Assertions.assertTrue(ob.getMatchingEngine().getTrades().isEmpty());
+        Assertions.assertEquals(ob.getBestBid(), 90);
+        Assertions.assertEquals(ob.getBestAsk(), 100);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // the book keeps trading
+        ob.addOrder(new Order(0, Side.BUY, 10, 100, TIME_IN_FORCE.FOK));
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 1);
+        Assertions.assertTrue(ob.getAskLimits().isEmpty());
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testImmediateOrCancelNeverRests()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        ob.addOrder(new Order(0, Side.BUY, 100, 99));
+        ob.addOrder(new Order(0, Side.BUY, 30, 98));
+
+        // takes the 99 level, the 70 left over at 99 is cancelled instead of resting as an ask
+        ob.addOrder(new Order(0, Side.SELL, 170, 99, TIME_IN_FORCE.IOC));
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 1);
+        Assertions.assertEquals(trades.get(0).getVolume(), 100);
+        Assertions.assertTrue(ob.getAskLimits().isEmpty());
+        Assertions.assertEquals(ob.getBestBid(), 98);
+
+        // doesn't cross at all
+        ob.addOrder(new Order(0, Side.SELL, 10, 99, TIME_IN_FORCE.IOC));
+        Assertions.assertEquals(trades.size(), 1);
+        Assertions.assertTrue(ob.getAskLimits().isEmpty());
+
+        // not taken during an auction
+        ob.startAuction();
+        ob.addOrder(new Order(0, Side.SELL, 10, 98, TIME_IN_FORCE.IOC));
+        Assertions.assertEquals(ob.getTotalAskSize(), 0);
+        Assertions.assertEquals(ob.getTotalBidSize(), 30);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+}
@@ -0,0 +1,132 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BookSide;
+import Orderbook.DepthLevels;
+import Orderbook.DepthPublisher;
+import Orderbook.DepthSnapshot;
+import Orderbook.Orderbook;
+import Orderbook.PriceLadder;
+import Orderbook.TreeSetBookSide;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class DepthSnapshotTest {
+
+    @Test
+    public void testSnapshotShowsTheTopLevels()
+    {
+        Orderbook ob = newBook(new TreeSetBookSide(true), new TreeSetBookSide(false));
+        DepthPublisher depth = new DepthPublisher(2);
+        ob.setDepthPublisher(depth);
+
+        ob.addOrder(new Order(0, Side.BUY, 100, 99));
+        ob.addOrder(new Order(0, Side.BUY, 50, 99));
+        ob.addOrder(new Order(0, Side.BUY, 10, 98));
+        ob.addOrder(new Order(0, Side.SELL, 30, 101));
+        DepthSnapshot snapshot = depth.getSnapshot();
+        Assertions.assertEquals(snapshot.getVersion(), 4);
+        Assertions.assertEquals(snapshot.getBids().size(), 2);
+        Assertions.assertEquals(snapshot.getBids().getPrice(0), 99);
+        Assertions.assertEquals(snapshot.getBids().getVolume(0), 150);
+        Assertions.assertEquals(snapshot.getBids().getOrderCount(0), 2);
+        Assertions.assertEquals(snapshot.getBids().getPrice(1), 98);
+        Assertions.assertEquals(snapshot.getAsks().size(), 1);
+        Assertions.assertEquals(snapshot.getAsks().getVolume(0), 30);
+
+        // behind the published levels: nothing to publish
+        ob.addOrder(new Order(0, Side.BUY, 10, 97));
+        Assertions.assertSame(depth.getSnapshot(), snapshot);
+
+        // only the asks changed, the bids are shared with the last snapshot
+        ob.addOrder(new Order(0, Side.SELL, 20, 102));
+        Assertions.assertSame(depth.getSnapshot().getBids(), snapshot.getBids());
+        Assertions.assertEquals(depth.getSnapshot().getAsks().getPrice(1), 102);
+
+        // a sweep of the 99 level brings 97 into view
+        ob.addOrder(new Order(0, Side.SELL, 150, 99));
+        snapshot = depth.getSnapshot();
+        Assertions.assertEquals(snapshot.getBids().getPrice(0), 98);
+        Assertions.assertEquals(snapshot.getBids().getPrice(1), 97);
+        Assertions.assertEquals(snapshot.getBids().getVolume(1), 10);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> depth.getSnapshot().getBids().getPrice(2));
+    }
+
+    @Test
+    public void testIncrementalSnapshotsMatchTheBook()
+    {
+        checkRandomFlow(newBook(new TreeSetBookSide(true), new TreeSetBookSide(false)));
+        checkRandomFlow(newBook(new PriceLadder(true), new PriceLadder(false)));
+    }
+
+    // limit, market, iceberg, cancel and amend flow; after every order the published snapshot must equal the top
+    // levels read off the book from scratch
+    private static void checkRandomFlow(Orderbook ob)
+    {
+        DepthPublisher depth = new DepthPublisher(5);
+        ob.setDepthPublisher(depth);
+        Random random = new Random(11);
+        int[] ids = new int[2_000];
+        int idCount = 0;
+        for (int i = 0; i < 20_000; i++)
+        {
+            int action = random.nextInt(10);
+            if (action < 6 || idCount == 0)
+            {
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                long price = side == Side.BUY ? 95 + random.nextInt(10) : 100 + random.nextInt(10);
+                Order o = random.nextInt(5) == 0 ? new Order(0, side, 1 + random.nextInt(100), price, 5)
+                        : new Order(0, side, 1 + random.nextInt(100), price);
+                ob.addOrder(o);
+                if (ob.containsOrder(o.getOrderId()) && idCount < ids.length)
+                    ids[idCount++] = o.getOrderId();
+            }
+            else if (action == 6)
+            {
+                ob.addOrder(new Order(0, random.nextBoolean() ? Side.BUY : Side.SELL, 1 + random.nextInt(50)));
+            }
+            else
+            {
+                int slot = random.nextInt(idCount);
+                int id = ids[slot];
+                if (!ob.containsOrder(id))
+                    ids[slot] = ids[--idCount];
+                else if (action == 7)
+                    ob.removeOrder(id, false);
+                else if (action == 8)
+                    ob.amendOrderQty(id, 1 + random.nextInt(100));
+                else
+                    ob.amendOrderPrice(id, ob.getOrderMap().get(id).isBuy() ? 90 + random.nextInt(10) : 105 + random.nextInt(10));
+            }
+
+            DepthSnapshot snapshot = depth.getSnapshot();
+            assertTopLevels(snapshot.getBids(), ob.getBidLimits(), depth.getDepth());
+            assertTopLevels(snapshot.getAsks(), ob.getAskLimits(), depth.getDepth());
+        }
+    }
+
+    private static void assertTopLevels(DepthLevels levels, BookSide side, int depth)
+    {
+        int i = 0;
+        for (Limit limit: side)
+        {
+            if (limit.isEmpty())
+                continue;
+            if (i == depth)
+                break;
+            Assertions.assertEquals(levels.getPrice(i), limit.getPrice());
+            Assertions.assertEquals(levels.getVolume(i), limit.getTotalVolumeAtLimit());
+            Assertions.assertEquals(levels.getOrderCount(i), limit.getOrderCount());
+            i++;
+        }
+        Assertions.assertEquals(levels.size(), i);
+    }
+
+    private static Orderbook newBook(BookSide bids, BookSide asks)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123), bids, asks);
+    }
+}
@@ -0,0 +1,132 @@
+import Journal.EventJournal;
+import Journal.JournalDecoder;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.ORDER_TYPE;
+import Orders.Order;
+import Orders.PriceScale;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class EventJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testBookEventsAreJournaled() throws IOException
+    {
+        Path file = tempDir.resolve("book.journal");
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        EventJournal journal = new EventJournal(file, 8);
+        ob.setJournal(journal);
+
+        ob.addOrder(new Order(0, Side.BUY, 100, 99));  // id 0
+        ob.addOrder(new Order(0, Side.SELL, 50, 101)); // id 1
+        ob.addOrder(new Order(0, Side.SELL, 70, 101)); // id 2
+        ob.modifyOrderQty(0, 80);                       // id 0 -> 3
+        ob.addOrder(new Order(0, Side.BUY, 60));        // market, id 4, takes id 1 and 10 of id 2
+        ob.removeOrder(2, false);
+        journal.close();
+
+        String[] lines = decode(file, null);
+        Assertions.assertEquals(lines.length, 14);
+        assertRecord(lines[0], "ADD id=0 BUY 99 x 100");
+        assertRecord(lines[1], "BBO 100 x 99 / " + Long.MAX_VALUE + " x -1");
+        assertRecord(lines[2], "ADD id=1 SELL 101 x 50");
+        assertRecord(lines[3], "BBO 100 x 99 / 101 x 50");
+        assertRecord(lines[4], "ADD id=2 SELL 101 x 70");
+        assertRecord(lines[5], "BBO 100 x 99 / 101 x 120");
+        assertRecord(lines[6], "AMEND id=0 -> 3 BUY 99 x 80");
+        assertRecord(lines[7], "BBO 80 x 99 / 101 x 120");
+        assertRecord(lines[8], "ADD id=4 BUY MARKET x 60");
+        assertRecord(lines[9], "FILL maker=1 taker=4 BUY 101 x 50");
+        assertRecord(lines[10], "FILL maker=2 taker=4 BUY 101 x 10");
+        assertRecord(lines[11], "BBO 80 x 99 / 101 x 60");
+        assertRecord(lines[12], "CANCEL id=2 SELL 101 x 60");
+        assertRecord(lines[13], "BBO 80 x 99 / 101 x -1"); // an emptied side keeps its last best price
+    }
+
+    @Test
+    public void testKilledOrdersAreJournaled() throws IOException
+    {
+        Path file = tempDir.resolve("killed.journal");
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        EventJournal journal = new EventJournal(file, 8);
+        ob.setJournal(journal);
+
+        ob.addOrder(new Order(0, Side.SELL, 50, 101)); // id 0
+        ob.addOrder(new Order(0, Side.BUY, 0).init(0, Side.BUY, 50, 0, ORDER_TYPE.MARKET, TIME_IN_FORCE.FOK)); // the whole side
+        ob.addOrder(new Order(0, Side.BUY, 60));        // market, more than the whole side
+        journal.close();
+
+        String[] lines = decode(file, null);
+        Assertions.assertEquals(lines.length, 6);
+        assertRecord(lines[0], "ADD id=0 SELL 101 x 50");
+        assertRecord(lines[2], "ADD id=1 BUY MARKET x 50");
+        assertRecord(lines[3], "CANCEL id=1 BUY 0 x 50");
+        assertRecord(lines[4], "ADD id=1 BUY MARKET x 60");
+        assertRecord(lines[5], "CANCEL id=1 BUY 0 x 60");
+    }
+
+    @Test
+    public void testRingWrapsWithoutLosingRecords() throws IOException
+    {
+        Path file = tempDir.resolve("wrap.journal");
+        int records = 10_000;
+        try (EventJournal journal = new EventJournal(file, 4))
+        {
+            for (int i = 0; i < records; i++)
+                journal.fill(i, i + 1, i % 2 == 0 ? Side.BUY : Side.SELL, 100 + i, i);
+        }
+
+        String[] lines = decode(file, null);
+        Assertions.assertEquals(lines.length, records);
+        for (int i = 0; i < records; i++)
+        {
+            String side = i % 2 == 0 ? "BUY" : "SELL";
+            Assertions.assertTrue(lines[i].startsWith(i + " "));
+            assertRecord(lines[i], "FILL maker=" + i + " taker=" + (i + 1) + " " + side + " " + (100 + i) + " x " + i);
+        }
+    }
+
+    @Test
+    public void testDecoderScalesPrices() throws IOException
+    {
+        Path file = tempDir.resolve("scaled.journal");
+        try (EventJournal journal = new EventJournal(file, 4))
+        {
+            journal.cancel(7, Side.SELL, 4050, 3);
+        }
+
+        String[] lines = decode(file, PriceScale.fromTickSize(0.25));
+        Assertions.assertEquals(lines.length, 1);
+        assertRecord(lines[0], "CANCEL id=7 SELL 1012.50 x 3");
+    }
+
+    private static String[] decode(Path file, PriceScale priceScale) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        JournalDecoder.decode(file, priceScale, out);
+        out.flush();
+        String text = bytes.toString().trim();
+        return text.isEmpty() ? new String[0] : text.split("\\R");
+    }
+
+    // lines are "<sequence> <timestamp> <record>", the timestamp is not deterministic
+    private static void assertRecord(String line, String expected)
+    {
+        String[] parts = line.split(" ", 3);
+        Assertions.assertEquals(expected, parts[2]);
+    }
+}
@@ -0,0 +1,150 @@
+import Engine.Exchange;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ExchangeTest {
+
+    @Test
+    public void testOrdersAreRoutedToTheirInstrument() throws InterruptedException
+    {
+        Exchange exchange = new Exchange(2, 64);
+        exchange.addInstrument(7, newBook("pricetime"));
+        exchange.addInstrument(42, newBook("prorata"));
+        exchange.addInstrument(1_000_003, newBook("pricetime"));
+        Assertions.assertEquals(exchange.getPartitionOf(7), 0);
+        Assertions.assertEquals(exchange.getPartitionOf(42), 1);
+        Assertions.assertEquals(exchange.getPartitionOf(1_000_003), 0);
+        exchange.start();
+
+        exchange.submit(new Order(7, Side.BUY, 100, 99));
+        exchange.submit(new Order(42, Side.SELL, 30, 101));
+        exchange.submit(new Order(1_000_003, Side.SELL, 10, 105));
+        exchange.submit(new Order(1_000_003, Side.SELL, 20, 104));
+        exchange.awaitIdle();
+
+        Assertions.assertEquals(exchange.getBook(7).getBestBid(), 99);
+        Assertions.assertEquals(exchange.getBook(7).getTotalAskSize(), 0);
+        Assertions.assertEquals(exchange.getBook(42).getBestAsk(), 101);
+        Assertions.assertEquals(exchange.getBook(42).getTotalBidSize(), 0);
+        Assertions.assertEquals(exchange.getBook(1_000_003).getBestAsk(), 104);
+        Assertions.assertEquals(exchange.getBook(1_000_003).getTotalAskSize(), 30);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> exchange.submit(new Order(8, Side.BUY, 1, 99)));
+        Assertions.assertThrows(IllegalStateException.class, () -> exchange.addInstrument(8, newBook("pricetime")));
+        exchange.stop();
+    }
+
+    @Test
+    public void testCancelAndAmendGoThroughThePartition() throws InterruptedException
+    {
+        Exchange exchange = new Exchange(1, 16);
+        exchange.addInstrument(1, newBook("pricetime"));
+        exchange.start();
+
+        exchange.submit(new Order(1, Side.SELL, 100, 101)); // id 0
+        exchange.submit(new Order(1, Side.SELL, 50, 101));  // id 1
+        exchange.submit(new Order(1, Side.SELL, 40, 102));  // id 2
+        exchange.amendQty(1, 0, 30);
+        exchange.amendPrice(1, 2, 103);
+        exchange.cancel(1, 1);
+        exchange.stop();
+
+        Orderbook ob = exchange.getBook(1);
+        Assertions.assertEquals(ob.getOrderMap().size(), 2);
+        Assertions.assertEquals(ob.getBestAsk(), 101);
+        Assertions.assertEquals(ob.getBestAskSize(), 30);
+        Assertions.assertEquals(ob.getAskLimits().get(103).getTotalVolumeAtLimit(), 40);
+        Assertions.assertNull(ob.getAskLimits().get(102));
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> exchange.amendQty(1, 0, 0));
+    }
+
+    @Test
+    public void testFailingCommandDoesNotStopThePartition() throws InterruptedException
+    {
+        Exchange exchange = new Exchange(1, 16);
+        Orderbook failing = newBook("pricetime");
+        failing.getMatchingEngine().setTradeListener(trade -> {
+            throw new IllegalStateException("downstream is gone");
+        });
+        exchange.addInstrument(1, failing);
+        exchange.addInstrument(2, newBook("pricetime"));
+        exchange.start();
+
+        exchange.submit(new Order(1, Side.SELL, 10, 101));
+        exchange.submit(new Order(1, Side.BUY, 5, 101)); // throws on its trade
+        exchange.submit(new Order(1, Side.BUY, 20, 99));
+        exchange.submit(new Order(2, Side.SELL, 30, 101));
+        exchange.awaitIdle();
+
+        Assertions.assertEquals(exchange.getFailedCommands(), 1);
+        Assertions.assertEquals(exchange.getBook(1).getBestBid(), 99);
+        Assertions.assertEquals(exchange.getBook(1).getBestBidSize(), 20);
+        Assertions.assertEquals(exchange.getBook(2).getBestAsk(), 101);
+        Assertions.assertEquals(exchange.getBook(2).getTotalAskSize(), 30);
+        exchange.stop();
+    }
+
+    @Test
+    public void testPartitionedRunMatchesEachBookOnItsOwn() throws InterruptedException
+    {
+        int instruments = 12;
+        String[] matchers = {"pricetime", "prorata", "proratawithtop"};
+        Exchange exchange = new Exchange(3, 256); // a small inbox so the router has to wait on the partitions
+        Orderbook[] alone = new Orderbook[instruments];
+        for (int sec = 0; sec < instruments; sec++)
+        {
+            exchange.addInstrument(sec, newBook(matchers[sec % matchers.length]));
+            alone[sec] = newBook(matchers[sec % matchers.length]);
+        }
+        exchange.start();
+
+        for (Order o: randomFlow(instruments, 20_000))
+            exchange.submit(o);
+        for (Order o: randomFlow(instruments, 20_000))
+            alone[o.getSecurityId()].addOrder(o);
+        exchange.stop();
+
+        for (int sec = 0; sec < instruments; sec++)
+        {
+            Orderbook ob = exchange.getBook(sec);
+            Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), alone[sec].getMatchingEngine().getTrades().size());
+            Assertions.assertEquals(ob.getBestBid(), alone[sec].getBestBid());
+            Assertions.assertEquals(ob.getBestAsk(), alone[sec].getBestAsk());
+            Assertions.assertEquals(ob.getTotalBidSize(), alone[sec].getTotalBidSize());
+            Assertions.assertEquals(ob.getTotalAskSize(), alone[sec].getTotalAskSize());
+            Assertions.assertEquals(ob.getOrderMap().size(), alone[sec].getOrderMap().size());
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+        }
+    }
+
+    private static List<Order> randomFlow(int instruments, int count)
+    {
+        Random random = new Random(99);
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int sec = random.nextInt(instruments);
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            int qty = 1 + random.nextInt(100);
+            if (random.nextInt(10) == 0)
+                orders.add(new Order(sec, side, qty));
+            else
+                orders.add(new Order(sec, side, qty, side == Side.BUY ? 95 + random.nextInt(10) : 100 + random.nextInt(10)));
+        }
+        return orders;
+    }
+
+    private static Orderbook newBook(String matcher)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher(matcher), new Random(123));
+    }
+}
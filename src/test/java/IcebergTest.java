@@ -0,0 +1,153 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class IcebergTest {
+
+    @Test
+    public void testIcebergShowsOneSliceAtATime()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.addOrder(new Order(0, Side.SELL, 1000, 101, 100)); // id 0, shows 100
+        ob.addOrder(new Order(0, Side.SELL, 50, 101));        // id 1
+
+        Assertions.assertEquals(ob.getBestAskSize(), 150);
+        Assertions.assertEquals(ob.getTotalAskSize(), 150);
+        Assertions.assertEquals(ob.getHiddenAskSize(), 900);
+        Assertions.assertEquals(ob.getAskLimits().first().getHiddenVolumeAtLimit(), 900);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // the slice is taken, the iceberg refreshes behind order 1, which then takes the rest of the market order
+        ob.addOrder(new Order(0, Side.BUY, 120));
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 2);
+        Assertions.assertEquals(trades.get(0).getMakerId(), 0);
+        Assertions.assertEquals(trades.get(0).getVolume(), 100);
+        Assertions.assertEquals(trades.get(1).getMakerId(), 1);
+        Assertions.assertEquals(trades.get(1).getVolume(), 20);
+
+        Order iceberg = ob.getOrderMap().get(0);
+        Assertions.assertSame(ob.getAskLimits().first().getTail(), iceberg);
+        Assertions.assertEquals(iceberg.getCurrentQuantity(), 100);
+        Assertions.assertEquals(iceberg.getHiddenQuantity(), 800);
+        Assertions.assertEquals(ob.getOrderMap().size(), 2);
+        Assertions.assertEquals(ob.getBestAskSize(), 130);
+        Assertions.assertEquals(ob.getHiddenAskSize(), 800);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // cancelling takes the reserve with it
+        ob.removeOrder(0, false);
+        Assertions.assertEquals(ob.getTotalAskSize(), 30);
+        Assertions.assertEquals(ob.getHiddenAskSize(), 0);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testSweepTakesTheReserveBeforeAWorsePrice()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = newBook(engine);
+            ob.addOrder(new Order(0, Side.SELL, 100, 101, 10)); // id 0
+            ob.addOrder(new Order(0, Side.SELL, 30, 101));      // id 1
+            ob.addOrder(new Order(0, Side.SELL, 50, 102));      // id 2
+
+            // 80 lots at 101: all of order 1 and 50 of the iceberg, nothing at 102
+            ob.addOrder(new Order(0, Side.BUY, 80, 102));
+            long filled = 0;
+            for (Trade t: ob.getMatchingEngine().getTrades())
+            {
+                Assertions.assertEquals(t.getPrice(), 101, engine);
+                filled += t.getVolume();
+            }
+            Assertions.assertEquals(filled, 80, engine);
+            Assertions.assertFalse(ob.containsOrder(1), engine);
+            Order iceberg = ob.getOrderMap().get(0);
+            Assertions.assertEquals(iceberg.getCurrentQuantity() + iceberg.getHiddenQuantity(), 50, engine);
+            Assertions.assertEquals(ob.getOrderMap().get(2).getCurrentQuantity(), 50, engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+
+            // an aggressive iceberg rests its remainder as an iceberg
+            ob.addOrder(new Order(0, Side.BUY, 200, 102, 25));
+            Assertions.assertTrue(ob.getAskLimits().isEmpty(), engine);
+            Assertions.assertEquals(ob.getBestBid(), 102, engine);
+            Assertions.assertEquals(ob.getBestBidSize(), 25, engine);
+            Assertions.assertEquals(ob.getHiddenBidSize(), 75, engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testAuctionExecutesTheReserve()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = newBook(engine);
+            ob.startAuction();
+            ob.addOrder(new Order(0, Side.BUY, 500, 100, 50));
+            ob.addOrder(new Order(0, Side.SELL, 300, 100));
+
+            Assertions.assertEquals(ob.uncross(), 100, engine);
+            long traded = 0;
+            for (Trade t: ob.getMatchingEngine().getTrades())
+                traded += t.getVolume();
+            Assertions.assertEquals(traded, 300, engine);
+            Assertions.assertTrue(ob.getAskLimits().isEmpty(), engine);
+            Assertions.assertEquals(ob.getTotalBidSize() + ob.getHiddenBidSize(), 200, engine);
+            Assertions.assertEquals(ob.getBestBidSize(), 50, engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testRandomFlowWithIcebergsStaysConsistent()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Random random = new Random(11);
+            Orderbook ob = newBook(engine);
+            long added = 0;
+            long traded = 0;
+            for (int i = 0; i < 5_000; i++)
+            {
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                int qty = 1 + random.nextInt(200);
+                long price = 95 + random.nextInt(11);
+                int display = random.nextInt(3) == 0 ? 1 + random.nextInt(20) : 0;
+                ob.addOrder(new Order(0, side, qty, price, display));
+                added += qty;
+
+                if (i % 7 == 0 && ob.getOrderMap().size() > 0)
+                {
+                    int id = ob.chooseRandomOrderId(side, ob.getBestBid() <= price && side == Side.BUY ? ob.getBestBid() : price);
+                    if (id != Orderbook.NO_ORDER_ID)
+                    {
+                        Order o = ob.getOrderMap().get(id);
+                        added -= o.getCurrentQuantity() + o.getHiddenQuantity();
+                        ob.removeOrder(id, false);
+                    }
+                }
+            }
+            for (Trade t: ob.getMatchingEngine().getTrades())
+                traded += t.getVolume();
+
+            // every lot added is either resting (shown or hidden) or was traded, once on each side
+            long resting = ob.getTotalBidSize() + ob.getHiddenBidSize() + ob.getTotalAskSize() + ob.getHiddenAskSize();
+            Assertions.assertEquals(resting + 2 * traded, added, engine);
+            Assertions.assertTrue(ob.getBidLimits().isEmpty() || ob.getAskLimits().isEmpty() || ob.getBestBid() < ob.getBestAsk(), engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    private static Orderbook newBook(String engine)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123));
+    }
+}
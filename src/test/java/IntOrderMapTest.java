@@ -0,0 +1,105 @@
+import Orderbook.IntHandleMap;
+import Orderbook.IntOrderMap;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IntOrderMapTest {
+
+    @Test
+    public void testPutGetRemove()
+    {
+        IntOrderMap map = new IntOrderMap(4);
+        Order o1 = new Order(0, Side.BUY, 100, 10);
+        Order o2 = new Order(0, Side.SELL, 200, 11);
+
+        Assertions.assertNull(map.put(1, o1));
+        Assertions.assertNull(map.put(2, o2));
+        Assertions.assertSame(map.get(1), o1);
+        Assertions.assertSame(map.get(2), o2);
+        Assertions.assertNull(map.get(3));
+        Assertions.assertEquals(map.size(), 2);
+
+        Assertions.assertSame(map.put(1, o2), o1);
+        Assertions.assertEquals(map.size(), 2);
+
+        Assertions.assertSame(map.remove(1), o2);
+        Assertions.assertNull(map.remove(1));
+        Assertions.assertFalse(map.containsKey(1));
+        Assertions.assertTrue(map.containsKey(2));
+        Assertions.assertEquals(map.size(), 1);
+    }
+
+    @Test
+    public void testPresizedMapDoesNotGrow()
+    {
+        IntOrderMap map = new IntOrderMap(10_000);
+        int capacity = map.capacity();
+        Order o = new Order(0, Side.BUY, 1, 1);
+        for (int i = 0; i < 10_000; i++)
+            map.put(i, o);
+
+        Assertions.assertEquals(map.capacity(), capacity);
+        Assertions.assertEquals(map.size(), 10_000);
+    }
+
+    @Test
+    public void testRandomChurnMatchesHashMap()
+    {
+        // lots of adds and removes over a small key range so that clusters form and backward shifting is exercised
+        Random random = new Random(123);
+        IntOrderMap map = new IntOrderMap(16);
+        Map<Integer, Order> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++)
+        {
+            int key = random.nextInt(2_000);
+            if (random.nextBoolean())
+            {
+                Order o = new Order(0, Side.BUY, key + 1, key);
+                Assertions.assertSame(expected.put(key, o), map.put(key, o));
+            }
+            else
+            {
+                Assertions.assertSame(expected.remove(key), map.remove(key));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 2_000; key++)
+            Assertions.assertSame(expected.get(key), map.get(key));
+    }
+
+    @Test
+    public void testHandleMapChurnMatchesHashMap()
+    {
+        // IntHandleMap shares IntOrderMap's probing, with NULL rather than null for a missing key
+        Random random = new Random(321);
+        IntHandleMap map = new IntHandleMap(16);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++)
+        {
+            int key = random.nextInt(2_000);
+            if (random.nextBoolean())
+            {
+                Assertions.assertEquals(map.put(key, i), (int) expected.getOrDefault(key, IntHandleMap.NULL));
+                expected.put(key, i);
+            }
+            else
+            {
+                Assertions.assertEquals(map.remove(key), (int) expected.getOrDefault(key, IntHandleMap.NULL));
+                expected.remove(key);
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 2_000; key++)
+            Assertions.assertEquals(map.get(key), (int) expected.getOrDefault(key, IntHandleMap.NULL));
+    }
+}
@@ -0,0 +1,84 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class LimitTest {
+    @Test
+    public void testRandomSamplingIndex()
+    {
+        // same contract as ListMapTest: swap-with-last removal, uniform pick over the remaining orders
+        Random random = new Random(123);
+        Limit limit = new Limit(100);
+        Order[] orders = new Order[5];
+        int[] ids = {10, 111, 12, 13, 14};
+        for (int i = 0; i < ids.length; i++)
+        {
+            orders[i] = new Order(0, Side.BUY, 1, 100);
+            orders[i].setOrderId(ids[i]);
+            limit.addOrder(orders[i]);
+        }
+
+        Assertions.assertEquals(limit.getOrderCount(), 5);
+        Assertions.assertEquals(limit.chooseRandomOrder(random).getOrderId(), 12);
+
+        limit.removeOrder(orders[0]);
+
+        Assertions.assertEquals(limit.getOrderCount(), 4);
+        Assertions.assertEquals(orders[4].getLevelIndex(), 0); // last order moved into the freed slot
+        Assertions.assertEquals(limit.chooseRandomOrder(random).getOrderId(), 14);
+
+        for (int i = 1; i < orders.length; i++)
+            limit.removeOrder(orders[i]);
+        Assertions.assertEquals(limit.getOrderCount(), 0);
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity()
+    {
+        Limit limit = new Limit(100);
+        Order[] orders = new Order[100];
+        for (int i = 0; i < orders.length; i++)
+        {
+            orders[i] = new Order(0, Side.SELL, 1, 100);
+            orders[i].setOrderId(i);
+            limit.addOrder(orders[i]);
+        }
+        Assertions.assertEquals(limit.getOrderCount(), 100);
+
+        // remove every other order, the remaining ones must still be reachable through their slots
+        for (int i = 0; i < orders.length; i += 2)
+            limit.removeOrder(orders[i]);
+        Assertions.assertEquals(limit.getOrderCount(), 50);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++)
+            Assertions.assertEquals(limit.chooseRandomOrder(random).getOrderId() % 2, 1);
+    }
+
+    @Test
+    public void testOrderbookChooseRandomOrderId()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        Assertions.assertEquals(ob.chooseRandomOrderId(Side.BUY, 100), Orderbook.NO_ORDER_ID);
+
+        Order o1 = new Order(0, Side.BUY, 10, 100);
+        Order o2 = new Order(0, Side.BUY, 20, 100);
+        ob.addOrder(o1);
+        ob.addOrder(o2);
+        Assertions.assertEquals(ob.chooseRandomOrderId(Side.SELL, 100), Orderbook.NO_ORDER_ID);
+
+        int chosen = ob.chooseRandomOrderId(Side.BUY, 100);
+        Assertions.assertTrue(chosen == o1.getOrderId() || chosen == o2.getOrderId());
+
+        ob.removeOrder(o1.getOrderId(), false);
+        Assertions.assertEquals(ob.chooseRandomOrderId(Side.BUY, 100), o2.getOrderId());
+        ob.removeOrder(o2.getOrderId(), false);
+        Assertions.assertEquals(ob.chooseRandomOrderId(Side.BUY, 100), Orderbook.NO_ORDER_ID);
+    }
+}
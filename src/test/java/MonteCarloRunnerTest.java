@@ -0,0 +1,64 @@
+import Simulation.MonteCarloRunner;
+import Simulation.MonteCarloSummary;
+import Simulation.OrderbookSimulator;
+import Simulation.SimulationConfig;
+import Simulation.SimulationRunResult;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class MonteCarloRunnerTest {
+    private static final String[] QUIET = {"Orderbook", "MatchingEngine", OrderbookSimulator.class.getName()};
+
+    @BeforeAll
+    public static void quietSimulations()
+    {
+        for (String logger: QUIET)
+            Configurator.setLevel(logger, Level.WARN);
+    }
+
+    @AfterAll
+    public static void restoreLogging()
+    {
+        for (String logger: QUIET)
+            Configurator.setLevel(logger, Level.INFO);
+    }
+
+    @Test
+    public void testResultsDoNotDependOnThreadCount()
+    {
+        SimulationConfig simulationConfig = new SimulationConfig("simulationConfig-test.properties");
+        SimulationRunResult[] single = new MonteCarloRunner(simulationConfig, 1).runAll(345, 6);
+        SimulationRunResult[] parallel = new MonteCarloRunner(simulationConfig, 3).runAll(345, 6);
+
+        for (int i = 0; i < single.length; i++)
+        {
+            Assertions.assertEquals(parallel[i].getRun(), i);
+            Assertions.assertEquals(parallel[i].getSeed(), MonteCarloRunner.seedFor(345, i));
+            Assertions.assertEquals(parallel[i].toString(), single[i].toString());
+        }
+        Assertions.assertNotEquals(single[0].getVolume(), single[1].getVolume()); // different seeds, different runs
+
+        MonteCarloSummary summary = new MonteCarloRunner(simulationConfig, 2).run(345, 6);
+        Assertions.assertEquals(summary.getRuns(), 6);
+        double volume = 0;
+        for (SimulationRunResult result: single)
+            volume += result.getVolume();
+        Assertions.assertEquals(summary.getVolume().getMean(), volume / 6);
+        Assertions.assertEquals(summary.toString(), new MonteCarloRunner(simulationConfig, 1).run(345, 6).toString());
+    }
+
+    @Test
+    public void testRunMatchesAStandaloneSimulation()
+    {
+        SimulationConfig simulationConfig = new SimulationConfig("simulationConfig-test.properties");
+        MonteCarloRunner runner = new MonteCarloRunner(simulationConfig, 2);
+        SimulationRunResult result = runner.runAll(7, 2)[1];
+        SimulationRunResult alone = runner.runOne(1, MonteCarloRunner.seedFor(7, 1));
+        Assertions.assertEquals(result.toString(), alone.toString());
+        Assertions.assertTrue(result.getTradeCount() > 0);
+    }
+}
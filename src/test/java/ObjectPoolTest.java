@@ -0,0 +1,102 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.IntOrderMap;
+import Orderbook.ObjectPool;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class ObjectPoolTest {
+
+    @Test
+    public void testAcquireReusesReleasedObjects()
+    {
+        ObjectPool<Order> pool = new ObjectPool<>(() -> new Order(0, Side.BUY, 0), 2);
+        Assertions.assertEquals(pool.getCreated(), 2);
+        Assertions.assertEquals(pool.available(), 2);
+
+        Order o1 = pool.acquire();
+        Order o2 = pool.acquire();
+        Order o3 = pool.acquire(); // free list empty, falls back to the factory
+        Assertions.assertEquals(pool.getCreated(), 3);
+        Assertions.assertEquals(pool.available(), 0);
+
+        pool.release(o2);
+        Assertions.assertSame(pool.acquire(), o2);
+
+        for (int i = 0; i < 100; i++) // free list grows past its initial size
+            pool.release(new Order(0, Side.SELL, 0));
+        Assertions.assertEquals(pool.available(), 100);
+        Assertions.assertNotSame(pool.acquire(), o1);
+        Assertions.assertNotSame(pool.acquire(), o3);
+    }
+
+    @Test
+    public void testPooledOrderbookSteadyStateDoesNotAllocate()
+    {
+        for (String engine : new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook pooled = newOrderbook(engine, true);
+            Orderbook unpooled = newOrderbook(engine, false);
+
+            runCycles(pooled, 50);
+            runCycles(unpooled, 50);
+            long orders = pooled.getOrderPool().getCreated();
+            long limits = pooled.getLimitPool().getCreated();
+            long trades = pooled.getTradePool().getCreated();
+
+            runCycles(pooled, 300);
+            runCycles(unpooled, 300);
+            Assertions.assertEquals(pooled.getOrderPool().getCreated(), orders, engine);
+            Assertions.assertEquals(pooled.getLimitPool().getCreated(), limits, engine);
+            Assertions.assertEquals(pooled.getTradePool().getCreated(), trades, engine);
+
+            // recycling must not change what the book looks like
+            Assertions.assertEquals(pooled.getTotalBidSize(), unpooled.getTotalBidSize(), engine);
+            Assertions.assertEquals(pooled.getTotalAskSize(), unpooled.getTotalAskSize(), engine);
+            Assertions.assertEquals(pooled.getBestBid(), unpooled.getBestBid(), engine);
+            Assertions.assertEquals(pooled.getBestAsk(), unpooled.getBestAsk(), engine);
+            Assertions.assertEquals(pooled.getOrderMap().size(), unpooled.getOrderMap().size(), engine);
+            Assertions.assertTrue(pooled.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    private static Orderbook newOrderbook(String engine, boolean pooling)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123),
+                new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(64), pooling);
+    }
+
+    // each cycle rests a few levels on both sides, amends and cancels some of them, then trades against
+    // the rest with market orders and cancels what is left, so every cycle starts from an empty book.
+    private static void runCycles(Orderbook ob, int cycles)
+    {
+        for (int c = 0; c < cycles; c++)
+        {
+            int[] ids = new int[8];
+            for (int i = 0; i < 4; i++)
+            {
+                Order buy = ob.acquireOrder(0, Side.BUY, 10 + i, 100 - i);
+                ob.addOrder(buy);
+                ids[2 * i] = buy.getOrderId();
+                Order sell = ob.acquireOrder(0, Side.SELL, 10 + i, 101 + i);
+                ob.addOrder(sell);
+                ids[2 * i + 1] = sell.getOrderId();
+            }
+            ob.modifyOrderQty(ids[0], 5);
+            ob.modifyOrderPrice(ids[1], 105);
+            ob.removeOrder(ids[2], false);
+
+            // market orders have to be smaller than the opposite side, whatever is left over gets cancelled
+            ob.addOrder(ob.acquireMarketOrder(0, Side.BUY, ob.getTotalAskSize() - 1));
+            ob.addOrder(ob.acquireMarketOrder(0, Side.SELL, ob.getTotalBidSize() - 1));
+            for (int id = ids[0]; id <= ids[7] + 2; id++) // the two amends re-enter under the next ids
+                ob.removeOrder(id, false);
+            ob.getMatchingEngine().releaseTrades(ob);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.OffHeapOrderStore;
+import Orderbook.OffHeapOrderbook;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class OffHeapOrderbookTest {
+
+    @Test
+    public void testStoreReusesFreedHandlesAndGrows()
+    {
+        OffHeapOrderStore store = new OffHeapOrderStore(2);
+        int h0 = store.allocate(10, true, 100, 1000, 1);
+        int h1 = store.allocate(11, false, 200, 1001, 2);
+        int h2 = store.allocate(12, true, 300, 999, 3); // grows
+        Assertions.assertEquals(store.capacity(), 4);
+        Assertions.assertEquals(store.getOrderId(h0), 10);
+        Assertions.assertEquals(store.getQuantity(h1), 200);
+        Assertions.assertEquals(store.getPrice(h2), 999);
+        Assertions.assertTrue(store.isBuy(h0));
+        Assertions.assertFalse(store.isBuy(h1));
+        Assertions.assertEquals(store.getTimestamp(h2), 3);
+        Assertions.assertEquals(store.getNext(h2), OffHeapOrderStore.NULL);
+
+        store.free(h1);
+        Assertions.assertEquals(store.size(), 2);
+        int h3 = store.allocate(13, false, 50, 1002, 4);
+        Assertions.assertEquals(h3, h1);
+        Assertions.assertEquals(store.getOrderId(h3), 13);
+        Assertions.assertEquals(store.getNext(h3), OffHeapOrderStore.NULL);
+        Assertions.assertEquals(store.size(), 3);
+    }
+
+    @Test
+    public void testPriceTimeMatching()
+    {
+        OffHeapOrderbook ob = new OffHeapOrderbook();
+        int b0 = ob.addOrder(Side.BUY, 100, 99);
+        int b1 = ob.addOrder(Side.BUY, 200, 99);
+        ob.addOrder(Side.BUY, 300, 98);
+        int a0 = ob.addOrder(Side.SELL, 100, 101);
+        ob.addOrder(Side.SELL, 100, 102);
+
+        Assertions.assertEquals(ob.getBestBid(), 99);
+        Assertions.assertEquals(ob.getBestAsk(), 101);
+        Assertions.assertEquals(ob.getBestBidSize(), 300);
+        Assertions.assertEquals(ob.getTotalBidSize(), 600);
+
+        // market sell takes the 99 level in time priority and part of 98
+        int taker = ob.addMarketOrder(Side.SELL, 350);
+        Assertions.assertEquals(ob.getTrades().size(), 3);
+        Assertions.assertEquals(ob.getTrades().get(0).getMakerId(), b0);
+        Assertions.assertEquals(ob.getTrades().get(1).getMakerId(), b1);
+        Assertions.assertEquals(ob.getTrades().get(2).getVolume(), 50);
+        Assertions.assertEquals(ob.getTrades().get(2).getPrice(), 98);
+        Assertions.assertEquals(ob.getTrades().get(2).getTakerId(), taker);
+        Assertions.assertFalse(ob.containsOrder(b0));
+        Assertions.assertEquals(ob.getBestBid(), 98);
+        Assertions.assertEquals(ob.getBestBidSize(), 250);
+        Assertions.assertEquals(ob.getTotalBidSize(), 250);
+
+        // aggressive limit buy sweeps the asks up to its price, the rest rests at its own price under its own id
+        ob.addOrder(Side.SELL, 100, 103);
+        int sweep = ob.addOrder(Side.BUY, 250, 102);
+        Assertions.assertFalse(ob.containsOrder(a0));
+        Assertions.assertEquals(ob.getTrades().size(), 5);
+        Assertions.assertEquals(ob.getTrades().get(4).getPrice(), 102);
+        Assertions.assertTrue(ob.containsOrder(sweep));
+        Assertions.assertEquals(ob.getBestBid(), 102);
+        Assertions.assertEquals(ob.getBestBidSize(), 50);
+        Assertions.assertEquals(ob.getBestAsk(), 103);
+
+        // market order for the whole side is rejected
+        ob.addMarketOrder(Side.BUY, 100);
+        Assertions.assertEquals(ob.getTotalAskSize(), 100);
+        Assertions.assertEquals(ob.getOrderCount(), 3);
+    }
+
+    @Test
+    public void testMatchesObjectOrderbook()
+    {
+        // drive both books with the same random stream and compare every trade and the resulting book state
+        Random random = new Random(42);
+        Orderbook objects = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        OffHeapOrderbook offHeap = new OffHeapOrderbook(16);
+        List<Integer> live = new ArrayList<>();
+
+        // deep orders far from the touch so neither side ever empties
+        objects.addOrder(new Order(0, Side.BUY, 1_000_000, 50));
+        objects.addOrder(new Order(0, Side.SELL, 1_000_000, 150));
+        offHeap.addOrder(Side.BUY, 1_000_000, 50);
+        offHeap.addOrder(Side.SELL, 1_000_000, 150);
+
+        for (int i = 0; i < 3000; i++)
+        {
+            int event = random.nextInt(10);
+            int qty = 1 + random.nextInt(100);
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            if (event < 5)
+            {
+                long price = side == Side.BUY ? 95 + random.nextInt(10) : 96 + random.nextInt(10);
+                Order o = new Order(0, side, qty, price);
+                objects.addOrder(o);
+                int id = offHeap.addOrder(side, qty, price);
+                Assertions.assertEquals(o.getOrderId(), id);
+                live.add(id);
+            }
+            else if (event < 7 && !live.isEmpty())
+            {
+                int id = live.get(random.nextInt(live.size()));
+                objects.removeOrder(id, false);
+                offHeap.removeOrder(id);
+            }
+            else if (event < 8 && !live.isEmpty())
+            {
+                int id = live.get(random.nextInt(live.size()));
+                objects.modifyOrderQty(id, qty);
+                offHeap.modifyOrderQty(id, qty);
+            }
+            else
+            {
+                objects.addOrder(new Order(0, side, qty));
+                offHeap.addMarketOrder(side, qty);
+            }
+        }
+
+        List<Trade> expected = objects.getMatchingEngine().getTrades();
+        List<Trade> actual = offHeap.getTrades();
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Assertions.assertEquals(expected.get(i).getSide(), actual.get(i).getSide());
+            Assertions.assertEquals(expected.get(i).getPrice(), actual.get(i).getPrice());
+            Assertions.assertEquals(expected.get(i).getVolume(), actual.get(i).getVolume());
+            Assertions.assertEquals(expected.get(i).getMakerId(), actual.get(i).getMakerId());
+            Assertions.assertEquals(expected.get(i).getTakerId(), actual.get(i).getTakerId());
+        }
+
+        Assertions.assertEquals(objects.getTotalBidSize(), offHeap.getTotalBidSize());
+        Assertions.assertEquals(objects.getTotalAskSize(), offHeap.getTotalAskSize());
+        Assertions.assertEquals(objects.getBestBid(), offHeap.getBestBid());
+        Assertions.assertEquals(objects.getBestAsk(), offHeap.getBestAsk());
+        Assertions.assertEquals(objects.getOrderMap().size(), offHeap.getOrderCount());
+        Assertions.assertEquals(objects.getBidLimits().size(), offHeap.getLevelCount(Side.BUY));
+        Assertions.assertEquals(objects.getAskLimits().size(), offHeap.getLevelCount(Side.SELL));
+        for (long price = 50; price <= 150; price++)
+        {
+            Assertions.assertEquals(volumeAt(objects, Side.BUY, price), offHeap.getVolumeAtPrice(Side.BUY, price));
+            Assertions.assertEquals(volumeAt(objects, Side.SELL, price), offHeap.getVolumeAtPrice(Side.SELL, price));
+        }
+    }
+
+    private static int volumeAt(Orderbook ob, Side side, long price)
+    {
+        Limit limit = side == Side.BUY ? ob.getBidLimits().get(price) : ob.getAskLimits().get(price);
+        return limit == null ? 0 : limit.getTotalVolumeAtLimit();
+    }
+}
@@ -0,0 +1,339 @@
+import Engine.OrderMessages;
+import Gateway.GatewayLoadClient;
+import Gateway.OrderGateway;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class OrderGatewayTest {
+    private static final String[] QUIET = {"Orderbook", "MatchingEngine"};
+    private static final int SECURITY_ID = 7;
+
+    @BeforeAll
+    public static void quietBooks()
+    {
+        for (String logger: QUIET)
+            Configurator.setLevel(logger, Level.WARN);
+    }
+
+    @AfterAll
+    public static void restoreLogging()
+    {
+        for (String logger: QUIET)
+            Configurator.setLevel(logger, Level.INFO);
+    }
+
+    @Test
+    public void testAcksAndFillsGoBackToTheirSessions() throws IOException, InterruptedException
+    {
+        Orderbook ob = newBook();
+        OrderGateway gateway = new OrderGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.addInstrument(SECURITY_ID, ob);
+        gateway.start();
+        ByteBuffer buf = ByteBuffer.allocate(4 * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (SocketChannel maker = SocketChannel.open(gateway.getLocalAddress());
+             SocketChannel taker = SocketChannel.open(gateway.getLocalAddress()))
+        {
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 10, 101, TIME_IN_FORCE.GTC, 11);
+            send(maker, buf, 1);
+            receive(maker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 11);
+            int restingId = OrderMessages.orderId(buf, 0);
+
+            // the taker gets its ack, then its fill. The maker's fill carries the maker's own ids.
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 4, 102, TIME_IN_FORCE.GTC, 21);
+            send(taker, buf, 1);
+            receive(taker, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            Assertions.assertEquals(OrderMessages.type(buf, OrderMessages.MESSAGE_SIZE), OrderMessages.FILL);
+            Assertions.assertEquals(OrderMessages.qty(buf, OrderMessages.MESSAGE_SIZE), 4);
+            Assertions.assertEquals(OrderMessages.price(buf, OrderMessages.MESSAGE_SIZE), 101);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, OrderMessages.MESSAGE_SIZE), 21);
+            receive(maker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.FILL);
+            Assertions.assertEquals(buf.get(OrderMessages.SIDE_OFFSET), OrderMessages.SIDE_SELL);
+            Assertions.assertEquals(OrderMessages.orderId(buf, 0), restingId);
+            Assertions.assertEquals(OrderMessages.qty(buf, 0), 4);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 11);
+
+            // only the owner can cancel; malformed requests and unknown instruments are rejected
+            OrderMessages.encodeCancel(buf, 0, SECURITY_ID, restingId, 22);
+            OrderMessages.encodeLimitOrder(buf, OrderMessages.MESSAGE_SIZE, SECURITY_ID, Side.BUY, 0, 100, TIME_IN_FORCE.GTC, 23);
+            OrderMessages.encodeLimitOrder(buf, 2 * OrderMessages.MESSAGE_SIZE, SECURITY_ID + 1, Side.BUY, 5, 100, TIME_IN_FORCE.GTC, 24);
+            send(taker, buf, 3);
+            receive(taker, buf, 3);
+            for (int i = 0; i < 3; i++)
+            {
+                Assertions.assertEquals(OrderMessages.type(buf, i * OrderMessages.MESSAGE_SIZE), OrderMessages.REJECT);
+                Assertions.assertEquals(OrderMessages.clientOrderId(buf, i * OrderMessages.MESSAGE_SIZE), 22 + i);
+            }
+
+            // a price amend through the bid is a cancel/replace: the rest of the order trades and rests under a new id,
+            // which stays the maker's to cancel
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 3, 99, TIME_IN_FORCE.GTC, 31);
+            send(taker, buf, 1);
+            receive(taker, buf, 1);
+            OrderMessages.encodeAmendPrice(buf, 0, SECURITY_ID, restingId, 99, 12);
+            send(maker, buf, 1);
+            receive(maker, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            int replacementId = OrderMessages.orderId(buf, 0);
+            Assertions.assertNotEquals(replacementId, restingId);
+            Assertions.assertEquals(OrderMessages.type(buf, OrderMessages.MESSAGE_SIZE), OrderMessages.FILL);
+            Assertions.assertEquals(OrderMessages.qty(buf, OrderMessages.MESSAGE_SIZE), 3);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, OrderMessages.MESSAGE_SIZE), 11);
+            receive(taker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.FILL);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 31);
+
+            OrderMessages.encodeCancel(buf, 0, SECURITY_ID, replacementId, 13);
+            send(maker, buf, 1);
+            receive(maker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            Assertions.assertEquals(OrderMessages.orderId(buf, 0), replacementId);
+        }
+        gateway.stop();
+
+        Assertions.assertEquals(gateway.getRejected(), 3);
+        Assertions.assertEquals(ob.getTotalAskSize(), 0);
+        Assertions.assertEquals(ob.getTotalBidSize(), 0);
+        Assertions.assertTrue(ob.getOrderMap().isEmpty());
+    }
+
+    @Test
+    public void testOrdersThatEndWithoutRestingAreCancelled() throws IOException, InterruptedException
+    {
+        Orderbook ob = newBook();
+        OrderGateway gateway = new OrderGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.addInstrument(SECURITY_ID, ob);
+        gateway.start();
+        ByteBuffer buf = ByteBuffer.allocate(4 * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (SocketChannel maker = SocketChannel.open(gateway.getLocalAddress());
+             SocketChannel taker = SocketChannel.open(gateway.getLocalAddress()))
+        {
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 10, 101, TIME_IN_FORCE.GTC, 1);
+            send(maker, buf, 1);
+            receive(maker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+
+            // a killed fill-or-kill: acked, then cancelled in full
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 20, 101, TIME_IN_FORCE.FOK, 2);
+            send(taker, buf, 1);
+            receive(taker, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            int killedId = OrderMessages.orderId(buf, 0);
+            assertCancelled(buf, OrderMessages.MESSAGE_SIZE, killedId, 20, 2);
+
+            // immediate-or-cancel: the fill, then the rest cancelled
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 14, 101, TIME_IN_FORCE.IOC, 3);
+            send(taker, buf, 1);
+            receive(taker, buf, 3);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            int iocId = OrderMessages.orderId(buf, 0);
+            Assertions.assertEquals(OrderMessages.type(buf, OrderMessages.MESSAGE_SIZE), OrderMessages.FILL);
+            Assertions.assertEquals(OrderMessages.qty(buf, OrderMessages.MESSAGE_SIZE), 10);
+            assertCancelled(buf, 2 * OrderMessages.MESSAGE_SIZE, iocId, 4, 3);
+            receive(maker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.FILL);
+
+            // a market order with nothing to take
+            OrderMessages.encodeMarketOrder(buf, 0, SECURITY_ID, Side.BUY, 5, 4);
+            send(taker, buf, 1);
+            receive(taker, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            assertCancelled(buf, OrderMessages.MESSAGE_SIZE, OrderMessages.orderId(buf, 0), 5, 4);
+
+            // none of them is live
+            OrderMessages.encodeCancel(buf, 0, SECURITY_ID, killedId, 5);
+            send(taker, buf, 1);
+            receive(taker, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.REJECT);
+        }
+        gateway.stop();
+        Assertions.assertTrue(ob.getOrderMap().isEmpty());
+    }
+
+    @Test
+    public void testBadRequestIsRejectedWhileOtherSessionsTrade() throws IOException, InterruptedException
+    {
+        // a book that fails on one price, standing in for any bug or limit a request can run into
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123))
+        {
+            @Override
+            public void addOrder(Order order)
+            {
+                if (order.getPrice() == 77)
+                    throw new IllegalStateException("cannot take this order");
+                super.addOrder(order);
+            }
+        };
+        OrderGateway gateway = new OrderGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.addInstrument(SECURITY_ID, ob, 50, 150);
+        gateway.start();
+        ByteBuffer buf = ByteBuffer.allocate(4 * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (SocketChannel bad = SocketChannel.open(gateway.getLocalAddress());
+             SocketChannel good = SocketChannel.open(gateway.getLocalAddress()))
+        {
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 10, 101, TIME_IN_FORCE.GTC, 1);
+            send(good, buf, 1);
+            receive(good, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+
+            // outside the band, then one the book throws on
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 5, 1L << 40, TIME_IN_FORCE.GTC, 11);
+            OrderMessages.encodeLimitOrder(buf, OrderMessages.MESSAGE_SIZE, SECURITY_ID, Side.BUY, 5, 77, TIME_IN_FORCE.GTC, 12);
+            send(bad, buf, 2);
+            receive(bad, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.REJECT);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 11);
+            Assertions.assertEquals(OrderMessages.type(buf, OrderMessages.MESSAGE_SIZE), OrderMessages.REJECT);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, OrderMessages.MESSAGE_SIZE), 12);
+
+            // both sessions are still served
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 4, 101, TIME_IN_FORCE.GTC, 13);
+            send(bad, buf, 1);
+            receive(bad, buf, 2);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            Assertions.assertEquals(OrderMessages.type(buf, OrderMessages.MESSAGE_SIZE), OrderMessages.FILL);
+            receive(good, buf, 1);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.FILL);
+            Assertions.assertEquals(OrderMessages.qty(buf, 0), 4);
+            Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 1);
+            gateway.stop(); // while still connected, so that the resting ask isn't cancelled on disconnect
+        }
+
+        Assertions.assertEquals(gateway.getRejected(), 2);
+        Assertions.assertEquals(ob.getTotalAskSize(), 6);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new OrderGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).addInstrument(1, newBook(), 0, 10));
+    }
+
+    @Test
+    public void testOrdersAreCancelledOnDisconnect() throws IOException, InterruptedException
+    {
+        Orderbook ob = newBook();
+        OrderGateway gateway = new OrderGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.addInstrument(SECURITY_ID, ob);
+        gateway.start();
+        ByteBuffer buf = ByteBuffer.allocate(4 * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (SocketChannel stays = SocketChannel.open(gateway.getLocalAddress()))
+        {
+            try (SocketChannel leaves = SocketChannel.open(gateway.getLocalAddress()))
+            {
+                OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 10, 99, TIME_IN_FORCE.GTC, 1);
+                OrderMessages.encodeLimitOrder(buf, OrderMessages.MESSAGE_SIZE, SECURITY_ID, Side.BUY, 10, 98, TIME_IN_FORCE.GTC, 2);
+                send(leaves, buf, 2);
+                receive(leaves, buf, 2);
+            }
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 5, 97, TIME_IN_FORCE.GTC, 3);
+            send(stays, buf, 1);
+            receive(stays, buf, 1);
+
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (gateway.getCancelledOnDisconnect() < 2 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            Assertions.assertEquals(gateway.getCancelledOnDisconnect(), 2);
+
+            // the bids that were left behind don't trade any more, the sell only finds the session still connected
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 5, 97, TIME_IN_FORCE.GTC, 4);
+            send(stays, buf, 1);
+            receive(stays, buf, 3);
+            Assertions.assertEquals(OrderMessages.type(buf, 0), OrderMessages.ACK);
+            for (int i = 1; i < 3; i++)
+            {
+                Assertions.assertEquals(OrderMessages.type(buf, i * OrderMessages.MESSAGE_SIZE), OrderMessages.FILL);
+                Assertions.assertEquals(OrderMessages.price(buf, i * OrderMessages.MESSAGE_SIZE), 97);
+            }
+            gateway.stop();
+        }
+
+        Assertions.assertTrue(ob.getOrderMap().isEmpty());
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testLoadClientOverTcp() throws IOException, InterruptedException
+    {
+        runLoad(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @Test
+    public void testLoadClientOverUnixDomainSocket() throws IOException, InterruptedException
+    {
+        Path dir = Files.createTempDirectory("gateway");
+        runLoad(UnixDomainSocketAddress.of(dir.resolve("gateway.sock")));
+        Assertions.assertFalse(Files.exists(dir.resolve("gateway.sock")));
+        Files.delete(dir);
+    }
+
+    private static void runLoad(SocketAddress address) throws IOException, InterruptedException
+    {
+        Orderbook ob = newBook();
+        OrderGateway gateway = new OrderGateway(address);
+        gateway.addInstrument(SECURITY_ID, ob);
+        gateway.start();
+
+        GatewayLoadClient.Report report = new GatewayLoadClient(gateway.getLocalAddress(), SECURITY_ID, 5).run(5_000, 16);
+        gateway.stop();
+
+        Assertions.assertEquals(report.getMessages(), 5_000);
+        Assertions.assertTrue(report.getFills() > 0);
+        Assertions.assertEquals(report.getRejects(), gateway.getRejected());
+        Assertions.assertTrue(report.getP50() > 0 && report.getP50() <= report.getMax());
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    private static void assertCancelled(ByteBuffer buf, int offset, int orderId, int qty, long clientOrderId)
+    {
+        Assertions.assertEquals(OrderMessages.type(buf, offset), OrderMessages.CANCELLED);
+        Assertions.assertEquals(OrderMessages.orderId(buf, offset), orderId);
+        Assertions.assertEquals(OrderMessages.qty(buf, offset), qty);
+        Assertions.assertEquals(OrderMessages.clientOrderId(buf, offset), clientOrderId);
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer buf, int messages) throws IOException
+    {
+        buf.clear().limit(messages * OrderMessages.MESSAGE_SIZE);
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+
+    private static void receive(SocketChannel channel, ByteBuffer buf, int messages) throws IOException
+    {
+        buf.clear().limit(messages * OrderMessages.MESSAGE_SIZE);
+        while (buf.hasRemaining())
+            if (channel.read(buf) < 0)
+                throw new IOException("the gateway closed the connection.");
+        buf.clear(); // the messages stay where they are, for absolute reads
+    }
+
+    private static Orderbook newBook()
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+    }
+}
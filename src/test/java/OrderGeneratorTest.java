@@ -1,4 +1,5 @@
 import Orders.Order;
+import Orders.PriceScale;
 import Orders.Side;
 
 import java.io.*;
@@ -6,6 +7,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class OrderGeneratorTest {
+    // prices in the data files are decimals, the book works in ticks
+    private static final PriceScale PRICE_SCALE = PriceScale.fromTickSize(1);
+
     public static List<Order> readOrdersFromFile(String filePath) {
         List<Order> orders = new ArrayList<>();
 
@@ -23,7 +27,7 @@ public class OrderGeneratorTest {
                 int securityId = Integer.parseInt(values[0].trim());
                 Side side = Side.valueOf(values[1].trim());
                 int quantity = Integer.parseInt(values[2].trim());
-                double price = Double.parseDouble(values[3].trim());
+                long price = PRICE_SCALE.toTicks(Double.parseDouble(values[3].trim()));
 
                 Order order = new Order(securityId, side, quantity, price);
                 orders.add(order);
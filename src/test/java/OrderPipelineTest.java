@@ -0,0 +1,178 @@
+import Engine.CommandHandler;
+import Engine.CommandRing;
+import Engine.OrderMessages;
+import Engine.OrderPipeline;
+import Engine.WaitStrategy;
+import MatchingEngine.OrderMatcherFactory;
+import MatchingEngine.TradeListener;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.TIME_IN_FORCE;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class OrderPipelineTest {
+    private static final int SECURITY_ID = 5;
+
+    @Test
+    public void testPipelineMatchesTheInlinePath() throws InterruptedException
+    {
+        int count = 20_000;
+        ByteBuffer messages = randomMessages(count);
+
+        List<String> pipelineTrades = new ArrayList<>();
+        OrderPipeline pipeline = new OrderPipeline(SECURITY_ID, newBook(), recorder(pipelineTrades), 64, WaitStrategy.YIELD);
+        pipeline.start();
+        for (int i = 0; i < count; i++)
+            pipeline.submit(messages, i * OrderMessages.MESSAGE_SIZE);
+        pipeline.awaitIdle();
+        Orderbook piped = pipeline.getBook();
+        pipeline.stop();
+
+        // the same messages decoded and applied on this thread
+        List<String> inlineTrades = new ArrayList<>();
+        Orderbook inline = newBook();
+        inline.getMatchingEngine().setTradeListener(recorder(inlineTrades));
+        CommandHandler apply = (type, bookSlot, order, orderId, value) -> {
+            switch (type)
+            {
+                case CommandRing.ADD: inline.addOrder(order); break;
+                case CommandRing.CANCEL: inline.removeOrder(orderId, false); break;
+                case CommandRing.AMEND_QTY: inline.amendOrderQty(orderId, (int) value); break;
+                default: inline.amendOrderPrice(orderId, value); break;
+            }
+        };
+        int rejected = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * OrderMessages.MESSAGE_SIZE;
+            if (OrderMessages.securityId(messages, offset) != SECURITY_ID || !OrderMessages.decode(messages, offset, 0, apply))
+                rejected++;
+        }
+
+        Assertions.assertTrue(rejected > 0);
+        Assertions.assertEquals(pipeline.getRejected(), rejected);
+        Assertions.assertFalse(inlineTrades.isEmpty());
+        Assertions.assertEquals(pipelineTrades, inlineTrades);
+        Assertions.assertEquals(piped.getTotalBidSize(), inline.getTotalBidSize());
+        Assertions.assertEquals(piped.getTotalAskSize(), inline.getTotalAskSize());
+        Assertions.assertEquals(piped.getOrderMap().size(), inline.getOrderMap().size());
+        Assertions.assertTrue(piped.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testDecodeRejectsMalformedMessages()
+    {
+        ByteBuffer buf = ByteBuffer.allocate(OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        List<Order> decoded = new ArrayList<>();
+        CommandHandler handler = (type, bookSlot, order, orderId, value) -> decoded.add(order);
+
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 10, 101, TIME_IN_FORCE.IOC, 77);
+        Assertions.assertTrue(OrderMessages.decode(buf, 0, 0, handler));
+        Assertions.assertEquals(decoded.get(0).getSide(), Side.SELL);
+        Assertions.assertEquals(decoded.get(0).getPrice(), 101);
+        Assertions.assertEquals(decoded.get(0).getTimeInForce(), TIME_IN_FORCE.IOC);
+        Assertions.assertEquals(OrderMessages.clientOrderId(buf, 0), 77);
+
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 0, 101, TIME_IN_FORCE.GTC, 1);
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler));
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 10, -1, TIME_IN_FORCE.GTC, 1);
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler));
+        OrderMessages.encodeAmendQty(buf, 0, SECURITY_ID, 3, 0, 1);
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler));
+        buf.put(OrderMessages.TYPE_OFFSET, (byte) 42);
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler));
+
+        // outside the instrument's band
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 10, 1L << 40, TIME_IN_FORCE.GTC, 1);
+        Assertions.assertTrue(OrderMessages.decode(buf, 0, 0, handler));
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler, 50, 150));
+        OrderMessages.encodeAmendPrice(buf, 0, SECURITY_ID, 3, 49, 1);
+        Assertions.assertFalse(OrderMessages.decode(buf, 0, 0, handler, 50, 150));
+        Assertions.assertEquals(decoded.size(), 2);
+    }
+
+    @Test
+    public void testFailuresDoNotStopTheStages() throws InterruptedException
+    {
+        List<String> published = new ArrayList<>();
+        TradeListener recorder = recorder(published);
+        TradeListener failsOnce = trade -> {
+            if (published.isEmpty() && trade.getVolume() == 4)
+                throw new IllegalStateException("the session went away");
+            recorder.onTrade(trade);
+        };
+        OrderPipeline pipeline = new OrderPipeline(SECURITY_ID, newBook(), failsOnce, 4, WaitStrategy.YIELD);
+        pipeline.setPriceBand(50, 150);
+        pipeline.start();
+        Assertions.assertThrows(IllegalStateException.class, () -> pipeline.setPriceBand(1, 10));
+
+        ByteBuffer buf = ByteBuffer.allocate(OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.SELL, 10, 101, TIME_IN_FORCE.GTC, 1);
+        pipeline.submit(buf, 0);
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 5, 1L << 40, TIME_IN_FORCE.GTC, 2);
+        pipeline.submit(buf, 0);
+        OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 4, 101, TIME_IN_FORCE.GTC, 3); // fails to publish
+        pipeline.submit(buf, 0);
+        for (int i = 0; i < 6; i++) // more than the rings hold
+        {
+            OrderMessages.encodeLimitOrder(buf, 0, SECURITY_ID, Side.BUY, 1, 101, TIME_IN_FORCE.GTC, 4 + i);
+            pipeline.submit(buf, 0);
+        }
+        pipeline.awaitIdle();
+
+        Assertions.assertEquals(pipeline.getRejected(), 1);
+        Assertions.assertEquals(pipeline.getFailedPublishes(), 1);
+        Assertions.assertEquals(pipeline.getFailedCommands(), 0);
+        Assertions.assertEquals(published.size(), 6);
+        Assertions.assertEquals(pipeline.getBook().getTotalAskSize(), 0);
+        Assertions.assertTrue(pipeline.getBook().compareTotalBidAskVolumes());
+        pipeline.stop();
+    }
+
+    // limit and market orders around 100, cancels and amends of earlier ids, and a few invalid or foreign messages
+    private static ByteBuffer randomMessages(int count)
+    {
+        Random random = new Random(3);
+        ByteBuffer buf = ByteBuffer.allocate(count * OrderMessages.MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * OrderMessages.MESSAGE_SIZE;
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            int action = random.nextInt(20);
+            if (action < 12)
+                OrderMessages.encodeLimitOrder(buf, offset, SECURITY_ID, side, 1 + random.nextInt(100),
+                        side == Side.BUY ? 95 + random.nextInt(10) : 100 + random.nextInt(10), TIME_IN_FORCE.GTC, i);
+            else if (action < 14)
+                OrderMessages.encodeMarketOrder(buf, offset, SECURITY_ID, side, 1 + random.nextInt(50), i);
+            else if (action < 16)
+                OrderMessages.encodeCancel(buf, offset, SECURITY_ID, random.nextInt(i + 1), i);
+            else if (action < 17)
+                OrderMessages.encodeAmendQty(buf, offset, SECURITY_ID, random.nextInt(i + 1), 1 + random.nextInt(100), i);
+            else if (action < 18)
+                OrderMessages.encodeAmendPrice(buf, offset, SECURITY_ID, random.nextInt(i + 1), 90 + random.nextInt(25), i);
+            else if (action < 19)
+                OrderMessages.encodeLimitOrder(buf, offset, SECURITY_ID, side, 0, 100, TIME_IN_FORCE.GTC, i);
+            else
+                OrderMessages.encodeLimitOrder(buf, offset, SECURITY_ID + 1, side, 10, 100, TIME_IN_FORCE.GTC, i);
+        }
+        return buf;
+    }
+
+    private static TradeListener recorder(List<String> trades)
+    {
+        return trade -> trades.add(trade.getSide() + " " + trade.getVolume() + "@" + trade.getPrice() + " " + trade.getMakerId() + "/" + trade.getTakerId());
+    }
+
+    private static Orderbook newBook()
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+    }
+}
@@ -0,0 +1,110 @@
+import Engine.OrderSequencer;
+import Engine.WaitStrategy;
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class OrderSequencerTest {
+    private static final int PRODUCERS = 4;
+    private static final int ORDERS_PER_PRODUCER = 2_000;
+
+    @Test
+    public void testConcurrentProducersWithEveryWaitStrategy() throws InterruptedException
+    {
+        for (WaitStrategy waitStrategy: WaitStrategy.values())
+            runProducers(waitStrategy);
+    }
+
+    @Test
+    public void testCancelAndAmendAreAppliedInOrder() throws InterruptedException
+    {
+        OrderSequencer sequencer = new OrderSequencer(newBook(), 4, WaitStrategy.YIELD);
+        sequencer.start();
+        sequencer.add(new Order(0, Side.BUY, 100, 99)); // id 0
+        sequencer.add(new Order(0, Side.BUY, 50, 99));  // id 1
+        sequencer.add(new Order(0, Side.SELL, 10, 101)); // id 2
+        sequencer.amendQty(0, 20);
+        sequencer.amendPrice(1, 98);
+        sequencer.cancel(2);
+        sequencer.add(new Order(0, Side.SELL, 5, 99)); // trades with id 0
+        sequencer.awaitIdle();
+
+        Orderbook ob = sequencer.getBook();
+        Assertions.assertEquals(ob.getBestBid(), 99);
+        Assertions.assertEquals(ob.getBestBidSize(), 15);
+        Assertions.assertEquals(ob.getBidLimits().get(98).getTotalVolumeAtLimit(), 50);
+        Assertions.assertEquals(ob.getTotalAskSize(), 0);
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 1);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sequencer.amendQty(0, -1));
+        sequencer.stop();
+    }
+
+    @Test
+    public void testFailingCommandIsSkipped() throws InterruptedException
+    {
+        Orderbook ob = newBook();
+        ob.getMatchingEngine().setTradeListener(trade -> {
+            throw new IllegalStateException("downstream is gone");
+        });
+        OrderSequencer sequencer = new OrderSequencer(ob, 4, WaitStrategy.YIELD);
+        sequencer.start();
+        sequencer.add(new Order(0, Side.SELL, 10, 101));
+        sequencer.add(new Order(0, Side.BUY, 5, 101)); // throws on its trade
+        for (int i = 0; i < 8; i++) // more than the ring holds
+            sequencer.add(new Order(0, Side.BUY, 1, 90 + i));
+        sequencer.awaitIdle();
+
+        Assertions.assertEquals(sequencer.getFailedCommands(), 1);
+        Assertions.assertEquals(ob.getBestBid(), 97);
+        Assertions.assertEquals(ob.getBidLimits().size(), 8);
+        sequencer.stop();
+    }
+
+    // each producer rests its orders on its own bid level, sized 1, 2, 3, ... in submission order. A ring much smaller
+    // than the flow keeps the producers waiting on the sequencer.
+    private static void runProducers(WaitStrategy waitStrategy) throws InterruptedException
+    {
+        OrderSequencer sequencer = new OrderSequencer(newBook(), 64, waitStrategy);
+        sequencer.start();
+
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++)
+        {
+            long price = 100 - p;
+            producers[p] = new Thread(() -> {
+                for (int i = 1; i <= ORDERS_PER_PRODUCER; i++)
+                    sequencer.add(new Order(0, Side.BUY, i, price));
+            });
+            producers[p].start();
+        }
+        for (Thread producer: producers)
+            producer.join();
+        sequencer.stop();
+
+        Orderbook ob = sequencer.getBook();
+        Assertions.assertEquals(ob.getOrderMap().size(), PRODUCERS * ORDERS_PER_PRODUCER);
+        long perLevel = (long) ORDERS_PER_PRODUCER * (ORDERS_PER_PRODUCER + 1) / 2;
+        Assertions.assertEquals(ob.getTotalBidSize(), PRODUCERS * perLevel);
+        for (int p = 0; p < PRODUCERS; p++)
+        {
+            Limit level = ob.getBidLimits().get(100 - p);
+            Assertions.assertEquals(level.getTotalVolumeAtLimit(), perLevel);
+            int expectedQty = 1;
+            for (Order o = level.getHead(); o != null; o = o.getNextOrder())
+                Assertions.assertEquals(o.getCurrentQuantity(), expectedQty++);
+        }
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    private static Orderbook newBook()
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+    }
+}
@@ -2,6 +2,7 @@ import MatchingEngine.OrderMatcherFactory;
 import Orderbook.Orderbook;
 import Orders.Limit;
 import Orders.Order;
+import Orders.Side;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -92,4 +93,35 @@ public class OrderbookTest {
 
         ob.printOrderbookWithOrders();
     }
+
+    @Test
+    public void testBestPriceTrackingAcrossSweepsAndCancels()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        Assertions.assertEquals(book.getBestBid(), Orderbook.NO_BID);
+        Assertions.assertEquals(book.getBestAsk(), Orderbook.NO_ASK);
+
+        book.addOrder(new Order(0, Side.BUY, 10, 99));
+        for (long price : new long[]{101, 102, 104, 107, 110})
+            book.addOrder(new Order(0, Side.SELL, 10, price));
+        Assertions.assertEquals(book.getBestAsk(), 101);
+
+        // sweep 101, 102 and 104 and stop inside 107
+        book.addOrder(new Order(0, Side.BUY, 35));
+        Assertions.assertEquals(book.getBestAsk(), 107);
+        Assertions.assertEquals(book.getBestAskSize(), 5);
+        Assertions.assertEquals(book.getAskLimits().size(), 2);
+
+        // sweeping exactly to the end of a level moves the best to the next one
+        book.addOrder(new Order(0, Side.BUY, 5));
+        Assertions.assertEquals(book.getBestAsk(), 110);
+
+        // cancelling the best level outside of matching
+        book.addOrder(new Order(0, Side.SELL, 10, 108));
+        int orderId = book.chooseRandomOrderId(Side.SELL, 108);
+        Assertions.assertEquals(book.getBestAsk(), 108);
+        book.removeOrder(orderId, false);
+        Assertions.assertEquals(book.getBestAsk(), 110);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
 }
@@ -0,0 +1,112 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orderbook.PriceLadder;
+import Orders.Limit;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class PriceLadderTest {
+
+    @Test
+    public void testLadderOrdering()
+    {
+        PriceLadder askLimits = new PriceLadder(false);
+        for (long price: new long[]{10, 18, 11, 14, 25, 20, 17})
+            askLimits.add(new Limit(price));
+
+        PriceLadder bidLimits = new PriceLadder(true);
+        for (long price: new long[]{1, 3, 4, 7, 8, 9})
+            bidLimits.add(new Limit(price));
+
+        List<Long> actualAsks = new ArrayList<>();
+        for (Limit l: askLimits)
+            actualAsks.add(l.getPrice());
+
+        List<Long> actualBids = new ArrayList<>();
+        for (Limit l: bidLimits)
+            actualBids.add(l.getPrice());
+
+        Assertions.assertEquals(Arrays.asList(10L, 11L, 14L, 17L, 18L, 20L, 25L), actualAsks);
+        Assertions.assertEquals(Arrays.asList(9L, 8L, 7L, 4L, 3L, 1L), actualBids);
+        Assertions.assertEquals(askLimits.first().getPrice(), 10);
+        Assertions.assertEquals(bidLimits.first().getPrice(), 9);
+        Assertions.assertEquals(askLimits.higher(new Limit(14)).getPrice(), 17);
+        Assertions.assertEquals(bidLimits.higher(new Limit(7)).getPrice(), 4);
+        Assertions.assertNull(askLimits.higher(new Limit(25)));
+        Assertions.assertNull(bidLimits.higher(new Limit(1)));
+    }
+
+    @Test
+    public void testLadderGetRemove()
+    {
+        PriceLadder askLimits = new PriceLadder(false);
+        Limit l100 = new Limit(100);
+        askLimits.add(l100);
+        askLimits.add(new Limit(101));
+        askLimits.add(new Limit(104));
+
+        Assertions.assertSame(askLimits.get(100), l100);
+        Assertions.assertNull(askLimits.get(102));
+        Assertions.assertTrue(askLimits.contains(new Limit(104)));
+
+        // removing the best level moves the best to the next occupied slot
+        Assertions.assertTrue(askLimits.remove(new Limit(100)));
+        Assertions.assertFalse(askLimits.remove(new Limit(100)));
+        Assertions.assertEquals(askLimits.first().getPrice(), 101);
+        Assertions.assertEquals(askLimits.size(), 2);
+
+        askLimits.get(101).setHead(new Order(0, Side.SELL, 10, 101));
+        askLimits.removeIf(Limit::isEmpty);
+        Assertions.assertEquals(askLimits.size(), 1);
+        Assertions.assertEquals(askLimits.first().getPrice(), 101);
+    }
+
+    @Test
+    public void testLadderRecentresAndGrows()
+    {
+        PriceLadder bidLimits = new PriceLadder(true, 64);
+        bidLimits.add(new Limit(1000));
+        bidLimits.add(new Limit(990));
+
+        // price drifts outside the window - ladder shifts but keeps its capacity
+        bidLimits.add(new Limit(1040));
+        Assertions.assertEquals(bidLimits.capacity(), 64);
+        Assertions.assertEquals(bidLimits.first().getPrice(), 1040);
+
+        // live range no longer fits - ladder grows
+        bidLimits.add(new Limit(900));
+        Assertions.assertEquals(bidLimits.capacity(), 256);
+
+        List<Long> actual = new ArrayList<>();
+        for (Limit l: bidLimits)
+            actual.add(l.getPrice());
+        Assertions.assertEquals(Arrays.asList(1040L, 1000L, 990L, 900L), actual);
+        Assertions.assertNotNull(bidLimits.get(990));
+    }
+
+    @Test
+    public void testMatchLargeMarketBuyOrderOnLadder()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123),
+                new PriceLadder(true), new PriceLadder(false));
+        for (Order o: OrderGeneratorTest.readOrdersFromFile("data/MultipleLimits.txt"))
+            ob.addOrder(o);
+
+        ob.addOrder(new Order(0, Side.BUY, 3250));
+
+        Assertions.assertFalse(ob.getAskLimits().contains(new Limit(11)));
+        Assertions.assertEquals(ob.getOrderMap().get(18).getCurrentQuantity(), 50);
+        Assertions.assertEquals(ob.getOrderMap().get(18).getParentLimit().getTotalVolumeAtLimit(), 450);
+        Assertions.assertEquals(ob.getTotalAskSize(), 950);
+        Assertions.assertEquals(ob.getBestAsk(), 12);
+        Assertions.assertEquals(ob.getBestBid(), 10);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+}
@@ -0,0 +1,42 @@
+import Orders.PriceScale;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+public class PriceScaleTest {
+
+    @Test
+    public void testFromTickSize()
+    {
+        PriceScale quarters = PriceScale.fromTickSize(0.25);
+        Assertions.assertEquals(quarters.getTickSize(), 25);
+        Assertions.assertEquals(quarters.getScale(), 2);
+
+        PriceScale fives = PriceScale.fromTickSize(5);
+        Assertions.assertEquals(fives.getTickSize(), 5);
+        Assertions.assertEquals(fives.getScale(), 0);
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        PriceScale scale = new PriceScale(5, 2); // tick = 0.05
+
+        Assertions.assertEquals(scale.toTicks(101.25), 2025);
+        Assertions.assertEquals(scale.toTicks(new BigDecimal("101.25")), 2025);
+        Assertions.assertEquals(scale.toDouble(2025), 101.25);
+        Assertions.assertEquals(scale.toDecimal(2025), new BigDecimal("101.25"));
+
+        // 0.1 + 0.2 is not exactly 0.3 as a double, but it is still exactly 6 ticks
+        Assertions.assertEquals(scale.toTicks(0.1 + 0.2), 6);
+    }
+
+    @Test
+    public void testOffTickPriceRejected()
+    {
+        PriceScale scale = new PriceScale(5, 2);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> scale.toTicks(101.27));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> scale.toTicks(new BigDecimal("101.27")));
+    }
+}
@@ -31,7 +31,7 @@ public class PriceTimeMatchingTest {
         ob.printOrderbookWithOrders();
 
         // buy market order
-        ob.addOrder(new Order(0, Side.BUY, 3250, null));
+        ob.addOrder(new Order(0, Side.BUY, 3250));
 
         ob.printOrderbookWithOrders();
 
@@ -50,7 +50,7 @@ public class PriceTimeMatchingTest {
         ob.printOrderbookWithOrders();
 
         // sell market order
-        ob.addOrder(new Order(0, Side.SELL, 2800, null));
+        ob.addOrder(new Order(0, Side.SELL, 2800));
 
         ob.printOrderbookWithOrders();
 
@@ -69,7 +69,7 @@ public class PriceTimeMatchingTest {
         ob.printOrderbookWithOrders();
 
         // aggressive limit buy
-        ob.addOrder(new Order(0, Side.BUY, 350, 11d));
+        ob.addOrder(new Order(0, Side.BUY, 350, 11));
 
         ob.printOrderbookWithOrders();
         Assertions.assertTrue(ob.compareTotalBidAskVolumes());
@@ -81,7 +81,7 @@ public class PriceTimeMatchingTest {
         ob.printOrderbookWithOrders();
 
         // aggressive limit buy
-        ob.addOrder(new Order(0, Side.BUY, 3300, 11d));
+        ob.addOrder(new Order(0, Side.BUY, 3300, 11));
 
         ob.printOrderbookWithOrders();
 
@@ -91,4 +91,83 @@ public class PriceTimeMatchingTest {
         Assertions.assertTrue(ob.getAskLimits().contains(new Limit(12)));
         Assertions.assertTrue(ob.compareTotalBidAskVolumes());
     }
+
+    @Test
+    public void testAggressiveLimitSweepStopsAtLimitPrice()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        book.addOrder(new Order(0, Side.BUY, 500, 100));
+        book.addOrder(new Order(0, Side.SELL, 200, 101));
+        book.addOrder(new Order(0, Side.SELL, 100, 102));
+        book.addOrder(new Order(0, Side.SELL, 300, 103)); // id 3
+
+        // takes 101 and 102, the remaining 200 rests at 102. Nothing at 103 is touched.
+        book.addOrder(new Order(0, Side.BUY, 500, 102)); // id 4
+
+        Assertions.assertEquals(book.getMatchingEngine().getTrades().size(), 2);
+        Assertions.assertEquals(book.getMatchingEngine().getTrades().get(1).getPrice(), 102);
+        Assertions.assertEquals(book.getBestBid(), 102);
+        Assertions.assertEquals(book.getBestBidSize(), 200);
+        Assertions.assertEquals(book.getOrderMap().get(4).getPrice(), 102);
+        Assertions.assertEquals(book.getBestAsk(), 103);
+        Assertions.assertEquals(book.getOrderMap().get(3).getCurrentQuantity(), 300);
+        Assertions.assertFalse(book.getAskLimits().contains(new Limit(101)));
+        Assertions.assertFalse(book.getAskLimits().contains(new Limit(102)));
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testAggressiveLimitLargerThanTheSideRestsTheRemainder()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        book.addOrder(new Order(0, Side.BUY, 200, 100));
+        book.addOrder(new Order(0, Side.BUY, 100, 99));
+        book.addOrder(new Order(0, Side.BUY, 300, 98));
+        book.addOrder(new Order(0, Side.SELL, 100, 105));
+
+        // more than the whole bid side, but the limit price keeps it from running through the book
+        book.addOrder(new Order(0, Side.SELL, 700, 99));
+
+        Assertions.assertEquals(book.getMatchingEngine().getTrades().size(), 2);
+        Assertions.assertEquals(book.getBestBid(), 98);
+        Assertions.assertEquals(book.getTotalBidSize(), 300);
+        Assertions.assertEquals(book.getBestAsk(), 99);
+        Assertions.assertEquals(book.getBestAskSize(), 400);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testAggressiveLimitSweepingTheWholeSideRestsTheRemainder()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        book.addOrder(new Order(0, Side.SELL, 100, 101));
+        book.addOrder(new Order(0, Side.SELL, 100, 102));
+
+        book.addOrder(new Order(0, Side.BUY, 300, 103));
+
+        Assertions.assertEquals(book.getMatchingEngine().getTrades().size(), 2);
+        Assertions.assertTrue(book.getAskLimits().isEmpty());
+        Assertions.assertEquals(book.getTotalAskSize(), 0);
+        Assertions.assertEquals(book.getBestBid(), 103);
+        Assertions.assertEquals(book.getBestBidSize(), 100);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testFirstOrderBackOnAnEmptiedSideSetsTheBestPrice()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        book.addOrder(new Order(0, Side.SELL, 100, 101));
+        book.addOrder(new Order(0, Side.SELL, 100, 102));
+        book.addOrder(new Order(0, Side.BUY, 200, 102)); // empties the ask side, best ask stays at 102
+        Assertions.assertTrue(book.getAskLimits().isEmpty());
+
+        // a worse ask than the last best one becomes the best ask, a bid below it doesn't cross
+        book.addOrder(new Order(0, Side.SELL, 50, 110));
+        Assertions.assertEquals(book.getBestAsk(), 110);
+        book.addOrder(new Order(0, Side.BUY, 50, 105));
+        Assertions.assertEquals(book.getMatchingEngine().getTrades().size(), 2);
+        Assertions.assertEquals(book.getBestBid(), 105);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
 }
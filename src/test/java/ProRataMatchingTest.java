@@ -2,10 +2,12 @@ import MatchingEngine.OrderMatcherFactory;
 import Orderbook.Orderbook;
 import Orders.Order;
 import Orders.Side;
+import Orders.Trade;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -30,7 +32,7 @@ public class ProRataMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 6, null));
+        ob.addOrder(new Order(0, Side.BUY, 6));
 
         ob.printOrderbookWithOrders();
 
@@ -48,7 +50,7 @@ public class ProRataMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 3200, null));
+        ob.addOrder(new Order(0, Side.BUY, 3200));
 
         ob.printOrderbookWithOrders();
 
@@ -65,7 +67,7 @@ public class ProRataMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 3201, 11d));
+        ob.addOrder(new Order(0, Side.BUY, 3201, 11));
 
         ob.printOrderbookWithOrders();
 
@@ -76,4 +78,117 @@ public class ProRataMatchingTest {
         Assertions.assertEquals(ob.getBestAsk(), 12);
         Assertions.assertEquals(ob.getBestBid(), 11);
     }
+
+    @Test
+    public void testProRataSharesAreExact()
+    {
+        // 30/44 of 22 is exactly 15, which (30.0 / 44) * 22 in floating point rounded down to 14
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("prorata"), new Random(123));
+        book.addOrder(new Order(0, Side.SELL, 30, 101));
+        book.addOrder(new Order(0, Side.SELL, 14, 101));
+        book.addOrder(new Order(0, Side.BUY, 22));
+
+        List<Trade> trades = book.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 2);
+        Assertions.assertEquals(trades.get(0).getVolume(), 15);
+        Assertions.assertEquals(trades.get(1).getVolume(), 7);
+        Assertions.assertEquals(book.getOrderMap().get(0).getCurrentQuantity(), 15);
+        Assertions.assertEquals(book.getOrderMap().get(1).getCurrentQuantity(), 7);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testProRataAllocationMatchesReference()
+    {
+        // deep levels with random queues, swept by market orders that either stop inside the first level or clear it and
+        // go on to the second. Every trade must match a straightforward model of the allocation rules: floor(q * toDistribute / levelVolume)
+        // to each order in time priority, then the residue FIFO.
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++)
+        {
+            Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("prorata"), new Random(123));
+            List<int[]> levels = new ArrayList<>(); // per level: resting quantities in time priority
+            List<List<Integer>> levelIds = new ArrayList<>();
+            int totalSize = 0;
+            for (int level = 0; level < 2; level++)
+            {
+                int n = 1 + random.nextInt(level == 0 ? 200 : 5);
+                int[] quantities = new int[n];
+                List<Integer> ids = new ArrayList<>();
+                for (int i = 0; i < n; i++)
+                {
+                    quantities[i] = 1 + random.nextInt(500);
+                    Order o = new Order(0, Side.SELL, quantities[i], 101 + level);
+                    book.addOrder(o);
+                    ids.add(o.getOrderId());
+                    totalSize += quantities[i];
+                }
+                levels.add(quantities);
+                levelIds.add(ids);
+            }
+
+            int qty = 1 + random.nextInt(totalSize - 1);
+            List<int[]> expected = new ArrayList<>(); // {makerId, volume}
+            int remaining = qty;
+            for (int level = 0; level < 2 && remaining > 0; level++)
+            {
+                int[] quantities = levels.get(level).clone();
+                int levelVolume = 0;
+                for (int q : quantities)
+                    levelVolume += q;
+
+                int toDistribute = remaining;
+                for (int i = 0; i < quantities.length; i++)
+                {
+                    int fill = (int) Math.min(quantities[i], (long) quantities[i] * toDistribute / levelVolume);
+                    if (fill > 0)
+                        expected.add(new int[]{levelIds.get(level).get(i), fill});
+                    remaining -= fill;
+                    quantities[i] -= fill;
+                }
+                for (int i = 0; i < quantities.length && remaining > 0; i++)
+                {
+                    int fill = Math.min(remaining, quantities[i]);
+                    if (fill > 0)
+                        expected.add(new int[]{levelIds.get(level).get(i), fill});
+                    remaining -= fill;
+                }
+            }
+
+            book.addOrder(new Order(0, Side.BUY, qty));
+            List<Trade> trades = book.getMatchingEngine().getTrades();
+            Assertions.assertEquals(trades.size(), expected.size());
+            for (int i = 0; i < trades.size(); i++)
+            {
+                Assertions.assertEquals(trades.get(i).getMakerId(), expected.get(i)[0]);
+                Assertions.assertEquals(trades.get(i).getVolume(), expected.get(i)[1]);
+            }
+            Assertions.assertEquals(book.getTotalAskSize(), totalSize - qty);
+            Assertions.assertTrue(book.compareTotalBidAskVolumes());
+        }
+    }
+
+    @Test
+    public void testProRataAggressiveLimitSweepsUpToItsPrice()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("prorata"), new Random(123));
+        book.addOrder(new Order(0, Side.BUY, 100, 100));
+        book.addOrder(new Order(0, Side.SELL, 30, 101));
+        book.addOrder(new Order(0, Side.SELL, 14, 101));
+        book.addOrder(new Order(0, Side.SELL, 40, 102));
+        book.addOrder(new Order(0, Side.SELL, 50, 103));
+
+        // 101 and 102 are cleared (44 + 40), the remaining 16 rests at 102
+        book.addOrder(new Order(0, Side.BUY, 100, 102));
+
+        List<Trade> trades = book.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 3);
+        Assertions.assertEquals(trades.get(2).getPrice(), 102);
+        Assertions.assertEquals(trades.get(2).getVolume(), 40);
+        Assertions.assertEquals(book.getBestBid(), 102);
+        Assertions.assertEquals(book.getBestBidSize(), 16);
+        Assertions.assertEquals(book.getBestAsk(), 103);
+        Assertions.assertEquals(book.getTotalAskSize(), 50);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
 }
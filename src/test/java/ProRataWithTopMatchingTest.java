@@ -2,6 +2,7 @@ import MatchingEngine.OrderMatcherFactory;
 import Orderbook.Orderbook;
 import Orders.Order;
 import Orders.Side;
+import Orders.Trade;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,7 +31,7 @@ public class ProRataWithTopMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 6, null));
+        ob.addOrder(new Order(0, Side.BUY, 6));
 
         ob.printOrderbookWithOrders();
 
@@ -53,7 +54,7 @@ public class ProRataWithTopMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 120, null));
+        ob.addOrder(new Order(0, Side.BUY, 120));
 
         ob.printOrderbookWithOrders();
 
@@ -78,7 +79,7 @@ public class ProRataWithTopMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 3100, null));
+        ob.addOrder(new Order(0, Side.BUY, 3100));
 
         ob.printOrderbookWithOrders();
 
@@ -103,7 +104,7 @@ public class ProRataWithTopMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.SELL, 500, null));
+        ob.addOrder(new Order(0, Side.SELL, 500));
 
         ob.printOrderbookWithOrders();
 
@@ -123,7 +124,7 @@ public class ProRataWithTopMatchingTest {
     {
         ob.printOrderbookWithOrders();
 
-        ob.addOrder(new Order(0, Side.BUY, 3322, 11d));
+        ob.addOrder(new Order(0, Side.BUY, 3322, 11));
 
         ob.printOrderbookWithOrders();
 
@@ -141,4 +142,68 @@ public class ProRataWithTopMatchingTest {
 //        Assertions.assertEquals(ob.getBestAsk(), 11);
 //        Assertions.assertEquals(ob.getBestBid(), 10);
     }
+
+    @Test
+    public void testPRWTLimitOrderSharesWhatIsLeftAfterTheTop()
+    {
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("proratawithtop"), new Random(123));
+        book.addOrder(new Order(0, Side.SELL, 10, 101)); // id 0, top
+        book.addOrder(new Order(0, Side.SELL, 50, 101)); // id 1
+        book.addOrder(new Order(0, Side.SELL, 40, 101)); // id 2
+        book.addOrder(new Order(0, Side.SELL, 100, 102));
+
+        book.addOrder(new Order(0, Side.BUY, 50, 101));
+
+        // top takes 10, the remaining 40 is split over the other 90 lots (22 + 17) and the 1 lot residue goes FIFO.
+        // The order is never filled for more than its own quantity.
+        List<Trade> trades = book.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 4);
+        Assertions.assertEquals(trades.get(0).getMakerId(), 0);
+        Assertions.assertEquals(trades.get(0).getVolume(), 10);
+        Assertions.assertEquals(trades.get(1).getMakerId(), 1);
+        Assertions.assertEquals(trades.get(1).getVolume(), 22);
+        Assertions.assertEquals(trades.get(2).getMakerId(), 2);
+        Assertions.assertEquals(trades.get(2).getVolume(), 17);
+        Assertions.assertEquals(trades.get(3).getMakerId(), 1);
+        Assertions.assertEquals(trades.get(3).getVolume(), 1);
+        Assertions.assertFalse(book.getOrderMap().containsKey(0));
+        Assertions.assertEquals(book.getOrderMap().get(1).getCurrentQuantity(), 27);
+        Assertions.assertEquals(book.getOrderMap().get(2).getCurrentQuantity(), 23);
+        Assertions.assertEquals(book.getTotalAskSize(), 150);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testPRWTDoesNotEmitEmptyTrades()
+    {
+        ob.addOrder(new Order(0, Side.BUY, 120));
+        ob.addOrder(new Order(0, Side.SELL, 500));
+
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertFalse(trades.isEmpty());
+        for (Trade t : trades)
+            Assertions.assertTrue(t.getVolume() > 0, t.toString());
+    }
+
+    @Test
+    public void testPRWTResidueStaysAtTheLevel()
+    {
+        // top 4, then 11 shared over 7 + 7: 5 each and 1 lot of residue. The residue is still filled at 100, it
+        // doesn't spill over to 101 while 100 has volume left.
+        Orderbook book = new Orderbook(OrderMatcherFactory.createOrderMatcher("proratawithtop"), new Random(123));
+        book.addOrder(new Order(0, Side.SELL, 4, 100));  // id 0
+        book.addOrder(new Order(0, Side.SELL, 7, 100));  // id 1
+        book.addOrder(new Order(0, Side.SELL, 7, 100));  // id 2
+        book.addOrder(new Order(0, Side.SELL, 10, 101)); // id 3
+
+        book.addOrder(new Order(0, Side.BUY, 15, 101));
+
+        List<Trade> trades = book.getMatchingEngine().getTrades();
+        for (Trade t : trades)
+            Assertions.assertEquals(t.getPrice(), 100, t.toString());
+        Assertions.assertEquals(book.getOrderMap().get(1).getCurrentQuantity(), 1);
+        Assertions.assertEquals(book.getOrderMap().get(2).getCurrentQuantity(), 2);
+        Assertions.assertEquals(book.getOrderMap().get(3).getCurrentQuantity(), 10);
+        Assertions.assertTrue(book.compareTotalBidAskVolumes());
+    }
 }
@@ -0,0 +1,153 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.Orderbook;
+import Orders.Order;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class StopOrderTest {
+
+    @Test
+    public void testStopsTriggerInPriceThenTimeOrder()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.addOrder(new Order(0, Side.SELL, 10, 101)); // id 0
+        ob.addOrder(new Order(0, Side.SELL, 10, 102)); // id 1
+        ob.addOrder(new Order(0, Side.SELL, 100, 103)); // id 2
+        ob.addOrder(Order.stop(0, Side.BUY, 5, 102)); // id 3
+        ob.addOrder(Order.stop(0, Side.BUY, 5, 101)); // id 4
+        ob.addOrder(Order.stop(0, Side.BUY, 5, 101)); // id 5
+        ob.addOrder(Order.stop(0, Side.BUY, 5, 104)); // id 6, out of reach
+        Assertions.assertEquals(ob.getStopBook().size(), 4);
+        Assertions.assertFalse(ob.containsOrder(3));
+        Assertions.assertEquals(ob.getBestAsk(), 101);
+
+        // prints at 101 and 102, which triggers 4 and 5 (101, in time order) and then 3 (102). They all buy at 103.
+        ob.addOrder(new Order(0, Side.BUY, 20));
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 5);
+        Assertions.assertEquals(trades.get(2).getTakerId(), 4);
+        Assertions.assertEquals(trades.get(3).getTakerId(), 5);
+        Assertions.assertEquals(trades.get(4).getTakerId(), 3);
+        for (int i = 2; i < 5; i++)
+            Assertions.assertEquals(trades.get(i).getPrice(), 103);
+        Assertions.assertEquals(ob.getBestAskSize(), 85);
+        Assertions.assertEquals(ob.getStopBook().size(), 1);
+        Assertions.assertTrue(ob.getStopBook().contains(6));
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+
+        // a waiting stop can be cancelled like a resting order
+        ob.removeOrder(6, false);
+        Assertions.assertEquals(ob.getStopBook().size(), 0);
+    }
+
+    @Test
+    public void testStopLimitTakesWhatItCanAndRestsTheRest()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = newBook(engine);
+            ob.addOrder(new Order(0, Side.BUY, 10, 100)); // id 0
+            ob.addOrder(new Order(0, Side.BUY, 10, 99));  // id 1
+            ob.addOrder(new Order(0, Side.SELL, 10, 102)); // id 2
+            ob.addOrder(Order.stopLimit(0, Side.SELL, 30, 100, 99)); // id 3: sell up to 30 at 99 or better once 100 prints
+
+            // a trade on the ask side doesn't reach a sell stop
+            ob.addOrder(new Order(0, Side.BUY, 5));
+            Assertions.assertEquals(ob.getStopBook().size(), 1, engine);
+
+            ob.addOrder(new Order(0, Side.SELL, 4)); // prints at 100
+            Assertions.assertEquals(ob.getStopBook().size(), 0, engine);
+            // 6 left at 100 and 10 at 99 are taken, the other 14 rest at 99 as the best ask
+            Assertions.assertTrue(ob.getBidLimits().isEmpty(), engine);
+            Assertions.assertEquals(ob.getBestAsk(), 99, engine);
+            Assertions.assertEquals(ob.getBestAskSize(), 14, engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testStopAlreadyReachedTriggersOnArrival()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.addOrder(new Order(0, Side.SELL, 10, 101));
+        ob.addOrder(new Order(0, Side.SELL, 10, 102));
+        ob.addOrder(new Order(0, Side.BUY, 5)); // prints at 101
+
+        ob.addOrder(Order.stop(0, Side.BUY, 10, 100));
+        Assertions.assertEquals(ob.getStopBook().size(), 0);
+        Assertions.assertEquals(ob.getBestAsk(), 102);
+        Assertions.assertEquals(ob.getBestAskSize(), 5);
+    }
+
+    @Test
+    public void testCrossingPriceModifyTriggersStops()
+    {
+        Orderbook ob = newBook("pricetime");
+        ob.addOrder(new Order(0, Side.SELL, 10, 101)); // id 0
+        ob.addOrder(new Order(0, Side.SELL, 10, 102)); // id 1
+        ob.addOrder(new Order(0, Side.BUY, 5, 99));    // id 2
+        ob.addOrder(Order.stop(0, Side.BUY, 5, 101));  // id 3
+
+        // re-entered at 101 it takes 5 there, which triggers the stop straight away, not on the next order
+        ob.modifyOrderPrice(2, 101);
+        List<Trade> trades = ob.getMatchingEngine().getTrades();
+        Assertions.assertEquals(trades.size(), 2);
+        Assertions.assertEquals(trades.get(1).getTakerId(), 3);
+        Assertions.assertEquals(ob.getStopBook().size(), 0);
+        Assertions.assertEquals(ob.getBestAsk(), 102);
+        Assertions.assertEquals(ob.getBestAskSize(), 10);
+        Assertions.assertTrue(ob.getBidLimits().isEmpty());
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    @Test
+    public void testCrossingAmendTriggersStopsBeforeTheNextOrder()
+    {
+        for (String engine: new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook ob = newBook(engine);
+            ob.addOrder(new Order(0, Side.BUY, 10, 100)); // id 0
+            ob.addOrder(new Order(0, Side.BUY, 10, 99));  // id 1
+            ob.addOrder(new Order(0, Side.SELL, 5, 102)); // id 2
+            ob.addOrder(Order.stop(0, Side.SELL, 5, 100)); // id 3
+
+            // amended through the bid it sells 5 at 100, and the stop sells the other 5 there before anything else
+            ob.amendOrderPrice(2, 100);
+            Assertions.assertEquals(ob.getStopBook().size(), 0, engine);
+            Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), 2, engine);
+            Assertions.assertEquals(ob.getBestBid(), 99, engine);
+            Assertions.assertEquals(ob.getBestBidSize(), 10, engine);
+            Assertions.assertTrue(ob.getAskLimits().isEmpty(), engine);
+            Assertions.assertTrue(ob.compareTotalBidAskVolumes(), engine);
+        }
+    }
+
+    @Test
+    public void testLongCascadeDoesNotRecurse()
+    {
+        // each stop's own trade triggers the next one: a chain as long as the number of stops. One bid more than the
+        // sells, a market order never takes a side out completely.
+        int stops = 50_000;
+        Orderbook ob = newBook("pricetime");
+        for (int i = 0; i <= stops + 1; i++)
+            ob.addOrder(new Order(0, Side.BUY, 1, 100_000 - i));
+        for (int i = 0; i < stops; i++)
+            ob.addOrder(Order.stop(0, Side.SELL, 1, 100_000 - i));
+
+        ob.addOrder(new Order(0, Side.SELL, 1));
+        Assertions.assertEquals(ob.getMatchingEngine().getTrades().size(), stops + 1);
+        Assertions.assertEquals(ob.getStopBook().size(), 0);
+        Assertions.assertEquals(ob.getBestBid(), 100_000 - stops - 1);
+        Assertions.assertTrue(ob.compareTotalBidAskVolumes());
+    }
+
+    private static Orderbook newBook(String engine)
+    {
+        return new Orderbook(OrderMatcherFactory.createOrderMatcher(engine), new Random(123));
+    }
+}
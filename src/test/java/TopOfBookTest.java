@@ -0,0 +1,100 @@
+import MatchingEngine.OrderMatcherFactory;
+import Orderbook.BboSnapshot;
+import Orderbook.Orderbook;
+import Orderbook.TopOfBook;
+import Orders.Order;
+import Orders.Side;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TopOfBookTest {
+
+    @Test
+    public void testBookPublishesTopOfBookChanges()
+    {
+        Orderbook ob = new Orderbook(OrderMatcherFactory.createOrderMatcher("pricetime"), new Random(123));
+        TopOfBook topOfBook = new TopOfBook();
+        ob.setTopOfBook(topOfBook);
+        BboSnapshot bbo = new BboSnapshot();
+
+        ob.addOrder(new Order(0, Side.BUY, 100, 99));
+        ob.addOrder(new Order(0, Side.BUY, 50, 99));
+        Assertions.assertEquals(topOfBook.read(bbo), 2);
+        Assertions.assertEquals(bbo.getBidPrice(), 99);
+        Assertions.assertEquals(bbo.getBidSize(), 150);
+        Assertions.assertEquals(bbo.getBidOrderCount(), 2);
+        Assertions.assertEquals(bbo.getAskPrice(), Orderbook.NO_ASK);
+        Assertions.assertEquals(bbo.getAskSize(), 0);
+        Assertions.assertTrue(bbo.hasBid());
+        Assertions.assertFalse(bbo.hasAsk());
+
+        // the sentinels are not prices an order can have
+        ob.addOrder(new Order(0, Side.SELL, 10, Orderbook.NO_ASK));
+        ob.addOrder(new Order(0, Side.BUY, 10, Orderbook.NO_BID));
+        Assertions.assertEquals(topOfBook.getVersion(), 2);
+        Assertions.assertEquals(ob.getOrderMap().size(), 2);
+
+        // behind the touch: nothing to publish
+        ob.addOrder(new Order(0, Side.BUY, 10, 98));
+        Assertions.assertEquals(topOfBook.getVersion(), 2);
+
+        ob.addOrder(new Order(0, Side.SELL, 30, 101));
+        ob.addOrder(new Order(0, Side.SELL, 120, 99)); // fills the 150 at 99 down to 30 and nothing rests
+        topOfBook.read(bbo);
+        Assertions.assertEquals(bbo.getVersion(), 4);
+        Assertions.assertEquals(bbo.getBidPrice(), 99);
+        Assertions.assertEquals(bbo.getBidSize(), 30);
+        Assertions.assertEquals(bbo.getBidOrderCount(), 1);
+        Assertions.assertEquals(bbo.getAskPrice(), 101);
+        Assertions.assertEquals(bbo.getAskOrderCount(), 1);
+
+        ob.removeOrder(1, false);
+        ob.removeOrder(2, false);
+        topOfBook.read(bbo);
+        Assertions.assertEquals(bbo.getBidPrice(), Orderbook.NO_BID);
+        Assertions.assertEquals(bbo.getBidSize(), 0);
+        Assertions.assertFalse(bbo.hasBid());
+        Assertions.assertEquals(bbo.getBidOrderCount(), 0);
+        Assertions.assertEquals(bbo.getAskSize(), 30);
+    }
+
+    // the writer publishes updates whose fields all derive from one counter, readers check they never see a mix of two
+    @Test
+    public void testReadersNeverSeeATornUpdate() throws InterruptedException
+    {
+        TopOfBook topOfBook = new TopOfBook();
+        int updates = 2_000_000;
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++)
+        {
+            readers[r] = new Thread(() -> {
+                BboSnapshot bbo = new BboSnapshot();
+                long lastVersion = 0;
+                while (lastVersion < updates)
+                {
+                    long version = topOfBook.read(bbo);
+                    if (version < lastVersion)
+                        torn.compareAndSet(null, "version went back: " + bbo);
+                    lastVersion = version;
+                    long i = bbo.getBidSize();
+                    if (version > 0 && (bbo.getBidPrice() != 10 * i || bbo.getAskPrice() != 10 * i + 1 || bbo.getAskSize() != i
+                            || bbo.getBidOrderCount() != (int) (i % 7) || bbo.getAskOrderCount() != (int) (i % 11) || version != i))
+                        torn.compareAndSet(null, bbo.toString());
+                }
+            });
+            readers[r].start();
+        }
+
+        for (int i = 1; i <= updates; i++)
+            topOfBook.update(10L * i, i, i % 7, 10L * i + 1, i, i % 11);
+        for (Thread reader: readers)
+            reader.join();
+
+        Assertions.assertNull(torn.get());
+        Assertions.assertEquals(topOfBook.getVersion(), updates);
+    }
+}
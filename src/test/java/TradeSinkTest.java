@@ -0,0 +1,151 @@
+import MatchingEngine.AbstractOrderMatcher;
+import MatchingEngine.CountingTradeSink;
+import MatchingEngine.OrderMatcherFactory;
+import MatchingEngine.TradeListSink;
+import MatchingEngine.TradeRingBuffer;
+import Orderbook.IntOrderMap;
+import Orderbook.OffHeapOrderbook;
+import Orderbook.Orderbook;
+import Orderbook.TreeSetBookSide;
+import Orders.Side;
+import Orders.Trade;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TradeSinkTest {
+
+    @Test
+    public void testCountingSinkAggregatesTheSameTrades()
+    {
+        for (String engine : new String[]{"pricetime", "prorata", "proratawithtop"})
+        {
+            Orderbook listed = newBook(engine, false);
+            Orderbook counted = newBook(engine, false);
+            CountingTradeSink sink = new CountingTradeSink();
+            counted.getMatchingEngine().setTradeListener(sink);
+            drive(listed, new Random(42));
+            drive(counted, new Random(42));
+
+            List<Trade> trades = listed.getMatchingEngine().getTrades();
+            long volume = 0, buyVolume = 0, notional = 0;
+            for (Trade t : trades)
+            {
+                volume += t.getVolume();
+                buyVolume += t.getSide() == Side.BUY ? t.getVolume() : 0;
+                notional += t.getPrice() * t.getVolume();
+            }
+            Assertions.assertTrue(trades.size() > 100, engine);
+            Assertions.assertEquals(sink.getTradeCount(), trades.size(), engine);
+            Assertions.assertEquals(sink.getVolume(), volume, engine);
+            Assertions.assertEquals(sink.getBuyVolume(), buyVolume, engine);
+            Assertions.assertEquals(sink.getSellVolume(), volume - buyVolume, engine);
+            Assertions.assertEquals(sink.getNotional(), notional, engine);
+            Assertions.assertEquals(sink.getLastPrice(), trades.get(trades.size() - 1).getPrice(), engine);
+        }
+    }
+
+    @Test
+    public void testStreamingSinkReleasesPooledTradesImmediately()
+    {
+        Orderbook ob = newBook("pricetime", true);
+        ob.getMatchingEngine().setTradeListener(new CountingTradeSink());
+        drive(ob, new Random(42));
+
+        // every trade went back to the pool as soon as the sink had seen it, so one Trade object served the whole run
+        Assertions.assertEquals(ob.getTradePool().getCreated(), 1);
+        Assertions.assertThrows(IllegalStateException.class, () -> ob.getMatchingEngine().getTrades());
+    }
+
+    @Test
+    public void testRingBufferHandsTradesToConsumerThread() throws InterruptedException
+    {
+        Orderbook listed = newBook("pricetime", false);
+        drive(listed, new Random(42));
+        List<Trade> expected = listed.getMatchingEngine().getTrades();
+
+        Orderbook streamed = newBook("pricetime", true);
+        TradeRingBuffer ring = new TradeRingBuffer(8); // much smaller than the number of trades, the producer has to wait
+        streamed.getMatchingEngine().setTradeListener(ring);
+
+        List<Trade> received = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            while (received.size() < expected.size())
+            {
+                if (ring.drainTo(t -> received.add(new Trade(t.getSide(), t.getPrice(), t.getVolume(), t.getMakerId(), t.getTakerId())), 4) == 0)
+                    Thread.yield();
+            }
+        });
+        consumer.start();
+        drive(streamed, new Random(42));
+        consumer.join(10_000);
+
+        Assertions.assertFalse(consumer.isAlive());
+        Assertions.assertEquals(ring.size(), 0);
+        Assertions.assertEquals(received.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Assertions.assertEquals(received.get(i).getSide(), expected.get(i).getSide());
+            Assertions.assertEquals(received.get(i).getPrice(), expected.get(i).getPrice());
+            Assertions.assertEquals(received.get(i).getVolume(), expected.get(i).getVolume());
+            Assertions.assertEquals(received.get(i).getMakerId(), expected.get(i).getMakerId());
+            Assertions.assertEquals(received.get(i).getTakerId(), expected.get(i).getTakerId());
+        }
+    }
+
+    @Test
+    public void testOffHeapBookStreamsTrades()
+    {
+        OffHeapOrderbook ob = new OffHeapOrderbook();
+        CountingTradeSink sink = new CountingTradeSink();
+        ob.setTradeListener(sink);
+        ob.addOrder(Side.SELL, 100, 101);
+        ob.addOrder(Side.SELL, 100, 102);
+        ob.addMarketOrder(Side.BUY, 150);
+
+        Assertions.assertEquals(sink.getTradeCount(), 2);
+        Assertions.assertEquals(sink.getVolume(), 150);
+        Assertions.assertEquals(sink.getNotional(), 100 * 101 + 50 * 102);
+        Assertions.assertEquals(sink.getLastPrice(), 102);
+        Assertions.assertThrows(IllegalStateException.class, ob::getTrades);
+
+        ob.setTradeListener(new TradeListSink());
+        ob.addMarketOrder(Side.BUY, 10);
+        Assertions.assertEquals(ob.getTrades().size(), 1);
+    }
+
+    private static Orderbook newBook(String engine, boolean pooling)
+    {
+        AbstractOrderMatcher matcher = OrderMatcherFactory.createOrderMatcher(engine);
+        return new Orderbook(matcher, new Random(123), new TreeSetBookSide(true), new TreeSetBookSide(false), new IntOrderMap(), pooling);
+    }
+
+    // random passive orders, market orders and cancels around a two sided book that never empties
+    private static void drive(Orderbook ob, Random random)
+    {
+        ob.addOrder(ob.acquireOrder(0, Side.BUY, 1_000_000, 50));
+        ob.addOrder(ob.acquireOrder(0, Side.SELL, 1_000_000, 150));
+        for (int i = 0; i < 3000; i++)
+        {
+            int event = random.nextInt(10);
+            int qty = 1 + random.nextInt(100);
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            if (event < 6)
+            {
+                long price = side == Side.BUY ? 95 + random.nextInt(5) : 100 + random.nextInt(5);
+                ob.addOrder(ob.acquireOrder(0, side, qty, price));
+            }
+            else if (event < 7)
+            {
+                ob.removeOrder(2 + random.nextInt(i + 1), false); // never the two deep orders
+            }
+            else
+            {
+                ob.addOrder(ob.acquireMarketOrder(0, side, qty));
+            }
+        }
+    }
+}